@@ -0,0 +1,263 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A frame of captured audio together with the number of outstanding leases on it. Frames that
+ * belong to a {@link VoiceProcessorFramePool} are handed back to the pool once the last lease
+ * is released; unpooled frames are simply left to the garbage collector.
+ *
+ * <p>A frame holds its samples in a `short[]` on the Java heap, in a direct `ByteBuffer` of native
+ * byte order for delivery to {@link VoiceProcessorBufferListener}s, or in a `float[]` for
+ * delivery to {@link VoiceProcessorFloatListener}s. A heap frame may also carry a batch of
+ * consecutive frames for a {@link VoiceProcessorBatchListener}.
+ */
+final class AudioFrame {
+
+    private static final float SHORT_TO_FLOAT = 1.0f / 32768.0f;
+
+    final int length;
+    final short[] data;
+    final ByteBuffer buffer;
+    final ByteBuffer readOnlyBuffer;
+    final float[] floatData;
+    final int[] frameOffsets;
+
+    private final ShortBuffer samples;
+    private final AtomicInteger refCount = new AtomicInteger(0);
+
+    private VoiceProcessorFrameStats stats = null;
+    private boolean isStatsValid = false;
+
+    private long sequenceNumber = 0;
+    private long samplePosition = 0;
+    private int sampleRate = 0;
+    private long captureTimeNanos = 0;
+    private boolean isCaptureTimeEstimated = true;
+    private VoiceProcessorFrameInfo info = null;
+
+    AudioFrame(int frameLength) {
+        this.length = frameLength;
+        this.data = new short[frameLength];
+        this.buffer = null;
+        this.readOnlyBuffer = null;
+        this.floatData = null;
+        this.frameOffsets = null;
+        this.samples = null;
+    }
+
+    /**
+     * Creates a frame that carries a batch of consecutive frames, each starting at the given
+     * offset into the samples.
+     */
+    AudioFrame(short[] data, int[] frameOffsets) {
+        this.length = data.length;
+        this.data = data;
+        this.buffer = null;
+        this.readOnlyBuffer = null;
+        this.floatData = null;
+        this.frameOffsets = frameOffsets;
+        this.samples = null;
+    }
+
+    AudioFrame(ByteBuffer buffer) {
+        this.length = buffer.capacity() / 2;
+        this.data = null;
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        this.readOnlyBuffer = buffer.asReadOnlyBuffer().order(ByteOrder.nativeOrder());
+        this.floatData = null;
+        this.frameOffsets = null;
+        this.samples = buffer.asShortBuffer();
+    }
+
+    AudioFrame(float[] floatData) {
+        this.length = floatData.length;
+        this.data = null;
+        this.buffer = null;
+        this.readOnlyBuffer = null;
+        this.floatData = floatData;
+        this.frameOffsets = null;
+        this.samples = null;
+    }
+
+    static AudioFrame allocateDirect(int frameLength) {
+        return new AudioFrame(ByteBuffer.allocateDirect(2 * frameLength));
+    }
+
+    static AudioFrame allocateFloat(int frameLength) {
+        return new AudioFrame(new float[frameLength]);
+    }
+
+    static AudioFrame allocate(VoiceProcessorFramePool.Storage storage, int frameLength) {
+        switch (storage) {
+            case DIRECT:
+                return allocateDirect(frameLength);
+            case FLOAT:
+                return allocateFloat(frameLength);
+            default:
+                return new AudioFrame(frameLength);
+        }
+    }
+
+    /**
+     * Fills this direct or floating-point frame with 16-bit samples from the heap. Only called
+     * from the recording thread, before the frame is handed to any listener.
+     */
+    void copyFrom(short[] source) {
+        if (floatData != null) {
+            for (int i = 0; i < length; i++) {
+                floatData[i] = source[i] * SHORT_TO_FLOAT;
+            }
+        } else {
+            samples.clear();
+            samples.put(source, 0, length);
+        }
+    }
+
+    /**
+     * Copies the samples of this direct or floating-point frame onto the heap as 16-bit samples.
+     * Floating-point samples outside of [-1, 1) are clipped.
+     */
+    void copyTo(short[] destination) {
+        if (floatData != null) {
+            for (int i = 0; i < length; i++) {
+                final float sample = floatData[i] * 32768.0f;
+                if (sample >= Short.MAX_VALUE) {
+                    destination[i] = Short.MAX_VALUE;
+                } else if (sample <= Short.MIN_VALUE) {
+                    destination[i] = Short.MIN_VALUE;
+                } else {
+                    destination[i] = (short) Math.round(sample);
+                }
+            }
+        } else {
+            samples.clear();
+            samples.get(destination, 0, length);
+        }
+    }
+
+    /**
+     * Copies the samples of this frame into a longer frame of the same storage, starting at the
+     * given offset. Direct samples are read with absolute gets, so that a frame shared with other
+     * listeners is left untouched.
+     */
+    void copyInto(AudioFrame target, int offset) {
+        if (floatData != null) {
+            System.arraycopy(floatData, 0, target.floatData, offset, length);
+        } else if (samples != null) {
+            for (int i = 0; i < length; i++) {
+                target.samples.put(offset + i, samples.get(i));
+            }
+        } else {
+            System.arraycopy(data, 0, target.data, offset, length);
+        }
+    }
+
+    /**
+     * Gets the statistics of the samples on the heap, computing them the first time they are
+     * needed after the frame was filled. Only called from the recording thread.
+     */
+    VoiceProcessorFrameStats computeStats() {
+        if (stats == null) {
+            stats = new VoiceProcessorFrameStats();
+        }
+        if (!isStatsValid) {
+            stats.update(data, length);
+            isStatsValid = true;
+        }
+        return stats;
+    }
+
+    VoiceProcessorFrameStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Records where the frame starts in its stream and when its first sample was captured. Only
+     * called from the recording thread, before the frame is handed to any listener.
+     */
+    void setTiming(
+            long sequenceNumber,
+            long samplePosition,
+            int sampleRate,
+            long captureTimeNanos,
+            boolean isCaptureTimeEstimated) {
+        this.sequenceNumber = sequenceNumber;
+        this.samplePosition = samplePosition;
+        this.sampleRate = sampleRate;
+        this.captureTimeNanos = captureTimeNanos;
+        this.isCaptureTimeEstimated = isCaptureTimeEstimated;
+    }
+
+    /**
+     * Gives the frame the timing of another frame that holds the same instants, such as one
+     * channel of a multi-channel frame.
+     */
+    void copyTiming(AudioFrame other) {
+        setTiming(
+                other.sequenceNumber,
+                other.samplePosition,
+                other.sampleRate,
+                other.captureTimeNanos,
+                other.isCaptureTimeEstimated);
+    }
+
+    /**
+     * Gets the timing of the frame as delivered to listeners, creating the info object the first
+     * time it is needed so that pooled frames reuse it. Only called from the recording thread.
+     */
+    VoiceProcessorFrameInfo computeInfo() {
+        if (info == null) {
+            info = new VoiceProcessorFrameInfo();
+        }
+        info.set(sequenceNumber, samplePosition, sampleRate, captureTimeNanos, isCaptureTimeEstimated);
+        return info;
+    }
+
+    int getSampleRate() {
+        return sampleRate;
+    }
+
+    VoiceProcessorFrameInfo getInfo() {
+        return info;
+    }
+
+    boolean tryAcquire() {
+        if (refCount.compareAndSet(0, 1)) {
+            isStatsValid = false;
+            return true;
+        }
+        return false;
+    }
+
+    void retain() {
+        refCount.incrementAndGet();
+    }
+
+    void release() {
+        while (true) {
+            final int count = refCount.get();
+            if (count == 0) {
+                return;
+            }
+            if (refCount.compareAndSet(count, count - 1)) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.AudioTimestamp;
+import android.os.Build;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Default audio source, which records from the device microphone with `AudioRecord`.
+ */
+class AudioRecordSource implements
+        BufferedAudioSource,
+        DirectAudioSource,
+        FloatAudioSource,
+        MultichannelAudioSource,
+        TimestampedAudioSource {
+
+    private final int encoding;
+    private final VoiceProcessorCaptureConfig config;
+
+    private AudioRecord recorder = null;
+    private AudioTimestamp timestamp = null;
+    private int bufferLength = 0;
+    private int sampleRate = 0;
+    // The recorder's timestamps count the frames read since it was created, across restarts,
+    // while reads count interleaved samples.
+    private long readPosition = 0;
+    private long startPosition = 0;
+
+    /**
+     * Creates a source that records with the given `AudioFormat` encoding. A source recording
+     * with `ENCODING_PCM_FLOAT` must only be read with {@link #read(float[], int, int)}, and one
+     * recording 16-bit samples must not be read with it.
+     */
+    AudioRecordSource(int encoding, VoiceProcessorCaptureConfig config) {
+        this.encoding = encoding;
+        this.config = config;
+    }
+
+    @Override
+    public void open(int frameLength, int sampleRate) throws VoiceProcessorException {
+        final int channelCount = config.getChannelCount();
+        final int channelMask = channelCount == 1 ? AudioFormat.CHANNEL_IN_MONO : AudioFormat.CHANNEL_IN_STEREO;
+        final int minBufferSize = AudioRecord.getMinBufferSize(sampleRate, channelMask, encoding) *
+                Math.max(1, (channelCount + 1) / 2);
+        final int bytesPerFrame = (encoding == AudioFormat.ENCODING_PCM_FLOAT ? 4 : 2) * channelCount;
+        final int bufferSize = config.getBufferSizeInBytes(frameLength, sampleRate, bytesPerFrame, minBufferSize);
+        bufferLength = bufferSize / bytesPerFrame;
+        this.sampleRate = sampleRate;
+        readPosition = 0;
+
+        try {
+            recorder = createRecorder(sampleRate, channelCount, channelMask, bufferSize);
+        } catch (IllegalArgumentException | UnsupportedOperationException e) {
+            throw new VoiceProcessorArgumentException(
+                    "Unable to initialize audio recorder with required parameters",
+                    e);
+        }
+
+        if (recorder.getState() != AudioRecord.STATE_INITIALIZED) {
+            throw new VoiceProcessorStateException(
+                    "Audio recorder did not initialize successfully. " +
+                            "Ensure you have acquired permission to record audio from the user.");
+        }
+    }
+
+    @Override
+    public void start() throws VoiceProcessorException {
+        try {
+            recorder.startRecording();
+            startPosition = readPosition / config.getChannelCount();
+        } catch (IllegalStateException e) {
+            throw new VoiceProcessorStateException("Audio recorder entered invalid state", e);
+        }
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) throws VoiceProcessorException {
+        final int numSamplesRead;
+        try {
+            numSamplesRead = recorder.read(buffer, offset, length);
+        } catch (IllegalStateException e) {
+            throw new VoiceProcessorStateException("Audio recorder entered invalid state", e);
+        }
+
+        checkReadResult(numSamplesRead);
+        readPosition += numSamplesRead;
+        return numSamplesRead;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, int offset, int length) throws VoiceProcessorException {
+        ByteBuffer target = buffer;
+        if (offset > 0) {
+            // AudioRecord always writes to the start of a direct buffer
+            target = buffer.duplicate();
+            target.position(2 * offset);
+            target = target.slice();
+        }
+
+        final int numBytesRead;
+        try {
+            numBytesRead = recorder.read(target, 2 * length);
+        } catch (IllegalStateException e) {
+            throw new VoiceProcessorStateException("Audio recorder entered invalid state", e);
+        }
+
+        checkReadResult(numBytesRead);
+        readPosition += numBytesRead / 2;
+        return numBytesRead / 2;
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    public int read(float[] buffer, int offset, int length) throws VoiceProcessorException {
+        final int numSamplesRead;
+        try {
+            numSamplesRead = recorder.read(buffer, offset, length, AudioRecord.READ_BLOCKING);
+        } catch (IllegalStateException e) {
+            throw new VoiceProcessorStateException("Audio recorder entered invalid state", e);
+        }
+
+        checkReadResult(numSamplesRead);
+        readPosition += numSamplesRead;
+        return numSamplesRead;
+    }
+
+    @Override
+    public int getChannelCount() {
+        return config.getChannelCount();
+    }
+
+    @Override
+    public int getBufferLength() {
+        return bufferLength;
+    }
+
+    @SuppressLint("NewApi")
+    @Override
+    public long getCaptureTimeNanos(long position) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.N) {
+            return NO_TIMESTAMP;
+        }
+        if (timestamp == null) {
+            timestamp = new AudioTimestamp();
+        }
+        if (recorder.getTimestamp(timestamp, AudioTimestamp.TIMEBASE_MONOTONIC) != AudioRecord.SUCCESS) {
+            return NO_TIMESTAMP;
+        }
+        final long numSamples = startPosition + position - timestamp.framePosition;
+        return timestamp.nanoTime + numSamples * 1_000_000_000L / sampleRate;
+    }
+
+    @Override
+    public void stop() throws VoiceProcessorException {
+        try {
+            recorder.stop();
+        } catch (IllegalStateException e) {
+            throw new VoiceProcessorStateException("Audio recorder entered invalid state", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (recorder != null) {
+            recorder.release();
+            recorder = null;
+        }
+    }
+
+    /**
+     * Creates the recorder. Mono and stereo use the classic channel masks, while more channels
+     * are selected by index, which requires Android 6.0 (API 23).
+     */
+    @SuppressLint({"MissingPermission", "NewApi"})
+    private AudioRecord createRecorder(
+            int sampleRate,
+            int channelCount,
+            int channelMask,
+            int bufferSize) throws VoiceProcessorArgumentException {
+        final int microphoneSource = config.resolveMicrophoneSource(Build.VERSION.SDK_INT);
+        if (channelCount <= 2) {
+            return new AudioRecord(microphoneSource, sampleRate, channelMask, encoding, bufferSize);
+        }
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            throw new VoiceProcessorArgumentException(
+                    "Capturing more than two channels requires Android 6.0 (API 23) or later");
+        }
+        return new AudioRecord.Builder()
+                .setAudioSource(microphoneSource)
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setSampleRate(sampleRate)
+                        .setEncoding(encoding)
+                        .setChannelIndexMask((1 << channelCount) - 1)
+                        .build())
+                .setBufferSizeInBytes(bufferSize)
+                .build();
+    }
+
+    /**
+     * Turns a negative result of `AudioRecord.read()` into an exception. A dead recorder can only
+     * be recovered by creating a new one, so it is reported as a state error.
+     */
+    @SuppressLint({"DefaultLocale", "InlinedApi"})
+    private static void checkReadResult(int result) throws VoiceProcessorException {
+        if (result == AudioRecord.ERROR_DEAD_OBJECT) {
+            throw new VoiceProcessorStateException("Audio recorder is no longer valid");
+        } else if (result < 0) {
+            throw new VoiceProcessorReadException(
+                    String.format("Audio recorder read failed with error code %d", result));
+        }
+    }
+}
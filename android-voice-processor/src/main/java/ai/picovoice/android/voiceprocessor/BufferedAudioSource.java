@@ -0,0 +1,28 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * An audio source that keeps recording into a buffer of limited size between reads, such as the
+ * microphone. If the recording thread does not read in time, the buffer overruns and audio is
+ * lost, which the read loop detects from the timing of the frames it reads.
+ */
+interface BufferedAudioSource extends VoiceProcessorAudioSource {
+
+    /**
+     * Gets the number of samples per channel the source can hold between reads, once opened.
+     *
+     * @return the buffer length in samples
+     */
+    int getBufferLength();
+}
@@ -0,0 +1,55 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Estimates when captured samples were recorded, for sources that do not report it. A blocking
+ * read cannot return before its last sample was recorded, so the clock is anchored at the frame
+ * that arrived earliest relative to its position; frames that were read late, from audio that
+ * waited in the recorder's buffer, do not move it. Only accessed from the recording thread.
+ */
+final class CaptureClock {
+
+    private final int sampleRate;
+
+    private boolean isStarted = false;
+    private long originNanos = 0;
+
+    CaptureClock(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Forgets the anchor, for when the source was restarted and positions start over.
+     */
+    void reset() {
+        isStarted = false;
+    }
+
+    /**
+     * Accounts for a frame whose read completed at the given time.
+     *
+     * @param nowNanos Time at which the read completed.
+     * @param position Position of the first sample of the frame since the source was started.
+     * @param length   Number of samples in the frame.
+     * @return the estimated capture time of the first sample of the frame
+     */
+    long onFrame(long nowNanos, long position, int length) {
+        final long endOriginNanos = nowNanos - (position + length) * 1_000_000_000L / sampleRate;
+        if (!isStarted || endOriginNanos < originNanos) {
+            isStarted = true;
+            originNanos = endOriginNanos;
+        }
+        return originNanos + position * 1_000_000_000L / sampleRate;
+    }
+}
@@ -0,0 +1,123 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Counters and latency recorders of a single capture session. Only updated from the recording
+ * thread, so every update is a plain write; snapshots may be taken from any thread.
+ */
+final class CaptureMetrics {
+
+    final LatencyRecorder readLatency = new LatencyRecorder();
+    final LatencyRecorder routingTime = new LatencyRecorder();
+    final LatencyRecorder startLatency = new LatencyRecorder();
+    final LatencyRecorder stopLatency = new LatencyRecorder();
+
+    private final long frameDurationNanos;
+
+    private volatile long numFramesCaptured = 0;
+    private volatile long numShortReads = 0;
+    private volatile long numReadErrors = 0;
+    private volatile long numLateReads = 0;
+    private volatile long numSpeechFrames = 0;
+    private volatile long numOverruns = 0;
+    private volatile long numSamplesLost = 0;
+    private volatile long numRestarts = 0;
+    private long lastReadEndNanos = 0;
+    private long startRequestNanos = 0;
+
+    CaptureMetrics(int frameLength, int sampleRate) {
+        this.frameDurationNanos = sampleRate > 0 ? frameLength * 1_000_000_000L / sampleRate : 0;
+    }
+
+    void onReadStarted(long nowNanos) {
+        if (lastReadEndNanos != 0 && nowNanos - lastReadEndNanos > frameDurationNanos) {
+            numLateReads++;
+        }
+    }
+
+    void onReadEnded(long readStartNanos, long nowNanos) {
+        readLatency.record(nowNanos - readStartNanos);
+        lastReadEndNanos = nowNanos;
+    }
+
+    /**
+     * Accounts for the source being started or resumed at the request made at the given time.
+     */
+    void onStarting(long requestNanos) {
+        startRequestNanos = requestNanos;
+        lastReadEndNanos = 0;
+    }
+
+    void onFrameCaptured(long nowNanos) {
+        numFramesCaptured++;
+        if (startRequestNanos != 0) {
+            startLatency.record(nowNanos - startRequestNanos);
+            startRequestNanos = 0;
+        }
+    }
+
+    /**
+     * Accounts for the source having stopped after a pause or stop requested at the given time.
+     */
+    void onStopped(long requestNanos, long nowNanos) {
+        startRequestNanos = 0;
+        stopLatency.record(nowNanos - requestNanos);
+    }
+
+    void onShortRead() {
+        numShortReads++;
+    }
+
+    void onReadError() {
+        numReadErrors++;
+    }
+
+    void onSpeechFrame() {
+        numSpeechFrames++;
+    }
+
+    void onOverrun(long numSamples) {
+        numOverruns++;
+        numSamplesLost += numSamples;
+    }
+
+    void onRestart() {
+        numRestarts++;
+    }
+
+    VoiceProcessorMetrics snapshot(
+            FrameSubscription[] subscriptions,
+            VoiceProcessorPreprocessingMetrics[] preprocessingMetrics) {
+        final VoiceProcessorListenerMetrics[] listenerMetrics =
+                new VoiceProcessorListenerMetrics[subscriptions.length];
+        for (int i = 0; i < subscriptions.length; i++) {
+            listenerMetrics[i] = subscriptions[i].getMetrics();
+        }
+        return new VoiceProcessorMetrics(
+                numFramesCaptured,
+                numShortReads,
+                numReadErrors,
+                numLateReads,
+                numSpeechFrames,
+                numOverruns,
+                numSamplesLost,
+                numRestarts,
+                readLatency.snapshot(),
+                routingTime.snapshot(),
+                startLatency.snapshot(),
+                stopLatency.snapshot(),
+                listenerMetrics,
+                preprocessingMetrics);
+    }
+}
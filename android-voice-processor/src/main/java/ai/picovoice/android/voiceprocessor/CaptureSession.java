@@ -0,0 +1,156 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Control state shared between the thread that starts, pauses and stops a capture session and
+ * the recording thread that runs it. Pausing and resuming wake the recording thread right away;
+ * stopping is requested without waiting, and the session reports when it has finished.
+ */
+final class CaptureSession {
+
+    final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+
+    private final Object lock = new Object();
+    private final CountDownLatch finished = new CountDownLatch(1);
+    private final ArrayList<VoiceProcessorStopListener> stopListeners = new ArrayList<>();
+
+    private boolean isPaused = false;
+    private long requestNanos;
+    private long stopRequestNanos = 0;
+    private boolean isFinished = false;
+    private Throwable failure = null;
+
+    CaptureSession(long startRequestNanos) {
+        this.requestNanos = startRequestNanos;
+    }
+
+    /**
+     * Asks the recording thread to stop once the frame being read has been routed.
+     */
+    void requestStop() {
+        synchronized (lock) {
+            if (isStopRequested.compareAndSet(false, true)) {
+                stopRequestNanos = System.nanoTime();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Pauses or resumes the session, recording when it was requested.
+     *
+     * @return false if the session already was in the requested state
+     */
+    boolean setPaused(boolean isPaused) {
+        synchronized (lock) {
+            if (this.isPaused == isPaused) {
+                return false;
+            }
+            this.isPaused = isPaused;
+            requestNanos = System.nanoTime();
+            lock.notifyAll();
+            return true;
+        }
+    }
+
+    boolean isPaused() {
+        synchronized (lock) {
+            return isPaused;
+        }
+    }
+
+    /**
+     * Gets the time at which the session was last started, paused or resumed.
+     */
+    long getRequestNanos() {
+        synchronized (lock) {
+            return requestNanos;
+        }
+    }
+
+    /**
+     * Gets the time at which stopping the session was requested, or 0 if it was not.
+     */
+    long getStopRequestNanos() {
+        synchronized (lock) {
+            return stopRequestNanos;
+        }
+    }
+
+    /**
+     * Blocks the recording thread while the session is paused.
+     *
+     * @return false if the session was stopped instead of resumed
+     */
+    boolean awaitResume() {
+        synchronized (lock) {
+            try {
+                while (isPaused && !isStopRequested.get()) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return !isStopRequested.get();
+        }
+    }
+
+    /**
+     * Adds a listener to notify once the session has finished.
+     *
+     * @return false if the session has already finished, in which case the listener is not added
+     */
+    boolean addStopListener(VoiceProcessorStopListener listener) {
+        synchronized (lock) {
+            if (isFinished) {
+                return false;
+            }
+            stopListeners.add(listener);
+            return true;
+        }
+    }
+
+    /**
+     * Marks the session as finished, once the recording thread has released the audio source.
+     *
+     * @param failure the unexpected exception the recording thread ended with, or null
+     * @return the listeners to notify that the session has finished
+     */
+    VoiceProcessorStopListener[] finish(Throwable failure) {
+        final VoiceProcessorStopListener[] listeners;
+        synchronized (lock) {
+            isFinished = true;
+            this.failure = failure;
+            listeners = stopListeners.toArray(new VoiceProcessorStopListener[0]);
+            stopListeners.clear();
+        }
+        finished.countDown();
+        return listeners;
+    }
+
+    /**
+     * Waits for the recording thread to finish the session.
+     *
+     * @return the unexpected exception the recording thread ended with, or null
+     */
+    Throwable await() throws InterruptedException {
+        finished.await();
+        return failure;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * De-interleaves multi-channel audio into one buffer per channel and a mono downmix, in a single
+ * pass over the captured samples.
+ */
+final class ChannelSplitter {
+
+    private ChannelSplitter() {
+    }
+
+    /**
+     * Splits a frame of interleaved samples.
+     *
+     * @param interleaved  Interleaved samples, `frameLength * channelCount` of them.
+     * @param channelCount Number of interleaved channels.
+     * @param frameLength  Number of samples per channel.
+     * @param channels     Buffer for each channel, or null if only the downmix is needed.
+     * @param downmix      Buffer for the average of the channels.
+     */
+    static void split(
+            short[] interleaved,
+            int channelCount,
+            int frameLength,
+            short[][] channels,
+            short[] downmix) {
+        int j = 0;
+        if (channels == null) {
+            for (int i = 0; i < frameLength; i++) {
+                int sum = 0;
+                for (int c = 0; c < channelCount; c++) {
+                    sum += interleaved[j++];
+                }
+                downmix[i] = (short) (sum / channelCount);
+            }
+            return;
+        }
+
+        for (int i = 0; i < frameLength; i++) {
+            int sum = 0;
+            for (int c = 0; c < channelCount; c++) {
+                final short sample = interleaved[j++];
+                channels[c][i] = sample;
+                sum += sample;
+            }
+            downmix[i] = (short) (sum / channelCount);
+        }
+    }
+}
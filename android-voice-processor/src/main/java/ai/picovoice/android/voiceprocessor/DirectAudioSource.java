@@ -0,0 +1,34 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An audio source that can read samples straight into a direct byte buffer, sparing a copy
+ * from the Java heap when frames are delivered to {@link VoiceProcessorBufferListener}s.
+ */
+interface DirectAudioSource extends VoiceProcessorAudioSource {
+
+    /**
+     * Reads 16-bit samples in native byte order into a direct buffer, blocking until the
+     * requested number of samples is available or the stream ends.
+     *
+     * @param buffer Direct buffer to read into.
+     * @param offset Index of the first sample to write.
+     * @param length Number of samples to read.
+     * @return the number of samples read, or {@link #END_OF_STREAM} once the source is exhausted
+     * @throws VoiceProcessorException if reading fails
+     */
+    int read(ByteBuffer buffer, int offset, int length) throws VoiceProcessorException;
+}
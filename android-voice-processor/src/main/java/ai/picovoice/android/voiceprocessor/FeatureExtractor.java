@@ -0,0 +1,270 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Computes log mel energies or mel-frequency cepstral coefficients of analysis windows of a
+ * fixed length. The window, twiddle factors, bit-reversal permutation, mel filterbank and DCT
+ * are tabulated once, and every working array is allocated up front, so extracting the
+ * features of a window allocates nothing. Only accessed from the recording thread.
+ */
+final class FeatureExtractor {
+
+    private static final float LOG_FLOOR = 1e-10f;
+
+    private final VoiceProcessorFeatureOptions options;
+    private final int windowLength;
+    private final int sampleRate;
+    private final int fftLength;
+    private final int halfLength;
+
+    private final float[] window;
+    private final int[] bitReversal;
+    private final float[] twiddleCos;
+    private final float[] twiddleSin;
+    private final float[] splitCos;
+    private final float[] splitSin;
+    private final int[] filterStarts;
+    private final float[][] filterWeights;
+    private final float[][] dct;
+
+    private final float[] real;
+    private final float[] imag;
+    private final float[] power;
+    private final float[] melEnergies;
+
+    // Features of the frame currently being routed, shared by every listener that wants them.
+    private AudioFrame input = null;
+    private AudioFrame features = null;
+
+    FeatureExtractor(VoiceProcessorFeatureOptions options, int windowLength, int sampleRate) {
+        this.options = options;
+        this.windowLength = windowLength;
+        this.sampleRate = sampleRate;
+        this.fftLength = Math.max(
+                Math.max(options.getFftLength(), 4),
+                Integer.highestOneBit(Math.max(1, windowLength - 1)) << 1);
+        this.halfLength = fftLength / 2;
+
+        // Periodic Hann window, scaled to bring 16-bit samples to [-1, 1)
+        window = new float[windowLength];
+        for (int i = 0; i < windowLength; i++) {
+            window[i] = (float) ((0.5 - 0.5 * Math.cos(2 * Math.PI * i / windowLength)) / 32768.0);
+        }
+
+        // The real FFT of the window is computed with a complex FFT of half its length, whose
+        // input holds the even samples as real parts and the odd samples as imaginary parts
+        bitReversal = new int[halfLength];
+        final int numBits = Integer.numberOfTrailingZeros(halfLength);
+        for (int i = 0; i < halfLength; i++) {
+            bitReversal[i] = numBits == 0 ? 0 : Integer.reverse(i) >>> (32 - numBits);
+        }
+        twiddleCos = new float[halfLength / 2];
+        twiddleSin = new float[halfLength / 2];
+        for (int i = 0; i < twiddleCos.length; i++) {
+            twiddleCos[i] = (float) Math.cos(2 * Math.PI * i / halfLength);
+            twiddleSin[i] = (float) -Math.sin(2 * Math.PI * i / halfLength);
+        }
+        splitCos = new float[halfLength + 1];
+        splitSin = new float[halfLength + 1];
+        for (int i = 0; i <= halfLength; i++) {
+            splitCos[i] = (float) Math.cos(2 * Math.PI * i / fftLength);
+            splitSin[i] = (float) -Math.sin(2 * Math.PI * i / fftLength);
+        }
+
+        // Triangular filters with edges evenly spaced on the mel scale
+        final int numBands = options.getNumMelBands();
+        final double nyquistHz = sampleRate / 2.0;
+        final double maxHz = options.getMaxFrequencyHz() > 0 ?
+                Math.min(options.getMaxFrequencyHz(), nyquistHz) :
+                nyquistHz;
+        final double minMel = toMel(Math.min(options.getMinFrequencyHz(), maxHz));
+        final double maxMel = toMel(maxHz);
+        final double[] edgesHz = new double[numBands + 2];
+        for (int i = 0; i < edgesHz.length; i++) {
+            edgesHz[i] = fromMel(minMel + (maxMel - minMel) * i / (numBands + 1));
+        }
+        filterStarts = new int[numBands];
+        filterWeights = new float[numBands][];
+        final double binHz = (double) sampleRate / fftLength;
+        for (int band = 0; band < numBands; band++) {
+            final double lowHz = edgesHz[band];
+            final double centerHz = edgesHz[band + 1];
+            final double highHz = edgesHz[band + 2];
+            final int start = (int) Math.ceil(lowHz / binHz);
+            final int end = Math.min(halfLength, (int) Math.floor(highHz / binHz));
+            filterStarts[band] = start;
+            filterWeights[band] = new float[Math.max(0, end - start + 1)];
+            for (int bin = start; bin <= end; bin++) {
+                final double hz = bin * binHz;
+                final double weight = hz <= centerHz ?
+                        (hz - lowHz) / (centerHz - lowHz) :
+                        (highHz - hz) / (highHz - centerHz);
+                filterWeights[band][bin - start] = (float) Math.max(0, weight);
+            }
+        }
+
+        // Orthonormal DCT-II of the log mel energies
+        final int numCepstra = options.getNumCepstra();
+        dct = new float[numCepstra][numBands];
+        for (int c = 0; c < numCepstra; c++) {
+            final double scale = Math.sqrt((c == 0 ? 1.0 : 2.0) / numBands);
+            for (int band = 0; band < numBands; band++) {
+                dct[c][band] = (float) (scale * Math.cos(Math.PI * c * (band + 0.5) / numBands));
+            }
+        }
+
+        real = new float[halfLength];
+        imag = new float[halfLength];
+        power = new float[halfLength + 1];
+        melEnergies = new float[numBands];
+    }
+
+    /**
+     * Whether the extractor computes the given features of windows of the given length.
+     */
+    boolean matches(VoiceProcessorFeatureOptions options, int windowLength, int sampleRate) {
+        return this.windowLength == windowLength && this.sampleRate == sampleRate && this.options.equals(options);
+    }
+
+    int getFeatureLength() {
+        return options.getFeatureLength();
+    }
+
+    int getFftLength() {
+        return fftLength;
+    }
+
+    /**
+     * Gets the power spectrum of the last window features were extracted from, from 0 Hz to half
+     * the sample rate.
+     */
+    float[] getPowerSpectrum() {
+        return power;
+    }
+
+    /**
+     * Gets the features already extracted from a frame that is being routed.
+     *
+     * @return the features, or null if they have not been extracted from this frame
+     */
+    AudioFrame getFeatures(AudioFrame frame) {
+        return input == frame ? features : null;
+    }
+
+    void setFeatures(AudioFrame frame, AudioFrame features) {
+        this.input = frame;
+        this.features = features;
+    }
+
+    /**
+     * Forgets the features of the frame that has been routed.
+     *
+     * @return the features, for the caller to release, or null if none were extracted
+     */
+    AudioFrame takeFeatures() {
+        final AudioFrame taken = features;
+        input = null;
+        features = null;
+        return taken;
+    }
+
+    /**
+     * Extracts the features of a window of samples.
+     */
+    void extract(short[] samples, float[] output) {
+        for (int i = 0; i < halfLength; i++) {
+            final int even = 2 * i;
+            final int odd = even + 1;
+            final int index = bitReversal[i];
+            real[index] = even < windowLength ? samples[even] * window[even] : 0;
+            imag[index] = odd < windowLength ? samples[odd] * window[odd] : 0;
+        }
+        transform();
+        computePowerSpectrum();
+
+        final int numBands = melEnergies.length;
+        for (int band = 0; band < numBands; band++) {
+            final float[] weights = filterWeights[band];
+            final int start = filterStarts[band];
+            float energy = 0;
+            for (int i = 0; i < weights.length; i++) {
+                energy += weights[i] * power[start + i];
+            }
+            melEnergies[band] = (float) Math.log(Math.max(energy, LOG_FLOOR));
+        }
+
+        if (dct.length == 0) {
+            System.arraycopy(melEnergies, 0, output, 0, numBands);
+            return;
+        }
+        for (int c = 0; c < dct.length; c++) {
+            final float[] basis = dct[c];
+            float coefficient = 0;
+            for (int band = 0; band < numBands; band++) {
+                coefficient += basis[band] * melEnergies[band];
+            }
+            output[c] = coefficient;
+        }
+    }
+
+    /**
+     * Radix-2 decimation-in-time FFT of the bit-reversed input, in place.
+     */
+    private void transform() {
+        for (int size = 2; size <= halfLength; size <<= 1) {
+            final int half = size / 2;
+            final int stride = halfLength / size;
+            for (int start = 0; start < halfLength; start += size) {
+                for (int j = 0; j < half; j++) {
+                    final float cos = twiddleCos[j * stride];
+                    final float sin = twiddleSin[j * stride];
+                    final int top = start + j;
+                    final int bottom = top + half;
+                    final float re = real[bottom] * cos - imag[bottom] * sin;
+                    final float im = real[bottom] * sin + imag[bottom] * cos;
+                    real[bottom] = real[top] - re;
+                    imag[bottom] = imag[top] - im;
+                    real[top] += re;
+                    imag[top] += im;
+                }
+            }
+        }
+    }
+
+    /**
+     * Separates the spectra of the even and odd samples and combines them into the power
+     * spectrum of the whole window, from 0 Hz to half the sample rate.
+     */
+    private void computePowerSpectrum() {
+        for (int k = 0; k <= halfLength; k++) {
+            final int index = k == halfLength ? 0 : k;
+            final int mirror = k == 0 ? 0 : halfLength - k;
+            final float evenRe = 0.5f * (real[index] + real[mirror]);
+            final float evenIm = 0.5f * (imag[index] - imag[mirror]);
+            final float oddRe = 0.5f * (imag[index] + imag[mirror]);
+            final float oddIm = -0.5f * (real[index] - real[mirror]);
+            final float re = evenRe + splitCos[k] * oddRe - splitSin[k] * oddIm;
+            final float im = evenIm + splitCos[k] * oddIm + splitSin[k] * oddRe;
+            power[k] = re * re + im * im;
+        }
+    }
+
+    private static double toMel(double hz) {
+        return 2595.0 * Math.log10(1 + hz / 700.0);
+    }
+
+    private static double fromMel(double mel) {
+        return 700.0 * (Math.pow(10, mel / 2595.0) - 1);
+    }
+}
@@ -0,0 +1,32 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * An audio source that can read floating-point samples, sparing a conversion when frames are
+ * delivered to {@link VoiceProcessorFloatListener}s.
+ */
+interface FloatAudioSource extends VoiceProcessorAudioSource {
+
+    /**
+     * Reads floating-point samples in the range [-1, 1), blocking until the requested number of
+     * samples is available or the stream ends.
+     *
+     * @param buffer Buffer to read into.
+     * @param offset Index of the first sample to write.
+     * @param length Number of samples to read.
+     * @return the number of samples read, or {@link #END_OF_STREAM} once the source is exhausted
+     * @throws VoiceProcessorException if reading fails
+     */
+    int read(float[] buffer, int offset, int length) throws VoiceProcessorException;
+}
@@ -0,0 +1,91 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.Arrays;
+
+/**
+ * Gathers the frames routed to a batch listener into one contiguous buffer until the batch is
+ * full or has been open for long enough. Only accessed from the recording thread.
+ */
+final class FrameBatcher {
+
+    private final int maxFrames;
+    private final long maxDurationNanos;
+
+    private short[] samples = new short[0];
+    private int[] frameOffsets = new int[0];
+    private int numFrames = 0;
+    private int length = 0;
+    private long startNanos = 0;
+
+    /**
+     * Creates a batcher. A limit of zero leaves that dimension of the batch unbounded.
+     */
+    FrameBatcher(int maxFrames, int maxDurationMillis) {
+        this.maxFrames = maxFrames;
+        this.maxDurationNanos = maxDurationMillis * 1_000_000L;
+    }
+
+    /**
+     * Copies a frame into the batch.
+     *
+     * @return true if the batch is full and should be taken
+     */
+    boolean add(AudioFrame frame, long nowNanos) {
+        if (numFrames == 0) {
+            startNanos = nowNanos;
+        }
+        if (samples.length < length + frame.length) {
+            samples = Arrays.copyOf(samples, Math.max(2 * samples.length, length + frame.length));
+        }
+        if (frameOffsets.length == numFrames) {
+            frameOffsets = Arrays.copyOf(frameOffsets, Math.max(2 * frameOffsets.length, 8));
+        }
+
+        System.arraycopy(frame.data, 0, samples, length, frame.length);
+        frameOffsets[numFrames++] = length;
+        length += frame.length;
+        return (maxFrames > 0 && numFrames >= maxFrames) || isDue(nowNanos);
+    }
+
+    /**
+     * Whether a partially filled batch has been open for longer than the maximum duration.
+     */
+    boolean isDue(long nowNanos) {
+        return numFrames > 0 && maxDurationNanos > 0 && nowNanos - startNanos >= maxDurationNanos;
+    }
+
+    /**
+     * Takes the frames gathered so far as a single frame and starts a new batch.
+     *
+     * @return the batch, or null if no frames have been gathered
+     */
+    AudioFrame take() {
+        if (numFrames == 0) {
+            return null;
+        }
+
+        final AudioFrame batch = new AudioFrame(
+                Arrays.copyOf(samples, length),
+                Arrays.copyOf(frameOffsets, numFrames));
+        numFrames = 0;
+        length = 0;
+        return batch;
+    }
+
+    void clear() {
+        numFrames = 0;
+        length = 0;
+    }
+}
@@ -0,0 +1,24 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Compresses frames of 16-bit audio into self-contained packets. An encoder is only ever called
+ * from one thread at a time, in the order the frames were captured.
+ */
+interface FrameCodec {
+
+    byte[] encode(short[] samples, int length);
+
+    short[] decode(byte[] packet) throws VoiceProcessorArgumentException;
+}
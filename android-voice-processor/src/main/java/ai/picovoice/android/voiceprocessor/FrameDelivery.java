@@ -0,0 +1,258 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Hands frames to one kind of frame listener, in the form that listener expects. Every
+ * {@link FrameSubscription} holds one delivery, which also tells the recording thread what to
+ * prepare for the listener before a frame is queued: which storage the samples are kept in,
+ * and whether the frame's statistics, timing or spectral features are needed.
+ */
+abstract class FrameDelivery {
+
+    static FrameDelivery ofFrames(VoiceProcessorFrameListener listener) {
+        return new Frames(listener);
+    }
+
+    static FrameDelivery ofBuffers(VoiceProcessorBufferListener listener) {
+        return new Buffers(listener);
+    }
+
+    static FrameDelivery ofFloats(VoiceProcessorFloatListener listener) {
+        return new Floats(listener);
+    }
+
+    static FrameDelivery ofStats(VoiceProcessorFrameStatsListener listener) {
+        return new Stats(listener);
+    }
+
+    static FrameDelivery ofBatches(VoiceProcessorBatchListener listener) {
+        return new Batches(listener);
+    }
+
+    static FrameDelivery ofTimed(VoiceProcessorTimedFrameListener listener) {
+        return new Timed(listener);
+    }
+
+    static FrameDelivery ofFeatures(VoiceProcessorFeatureListener listener, VoiceProcessorFeatureOptions options) {
+        return new Features(listener, options);
+    }
+
+    abstract Object getListener();
+
+    /**
+     * Hands a frame to the listener. The caller keeps its lease on the frame and releases it
+     * once this returns.
+     */
+    abstract void deliver(AudioFrame frame);
+
+    /**
+     * Gets where the samples of the frames handed to the listener are kept.
+     */
+    VoiceProcessorFramePool.Storage getStorage() {
+        return VoiceProcessorFramePool.Storage.HEAP;
+    }
+
+    boolean isStats() {
+        return false;
+    }
+
+    boolean isTimed() {
+        return false;
+    }
+
+    boolean isBatch() {
+        return false;
+    }
+
+    /**
+     * Gets the features the listener receives instead of samples.
+     *
+     * @return the feature options, or null if the listener receives samples
+     */
+    VoiceProcessorFeatureOptions getFeatureOptions() {
+        return null;
+    }
+
+    private static final class Frames extends FrameDelivery {
+
+        private final VoiceProcessorFrameListener listener;
+
+        Frames(VoiceProcessorFrameListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onFrame(frame.data);
+        }
+    }
+
+    private static final class Buffers extends FrameDelivery {
+
+        private final VoiceProcessorBufferListener listener;
+
+        Buffers(VoiceProcessorBufferListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            // The view is shared by every delivery of the frame, so undo what a previous reader did to it
+            frame.readOnlyBuffer.clear();
+            listener.onFrame(frame.readOnlyBuffer);
+        }
+
+        @Override
+        VoiceProcessorFramePool.Storage getStorage() {
+            return VoiceProcessorFramePool.Storage.DIRECT;
+        }
+    }
+
+    private static final class Floats extends FrameDelivery {
+
+        private final VoiceProcessorFloatListener listener;
+
+        Floats(VoiceProcessorFloatListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onFrame(frame.floatData);
+        }
+
+        @Override
+        VoiceProcessorFramePool.Storage getStorage() {
+            return VoiceProcessorFramePool.Storage.FLOAT;
+        }
+    }
+
+    private static final class Stats extends FrameDelivery {
+
+        private final VoiceProcessorFrameStatsListener listener;
+
+        Stats(VoiceProcessorFrameStatsListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onFrame(frame.data, frame.getStats());
+        }
+
+        @Override
+        boolean isStats() {
+            return true;
+        }
+    }
+
+    private static final class Batches extends FrameDelivery {
+
+        private final VoiceProcessorBatchListener listener;
+
+        Batches(VoiceProcessorBatchListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onBatch(frame.data, frame.frameOffsets);
+        }
+
+        @Override
+        boolean isBatch() {
+            return true;
+        }
+    }
+
+    private static final class Timed extends FrameDelivery {
+
+        private final VoiceProcessorTimedFrameListener listener;
+
+        Timed(VoiceProcessorTimedFrameListener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onFrame(frame.data, frame.getInfo());
+        }
+
+        @Override
+        boolean isTimed() {
+            return true;
+        }
+    }
+
+    private static final class Features extends FrameDelivery {
+
+        private final VoiceProcessorFeatureListener listener;
+        private final VoiceProcessorFeatureOptions options;
+
+        Features(VoiceProcessorFeatureListener listener, VoiceProcessorFeatureOptions options) {
+            this.listener = listener;
+            this.options = options;
+        }
+
+        @Override
+        Object getListener() {
+            return listener;
+        }
+
+        @Override
+        void deliver(AudioFrame frame) {
+            listener.onFeatures(frame.floatData);
+        }
+
+        @Override
+        VoiceProcessorFramePool.Storage getStorage() {
+            return VoiceProcessorFramePool.Storage.FLOAT;
+        }
+
+        @Override
+        VoiceProcessorFeatureOptions getFeatureOptions() {
+            return options;
+        }
+    }
+}
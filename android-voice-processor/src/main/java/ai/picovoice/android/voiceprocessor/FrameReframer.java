@@ -0,0 +1,97 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Cuts frames of a fixed length out of the {@link SampleRing} of a {@link SampleStream}, starting
+ * a new frame every hop. Listeners that asked for the same sample rate, frame and hop lengths
+ * share a reframer, so each such frame is only copied out of the ring once. Only accessed from
+ * the recording thread.
+ */
+final class FrameReframer {
+
+    final int frameLength;
+    final int hopLength;
+
+    private final VoiceProcessorFramePool pool;
+
+    private long nextFramePosition;
+    private long lastFramePosition = 0;
+    private long numFrames = 0;
+    private boolean isInUse = true;
+
+    FrameReframer(int frameLength, int hopLength, VoiceProcessorFramePool pool, long startPosition) {
+        this.frameLength = frameLength;
+        this.hopLength = hopLength;
+        this.pool = pool;
+        this.nextFramePosition = startPosition;
+    }
+
+    VoiceProcessorFramePool getPool() {
+        return pool;
+    }
+
+    boolean matches(int frameLength, int hopLength) {
+        return this.frameLength == frameLength && this.hopLength == hopLength;
+    }
+
+    /**
+     * Gets the ring position of the first sample of the frame cut last.
+     */
+    long getLastFramePosition() {
+        return lastFramePosition;
+    }
+
+    /**
+     * Gets the number of frames cut so far.
+     */
+    long getNumFrames() {
+        return numFrames;
+    }
+
+    boolean isInUse() {
+        return isInUse;
+    }
+
+    void setInUse(boolean isInUse) {
+        this.isInUse = isInUse;
+    }
+
+    /**
+     * Cuts the next frame out of the ring, if enough samples have been captured.
+     *
+     * @return the next frame with one lease held by the caller, or null if it is not complete yet
+     */
+    AudioFrame next(SampleRing ring) {
+        if (ring.getWritePosition() - nextFramePosition < frameLength) {
+            return null;
+        }
+
+        if (nextFramePosition < ring.getOldestPosition()) {
+            nextFramePosition = ring.getOldestPosition();
+        }
+
+        final AudioFrame frame;
+        if (pool != null) {
+            frame = pool.acquire();
+        } else {
+            frame = new AudioFrame(frameLength);
+            frame.retain();
+        }
+        ring.read(nextFramePosition, frame.data, 0, frameLength);
+        lastFramePosition = nextFramePosition;
+        numFrames++;
+        nextFramePosition += hopLength;
+        return frame;
+    }
+}
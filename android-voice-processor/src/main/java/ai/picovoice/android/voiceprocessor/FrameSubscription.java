@@ -0,0 +1,663 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A frame listener together with its delivery target and a bounded queue of the frames waiting
+ * to be delivered to it. Frames are queued by the recording thread and drained by a single task
+ * on the delivery target, so at most one task per listener is pending at any time regardless of
+ * how many frames are queued.
+ *
+ * <p>A demand-driven subscription only delivers as many frames as its subscriber has requested.
+ * Frames captured beyond that demand wait in the queue, subject to the overflow policy.
+ */
+final class FrameSubscription implements Runnable {
+
+    private static final long BLOCK_POLL_INTERVAL_MS = 10;
+    private static final int MAX_COALESCED_SAMPLES = 1 << 19;
+    private static final int NUM_MERGED_FRAMES = 4;
+
+    final int frameLength;
+    final int hopLength;
+    final int sampleRate;
+    final int rewindMillis;
+    final boolean isSpeechOnly;
+    final int channel;
+
+    private final FrameDelivery delivery;
+    private final Executor executor;
+    private final VoiceProcessorOverflowPolicy overflowPolicy;
+    private final Object queueLock = new Object();
+    private final int queueCapacity;
+    private final LatencyRecorder dispatchLatency = new LatencyRecorder();
+    private final LatencyRecorder executionTime = new LatencyRecorder();
+
+    private AudioFrame[] queue;
+    private long[] queueTimes;
+    private int queueLimit;
+    private int queueHead = 0;
+    private int queueSize = 0;
+    private int queuedSamples = 0;
+    private int peakQueueSize = 0;
+    private boolean isScheduled = false;
+    private boolean isOverflowing = false;
+    private boolean isFinished = false;
+    private Runnable finalTask = null;
+    private long demand;
+    private volatile long numDroppedFrames = 0;
+    private volatile long numDeliveredFrames = 0;
+
+    // Coalescing state, only accessed from the task that delivers the frames.
+    private AudioFrame[] coalescedFrames = new AudioFrame[0];
+    private final AudioFrame[] mergedFrames = new AudioFrame[NUM_MERGED_FRAMES];
+    private int mergedFrameCursor = 0;
+
+    // Rewind and batching state, only accessed from the recording thread.
+    private boolean isRewindPending;
+    private SampleStream rewindStream = null;
+    private final FrameBatcher batcher;
+
+    FrameSubscription(
+            VoiceProcessorFrameListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        this(FrameDelivery.ofFrames(listener), executor, options, false);
+    }
+
+    private FrameSubscription(
+            FrameDelivery delivery,
+            Executor executor,
+            VoiceProcessorListenerOptions options,
+            boolean isDemandDriven) {
+        this.delivery = delivery;
+        this.executor = executor;
+        if (options != null) {
+            this.queueCapacity = options.getQueueCapacity();
+            this.overflowPolicy = options.getOverflowPolicy();
+            this.frameLength = options.getFrameLength();
+            this.hopLength = options.getHopLength();
+            this.sampleRate = options.getSampleRate();
+            this.rewindMillis = options.getRewindMillis();
+            this.isSpeechOnly = options.getIsSpeechOnly();
+            this.channel = options.getChannel();
+        } else {
+            this.queueCapacity = VoiceProcessorListenerOptions.DEFAULT_QUEUE_CAPACITY;
+            this.overflowPolicy = VoiceProcessorOverflowPolicy.DROP_OLDEST;
+            this.frameLength = 0;
+            this.hopLength = 0;
+            this.sampleRate = 0;
+            this.rewindMillis = 0;
+            this.isSpeechOnly = false;
+            this.channel = VoiceProcessorListenerOptions.CHANNEL_DOWNMIX;
+        }
+        this.queue = new AudioFrame[queueCapacity];
+        this.queueTimes = new long[queueCapacity];
+        this.queueLimit = queueCapacity;
+        this.isRewindPending = rewindMillis > 0;
+        this.demand = isDemandDriven ? 0 : Long.MAX_VALUE;
+
+        if (!delivery.isBatch()) {
+            this.batcher = null;
+        } else if (options != null && (options.getBatchFrames() > 0 || options.getBatchMillis() > 0)) {
+            this.batcher = new FrameBatcher(options.getBatchFrames(), options.getBatchMillis());
+        } else {
+            this.batcher = new FrameBatcher(0, VoiceProcessorListenerOptions.DEFAULT_BATCH_MILLIS);
+        }
+    }
+
+    static FrameSubscription ofBuffers(
+            VoiceProcessorBufferListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofBuffers(listener), executor, options, false);
+    }
+
+    static FrameSubscription ofFloats(
+            VoiceProcessorFloatListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofFloats(listener), executor, options, false);
+    }
+
+    static FrameSubscription ofStats(
+            VoiceProcessorFrameStatsListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofStats(listener), executor, options, false);
+    }
+
+    static FrameSubscription ofBatches(
+            VoiceProcessorBatchListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofBatches(listener), executor, options, false);
+    }
+
+    static FrameSubscription ofTimed(
+            VoiceProcessorTimedFrameListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofTimed(listener), executor, options, false);
+    }
+
+    static FrameSubscription ofFeatures(
+            VoiceProcessorFeatureListener listener,
+            VoiceProcessorFeatureOptions featureOptions,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofFeatures(listener, featureOptions), executor, options, false);
+    }
+
+    /**
+     * Creates a subscription that only delivers frames once they have been requested with
+     * {@link #request(long, Executor)}.
+     */
+    static FrameSubscription ofDemand(
+            VoiceProcessorFrameListener listener,
+            Executor executor,
+            VoiceProcessorListenerOptions options) {
+        return new FrameSubscription(FrameDelivery.ofFrames(listener), executor, options, true);
+    }
+
+    /**
+     * Whether the listener can be handed frames exactly as they were captured, without
+     * re-framing them first.
+     */
+    boolean acceptsCapturedFrames(int capturedFrameLength, int capturedSampleRate) {
+        if (sampleRate != 0 && sampleRate != capturedSampleRate) {
+            return false;
+        }
+        return frameLength == 0 || (frameLength == capturedFrameLength && hopLength == frameLength);
+    }
+
+    int getOutputSampleRate(int capturedSampleRate) {
+        return sampleRate != 0 ? sampleRate : capturedSampleRate;
+    }
+
+    /**
+     * Gets the length of the frames delivered to the listener. Unless the listener asked for a
+     * specific length, resampled frames span the same duration as the captured ones.
+     */
+    int getOutputFrameLength(int capturedFrameLength, int capturedSampleRate) {
+        if (frameLength != 0) {
+            return frameLength;
+        }
+        final long outputLength = Math.round(
+                (double) capturedFrameLength * getOutputSampleRate(capturedSampleRate) / capturedSampleRate);
+        return (int) Math.max(1, outputLength);
+    }
+
+    int getOutputHopLength(int capturedFrameLength, int capturedSampleRate) {
+        return frameLength != 0 ? hopLength : getOutputFrameLength(capturedFrameLength, capturedSampleRate);
+    }
+
+    /**
+     * Whether frames are delivered to the listener as direct byte buffers.
+     */
+    boolean isDirect() {
+        return delivery.getStorage() == VoiceProcessorFramePool.Storage.DIRECT;
+    }
+
+    /**
+     * Whether frames are delivered to the listener as floating-point samples.
+     */
+    boolean isFloat() {
+        return delivery.getStorage() == VoiceProcessorFramePool.Storage.FLOAT && !isFeatures();
+    }
+
+    /**
+     * Whether frames are delivered to the listener together with their statistics.
+     */
+    boolean isStats() {
+        return delivery.isStats();
+    }
+
+    /**
+     * Whether frames are delivered to the listener together with their timing.
+     */
+    boolean isTimed() {
+        return delivery.isTimed();
+    }
+
+    /**
+     * Whether the listener receives the spectral features of frames instead of their samples.
+     */
+    boolean isFeatures() {
+        return delivery.getFeatureOptions() != null;
+    }
+
+    VoiceProcessorFeatureOptions getFeatureOptions() {
+        return delivery.getFeatureOptions();
+    }
+
+    /**
+     * Gets the batcher that gathers frames for a batch listener.
+     *
+     * @return the batcher, or null if frames are delivered one at a time
+     */
+    FrameBatcher getBatcher() {
+        return batcher;
+    }
+
+    Object getListener() {
+        return delivery.getListener();
+    }
+
+    /**
+     * Gets the delivery target of the listener, which is the given default unless the listener
+     * was added with a target of its own.
+     */
+    Executor getExecutor(Executor defaultExecutor) {
+        return executor != null ? executor : defaultExecutor;
+    }
+
+    VoiceProcessorOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    long getNumDroppedFrames() {
+        return numDroppedFrames;
+    }
+
+    /**
+     * Whether the listener was added with a rewind that has not been delivered yet.
+     */
+    boolean isRewindPending() {
+        return isRewindPending;
+    }
+
+    void setRewindPending(boolean isRewindPending) {
+        this.isRewindPending = isRewindPending;
+    }
+
+    /**
+     * Gets the stream that re-frames audio for this listener alone, because it started from a
+     * different point in the past than the listeners sharing the regular streams.
+     */
+    SampleStream getRewindStream() {
+        return rewindStream;
+    }
+
+    void setRewindStream(SampleStream rewindStream) {
+        this.rewindStream = rewindStream;
+    }
+
+    /**
+     * Lets the queue take the given number of frames on top of its capacity, so that a rewind
+     * backlog is not subject to the overflow policy. The extra room shrinks by one frame with
+     * every frame taken off the queue, until the queue is back at its capacity.
+     */
+    void reserveQueueCapacity(int numFrames) {
+        synchronized (queueLock) {
+            queueLimit += numFrames;
+            if (queue.length < queueLimit) {
+                growQueue(queueLimit);
+            }
+        }
+    }
+
+    /**
+     * Queues a frame for delivery, applying the overflow policy if the queue is full.
+     *
+     * @return true if the listener has just started overflowing and this should be reported
+     */
+    boolean enqueue(AudioFrame frame, Executor defaultExecutor, AtomicBoolean isStopRequested) {
+        final boolean isOverflowStarted;
+        final boolean shouldSchedule;
+        synchronized (queueLock) {
+            if (isFinished) {
+                return false;
+            }
+
+            int numDropped = 0;
+            if (queueSize >= queueLimit && !canCoalesce(frame)) {
+                switch (overflowPolicy) {
+                    case BLOCK:
+                        numDropped = awaitSpace(isStopRequested) ? 0 : 1;
+                        break;
+                    case DROP_NEWEST:
+                        numDropped = 1;
+                        break;
+                    default:
+                        // A coalescing queue only drops frames once it holds as many samples as it may
+                        do {
+                            poll().release();
+                            numDropped++;
+                        } while (queueSize >= queueLimit && !canCoalesce(frame));
+                        break;
+                }
+            }
+
+            if (queueSize < queueLimit || canCoalesce(frame)) {
+                if (queueSize == queue.length) {
+                    growQueue(2 * queue.length);
+                }
+                frame.retain();
+                final int index = (queueHead + queueSize) % queue.length;
+                queue[index] = frame;
+                queueTimes[index] = System.nanoTime();
+                queueSize++;
+                queuedSamples += frame.length;
+                peakQueueSize = Math.max(peakQueueSize, queueSize);
+            }
+
+            numDroppedFrames += numDropped;
+            final boolean isDropped = numDropped > 0;
+            isOverflowStarted = isDropped && !isOverflowing;
+            isOverflowing |= isDropped;
+
+            shouldSchedule = !isScheduled && demand > 0;
+            isScheduled |= shouldSchedule;
+        }
+
+        if (shouldSchedule) {
+            schedule(defaultExecutor);
+        }
+        return isOverflowStarted;
+    }
+
+    /**
+     * Adds to the number of frames the subscriber is ready to receive, and delivers the frames
+     * already waiting in the queue. A demand of `Long.MAX_VALUE` or more is unbounded.
+     */
+    void request(long numFrames, Executor defaultExecutor) {
+        final boolean shouldSchedule;
+        synchronized (queueLock) {
+            demand = demand > Long.MAX_VALUE - numFrames ? Long.MAX_VALUE : demand + numFrames;
+            shouldSchedule = !isScheduled && queueSize > 0;
+            isScheduled |= shouldSchedule;
+        }
+
+        if (shouldSchedule) {
+            schedule(defaultExecutor);
+        }
+    }
+
+    /**
+     * Ends delivery with a final task, such as the last signal to a subscriber. Frames still
+     * waiting are discarded and no more are queued. The task runs on the delivery target after
+     * the frame being delivered, if any, as part of the same drain, so it never overlaps a
+     * delivery. If the delivery target rejects the drain, the task runs on the calling thread,
+     * which is safe since no frame is being delivered then.
+     */
+    void finish(Runnable task, Executor defaultExecutor) {
+        final boolean shouldSchedule;
+        synchronized (queueLock) {
+            if (isFinished) {
+                return;
+            }
+            isFinished = true;
+            finalTask = task;
+            while (queueSize > 0) {
+                poll().release();
+            }
+            queueLock.notifyAll();
+
+            shouldSchedule = !isScheduled;
+            isScheduled = true;
+        }
+
+        if (shouldSchedule) {
+            schedule(defaultExecutor);
+        }
+    }
+
+    @Override
+    public void run() {
+        boolean isDrained = false;
+        try {
+            while (true) {
+                final Runnable task = takeFinalTask();
+                if (task != null) {
+                    // The drain stays scheduled, so nothing is delivered after the final task
+                    isDrained = true;
+                    task.run();
+                    return;
+                }
+
+                final AudioFrame frame;
+                final int numFrames;
+                final long enqueuedNanos;
+                synchronized (queueLock) {
+                    if (finalTask != null) {
+                        continue;
+                    }
+                    if (queueSize == 0 || demand == 0) {
+                        isScheduled = false;
+                        isOverflowing &= queueSize > 0;
+                        isDrained = true;
+                        return;
+                    }
+                    if (demand != Long.MAX_VALUE) {
+                        // Frames coalesced into one delivery fulfil a single request
+                        demand--;
+                    }
+
+                    enqueuedNanos = queueTimes[queueHead];
+                    if (overflowPolicy == VoiceProcessorOverflowPolicy.COALESCE && queueSize > 1) {
+                        frame = null;
+                        numFrames = queueSize;
+                        if (coalescedFrames.length < numFrames) {
+                            coalescedFrames = new AudioFrame[Math.max(numFrames, 2 * coalescedFrames.length)];
+                        }
+                        for (int i = 0; i < numFrames; i++) {
+                            coalescedFrames[i] = poll();
+                        }
+                    } else {
+                        frame = poll();
+                        numFrames = 1;
+                    }
+                    queueLock.notifyAll();
+                }
+
+                final long startNanos = System.nanoTime();
+                dispatchLatency.record(startNanos - enqueuedNanos);
+                try {
+                    if (frame != null) {
+                        deliver(frame);
+                    } else {
+                        deliverCoalesced(numFrames);
+                    }
+                } finally {
+                    executionTime.record(System.nanoTime() - startNanos);
+                    numDeliveredFrames += numFrames;
+                }
+            }
+        } finally {
+            if (!isDrained) {
+                synchronized (queueLock) {
+                    isScheduled = false;
+                }
+            }
+        }
+    }
+
+    VoiceProcessorListenerMetrics getMetrics() {
+        final int size;
+        final int peakSize;
+        synchronized (queueLock) {
+            size = queueSize;
+            peakSize = peakQueueSize;
+        }
+        return new VoiceProcessorListenerMetrics(
+                getListener(),
+                numDeliveredFrames,
+                numDroppedFrames,
+                size,
+                peakSize,
+                queueCapacity,
+                dispatchLatency.snapshot(),
+                executionTime.snapshot());
+    }
+
+    void clear() {
+        synchronized (queueLock) {
+            while (queueSize > 0) {
+                poll().release();
+            }
+            queueLock.notifyAll();
+        }
+    }
+
+    private void schedule(Executor defaultExecutor) {
+        try {
+            getExecutor(defaultExecutor).execute(this);
+        } catch (RejectedExecutionException e) {
+            synchronized (queueLock) {
+                isScheduled = false;
+            }
+            clear();
+            final Runnable task = takeFinalTask();
+            if (task != null) {
+                task.run();
+            }
+        }
+    }
+
+    private Runnable takeFinalTask() {
+        synchronized (queueLock) {
+            final Runnable task = finalTask;
+            finalTask = null;
+            return task;
+        }
+    }
+
+    /**
+     * Whether a coalescing queue can take the frame on top of its capacity, to be merged into the
+     * next delivery instead of discarding audio.
+     */
+    private boolean canCoalesce(AudioFrame frame) {
+        return overflowPolicy == VoiceProcessorOverflowPolicy.COALESCE &&
+                queuedSamples + frame.length <= MAX_COALESCED_SAMPLES;
+    }
+
+    private void growQueue(int length) {
+        final AudioFrame[] grownQueue = new AudioFrame[length];
+        final long[] grownTimes = new long[length];
+        for (int i = 0; i < queueSize; i++) {
+            final int index = (queueHead + i) % queue.length;
+            grownQueue[i] = queue[index];
+            grownTimes[i] = queueTimes[index];
+        }
+        queue = grownQueue;
+        queueTimes = grownTimes;
+        queueHead = 0;
+    }
+
+    private AudioFrame poll() {
+        final AudioFrame frame = queue[queueHead];
+        queue[queueHead] = null;
+        queueHead = (queueHead + 1) % queue.length;
+        queueSize--;
+        queuedSamples -= frame.length;
+        if (queueLimit > queueCapacity) {
+            queueLimit--;
+        }
+        return frame;
+    }
+
+    private void deliver(AudioFrame frame) {
+        try {
+            delivery.deliver(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    /**
+     * Delivers the consecutive frames taken off the queue as one frame holding all of their
+     * samples, described by the timing of the first of them.
+     */
+    private void deliverCoalesced(int numFrames) {
+        int length = 0;
+        int numBatchFrames = 0;
+        for (int i = 0; i < numFrames; i++) {
+            final AudioFrame frame = coalescedFrames[i];
+            length += frame.length;
+            numBatchFrames += frame.frameOffsets != null ? frame.frameOffsets.length : 0;
+        }
+
+        final AudioFrame merged = getMergedFrame(length, numBatchFrames);
+        int offset = 0;
+        int frameIndex = 0;
+        for (int i = 0; i < numFrames; i++) {
+            final AudioFrame frame = coalescedFrames[i];
+            frame.copyInto(merged, offset);
+            if (merged.frameOffsets != null) {
+                for (int frameOffset : frame.frameOffsets) {
+                    merged.frameOffsets[frameIndex++] = offset + frameOffset;
+                }
+            }
+            offset += frame.length;
+        }
+        merged.copyTiming(coalescedFrames[0]);
+        for (int i = 0; i < numFrames; i++) {
+            coalescedFrames[i].release();
+            coalescedFrames[i] = null;
+        }
+
+        if (delivery.isStats()) {
+            merged.computeStats();
+        }
+        if (delivery.isTimed()) {
+            merged.computeInfo();
+        }
+        deliver(merged);
+    }
+
+    /**
+     * Gets a frame to merge coalesced frames into. The few most recently used lengths are kept
+     * and reused, as deliveries to a listener never overlap and a backlog tends to settle at a
+     * similar size from one delivery to the next.
+     */
+    private AudioFrame getMergedFrame(int length, int numBatchFrames) {
+        for (AudioFrame frame : mergedFrames) {
+            if (frame != null && frame.length == length &&
+                    (frame.frameOffsets == null || frame.frameOffsets.length == numBatchFrames) &&
+                    frame.tryAcquire()) {
+                return frame;
+            }
+        }
+
+        final AudioFrame frame = delivery.isBatch() ?
+                new AudioFrame(new short[length], new int[numBatchFrames]) :
+                AudioFrame.allocate(delivery.getStorage(), length);
+        frame.retain();
+        mergedFrames[mergedFrameCursor] = frame;
+        mergedFrameCursor = (mergedFrameCursor + 1) % mergedFrames.length;
+        return frame;
+    }
+
+    private boolean awaitSpace(AtomicBoolean isStopRequested) {
+        while (queueSize >= queueLimit) {
+            if (isStopRequested.get()) {
+                return false;
+            }
+            try {
+                queueLock.wait(BLOCK_POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+}
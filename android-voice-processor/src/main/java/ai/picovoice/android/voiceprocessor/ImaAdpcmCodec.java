@@ -0,0 +1,117 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * IMA ADPCM codec that stores 4 bits per sample. Every packet is a mono block in the layout used
+ * by WAV files with format tag 0x11: the first sample as a little-endian 16-bit predictor, the
+ * step index, a reserved byte, and then one nibble per remaining sample, low nibble first. Since
+ * frames may have any length, the reserved byte is 1 when the last nibble is padding, and 0 as
+ * in WAV files otherwise. An empty frame is encoded as a header alone with the reserved byte set
+ * to 1, as if its first sample were padding.
+ */
+final class ImaAdpcmCodec implements FrameCodec {
+
+    private static final int HEADER_SIZE = 4;
+
+    private static final int[] INDEX_TABLE = new int[]{-1, -1, -1, -1, 2, 4, 6, 8};
+
+    private static final int[] STEP_TABLE = new int[]{
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17, 19, 21, 23, 25, 28, 31, 34, 37, 41, 45, 50, 55, 60,
+            66, 73, 80, 88, 97, 107, 118, 130, 143, 157, 173, 190, 209, 230, 253, 279, 307, 337, 371,
+            408, 449, 494, 544, 598, 658, 724, 796, 876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878,
+            2066, 2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358, 5894, 6484, 7132, 7845,
+            8630, 9493, 10442, 11487, 12635, 13899, 15289, 16818, 18500, 20350, 22385, 24623, 27086,
+            29794, 32767};
+
+    private int stepIndex = 0;
+
+    @Override
+    public byte[] encode(short[] samples, int length) {
+        final byte[] packet = new byte[HEADER_SIZE + length / 2];
+        int predictor = length > 0 ? samples[0] : 0;
+        packet[0] = (byte) predictor;
+        packet[1] = (byte) (predictor >> 8);
+        packet[2] = (byte) stepIndex;
+        packet[3] = (byte) (length % 2 == 0 ? 1 : 0);
+
+        for (int i = 1; i < length; i++) {
+            final int step = STEP_TABLE[stepIndex];
+            int diff = samples[i] - predictor;
+            int nibble = 0;
+            if (diff < 0) {
+                nibble = 8;
+                diff = -diff;
+            }
+            if (diff >= step) {
+                nibble |= 4;
+                diff -= step;
+            }
+            if (diff >= step >> 1) {
+                nibble |= 2;
+                diff -= step >> 1;
+            }
+            if (diff >= step >> 2) {
+                nibble |= 1;
+            }
+
+            predictor = predict(predictor, step, nibble);
+            stepIndex = nextStepIndex(stepIndex, nibble);
+
+            final int index = HEADER_SIZE + (i - 1) / 2;
+            packet[index] |= (i - 1) % 2 == 0 ? nibble : nibble << 4;
+        }
+        return packet;
+    }
+
+    @Override
+    public short[] decode(byte[] packet) throws VoiceProcessorArgumentException {
+        if (packet.length < HEADER_SIZE || (packet[2] & 0xFF) >= STEP_TABLE.length || (packet[3] & ~1) != 0) {
+            throw new VoiceProcessorArgumentException("Malformed IMA ADPCM packet");
+        }
+
+        final short[] samples = new short[1 + 2 * (packet.length - HEADER_SIZE) - packet[3]];
+        int predictor = (short) ((packet[0] & 0xFF) | (packet[1] << 8));
+        int index = packet[2] & 0xFF;
+        if (samples.length > 0) {
+            samples[0] = (short) predictor;
+        }
+        for (int i = 1; i < samples.length; i++) {
+            final int packed = packet[HEADER_SIZE + (i - 1) / 2] & 0xFF;
+            final int nibble = (i - 1) % 2 == 0 ? packed & 0x0F : packed >> 4;
+            predictor = predict(predictor, STEP_TABLE[index], nibble);
+            index = nextStepIndex(index, nibble);
+            samples[i] = (short) predictor;
+        }
+        return samples;
+    }
+
+    private static int predict(int predictor, int step, int nibble) {
+        int delta = step >> 3;
+        if ((nibble & 4) != 0) {
+            delta += step;
+        }
+        if ((nibble & 2) != 0) {
+            delta += step >> 1;
+        }
+        if ((nibble & 1) != 0) {
+            delta += step >> 2;
+        }
+        final int predicted = (nibble & 8) != 0 ? predictor - delta : predictor + delta;
+        return Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, predicted));
+    }
+
+    private static int nextStepIndex(int index, int nibble) {
+        return Math.max(0, Math.min(STEP_TABLE.length - 1, index + INDEX_TABLE[nibble & 7]));
+    }
+}
@@ -0,0 +1,50 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Accumulates durations into a histogram of power-of-two microsecond buckets. Recording costs a
+ * handful of arithmetic operations and no allocation. Each recorder has a single writer thread at
+ * a time; snapshots may be taken from any thread and are only approximately consistent.
+ */
+final class LatencyRecorder {
+
+    private final AtomicLongArray counts = new AtomicLongArray(VoiceProcessorLatencyHistogram.NUM_BUCKETS);
+
+    private volatile long count = 0;
+    private volatile long totalNanos = 0;
+    private volatile long maxNanos = 0;
+
+    // Only called from the single writer thread, so the read-modify-write updates are not racy.
+    void record(long nanos) {
+        final int bucket = Math.min(
+                64 - Long.numberOfLeadingZeros(Math.max(0, nanos) / 1000),
+                VoiceProcessorLatencyHistogram.NUM_BUCKETS - 1);
+        counts.lazySet(bucket, counts.get(bucket) + 1);
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    VoiceProcessorLatencyHistogram snapshot() {
+        final long[] bucketCounts = new long[counts.length()];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = counts.get(i);
+        }
+        return new VoiceProcessorLatencyHistogram(bucketCounts, count, totalNanos, maxNanos);
+    }
+}
@@ -0,0 +1,217 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Lossless codec in the spirit of FLAC. Every packet predicts the samples with the fixed
+ * polynomial predictor of order 0 to 3 that leaves the smallest residuals, and stores the
+ * residuals with a Rice code.
+ *
+ * <p>A packet starts with the predictor order, the Rice parameter and the number of samples as a
+ * little-endian 32-bit integer. It continues with the first samples, as many as the order, as little-endian
+ * 16-bit integers, followed by the zigzag-mapped residuals of the remaining samples, each as a
+ * unary quotient (zeros terminated by a one) and `parameter` remainder bits, most significant bit
+ * first. Audio that would not shrink is stored verbatim, with order 255, as little-endian 16-bit
+ * samples after the header.
+ */
+final class LosslessCodec implements FrameCodec {
+
+    private static final int HEADER_SIZE = 6;
+    private static final int MAX_ORDER = 3;
+    private static final int MAX_PARAMETER = 30;
+    private static final int VERBATIM = 255;
+
+    private int[] residuals = new int[0];
+
+    @Override
+    public byte[] encode(short[] samples, int length) {
+        if (residuals.length < length) {
+            residuals = new int[length];
+        }
+
+        final int order = Math.min(selectOrder(samples, length), Math.max(0, length - 1));
+        long sum = 0;
+        for (int i = order; i < length; i++) {
+            final int residual = samples[i] - predict(samples, i, order);
+            residuals[i] = (residual << 1) ^ (residual >> 31);
+            sum += residuals[i];
+        }
+
+        final int numResiduals = length - order;
+        int parameter = 0;
+        while (parameter < MAX_PARAMETER && ((long) numResiduals << (parameter + 1)) < sum) {
+            parameter++;
+        }
+        long numBits = measure(order, length, parameter);
+        if (parameter > 0) {
+            final long smallerBits = measure(order, length, parameter - 1);
+            if (smallerBits < numBits) {
+                parameter--;
+                numBits = smallerBits;
+            }
+        }
+
+        if (2L * order + (numBits + 7) / 8 >= 2L * length) {
+            final byte[] packet = header(VERBATIM, 0, length, 2 * length);
+            for (int i = 0; i < length; i++) {
+                writeShort(packet, HEADER_SIZE + 2 * i, samples[i]);
+            }
+            return packet;
+        }
+
+        final byte[] packet = header(order, parameter, length, 2 * order + (int) ((numBits + 7) / 8));
+        for (int i = 0; i < order; i++) {
+            writeShort(packet, HEADER_SIZE + 2 * i, samples[i]);
+        }
+        long bitPosition = 8L * (HEADER_SIZE + 2 * order);
+        for (int i = order; i < length; i++) {
+            final int value = residuals[i];
+            bitPosition += value >>> parameter;
+            setBit(packet, bitPosition++);
+            for (int bit = parameter - 1; bit >= 0; bit--) {
+                if (((value >>> bit) & 1) != 0) {
+                    setBit(packet, bitPosition);
+                }
+                bitPosition++;
+            }
+        }
+        return packet;
+    }
+
+    @Override
+    public short[] decode(byte[] packet) throws VoiceProcessorArgumentException {
+        if (packet.length < HEADER_SIZE) {
+            throw new VoiceProcessorArgumentException("Malformed lossless packet");
+        }
+        final int order = packet[0] & 0xFF;
+        final int parameter = packet[1] & 0xFF;
+        final int length = (packet[2] & 0xFF) |
+                (packet[3] & 0xFF) << 8 |
+                (packet[4] & 0xFF) << 16 |
+                (packet[5] & 0xFF) << 24;
+        if (length < 0 ||
+                (order == VERBATIM && packet.length != HEADER_SIZE + 2L * length) ||
+                (order != VERBATIM && (order > MAX_ORDER || parameter > MAX_PARAMETER || order > length))) {
+            throw new VoiceProcessorArgumentException("Malformed lossless packet");
+        }
+
+        final short[] samples = new short[length];
+        final int numWarmUp = order == VERBATIM ? length : order;
+        if (packet.length < HEADER_SIZE + 2L * numWarmUp) {
+            throw new VoiceProcessorArgumentException("Malformed lossless packet");
+        }
+        for (int i = 0; i < numWarmUp; i++) {
+            samples[i] = readShort(packet, HEADER_SIZE + 2 * i);
+        }
+        if (order == VERBATIM) {
+            return samples;
+        }
+
+        final long numBits = 8L * packet.length;
+        long bitPosition = 8L * (HEADER_SIZE + 2 * order);
+        for (int i = order; i < length; i++) {
+            int quotient = 0;
+            while (bitPosition < numBits && !getBit(packet, bitPosition)) {
+                quotient++;
+                bitPosition++;
+            }
+            if (bitPosition + 1 + parameter > numBits) {
+                throw new VoiceProcessorArgumentException("Malformed lossless packet");
+            }
+            bitPosition++;
+            int value = quotient << parameter;
+            for (int bit = parameter - 1; bit >= 0; bit--) {
+                if (getBit(packet, bitPosition++)) {
+                    value |= 1 << bit;
+                }
+            }
+            final int residual = (value >>> 1) ^ -(value & 1);
+            samples[i] = (short) (residual + predict(samples, i, order));
+        }
+        return samples;
+    }
+
+    /**
+     * Picks the predictor order with the smallest sum of absolute residuals, in a single pass.
+     */
+    private static int selectOrder(short[] samples, int length) {
+        final long[] sums = new long[MAX_ORDER + 1];
+        for (int i = MAX_ORDER; i < length; i++) {
+            final int e0 = samples[i];
+            final int e1 = e0 - samples[i - 1];
+            final int e2 = e1 - (samples[i - 1] - samples[i - 2]);
+            final int e3 = e2 - (samples[i - 1] - 2 * samples[i - 2] + samples[i - 3]);
+            sums[0] += Math.abs(e0);
+            sums[1] += Math.abs(e1);
+            sums[2] += Math.abs(e2);
+            sums[3] += Math.abs(e3);
+        }
+
+        int order = 0;
+        for (int i = 1; i <= MAX_ORDER; i++) {
+            if (sums[i] < sums[order]) {
+                order = i;
+            }
+        }
+        return order;
+    }
+
+    private static int predict(short[] samples, int index, int order) {
+        switch (order) {
+            case 1:
+                return samples[index - 1];
+            case 2:
+                return 2 * samples[index - 1] - samples[index - 2];
+            case 3:
+                return 3 * samples[index - 1] - 3 * samples[index - 2] + samples[index - 3];
+            default:
+                return 0;
+        }
+    }
+
+    private long measure(int order, int length, int parameter) {
+        long numBits = 0;
+        for (int i = order; i < length; i++) {
+            numBits += (residuals[i] >>> parameter) + 1 + parameter;
+        }
+        return numBits;
+    }
+
+    private static byte[] header(int order, int parameter, int length, int payloadSize) {
+        final byte[] packet = new byte[HEADER_SIZE + payloadSize];
+        packet[0] = (byte) order;
+        packet[1] = (byte) parameter;
+        packet[2] = (byte) length;
+        packet[3] = (byte) (length >> 8);
+        packet[4] = (byte) (length >> 16);
+        packet[5] = (byte) (length >> 24);
+        return packet;
+    }
+
+    private static void writeShort(byte[] packet, int offset, short value) {
+        packet[offset] = (byte) value;
+        packet[offset + 1] = (byte) (value >> 8);
+    }
+
+    private static short readShort(byte[] packet, int offset) {
+        return (short) ((packet[offset] & 0xFF) | (packet[offset + 1] << 8));
+    }
+
+    private static void setBit(byte[] packet, long position) {
+        packet[(int) (position >>> 3)] |= 0x80 >>> (position & 7);
+    }
+
+    private static boolean getBit(byte[] packet, long position) {
+        return (packet[(int) (position >>> 3)] & (0x80 >>> (position & 7))) != 0;
+    }
+}
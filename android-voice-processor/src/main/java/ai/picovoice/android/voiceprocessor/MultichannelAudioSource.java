@@ -0,0 +1,27 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * An audio source that captures several channels at once. Reads return interleaved samples, so
+ * a frame of `frameLength` samples per channel is read as `frameLength * channelCount` samples.
+ */
+interface MultichannelAudioSource extends VoiceProcessorAudioSource {
+
+    /**
+     * Gets the number of interleaved channels the source delivers, once opened.
+     *
+     * @return the channel count
+     */
+    int getChannelCount();
+}
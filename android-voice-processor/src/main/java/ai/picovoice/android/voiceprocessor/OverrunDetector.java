@@ -0,0 +1,71 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Detects audio lost to recorder buffer overruns from the times at which frames are read. A
+ * blocking read cannot return before its audio was recorded, so the delay of each frame relative
+ * to a clock started at the first frame only grows when reads fall behind. Once the delay exceeds
+ * its lowest value by more than the recorder can buffer, the excess was recorded over and lost.
+ * Only accessed from the recording thread.
+ */
+final class OverrunDetector {
+
+    private final int sampleRate;
+    private final long frameDurationNanos;
+    private final long bufferDurationNanos;
+
+    private boolean isStarted = false;
+    private long originNanos = 0;
+    private long numSamples = 0;
+    private long minDelayNanos = 0;
+
+    OverrunDetector(int frameLength, int sampleRate, int bufferLength) {
+        this.sampleRate = sampleRate;
+        this.frameDurationNanos = frameLength * 1_000_000_000L / sampleRate;
+        this.bufferDurationNanos = bufferLength * 1_000_000_000L / sampleRate;
+    }
+
+    /**
+     * Restarts the clock, for when the source was restarted and its buffer emptied.
+     */
+    void reset() {
+        isStarted = false;
+    }
+
+    /**
+     * Accounts for a frame whose read completed at the given time.
+     *
+     * @return the estimated number of samples lost before the frame, or 0 if none were
+     */
+    long onFrame(long nowNanos, int frameLength) {
+        if (!isStarted) {
+            isStarted = true;
+            originNanos = nowNanos;
+            numSamples = 0;
+            minDelayNanos = 0;
+            return 0;
+        }
+
+        numSamples += frameLength;
+        final long delayNanos = nowNanos - originNanos - numSamples * 1_000_000_000L / sampleRate;
+        minDelayNanos = Math.min(minDelayNanos, delayNanos);
+        final long lostNanos = delayNanos - minDelayNanos - bufferDurationNanos;
+        if (lostNanos < frameDurationNanos) {
+            return 0;
+        }
+
+        minDelayNanos += lostNanos;
+        return lostNanos * sampleRate / 1_000_000_000L;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Streaming rational-ratio resampler for 16-bit audio. The anti-aliasing filter is a
+ * Kaiser-windowed sinc, split into one polyphase branch per output phase and quantized to Q15
+ * fixed point so that each output sample costs a single integer dot product over the input
+ * history. Ratios with more than {@link #MAX_PHASES} output phases, such as between coprime
+ * rates, share a table of that many branches instead, and interpolate linearly between the two
+ * branches nearest to each output phase. Instances keep state between calls and must only be
+ * used from one thread.
+ */
+final class PolyphaseResampler {
+
+    private static final int COEFFICIENT_SHIFT = 15;
+    private static final int BASE_TAPS_PER_PHASE = 48;
+    private static final double KAISER_BETA = 8.0;
+    private static final double CUTOFF_RATIO = 0.92;
+
+    /**
+     * Largest number of polyphase branches kept in the coefficient table, which bounds it to
+     * `MAX_PHASES + 1` branches of `tapsPerPhase` coefficients whatever the conversion ratio.
+     */
+    static final int MAX_PHASES = 256;
+
+    private final int inputSampleRate;
+    private final int outputSampleRate;
+    private final int upFactor;
+    private final int downFactor;
+    private final int tapsPerPhase;
+    private final int numPhases;
+    private final int[] coefficients;
+
+    private short[] buffer;
+    private int bufferPosition;
+    private int phase = 0;
+
+    PolyphaseResampler(int inputSampleRate, int outputSampleRate) {
+        final int gcd = gcd(inputSampleRate, outputSampleRate);
+        this.inputSampleRate = inputSampleRate;
+        this.outputSampleRate = outputSampleRate;
+        this.upFactor = outputSampleRate / gcd;
+        this.downFactor = inputSampleRate / gcd;
+
+        final double ratio = Math.max(1.0, (double) downFactor / upFactor);
+        this.tapsPerPhase = 2 * (int) Math.ceil(BASE_TAPS_PER_PHASE * ratio / 2);
+        this.numPhases = Math.min(upFactor, MAX_PHASES);
+        this.coefficients = designFilter(
+                numPhases,
+                tapsPerPhase,
+                CUTOFF_RATIO * 0.5 * Math.min(inputSampleRate, outputSampleRate) /
+                        ((double) inputSampleRate * numPhases),
+                numPhases < upFactor);
+
+        this.buffer = new short[2 * tapsPerPhase];
+        this.bufferPosition = tapsPerPhase - 1;
+    }
+
+    int getInputSampleRate() {
+        return inputSampleRate;
+    }
+
+    int getOutputSampleRate() {
+        return outputSampleRate;
+    }
+
+    int getTapsPerPhase() {
+        return tapsPerPhase;
+    }
+
+    int getNumPhases() {
+        return numPhases;
+    }
+
+    /**
+     * Gets an upper bound on the number of samples produced from the given number of input
+     * samples by a single call to {@link #process(short[], int, int, short[])}.
+     */
+    int getMaxOutputLength(int inputLength) {
+        return (int) (((long) inputLength * upFactor) / downFactor) + 2;
+    }
+
+    /**
+     * Resamples a block of input samples, carrying any unconsumed history over to the next call.
+     *
+     * @return the number of samples written to the output buffer
+     */
+    int process(short[] input, int offset, int length, short[] output) {
+        final int historyLength = tapsPerPhase - 1;
+        final int available = historyLength + length;
+        if (buffer.length < available) {
+            final short[] grown = new short[available];
+            System.arraycopy(buffer, 0, grown, 0, historyLength);
+            buffer = grown;
+        }
+        System.arraycopy(input, offset, buffer, historyLength, length);
+        if (numPhases < upFactor) {
+            return processInterpolated(available, output);
+        }
+
+        final short[] samples = buffer;
+        final int[] taps = coefficients;
+        final int numTaps = tapsPerPhase;
+        int position = bufferPosition;
+        int currentPhase = phase;
+        int numOutput = 0;
+        while (position < available) {
+            final int base = currentPhase * numTaps;
+            long accumulator = 0;
+            for (int j = 0; j < numTaps; j++) {
+                accumulator += taps[base + j] * samples[position - j];
+            }
+            long value = (accumulator + (1 << (COEFFICIENT_SHIFT - 1))) >> COEFFICIENT_SHIFT;
+            if (value > Short.MAX_VALUE) {
+                value = Short.MAX_VALUE;
+            } else if (value < Short.MIN_VALUE) {
+                value = Short.MIN_VALUE;
+            }
+            output[numOutput++] = (short) value;
+
+            currentPhase += downFactor;
+            position += currentPhase / upFactor;
+            currentPhase %= upFactor;
+        }
+
+        return finish(available, position, currentPhase, numOutput);
+    }
+
+    /**
+     * Resamples the buffered input with a table of fewer branches than output phases, blending
+     * the outputs of the two branches on either side of each phase.
+     */
+    private int processInterpolated(int available, short[] output) {
+        final short[] samples = buffer;
+        final int[] taps = coefficients;
+        final int numTaps = tapsPerPhase;
+        int position = bufferPosition;
+        int currentPhase = phase;
+        int numOutput = 0;
+        while (position < available) {
+            final long scaledPhase = (long) currentPhase * numPhases;
+            final int branch = (int) (scaledPhase / upFactor);
+            final long fraction = scaledPhase - (long) branch * upFactor;
+            final int base = branch * numTaps;
+            long lower = 0;
+            long upper = 0;
+            for (int j = 0; j < numTaps; j++) {
+                final int sample = samples[position - j];
+                lower += taps[base + j] * sample;
+                upper += taps[base + numTaps + j] * sample;
+            }
+            final long accumulator = lower + (upper - lower) * fraction / upFactor;
+            long value = (accumulator + (1 << (COEFFICIENT_SHIFT - 1))) >> COEFFICIENT_SHIFT;
+            if (value > Short.MAX_VALUE) {
+                value = Short.MAX_VALUE;
+            } else if (value < Short.MIN_VALUE) {
+                value = Short.MIN_VALUE;
+            }
+            output[numOutput++] = (short) value;
+
+            currentPhase += downFactor;
+            position += currentPhase / upFactor;
+            currentPhase %= upFactor;
+        }
+
+        return finish(available, position, currentPhase, numOutput);
+    }
+
+    private int finish(int available, int position, int currentPhase, int numOutput) {
+        final int historyLength = tapsPerPhase - 1;
+        final int consumed = available - historyLength;
+        System.arraycopy(buffer, consumed, buffer, 0, historyLength);
+        bufferPosition = position - consumed;
+        phase = currentPhase;
+        return numOutput;
+    }
+
+    /**
+     * Designs the polyphase branches of the anti-aliasing filter. With `isInterpolated`, one more
+     * branch is appended for phases between the last branch and the next input sample: the first
+     * branch advanced by one tap.
+     */
+    private static int[] designFilter(int numPhases, int tapsPerPhase, double cutoff, boolean isInterpolated) {
+        final int length = numPhases * tapsPerPhase;
+        final double center = (length - 1) / 2.0;
+        final double[] prototype = new double[length];
+        final double besselBeta = besselI0(KAISER_BETA);
+        for (int k = 0; k < length; k++) {
+            final double t = k - center;
+            final double sinc = t == 0 ?
+                    2 * cutoff :
+                    Math.sin(2 * Math.PI * cutoff * t) / (Math.PI * t);
+            final double x = 2.0 * k / (length - 1) - 1.0;
+            final double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - x * x))) /
+                    besselBeta;
+            prototype[k] = sinc * window;
+        }
+
+        final int[] coefficients = new int[isInterpolated ? length + tapsPerPhase : length];
+        for (int p = 0; p < numPhases; p++) {
+            double sum = 0;
+            for (int j = 0; j < tapsPerPhase; j++) {
+                sum += prototype[p + j * numPhases];
+            }
+            for (int j = 0; j < tapsPerPhase; j++) {
+                final double normalized = prototype[p + j * numPhases] / sum;
+                coefficients[p * tapsPerPhase + j] =
+                        (int) Math.round(normalized * (1 << COEFFICIENT_SHIFT));
+            }
+        }
+        if (isInterpolated) {
+            System.arraycopy(coefficients, 1, coefficients, length, tapsPerPhase - 1);
+        }
+        return coefficients;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        final double halfX = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (halfX / k) * (halfX / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+}
@@ -0,0 +1,249 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Fixed-point DC removal, high-pass filter and gain stages applied in place to the captured
+ * frames, before they are handed to any listener. The enabled stages run in a single loop over
+ * the samples unless the options ask for one pass per stage. Only accessed from the recording
+ * thread, except for the metrics snapshot.
+ */
+final class PreprocessingChain {
+
+    private static final double DC_CUTOFF_HZ = 5.0;
+    private static final double MAX_HIGH_PASS_CUTOFF_RATIO = 0.45;
+    private static final double MIN_AUTOMATIC_GAIN_DB = -20.0;
+    private static final double SILENCE_LEVEL_DBFS = -60.0;
+    private static final double ATTACK_MILLIS = 20.0;
+    private static final double RELEASE_MILLIS = 1000.0;
+    private static final double FULL_SCALE_POWER = 32768.0 * 32768.0;
+
+    // Fractional bits of the DC removal coefficient, the filter coefficients and the gains.
+    private static final int DC_SHIFT = 15;
+    private static final int FILTER_SHIFT = 28;
+    private static final int GAIN_SHIFT = 16;
+    private static final long UNITY_GAIN = 1L << GAIN_SHIFT;
+
+    private final VoiceProcessorPreprocessingOptions options;
+    private final int sampleRate;
+    private final Pass[] passes;
+
+    private final long dcCoefficient;
+    private int dcPrevious = 0;
+    private long dcAccumulator = 0;
+
+    private final long b0;
+    private final long b1;
+    private final long b2;
+    private final long a1;
+    private final long a2;
+    private int x1 = 0;
+    private int x2 = 0;
+    private int y1 = 0;
+    private int y2 = 0;
+    private long filterError = 0;
+
+    private final long fixedGain;
+    private double automaticGainDb = 0;
+    private long automaticGain = UNITY_GAIN;
+    private long nextAutomaticGain = UNITY_GAIN;
+
+    PreprocessingChain(VoiceProcessorPreprocessingOptions options, int sampleRate) {
+        this.options = options;
+        this.sampleRate = sampleRate;
+
+        final VoiceProcessorPreprocessingStage[] stages = options.getStages();
+        if (stages.length == 0) {
+            passes = new Pass[0];
+        } else if (options.getIsFused()) {
+            passes = new Pass[]{new Pass(stages)};
+        } else {
+            passes = new Pass[stages.length];
+            for (int i = 0; i < stages.length; i++) {
+                passes[i] = new Pass(new VoiceProcessorPreprocessingStage[]{stages[i]});
+            }
+        }
+
+        dcCoefficient = Math.round((1 - 2 * Math.PI * DC_CUTOFF_HZ / sampleRate) * (1L << DC_SHIFT));
+
+        // Second-order Butterworth high-pass, from the audio EQ cookbook
+        final double cutoffHz = Math.min(options.getHighPassCutoffHz(), MAX_HIGH_PASS_CUTOFF_RATIO * sampleRate);
+        final double omega = 2 * Math.PI * cutoffHz / sampleRate;
+        final double alpha = Math.sin(omega) / Math.sqrt(2);
+        final double cos = Math.cos(omega);
+        final double a0 = 1 + alpha;
+        b0 = toFixedPoint((1 + cos) / 2 / a0);
+        b1 = toFixedPoint(-(1 + cos) / a0);
+        b2 = b0;
+        a1 = toFixedPoint(-2 * cos / a0);
+        a2 = toFixedPoint((1 - alpha) / a0);
+
+        fixedGain = toFixedGain(options.getGainDb());
+    }
+
+    VoiceProcessorPreprocessingOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Processes the next frame of audio in place.
+     */
+    void process(short[] samples, int length) {
+        for (Pass pass : passes) {
+            final long startNanos = System.nanoTime();
+            run(pass, samples, length);
+            pass.executionTime.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    VoiceProcessorPreprocessingMetrics[] snapshot() {
+        final VoiceProcessorPreprocessingMetrics[] metrics = new VoiceProcessorPreprocessingMetrics[passes.length];
+        for (int i = 0; i < passes.length; i++) {
+            metrics[i] = new VoiceProcessorPreprocessingMetrics(
+                    passes[i].stages.clone(),
+                    passes[i].executionTime.snapshot());
+        }
+        return metrics;
+    }
+
+    private void run(Pass pass, short[] samples, int length) {
+        final boolean isDcRemoval = pass.isDcRemoval;
+        final boolean isHighPass = pass.isHighPass;
+        final boolean isAutomaticGain = pass.isAutomaticGain;
+        final boolean isGain = pass.isAutomaticGain || pass.isGain;
+
+        // The gain ramps linearly across the frame, with 32 fractional bits so that small steps
+        // are not lost
+        long gain = 0;
+        long gainStep = 0;
+        if (isGain) {
+            long startGain = isAutomaticGain ? automaticGain : UNITY_GAIN;
+            long endGain = isAutomaticGain ? nextAutomaticGain : UNITY_GAIN;
+            if (pass.isGain) {
+                startGain = (startGain * fixedGain) >> GAIN_SHIFT;
+                endGain = (endGain * fixedGain) >> GAIN_SHIFT;
+            }
+            gain = startGain << GAIN_SHIFT;
+            gainStep = ((endGain - startGain) << GAIN_SHIFT) / length;
+        }
+
+        int dcPrevious = this.dcPrevious;
+        long dcAccumulator = this.dcAccumulator;
+        int x1 = this.x1;
+        int x2 = this.x2;
+        int y1 = this.y1;
+        int y2 = this.y2;
+        long filterError = this.filterError;
+        long sumSquares = 0;
+        for (int i = 0; i < length; i++) {
+            int sample = samples[i];
+            if (isDcRemoval) {
+                dcAccumulator = ((long) (sample - dcPrevious) << DC_SHIFT) +
+                        ((dcCoefficient * dcAccumulator) >> DC_SHIFT);
+                dcPrevious = sample;
+                sample = (int) ((dcAccumulator + (1L << (DC_SHIFT - 1))) >> DC_SHIFT);
+            }
+            if (isHighPass) {
+                // The rounding error is fed back into the next sample so that it does not build
+                // up in the poles, which sit close to the unit circle for low cutoffs
+                final long accumulator = b0 * sample + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2 + filterError;
+                x2 = x1;
+                x1 = sample;
+                sample = (int) (accumulator >> FILTER_SHIFT);
+                filterError = accumulator - ((long) sample << FILTER_SHIFT);
+                y2 = y1;
+                y1 = sample;
+            }
+            if (isAutomaticGain) {
+                sumSquares += (long) sample * sample;
+            }
+            if (isGain) {
+                sample = (int) ((sample * (gain >> GAIN_SHIFT) + (1L << (GAIN_SHIFT - 1))) >> GAIN_SHIFT);
+                gain += gainStep;
+            }
+            samples[i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, sample));
+        }
+        this.dcPrevious = dcPrevious;
+        this.dcAccumulator = dcAccumulator;
+        this.x1 = x1;
+        this.x2 = x2;
+        this.y1 = y1;
+        this.y2 = y2;
+        this.filterError = filterError;
+
+        if (isAutomaticGain) {
+            updateAutomaticGain(sumSquares, length);
+        }
+    }
+
+    /**
+     * Moves the automatic gain towards the gain that brings the frame to the target level. The
+     * gain takes effect gradually over the next frame, and is held while the input is silent.
+     */
+    private void updateAutomaticGain(long sumSquares, int length) {
+        automaticGain = nextAutomaticGain;
+
+        final double power = (double) sumSquares / length / FULL_SCALE_POWER;
+        final double levelDbfs = power > 0 ? 10 * Math.log10(power) : VoiceProcessorFrameStats.MIN_LEVEL_DBFS;
+        if (levelDbfs < SILENCE_LEVEL_DBFS) {
+            return;
+        }
+
+        final double desiredGainDb = Math.max(
+                MIN_AUTOMATIC_GAIN_DB,
+                Math.min(options.getMaxAutomaticGainDb(), options.getTargetLevelDbfs() - levelDbfs));
+        final double timeConstantMillis = desiredGainDb < automaticGainDb ? ATTACK_MILLIS : RELEASE_MILLIS;
+        final double frameMillis = 1000.0 * length / sampleRate;
+        automaticGainDb += (desiredGainDb - automaticGainDb) * (1 - Math.exp(-frameMillis / timeConstantMillis));
+        nextAutomaticGain = toFixedGain(automaticGainDb);
+    }
+
+    private static long toFixedPoint(double coefficient) {
+        return Math.round(coefficient * (1L << FILTER_SHIFT));
+    }
+
+    private static long toFixedGain(double gainDb) {
+        return Math.round(UNITY_GAIN * Math.pow(10, gainDb / 20));
+    }
+
+    /**
+     * A loop over the samples that applies one or more stages.
+     */
+    private static final class Pass {
+
+        final VoiceProcessorPreprocessingStage[] stages;
+        final boolean isDcRemoval;
+        final boolean isHighPass;
+        final boolean isAutomaticGain;
+        final boolean isGain;
+        final LatencyRecorder executionTime = new LatencyRecorder();
+
+        Pass(VoiceProcessorPreprocessingStage[] stages) {
+            this.stages = stages;
+            boolean isDcRemoval = false;
+            boolean isHighPass = false;
+            boolean isAutomaticGain = false;
+            boolean isGain = false;
+            for (VoiceProcessorPreprocessingStage stage : stages) {
+                isDcRemoval |= stage == VoiceProcessorPreprocessingStage.DC_REMOVAL;
+                isHighPass |= stage == VoiceProcessorPreprocessingStage.HIGH_PASS;
+                isAutomaticGain |= stage == VoiceProcessorPreprocessingStage.AUTOMATIC_GAIN;
+                isGain |= stage == VoiceProcessorPreprocessingStage.GAIN;
+            }
+            this.isDcRemoval = isDcRemoval;
+            this.isHighPass = isHighPass;
+            this.isAutomaticGain = isAutomaticGain;
+            this.isGain = isGain;
+        }
+    }
+}
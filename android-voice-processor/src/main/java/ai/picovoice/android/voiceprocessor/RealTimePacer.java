@@ -0,0 +1,59 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Throttles a synthetic audio source so that it delivers samples no faster than a real
+ * recorder running at the same sample rate would.
+ */
+final class RealTimePacer {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    private final boolean isEnabled;
+
+    private int sampleRate;
+    private long startTimeNs;
+    private long numSamples;
+
+    RealTimePacer(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    void start(int sampleRate) {
+        this.sampleRate = sampleRate;
+        this.startTimeNs = System.nanoTime();
+        this.numSamples = 0;
+    }
+
+    void advance(int numSamplesProduced) throws VoiceProcessorReadException {
+        numSamples += numSamplesProduced;
+        if (!isEnabled) {
+            return;
+        }
+
+        final long dueTimeNs = startTimeNs + (numSamples * NANOS_PER_SECOND) / sampleRate;
+        final long waitNs = dueTimeNs - System.nanoTime();
+        if (waitNs <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(waitNs / NANOS_PER_MILLI, (int) (waitNs % NANOS_PER_MILLI));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VoiceProcessorReadException("Audio source was interrupted while pacing", e);
+        }
+    }
+}
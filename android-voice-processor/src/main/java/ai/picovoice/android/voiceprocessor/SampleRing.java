@@ -0,0 +1,93 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Ring buffer of the most recently captured samples, addressed by absolute sample position
+ * since the start of the capture session. Only accessed from the recording thread.
+ */
+final class SampleRing {
+
+    private short[] buffer;
+    private int mask;
+    private long writePosition = 0;
+
+    SampleRing(int minCapacity) {
+        buffer = new short[capacityFor(minCapacity)];
+        mask = buffer.length - 1;
+    }
+
+    int getCapacity() {
+        return buffer.length;
+    }
+
+    long getWritePosition() {
+        return writePosition;
+    }
+
+    long getOldestPosition() {
+        return Math.max(0, writePosition - buffer.length);
+    }
+
+    void ensureCapacity(int minCapacity) {
+        if (minCapacity <= buffer.length) {
+            return;
+        }
+
+        final short[] grown = new short[capacityFor(minCapacity)];
+        final long oldestPosition = getOldestPosition();
+        final int numSamples = (int) (writePosition - oldestPosition);
+        final int grownMask = grown.length - 1;
+        for (int i = 0; i < numSamples; i++) {
+            final long position = oldestPosition + i;
+            grown[(int) (position & grownMask)] = buffer[(int) (position & mask)];
+        }
+        buffer = grown;
+        mask = grownMask;
+    }
+
+    void write(short[] samples, int offset, int length) {
+        int remaining = length;
+        int srcOffset = offset;
+        while (remaining > 0) {
+            final int index = (int) (writePosition & mask);
+            final int chunk = Math.min(remaining, buffer.length - index);
+            System.arraycopy(samples, srcOffset, buffer, index, chunk);
+            srcOffset += chunk;
+            remaining -= chunk;
+            writePosition += chunk;
+        }
+    }
+
+    void read(long position, short[] samples, int offset, int length) {
+        int remaining = length;
+        int dstOffset = offset;
+        long readPosition = position;
+        while (remaining > 0) {
+            final int index = (int) (readPosition & mask);
+            final int chunk = Math.min(remaining, buffer.length - index);
+            System.arraycopy(buffer, index, samples, dstOffset, chunk);
+            dstOffset += chunk;
+            remaining -= chunk;
+            readPosition += chunk;
+        }
+    }
+
+    private static int capacityFor(int minCapacity) {
+        int capacity = 1;
+        while (capacity < minCapacity) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.ArrayList;
+
+/**
+ * The captured audio at one output sample rate, together with the reframers that cut listener
+ * frames out of it. Audio captured at another rate is passed through a
+ * {@link PolyphaseResampler} before being written to the ring, so every listener asking for the
+ * same rate shares a single resampler. Only accessed from the recording thread.
+ */
+final class SampleStream {
+
+    final int sampleRate;
+    final int capturedFrameLength;
+    final long startPosition;
+    final ArrayList<FrameReframer> reframers = new ArrayList<>();
+
+    private final PolyphaseResampler resampler;
+    private final SampleRing ring;
+    private final int maxWriteLength;
+    private final short[] resampled;
+
+    private boolean isInUse = true;
+
+    /**
+     * Creates a stream whose first sample is the captured sample at the given position since the
+     * start of the capture session.
+     */
+    SampleStream(int capturedSampleRate, int capturedFrameLength, int sampleRate, long startPosition) {
+        this.sampleRate = sampleRate;
+        this.capturedFrameLength = capturedFrameLength;
+        this.startPosition = startPosition;
+        if (sampleRate != capturedSampleRate) {
+            this.resampler = new PolyphaseResampler(capturedSampleRate, sampleRate);
+            this.maxWriteLength = resampler.getMaxOutputLength(capturedFrameLength);
+            this.resampled = new short[maxWriteLength];
+        } else {
+            this.resampler = null;
+            this.maxWriteLength = capturedFrameLength;
+            this.resampled = null;
+        }
+        this.ring = new SampleRing(2 * maxWriteLength);
+    }
+
+    SampleRing getRing() {
+        return ring;
+    }
+
+    boolean isInUse() {
+        return isInUse;
+    }
+
+    void setInUse(boolean isInUse) {
+        this.isInUse = isInUse;
+    }
+
+    /**
+     * Makes sure the ring can hold a frame of the given length on top of a full captured frame.
+     */
+    void ensureFrameCapacity(int frameLength) {
+        ring.ensureCapacity(frameLength + maxWriteLength);
+    }
+
+    void write(short[] frame) {
+        write(frame, 0, frame.length);
+    }
+
+    /**
+     * Writes captured samples to the ring, resampling them if needed. At most one captured
+     * frame's worth of samples can be written at a time.
+     */
+    void write(short[] samples, int offset, int length) {
+        if (resampler != null) {
+            final int numResampled = resampler.process(samples, offset, length, resampled);
+            ring.write(resampled, 0, numResampled);
+        } else {
+            ring.write(samples, offset, length);
+        }
+    }
+}
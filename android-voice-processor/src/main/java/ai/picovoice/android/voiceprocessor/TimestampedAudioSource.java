@@ -0,0 +1,33 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * An audio source that can report when a sample was captured, such as `AudioRecord` on Android
+ * 7.0 (API 24) and later.
+ */
+interface TimestampedAudioSource extends VoiceProcessorAudioSource {
+
+    /**
+     * Returned by {@link #getCaptureTimeNanos(long)} if the source cannot tell.
+     */
+    long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    /**
+     * Gets the time at which a sample was captured.
+     *
+     * @param position Position of the sample, counted from when the source was last started.
+     * @return the capture time on the `System.nanoTime()` clock, or {@link #NO_TIMESTAMP}
+     */
+    long getCaptureTimeNanos(long position);
+}
@@ -0,0 +1,98 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Energy and zero-crossing based voice activity detector with hysteresis and hangover, run once
+ * per captured frame. Only accessed from the recording thread.
+ */
+final class VoiceActivityGate {
+
+    private static final double FULL_SCALE_POWER = 32768.0 * 32768.0;
+
+    private VoiceProcessorVoiceActivityOptions options;
+    private boolean isSpeech = false;
+    private long numActiveSamples = 0;
+    private long numInactiveSamples = 0;
+    private double levelDbfs = VoiceProcessorFrameStats.MIN_LEVEL_DBFS;
+    private double zeroCrossingRate = 0;
+
+    VoiceActivityGate(VoiceProcessorVoiceActivityOptions options) {
+        this.options = options;
+    }
+
+    VoiceProcessorVoiceActivityOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Swaps in new thresholds, keeping the current state of the gate.
+     */
+    void setOptions(VoiceProcessorVoiceActivityOptions options) {
+        this.options = options;
+    }
+
+    boolean isSpeech() {
+        return isSpeech;
+    }
+
+    double getLevelDbfs() {
+        return levelDbfs;
+    }
+
+    double getZeroCrossingRate() {
+        return zeroCrossingRate;
+    }
+
+    /**
+     * Classifies the next frame of audio.
+     *
+     * @return true if the gate is open after the frame
+     */
+    boolean process(short[] samples, int length, int sampleRate) {
+        long sumSquares = 0;
+        int numCrossings = 0;
+        boolean isNegative = samples[0] < 0;
+        for (int i = 0; i < length; i++) {
+            final int sample = samples[i];
+            sumSquares += sample * sample;
+            if ((sample < 0) != isNegative) {
+                numCrossings++;
+                isNegative = !isNegative;
+            }
+        }
+
+        final double power = (double) sumSquares / length / FULL_SCALE_POWER;
+        levelDbfs = power > 0 ?
+                Math.max(VoiceProcessorFrameStats.MIN_LEVEL_DBFS, 10 * Math.log10(power)) :
+                VoiceProcessorFrameStats.MIN_LEVEL_DBFS;
+        zeroCrossingRate = length > 1 ? (double) numCrossings / (length - 1) : 0;
+
+        final double threshold = isSpeech ? options.getOffsetThresholdDbfs() : options.getOnsetThresholdDbfs();
+        final boolean isActive = levelDbfs >= threshold && zeroCrossingRate <= options.getMaxZeroCrossingRate();
+        if (isSpeech) {
+            numInactiveSamples = isActive ? 0 : numInactiveSamples + length;
+            if (numInactiveSamples * 1000 > (long) options.getHangoverMillis() * sampleRate) {
+                isSpeech = false;
+                numActiveSamples = 0;
+            }
+        } else {
+            numActiveSamples = isActive ? numActiveSamples + length : 0;
+            if (isActive && numActiveSamples * 1000 >= (long) options.getOnsetMillis() * sampleRate) {
+                isSpeech = true;
+                numInactiveSamples = 0;
+            }
+        }
+        return isSpeech;
+    }
+}
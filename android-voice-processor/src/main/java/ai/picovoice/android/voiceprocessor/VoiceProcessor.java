@@ -16,41 +16,100 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.media.AudioFormat;
-import android.media.AudioRecord;
-import android.media.MediaRecorder;
+import android.media.AudioManager;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Process;
 
 import androidx.core.content.ContextCompat;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The Android Voice Processor is an asynchronous audio recorder designed for real-time
  * audio processing. Given some specifications, the library delivers frames of raw audio
- * data to the user via listeners. Audio will be 16-bit and mono.
+ * data to the user via listeners. Audio will be mono, delivered as 16-bit samples or, to float
+ * listeners, as floating-point samples.
  */
 public class VoiceProcessor {
 
+    private static final int DEFAULT_NATIVE_SAMPLE_RATE = 44100;
+    private static final int DEFAULT_FORMAT_FRAME_POOL_CAPACITY = 32;
+    private static final int MAX_CONSECUTIVE_READ_ERRORS = 5;
+    private static final long MIN_RESTART_BACKOFF_MILLIS = 100;
+    private static final long MAX_RESTART_BACKOFF_MILLIS = 5000;
+
     private static VoiceProcessor instance = null;
 
-    private final ArrayList<VoiceProcessorFrameListener> frameListeners = new ArrayList<>();
-    private final ArrayList<VoiceProcessorErrorListener> errorListeners = new ArrayList<>();
-    private final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+    private static final FrameSubscription[] NO_FRAME_LISTENERS = new FrameSubscription[0];
+    private static final VoiceProcessorErrorListener[] NO_ERROR_LISTENERS = new VoiceProcessorErrorListener[0];
+
     private final Handler callbackHandler = new Handler(Looper.getMainLooper());
-    private final Object listenerLock = new Object();
+    private final Executor mainThreadExecutor = new HandlerExecutor(callbackHandler);
+    final Object listenerLock = new Object();
+    private final Object processingExecutorLock = new Object();
+
+    // Listener registries are copy-on-write: writers replace the array under listenerLock, while
+    // the recording thread iterates whichever snapshot it last read without taking any lock.
+    // listenerLock is package-private so that tests can hold it while frames are dispatched.
+    private volatile FrameSubscription[] frameListeners = NO_FRAME_LISTENERS;
+    private volatile VoiceProcessorErrorListener[] errorListeners = NO_ERROR_LISTENERS;
+    private volatile VoiceProcessorDispatchMode dispatchMode = VoiceProcessorDispatchMode.MAIN_THREAD;
+    private volatile Executor processingExecutor = null;
+
+    // The capture thread outlives capture sessions. A session that is being stopped without
+    // waiting is kept until the next start() or stop(), which wait for it to finish first.
+    private ExecutorService captureExecutor = null;
+    private volatile CaptureSession session = null;
+    private CaptureSession stoppingSession = null;
+    private VoiceProcessorFramePool framePool = null;
+    private volatile VoiceProcessorFramePool[] framePools = new VoiceProcessorFramePool[0];
+    private volatile VoiceProcessorFramePool[] directFramePools = new VoiceProcessorFramePool[0];
+    private volatile VoiceProcessorFramePool[] floatFramePools = new VoiceProcessorFramePool[0];
 
-    private Future<Void> readThread = null;
+    // Re-framing, resampling and format conversion state, only accessed from the recording thread.
+    private final ArrayList<SampleStream> sampleStreams = new ArrayList<>();
+    private final ArrayList<FeatureExtractor> featureExtractors = new ArrayList<>();
+    private AtomicBoolean isStopRequested = new AtomicBoolean(false);
+    private AudioFrame convertedDirectFrame = null;
+    private AudioFrame convertedFloatFrame = null;
+    private AudioFrame interleavedFrame = null;
+    private AudioFrame[] channelFrames = new AudioFrame[0];
+    private short[][] channelData = new short[0][];
+    private SampleRing history = null;
+    private VoiceActivityGate voiceActivityGate = null;
+    private long nextMetricsReportNanos = 0;
+    private long framePosition = 0;
+    private long frameCaptureTimeNanos = 0;
+    private boolean isFrameCaptureTimeEstimated = true;
+
+    private volatile CaptureMetrics captureMetrics = new CaptureMetrics(0, 0);
+    private volatile VoiceProcessorMetricsListener metricsListener = null;
+    private volatile long metricsIntervalNanos = 0;
+    private volatile VoiceProcessorPreprocessingOptions preprocessingOptions = null;
+    private volatile PreprocessingChain preprocessingChain = null;
+    private volatile VoiceProcessorVoiceActivityOptions voiceActivityOptions = null;
+    private volatile VoiceProcessorVoiceActivityListener voiceActivityListener = null;
+    private volatile boolean isSpeechDetected = false;
 
     private int frameLength;
     private int sampleRate;
+    private int framePoolCapacity = 0;
+    private int formatFramePoolCapacity = DEFAULT_FORMAT_FRAME_POOL_CAPACITY;
+    private int historyDuration = 0;
+    private VoiceProcessorAudioSource audioSource = null;
+    private VoiceProcessorEncoding encoding = VoiceProcessorEncoding.PCM_16BIT;
+    private VoiceProcessorCaptureConfig captureConfig = null;
 
     private VoiceProcessor() {
     }
@@ -74,7 +133,17 @@ public class VoiceProcessor {
      * @return boolean indicating whether the VoiceProcessor is currently recording.
      */
     public boolean getIsRecording() {
-        return readThread != null;
+        return session != null;
+    }
+
+    /**
+     * Indicates whether audio capture is currently paused.
+     *
+     * @return boolean indicating whether the VoiceProcessor is recording but paused.
+     */
+    public boolean getIsPaused() {
+        final CaptureSession current = session;
+        return current != null && current.isPaused();
     }
 
     /**
@@ -88,6 +157,29 @@ public class VoiceProcessor {
                 android.Manifest.permission.RECORD_AUDIO) == PackageManager.PERMISSION_GRANTED;
     }
 
+    /**
+     * Gets the native sample rate of the device's audio hardware. Capturing at this rate avoids
+     * resampling in the audio framework; listeners that need a different rate can request one with
+     * {@link VoiceProcessorListenerOptions.Builder#setSampleRate(int)}.
+     *
+     * @param context Context used to access the audio service.
+     * @return the native sample rate in Hz, or 44100 if the device does not report one.
+     */
+    public int getNativeSampleRate(Context context) {
+        final AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        if (audioManager != null) {
+            final String property = audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_SAMPLE_RATE);
+            if (property != null) {
+                try {
+                    return Integer.parseInt(property);
+                } catch (NumberFormatException ignored) {
+                    // fall through to the default below
+                }
+            }
+        }
+        return DEFAULT_NATIVE_SAMPLE_RATE;
+    }
+
     /**
      * Add a frame listener that will receive audio frames generated by the VoiceProcessor.
      *
@@ -95,7 +187,26 @@ public class VoiceProcessor {
      */
     public void addFrameListener(VoiceProcessorFrameListener listener) {
         synchronized (listenerLock) {
-            frameListeners.add(listener);
+            frameListeners = append(frameListeners, new FrameSubscription(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a frame listener that will receive audio frames generated by the VoiceProcessor,
+     * delivered according to the given options.
+     *
+     * @param listener VoiceProcessorFrameListener for processing frames of audio.
+     * @param options  Options that control how frames are delivered to the listener.
+     */
+    public void addFrameListener(
+            VoiceProcessorFrameListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = new FrameSubscription(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
         }
     }
 
@@ -105,8 +216,12 @@ public class VoiceProcessor {
      * @param listeners VoiceProcessorFrameListeners for processing frames of audio.
      */
     public void addFrameListeners(VoiceProcessorFrameListener[] listeners) {
+        final FrameSubscription[] subscriptions = new FrameSubscription[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            subscriptions[i] = new FrameSubscription(listeners[i], null, null);
+        }
         synchronized (listenerLock) {
-            frameListeners.addAll(Arrays.asList(listeners));
+            frameListeners = appendAll(frameListeners, subscriptions);
         }
     }
 
@@ -117,7 +232,7 @@ public class VoiceProcessor {
      */
     public void removeFrameListener(VoiceProcessorFrameListener listener) {
         synchronized (listenerLock) {
-            frameListeners.remove(listener);
+            removeSubscriptions(listener, false);
         }
     }
 
@@ -128,26 +243,386 @@ public class VoiceProcessor {
      */
     public void removeFrameListeners(VoiceProcessorFrameListener[] listeners) {
         synchronized (listenerLock) {
-            frameListeners.removeAll(Arrays.asList(listeners));
+            for (VoiceProcessorFrameListener listener : listeners) {
+                removeSubscriptions(listener, true);
+            }
+        }
+    }
+
+    /**
+     * Add a buffer listener that will receive audio frames generated by the VoiceProcessor as
+     * read-only direct byte buffers. Buffer listeners can be used alongside frame listeners.
+     *
+     * @param listener VoiceProcessorBufferListener for processing frames of audio in native code.
+     */
+    public void addBufferListener(VoiceProcessorBufferListener listener) {
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, FrameSubscription.ofBuffers(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a buffer listener that will receive audio frames generated by the VoiceProcessor as
+     * read-only direct byte buffers, delivered according to the given options.
+     *
+     * @param listener VoiceProcessorBufferListener for processing frames of audio in native code.
+     * @param options  Options that control how frames are delivered to the listener.
+     */
+    public void addBufferListener(
+            VoiceProcessorBufferListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofBuffers(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a buffer listener from the VoiceProcessor. It will no longer receive audio frames.
+     *
+     * @param listener VoiceProcessorBufferListener that you would like to remove.
+     */
+    public void removeBufferListener(VoiceProcessorBufferListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Add a float listener that will receive audio frames generated by the VoiceProcessor as
+     * floating-point samples. Float listeners can be used alongside frame listeners.
+     *
+     * @param listener VoiceProcessorFloatListener for processing frames of audio.
+     */
+    public void addFloatListener(VoiceProcessorFloatListener listener) {
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, FrameSubscription.ofFloats(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a float listener that will receive audio frames generated by the VoiceProcessor as
+     * floating-point samples, delivered according to the given options.
+     *
+     * @param listener VoiceProcessorFloatListener for processing frames of audio.
+     * @param options  Options that control how frames are delivered to the listener.
+     */
+    public void addFloatListener(
+            VoiceProcessorFloatListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofFloats(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a float listener from the VoiceProcessor. It will no longer receive audio frames.
+     *
+     * @param listener VoiceProcessorFloatListener that you would like to remove.
+     */
+    public void removeFloatListener(VoiceProcessorFloatListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Add a frame stats listener that will receive audio frames generated by the VoiceProcessor
+     * together with their statistics. Frame stats listeners can be used alongside frame
+     * listeners.
+     *
+     * @param listener VoiceProcessorFrameStatsListener for metering frames of audio.
+     */
+    public void addFrameStatsListener(VoiceProcessorFrameStatsListener listener) {
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, FrameSubscription.ofStats(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a frame stats listener that will receive audio frames generated by the VoiceProcessor
+     * together with their statistics, delivered according to the given options.
+     *
+     * @param listener VoiceProcessorFrameStatsListener for metering frames of audio.
+     * @param options  Options that control how frames are delivered to the listener.
+     */
+    public void addFrameStatsListener(
+            VoiceProcessorFrameStatsListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofStats(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a frame stats listener from the VoiceProcessor. It will no longer receive audio
+     * frames.
+     *
+     * @param listener VoiceProcessorFrameStatsListener that you would like to remove.
+     */
+    public void removeFrameStatsListener(VoiceProcessorFrameStatsListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Add a timed frame listener that will receive audio frames generated by the VoiceProcessor
+     * together with their sequence number, sample position and capture time. Timed frame
+     * listeners can be used alongside frame listeners.
+     *
+     * @param listener VoiceProcessorTimedFrameListener for aligning frames of audio in time.
+     */
+    public void addTimedFrameListener(VoiceProcessorTimedFrameListener listener) {
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, FrameSubscription.ofTimed(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a timed frame listener that will receive audio frames generated by the VoiceProcessor
+     * together with their timing, delivered according to the given options. Frames that are
+     * coalesced into one delivery are described by the timing of the first of them.
+     *
+     * @param listener VoiceProcessorTimedFrameListener for aligning frames of audio in time.
+     * @param options  Options that control how frames are delivered to the listener.
+     */
+    public void addTimedFrameListener(
+            VoiceProcessorTimedFrameListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofTimed(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a timed frame listener from the VoiceProcessor. It will no longer receive audio
+     * frames.
+     *
+     * @param listener VoiceProcessorTimedFrameListener that you would like to remove.
+     */
+    public void removeTimedFrameListener(VoiceProcessorTimedFrameListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Add a batch listener that will receive audio frames generated by the VoiceProcessor in
+     * batches of one second. Batch listeners can be used alongside frame listeners, which keep
+     * receiving every frame as soon as it is captured.
+     *
+     * @param listener VoiceProcessorBatchListener for processing batches of audio frames.
+     */
+    public void addBatchListener(VoiceProcessorBatchListener listener) {
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, FrameSubscription.ofBatches(listener, null, null));
+        }
+    }
+
+    /**
+     * Add a batch listener that will receive audio frames generated by the VoiceProcessor in
+     * batches, delivered according to the given options. The batch size and duration are set
+     * with {@link VoiceProcessorListenerOptions.Builder#setBatchFrames(int)} and
+     * {@link VoiceProcessorListenerOptions.Builder#setBatchMillis(int)}, and the queue capacity
+     * and overflow policy apply to whole batches.
+     *
+     * @param listener VoiceProcessorBatchListener for processing batches of audio frames.
+     * @param options  Options that control how batches are delivered to the listener.
+     */
+    public void addBatchListener(
+            VoiceProcessorBatchListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofBatches(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a batch listener from the VoiceProcessor. It will no longer receive audio frames,
+     * and any frames gathered for its next batch are discarded.
+     *
+     * @param listener VoiceProcessorBatchListener that you would like to remove.
+     */
+    public void removeBatchListener(VoiceProcessorBatchListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Add a feature listener that will receive the spectral features of the audio frames
+     * generated by the VoiceProcessor instead of their samples. Features are computed once per
+     * frame and shared by every feature listener with equal feature options.
+     *
+     * @param listener       VoiceProcessorFeatureListener for processing spectral features.
+     * @param featureOptions Features to compute.
+     * @throws VoiceProcessorArgumentException if the feature options are null or their minimum
+     *                                         frequency is not below the Nyquist frequency of
+     *                                         the current capture
+     */
+    public void addFeatureListener(
+            VoiceProcessorFeatureListener listener,
+            VoiceProcessorFeatureOptions featureOptions) throws VoiceProcessorArgumentException {
+        addFeatureListener(listener, featureOptions, null);
+    }
+
+    /**
+     * Add a feature listener that will receive the spectral features of the audio frames
+     * generated by the VoiceProcessor, delivered according to the given options. The frame
+     * length, hop length and sample rate of the options set the analysis windows, so that for
+     * example 25 ms windows every 10 ms are set with a frame length of 400 and a hop length of
+     * 160 at 16 kHz. Features are computed once per window and shared by every feature listener
+     * with equal feature options and windows.
+     *
+     * @param listener       VoiceProcessorFeatureListener for processing spectral features.
+     * @param featureOptions Features to compute.
+     * @param options        Options that control the analysis windows and how features are
+     *                       delivered to the listener.
+     * @throws VoiceProcessorArgumentException if the feature options are null, the options
+     *                                         select interleaved channels or the
+     *                                         {@link VoiceProcessorOverflowPolicy#COALESCE}
+     *                                         policy, or the minimum frequency of the features
+     *                                         is not below the Nyquist frequency of the windows
+     */
+    public synchronized void addFeatureListener(
+            VoiceProcessorFeatureListener listener,
+            VoiceProcessorFeatureOptions featureOptions,
+            VoiceProcessorListenerOptions options) throws VoiceProcessorArgumentException {
+        if (featureOptions == null) {
+            throw new VoiceProcessorArgumentException("Feature options cannot be null");
+        }
+        if (options != null && options.getChannel() == VoiceProcessorListenerOptions.CHANNEL_INTERLEAVED) {
+            throw new VoiceProcessorArgumentException("Features cannot be computed from interleaved channels");
+        }
+        if (options != null && options.getOverflowPolicy() == VoiceProcessorOverflowPolicy.COALESCE) {
+            // Merging would hand the listener the features of several windows in one call
+            throw new VoiceProcessorArgumentException("Features cannot be delivered with the COALESCE overflow policy");
+        }
+        if (options != null && options.getSampleRate() != 0) {
+            featureOptions.checkSampleRate(options.getSampleRate());
+        } else if (getIsRecording()) {
+            featureOptions.checkSampleRate(sampleRate);
+        }
+        final FrameSubscription subscription = FrameSubscription.ofFeatures(
+                listener,
+                featureOptions,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
+        }
+    }
+
+    /**
+     * Remove a feature listener from the VoiceProcessor. It will no longer receive features.
+     *
+     * @param listener VoiceProcessorFeatureListener that you would like to remove.
+     */
+    public void removeFeatureListener(VoiceProcessorFeatureListener listener) {
+        synchronized (listenerLock) {
+            removeSubscriptions(listener, false);
+        }
+    }
+
+    /**
+     * Adds a frame listener that only receives as many frames as have been requested with
+     * {@link #requestFrames(FrameSubscription, long)}. Used by {@link VoiceProcessorPublisher}.
+     *
+     * @return the subscription to request frames for
+     */
+    FrameSubscription addDemandListener(
+            VoiceProcessorFrameListener listener,
+            VoiceProcessorListenerOptions options) {
+        final FrameSubscription subscription = FrameSubscription.ofDemand(
+                listener,
+                getExecutor(options),
+                options);
+        synchronized (listenerLock) {
+            frameListeners = append(frameListeners, subscription);
         }
+        return subscription;
+    }
+
+    void requestFrames(FrameSubscription subscription, long numFrames) {
+        subscription.request(numFrames, getExecutor(dispatchMode));
+    }
+
+    /**
+     * Ends delivery to a listener with a task, such as a final signal to a subscriber, that runs
+     * after the frame being delivered and never alongside it.
+     */
+    void finishFrames(FrameSubscription subscription, Runnable task) {
+        subscription.finish(task, getExecutor(dispatchMode));
     }
 
     /**
-     * Clear all frame listeners from the VoiceProcessor. They will no longer receive audio frames.
+     * Clear all frame listeners from the VoiceProcessor, including buffer, float, frame stats,
+     * timed frame, batch and feature listeners. They will no longer receive audio frames.
      */
     public void clearFrameListeners() {
+        final FrameSubscription[] removed;
         synchronized (listenerLock) {
-            frameListeners.clear();
+            removed = frameListeners;
+            frameListeners = NO_FRAME_LISTENERS;
+        }
+        for (FrameSubscription subscription : removed) {
+            subscription.clear();
         }
     }
 
     /**
-     * Get number of frame listeners that are currently subscribed to the VoiceProcessor.
+     * Get number of frame listeners that are currently subscribed to the VoiceProcessor,
+     * including buffer, float, frame stats, timed frame, batch and feature listeners.
      *
-     * @return the number of frame listeners
+     * @return the number of frame listeners of every kind
      */
     public int getNumFrameListeners() {
-        return frameListeners.size();
+        return frameListeners.length;
+    }
+
+    /**
+     * Sets the thread that frames and errors are delivered on for listeners that were added
+     * without choosing a delivery target of their own. Defaults to
+     * {@link VoiceProcessorDispatchMode#MAIN_THREAD}.
+     *
+     * @param mode Thread to deliver frames and errors on.
+     * @throws VoiceProcessorArgumentException if the mode is null
+     */
+    public void setDispatchMode(VoiceProcessorDispatchMode mode) throws VoiceProcessorArgumentException {
+        if (mode == null) {
+            throw new VoiceProcessorArgumentException("Dispatch mode cannot be null");
+        }
+        dispatchMode = mode;
+    }
+
+    /**
+     * Gets the thread that frames and errors are delivered on for listeners that were added
+     * without choosing a delivery target of their own.
+     *
+     * @return the default dispatch mode
+     */
+    public VoiceProcessorDispatchMode getDispatchMode() {
+        return dispatchMode;
     }
 
     /**
@@ -157,7 +632,7 @@ public class VoiceProcessor {
      */
     public void addErrorListener(VoiceProcessorErrorListener errorListener) {
         synchronized (listenerLock) {
-            errorListeners.add(errorListener);
+            errorListeners = append(errorListeners, errorListener);
         }
     }
 
@@ -168,7 +643,10 @@ public class VoiceProcessor {
      */
     public void removeErrorListener(VoiceProcessorErrorListener errorListener) {
         synchronized (listenerLock) {
-            errorListeners.remove(errorListener);
+            final int index = indexOf(errorListeners, errorListener);
+            if (index >= 0) {
+                errorListeners = remove(errorListeners, index);
+            }
         }
     }
 
@@ -177,7 +655,7 @@ public class VoiceProcessor {
      */
     public void clearErrorListeners() {
         synchronized (listenerLock) {
-            errorListeners.clear();
+            errorListeners = NO_ERROR_LISTENERS;
         }
     }
 
@@ -187,155 +665,1666 @@ public class VoiceProcessor {
      * @return the number of error listeners
      */
     public int getNumErrorListeners() {
-        return errorListeners.size();
+        return errorListeners.length;
     }
 
     /**
-     * Starts audio capture. You need to subscribe a VoiceProcessorFrameListener via
-     * {@link #addFrameListener(VoiceProcessorFrameListener)} in order to receive audio
-     * frames from the VoiceProcessor.
+     * Enables pooled frame delivery. Instead of allocating a new frame for every read, the
+     * VoiceProcessor will cycle through a fixed pool of reusable frames. A frame delivered to a
+     * {@link VoiceProcessorFrameListener} is only valid until `onFrame()` returns, unless the
+     * listener extends its lease with {@link #retainFrame(short[])}. The new capacity takes
+     * effect the next time audio capture is started.
      *
-     * @param requestedFrameLength Number of audio samples per frame.
-     * @param requestedSampleRate  Audio sample rate that the audio will be captured with.
-     * @throws VoiceProcessorArgumentException if VoiceProcessor is already recording with
-     *                                         a different configuration
+     * @param capacity Number of frames in the pool. A capacity of 0 disables pooling.
+     * @throws VoiceProcessorArgumentException if the capacity is negative
      */
-    public synchronized void start(
-            final int requestedFrameLength,
-            final int requestedSampleRate) throws VoiceProcessorArgumentException {
-        if (getIsRecording()) {
-            if (requestedFrameLength != frameLength || requestedSampleRate != sampleRate) {
-                throw new VoiceProcessorArgumentException(
-                        String.format(
-                                "VoiceProcessor start() was called with frame length " +
-                                        "%d and sample rate %d while already recording with " +
-                                        "frame length %d and sample rate %d",
-                                requestedFrameLength,
-                                requestedSampleRate,
-                                frameLength,
-                                sampleRate));
-            } else {
-                return;
-            }
+    public synchronized void setFramePoolCapacity(int capacity) throws VoiceProcessorArgumentException {
+        if (capacity < 0) {
+            throw new VoiceProcessorArgumentException(
+                    String.format("Frame pool capacity must be non-negative, but got %d", capacity));
         }
+        framePoolCapacity = capacity;
+    }
 
-        frameLength = requestedFrameLength;
-        sampleRate = requestedSampleRate;
-        readThread = Executors.newSingleThreadExecutor().submit(new Callable<Void>() {
-            @Override
-            public Void call() {
-                android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
-                read(frameLength, sampleRate);
-                return null;
-            }
-        });
+    /**
+     * Gets the frame pool used by the current (or most recent) capture session.
+     *
+     * @return the frame pool, or null if pooled frame delivery was not enabled
+     */
+    public VoiceProcessorFramePool getFramePool() {
+        return framePool;
     }
 
     /**
-     * Stops audio capture. Frames will stop being delivered to the subscribed listeners.
+     * Extends the lease on a pooled frame so that it is not recycled once the listener that
+     * received it returns. Every call must be paired with a call to {@link #releaseFrame(short[])}.
+     * Has no effect if pooled frame delivery is disabled.
      *
-     * @throws VoiceProcessorException if an error is encountered while trying to stop the
-     *                                 recorder thread.
+     * @param frame frame received in {@link VoiceProcessorFrameListener#onFrame(short[])}
      */
-    public synchronized void stop() throws VoiceProcessorException {
-        if (!getIsRecording()) {
-            return;
+    public void retainFrame(short[] frame) {
+        for (VoiceProcessorFramePool pool : framePools) {
+            pool.retain(frame);
         }
+    }
 
-        isStopRequested.set(true);
-        try {
-            readThread.get();
-            readThread = null;
-        } catch (ExecutionException | InterruptedException e) {
-            throw new VoiceProcessorException(
-                    "An error was encountered while requesting to stop the audio recording",
-                    e);
-        } finally {
-            isStopRequested.set(false);
+    /**
+     * Extends the lease on a frame received by a {@link VoiceProcessorBufferListener} so that
+     * its memory is not reused once the listener returns. Every call must be paired with a call
+     * to {@link #releaseFrame(ByteBuffer)}.
+     *
+     * @param frame frame received in {@link VoiceProcessorBufferListener#onFrame(ByteBuffer)}
+     */
+    public void retainFrame(ByteBuffer frame) {
+        for (VoiceProcessorFramePool pool : directFramePools) {
+            pool.retain(frame);
         }
     }
 
-    @SuppressLint({"MissingPermission", "DefaultLocale"})
-    private void read(int frameLength, int sampleRate) {
-        final int minBufferSize = AudioRecord.getMinBufferSize(
-                sampleRate,
-                AudioFormat.CHANNEL_IN_MONO,
-                AudioFormat.ENCODING_PCM_16BIT);
-        final int bufferSize = Math.max(sampleRate / 2, minBufferSize);
-
-        AudioRecord recorder;
-        try {
-            recorder = new AudioRecord(
-                    MediaRecorder.AudioSource.MIC,
-                    sampleRate,
-                    AudioFormat.CHANNEL_IN_MONO,
-                    AudioFormat.ENCODING_PCM_16BIT,
-                    bufferSize);
-        } catch (IllegalArgumentException e) {
-            onError(new VoiceProcessorArgumentException(
-                    "Unable to initialize audio recorder with required parameters",
-                    e));
-            return;
+    /**
+     * Extends the lease on a frame received by a {@link VoiceProcessorFloatListener} so that it
+     * is not reused once the listener returns. Every call must be paired with a call to
+     * {@link #releaseFrame(float[])}.
+     *
+     * @param frame frame received in {@link VoiceProcessorFloatListener#onFrame(float[])}
+     */
+    public void retainFrame(float[] frame) {
+        for (VoiceProcessorFramePool pool : floatFramePools) {
+            pool.retain(frame);
         }
+    }
 
-        if (recorder.getState() != AudioRecord.STATE_INITIALIZED) {
-            onError(new VoiceProcessorStateException(
-                    "Audio recorder did not initialize successfully. " +
-                            "Ensure you have acquired permission to record audio from the user."));
-            return;
+    /**
+     * Releases a lease previously taken with {@link #retainFrame(short[])}, allowing the frame to
+     * be reused for new audio. Has no effect if pooled frame delivery is disabled.
+     *
+     * @param frame frame that was previously retained
+     */
+    public void releaseFrame(short[] frame) {
+        for (VoiceProcessorFramePool pool : framePools) {
+            pool.release(frame);
         }
+    }
 
-        try {
-            recorder.startRecording();
-
-            while (!isStopRequested.get()) {
-                final short[] frame = new short[frameLength];
-                final int numSamplesRead = recorder.read(frame, 0, frame.length);
-                if (numSamplesRead == frame.length) {
-                    onFrame(frame);
-                } else {
-                    onError(new VoiceProcessorReadException(
-                            String.format(
-                                    "Expected a frame of size %d, but read one of size %d",
-                                    frame.length,
-                                    numSamplesRead)
-                    ));
-                }
-            }
+    /**
+     * Releases a lease previously taken with {@link #retainFrame(ByteBuffer)}, allowing the
+     * memory of the frame to be reused for new audio.
+     *
+     * @param frame frame that was previously retained
+     */
+    public void releaseFrame(ByteBuffer frame) {
+        for (VoiceProcessorFramePool pool : directFramePools) {
+            pool.release(frame);
+        }
+    }
 
-            recorder.stop();
-        } catch (IllegalStateException e) {
-            onError(new VoiceProcessorStateException(
-                    "Audio recorder entered invalid state",
-                    e));
-        } finally {
-            recorder.release();
+    /**
+     * Releases a lease previously taken with {@link #retainFrame(float[])}, allowing the frame to
+     * be reused for new audio.
+     *
+     * @param frame frame that was previously retained
+     */
+    public void releaseFrame(float[] frame) {
+        for (VoiceProcessorFramePool pool : floatFramePools) {
+            pool.release(frame);
         }
     }
 
-    private void onFrame(final short[] frame) {
-        synchronized (listenerLock) {
-            for (final VoiceProcessorFrameListener listener : frameListeners) {
-                callbackHandler.post(new Runnable() {
-                    @Override
-                    public void run() {
-                        listener.onFrame(frame);
+    /**
+     * Takes a snapshot of the capture pipeline's metrics since audio capture was last started,
+     * including the delivery statistics of every subscribed listener. Metrics are always
+     * collected and cost a few clock reads per frame.
+     *
+     * @return the metrics snapshot
+     */
+    public VoiceProcessorMetrics getMetrics() {
+        return captureMetrics.snapshot(frameListeners, getPreprocessingMetrics());
+    }
+
+    /**
+     * Sets a listener that periodically receives a snapshot of the capture pipeline's metrics
+     * while audio is being captured. Snapshots are taken on the recording thread and delivered
+     * with the mode set by {@link #setDispatchMode(VoiceProcessorDispatchMode)}.
+     *
+     * @param listener       Listener to report metrics to, or null to stop reporting.
+     * @param intervalMillis Time between reports in milliseconds.
+     * @throws VoiceProcessorArgumentException if the interval is not positive
+     */
+    public synchronized void setMetricsListener(
+            VoiceProcessorMetricsListener listener,
+            long intervalMillis) throws VoiceProcessorArgumentException {
+        if (listener != null && intervalMillis <= 0) {
+            throw new VoiceProcessorArgumentException(
+                    String.format("Metrics interval must be positive, but got %d", intervalMillis));
+        }
+        metricsIntervalNanos = intervalMillis * 1_000_000L;
+        metricsListener = listener;
+    }
+
+    /**
+     * Enables the preprocessing chain, which cleans up every captured frame in place on the
+     * recording thread before it is handed to the listeners, the history or the voice activity
+     * gate, so that listeners do not each make their own pass over the samples. New options take
+     * effect from the next captured frame, also while recording, and restart the chain's filters.
+     *
+     * <p>The chain works on 16-bit samples. It is applied to the mono downmix of multi-channel
+     * capture, while listeners of single channels or interleaved frames receive the raw audio.
+     *
+     * @param options Stages of the chain, or null to disable it.
+     */
+    public void setPreprocessingOptions(VoiceProcessorPreprocessingOptions options) {
+        preprocessingOptions = options;
+    }
+
+    /**
+     * Gets the stages of the preprocessing chain.
+     *
+     * @return the chain's options, or null if the chain is disabled
+     */
+    public VoiceProcessorPreprocessingOptions getPreprocessingOptions() {
+        return preprocessingOptions;
+    }
+
+    /**
+     * Enables the voice activity gate, which classifies every captured frame as speech or silence
+     * on the recording thread with a few operations per sample. Listeners added with
+     * {@link VoiceProcessorListenerOptions.Builder#setSpeechOnly(boolean)} only receive frames
+     * while the gate is open. New options take effect from the next captured frame, also while
+     * recording.
+     *
+     * @param options Thresholds of the gate, or null to disable it.
+     */
+    public void setVoiceActivityOptions(VoiceProcessorVoiceActivityOptions options) {
+        voiceActivityOptions = options;
+    }
+
+    /**
+     * Gets the thresholds of the voice activity gate.
+     *
+     * @return the gate's options, or null if the gate is disabled
+     */
+    public VoiceProcessorVoiceActivityOptions getVoiceActivityOptions() {
+        return voiceActivityOptions;
+    }
+
+    /**
+     * Sets a listener that is notified whenever the voice activity gate opens or closes.
+     * Notifications are delivered with the mode set by
+     * {@link #setDispatchMode(VoiceProcessorDispatchMode)}.
+     *
+     * @param listener Listener to notify, or null to stop notifying.
+     */
+    public void setVoiceActivityListener(VoiceProcessorVoiceActivityListener listener) {
+        voiceActivityListener = listener;
+    }
+
+    /**
+     * Indicates whether the voice activity gate is currently open.
+     *
+     * @return boolean indicating whether speech is detected. Always false while the gate is
+     *         disabled.
+     */
+    public boolean getIsSpeechDetected() {
+        return isSpeechDetected;
+    }
+
+    /**
+     * Keeps the most recently captured audio in a fixed-size ring, so that listeners added while
+     * audio is being captured can start from a point in the past with
+     * {@link VoiceProcessorListenerOptions.Builder#setRewindMillis(int)}. The ring is allocated
+     * once per capture session and the new duration takes effect the next time audio capture is
+     * started.
+     *
+     * @param durationMillis Amount of audio to keep in milliseconds. A duration of 0 disables
+     *                       the history.
+     * @throws VoiceProcessorArgumentException if the duration is negative
+     */
+    public synchronized void setHistoryDuration(int durationMillis) throws VoiceProcessorArgumentException {
+        if (durationMillis < 0) {
+            throw new VoiceProcessorArgumentException(
+                    String.format("History duration must be non-negative, but got %d", durationMillis));
+        }
+        historyDuration = durationMillis;
+    }
+
+    /**
+     * Gets the amount of captured audio kept for listeners that rewind.
+     *
+     * @return the history duration in milliseconds, or 0 if no history is kept
+     */
+    public synchronized int getHistoryDuration() {
+        return historyDuration;
+    }
+
+    /**
+     * Sets the source that audio frames are read from. By default, audio is recorded from the
+     * device microphone. A custom source, such as {@link VoiceProcessorFileSource} or
+     * {@link VoiceProcessorSignalSource}, allows the capture and dispatch path to be exercised
+     * without a microphone. The new source takes effect the next time audio capture is started.
+     * Once a source reports the end of its stream, no further frames are delivered until audio
+     * capture is stopped and started again.
+     *
+     * @param source Audio source to read from, or null to record from the microphone.
+     */
+    public synchronized void setAudioSource(VoiceProcessorAudioSource source) {
+        audioSource = source;
+    }
+
+    /**
+     * Sets the sample encoding that audio is recorded from the microphone with. Defaults to
+     * {@link VoiceProcessorEncoding#PCM_16BIT}. Capturing with
+     * {@link VoiceProcessorEncoding#PCM_FLOAT} lets {@link VoiceProcessorFloatListener}s receive
+     * frames exactly as they were recorded, while frame listeners keep receiving 16-bit samples.
+     * Custom audio sources always provide 16-bit samples. The new encoding takes effect the next
+     * time audio capture is started.
+     *
+     * @param encoding Sample encoding to record with.
+     * @throws VoiceProcessorArgumentException if the encoding is null
+     */
+    public synchronized void setEncoding(VoiceProcessorEncoding encoding) throws VoiceProcessorArgumentException {
+        if (encoding == null) {
+            throw new VoiceProcessorArgumentException("Encoding cannot be null");
+        }
+        this.encoding = encoding;
+    }
+
+    /**
+     * Gets the sample encoding that audio is recorded from the microphone with.
+     *
+     * @return the encoding
+     */
+    public synchronized VoiceProcessorEncoding getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Gets the configuration of the microphone recorder that audio capture was last started with.
+     *
+     * @return the capture configuration, or null if audio capture has not been started
+     */
+    public synchronized VoiceProcessorCaptureConfig getCaptureConfig() {
+        return captureConfig;
+    }
+
+    /**
+     * Starts audio capture. You need to subscribe a VoiceProcessorFrameListener via
+     * {@link #addFrameListener(VoiceProcessorFrameListener)} in order to receive audio
+     * frames from the VoiceProcessor.
+     *
+     * @param requestedFrameLength Number of audio samples per frame.
+     * @param requestedSampleRate  Audio sample rate that the audio will be captured with.
+     * @throws VoiceProcessorArgumentException if VoiceProcessor is already recording with
+     *                                         a different configuration, or a feature listener
+     *                                         needs frequencies above the Nyquist frequency
+     */
+    public synchronized void start(
+            final int requestedFrameLength,
+            final int requestedSampleRate) throws VoiceProcessorArgumentException {
+        start(requestedFrameLength, requestedSampleRate, getIsRecording() ? captureConfig : null);
+    }
+
+    /**
+     * Starts audio capture with a configuration of the microphone recorder, such as a
+     * low-latency or high-robustness {@link VoiceProcessorCaptureProfile}. You need to subscribe
+     * a VoiceProcessorFrameListener via {@link #addFrameListener(VoiceProcessorFrameListener)} in
+     * order to receive audio frames from the VoiceProcessor.
+     *
+     * @param requestedFrameLength   Number of audio samples per frame.
+     * @param requestedSampleRate    Audio sample rate that the audio will be captured with.
+     * @param requestedCaptureConfig Configuration of the microphone recorder, or null for the
+     *                               default {@link VoiceProcessorCaptureProfile#BALANCED} profile.
+     * @throws VoiceProcessorArgumentException if VoiceProcessor is already recording with
+     *                                         a different configuration, or a feature listener
+     *                                         needs frequencies above the Nyquist frequency
+     */
+    public synchronized void start(
+            final int requestedFrameLength,
+            final int requestedSampleRate,
+            final VoiceProcessorCaptureConfig requestedCaptureConfig) throws VoiceProcessorArgumentException {
+        final VoiceProcessorCaptureConfig config;
+        if (requestedCaptureConfig != null) {
+            config = requestedCaptureConfig;
+        } else {
+            config = new VoiceProcessorCaptureConfig.Builder().build();
+        }
+
+        if (getIsRecording()) {
+            if (requestedFrameLength != frameLength || requestedSampleRate != sampleRate) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "VoiceProcessor start() was called with frame length " +
+                                        "%d and sample rate %d while already recording with " +
+                                        "frame length %d and sample rate %d",
+                                requestedFrameLength,
+                                requestedSampleRate,
+                                frameLength,
+                                sampleRate));
+            } else if (!config.equals(captureConfig)) {
+                throw new VoiceProcessorArgumentException(
+                        "VoiceProcessor start() was called with a capture configuration that " +
+                                "differs from the one it is already recording with");
+            } else {
+                resume();
+                return;
+            }
+        }
+
+        for (FrameSubscription subscription : frameListeners) {
+            if (subscription.isFeatures() && subscription.sampleRate == 0) {
+                subscription.getFeatureOptions().checkSampleRate(requestedSampleRate);
+            }
+        }
+
+        awaitStoppingSession();
+        captureConfig = config;
+        frameLength = requestedFrameLength;
+        sampleRate = requestedSampleRate;
+        framePool = framePoolCapacity > 0 ?
+                new VoiceProcessorFramePool(framePoolCapacity, frameLength) :
+                null;
+        framePools = framePool != null ?
+                new VoiceProcessorFramePool[]{framePool} :
+                new VoiceProcessorFramePool[0];
+        directFramePools = new VoiceProcessorFramePool[0];
+        floatFramePools = new VoiceProcessorFramePool[0];
+        formatFramePoolCapacity = framePoolCapacity > 0 ? framePoolCapacity : DEFAULT_FORMAT_FRAME_POOL_CAPACITY;
+        history = historyDuration > 0 ?
+                new SampleRing((int) ((long) historyDuration * sampleRate / 1000) + frameLength) :
+                null;
+        captureMetrics = new CaptureMetrics(frameLength, sampleRate);
+        final CaptureMetrics metrics = captureMetrics;
+        final VoiceProcessorFramePool pool = framePool;
+        final boolean isFloatCapture = audioSource == null &&
+                encoding == VoiceProcessorEncoding.PCM_FLOAT &&
+                config.getChannelCount() == 1 &&
+                Build.VERSION.SDK_INT >= Build.VERSION_CODES.M;
+        final VoiceProcessorAudioSource source = audioSource != null ?
+                audioSource :
+                new AudioRecordSource(
+                        isFloatCapture ? AudioFormat.ENCODING_PCM_FLOAT : AudioFormat.ENCODING_PCM_16BIT,
+                        config);
+        final CaptureSession started = new CaptureSession(System.nanoTime());
+        session = started;
+        getCaptureExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                runSession(started, source, frameLength, sampleRate, pool, isFloatCapture, metrics);
+            }
+        });
+    }
+
+    /**
+     * Pauses audio capture. The recorder is stopped, releasing the microphone, but is kept ready
+     * so that {@link #resume()} delivers the first frame within one frame duration. No frames
+     * are delivered while paused. Calling this method when not recording has no effect.
+     *
+     * <p>Starting capture and pausing it right away prepares the recorder ahead of time, for
+     * example for push-to-talk.
+     */
+    public synchronized void pause() {
+        if (session != null) {
+            session.setPaused(true);
+        }
+    }
+
+    /**
+     * Resumes audio capture after {@link #pause()}. Calling this method when not paused has no
+     * effect.
+     */
+    public synchronized void resume() {
+        if (session != null) {
+            session.setPaused(false);
+        }
+    }
+
+    /**
+     * Stops audio capture without waiting for the recorder to stop. Frames will stop being
+     * delivered to the subscribed listeners once the read in progress has returned, after which
+     * the listener is notified with the mode set by
+     * {@link #setDispatchMode(VoiceProcessorDispatchMode)}. Capture may be started again right
+     * away; it begins once the previous session has finished.
+     *
+     * @param listener Listener to notify once capture has stopped, or null.
+     */
+    public synchronized void stopAsync(final VoiceProcessorStopListener listener) {
+        final CaptureSession stopped = session;
+        if (stopped != null) {
+            session = null;
+            stoppingSession = stopped;
+            stopped.requestStop();
+        }
+        if (listener != null && (stoppingSession == null || !stoppingSession.addStopListener(listener))) {
+            notifyStopped(new VoiceProcessorStopListener[]{listener});
+        }
+    }
+
+    /**
+     * Stops audio capture. Frames will stop being delivered to the subscribed listeners. Blocks
+     * until the read in progress has returned and the recorder has stopped; use
+     * {@link #stopAsync(VoiceProcessorStopListener)} to stop without waiting.
+     *
+     * @throws VoiceProcessorException if an error is encountered while trying to stop the
+     *                                 recorder thread.
+     */
+    public synchronized void stop() throws VoiceProcessorException {
+        stopAsync(null);
+        final CaptureSession stopped = stoppingSession;
+        if (stopped == null) {
+            return;
+        }
+
+        final Throwable failure;
+        try {
+            failure = stopped.await();
+        } catch (InterruptedException e) {
+            throw new VoiceProcessorException(
+                    "An error was encountered while requesting to stop the audio recording",
+                    e);
+        }
+        stoppingSession = null;
+        if (failure != null) {
+            throw new VoiceProcessorException(
+                    "An error was encountered while requesting to stop the audio recording",
+                    failure);
+        }
+    }
+
+    /**
+     * Waits for a session that was stopped without waiting to finish, so that the next session
+     * does not share state with it.
+     */
+    private void awaitStoppingSession() {
+        if (stoppingSession == null) {
+            return;
+        }
+
+        boolean isInterrupted = false;
+        while (true) {
+            try {
+                stoppingSession.await();
+                break;
+            } catch (InterruptedException e) {
+                isInterrupted = true;
+            }
+        }
+        stoppingSession = null;
+        if (isInterrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void notifyStopped(final VoiceProcessorStopListener[] listeners) {
+        if (listeners.length == 0) {
+            return;
+        }
+        try {
+            getExecutor(dispatchMode).execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (VoiceProcessorStopListener listener : listeners) {
+                        listener.onStopped();
                     }
-                });
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // the delivery thread is gone and nobody is left to notify
+        }
+    }
+
+    private void runSession(
+            CaptureSession captureSession,
+            VoiceProcessorAudioSource source,
+            int frameLength,
+            int sampleRate,
+            VoiceProcessorFramePool pool,
+            boolean isFloatCapture,
+            CaptureMetrics metrics) {
+        RuntimeException failure = null;
+        try {
+            read(captureSession, source, frameLength, sampleRate, pool, isFloatCapture, metrics);
+        } catch (RuntimeException e) {
+            failure = e;
+        } finally {
+            notifyStopped(captureSession.finish(failure));
+        }
+    }
+
+    private void read(
+            CaptureSession captureSession,
+            VoiceProcessorAudioSource source,
+            int frameLength,
+            int sampleRate,
+            VoiceProcessorFramePool pool,
+            boolean isFloatCapture,
+            CaptureMetrics metrics) {
+        isStopRequested = captureSession.isStopRequested;
+        sampleStreams.clear();
+        featureExtractors.clear();
+        voiceActivityGate = null;
+        preprocessingChain = null;
+        isSpeechDetected = false;
+        nextMetricsReportNanos = 0;
+        framePosition = 0;
+        for (FrameSubscription subscription : frameListeners) {
+            subscription.setRewindPending(false);
+            subscription.setRewindStream(null);
+            if (subscription.getBatcher() != null) {
+                subscription.getBatcher().clear();
+            }
+        }
+
+        try {
+            source.open(frameLength, sampleRate);
+        } catch (VoiceProcessorException e) {
+            onError(e);
+            source.close();
+            return;
+        }
+
+        final int channelCount = source instanceof MultichannelAudioSource ?
+                ((MultichannelAudioSource) source).getChannelCount() :
+                1;
+        boolean isSourceStarted = false;
+        try {
+            final OverrunDetector overrunDetector = source instanceof BufferedAudioSource ?
+                    new OverrunDetector(frameLength, sampleRate, ((BufferedAudioSource) source).getBufferLength()) :
+                    null;
+            final CaptureClock captureClock = new CaptureClock(sampleRate);
+            long sequenceNumber = 0;
+            long sourcePosition = 0;
+            int numConsecutiveReadErrors = 0;
+            boolean isRestartNeeded = false;
+            while (!isStopRequested.get()) {
+                if (captureSession.isPaused()) {
+                    if (isSourceStarted) {
+                        isSourceStarted = false;
+                        source.stop();
+                        metrics.onStopped(captureSession.getRequestNanos(), System.nanoTime());
+                    }
+                    if (!captureSession.awaitResume()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                if (isRestartNeeded || !isSourceStarted) {
+                    if (isRestartNeeded) {
+                        isRestartNeeded = false;
+                        numConsecutiveReadErrors = 0;
+                        isSourceStarted = restartSource(source, frameLength, sampleRate, metrics);
+                        if (!isSourceStarted) {
+                            break;
+                        }
+                    } else {
+                        metrics.onStarting(captureSession.getRequestNanos());
+                        source.start();
+                        isSourceStarted = true;
+                    }
+                    if (overrunDetector != null) {
+                        overrunDetector.reset();
+                    }
+                    captureClock.reset();
+                    sourcePosition = 0;
+                }
+
+                final AudioFrame frame = pool != null ? pool.acquire() : new AudioFrame(frameLength);
+                final AudioFrame interleaved = channelCount > 1 ? acquireFrame(frameLength * channelCount) : null;
+                final AudioFrame capturedFrame;
+                if (isFloatCapture) {
+                    capturedFrame = getFormatFramePool(VoiceProcessorFramePool.Storage.FLOAT, frameLength).acquire();
+                } else if (interleaved == null &&
+                        source instanceof DirectAudioSource &&
+                        hasBufferListeners() &&
+                        preprocessingOptions == null) {
+                    capturedFrame = getFormatFramePool(VoiceProcessorFramePool.Storage.DIRECT, frameLength).acquire();
+                } else {
+                    capturedFrame = null;
+                }
+                try {
+                    final long readStartNanos = System.nanoTime();
+                    metrics.onReadStarted(readStartNanos);
+                    final int numSamplesRead = readFrame(
+                            source,
+                            interleaved != null ? interleaved : frame,
+                            capturedFrame,
+                            metrics);
+                    final long readEndNanos = System.nanoTime();
+                    metrics.onReadEnded(readStartNanos, readEndNanos);
+                    numConsecutiveReadErrors = 0;
+
+                    if (numSamplesRead == VoiceProcessorAudioSource.END_OF_STREAM) {
+                        break;
+                    } else if (numSamplesRead == frameLength * channelCount && !captureSession.isPaused()) {
+                        if (overrunDetector != null) {
+                            sourcePosition += detectOverrun(
+                                    overrunDetector,
+                                    readEndNanos,
+                                    frameLength,
+                                    sampleRate,
+                                    metrics);
+                        }
+                        stampFrame(
+                                source,
+                                captureClock,
+                                frame,
+                                sequenceNumber,
+                                sourcePosition,
+                                readEndNanos,
+                                sampleRate);
+                        sequenceNumber++;
+                        sourcePosition += frameLength;
+                        if (interleaved != null) {
+                            splitChannels(frame, interleaved, channelCount);
+                        }
+                        preprocess(frame, capturedFrame, sampleRate);
+                        metrics.onFrameCaptured(readEndNanos);
+                        onFrame(frame, capturedFrame, sampleRate);
+                        framePosition += frameLength;
+                        final long routedNanos = System.nanoTime();
+                        metrics.routingTime.record(routedNanos - readEndNanos);
+                        reportMetrics(metrics, routedNanos);
+                    }
+                } catch (VoiceProcessorReadException e) {
+                    metrics.onReadError();
+                    onError(e);
+                    isRestartNeeded = ++numConsecutiveReadErrors >= MAX_CONSECUTIVE_READ_ERRORS;
+                } catch (VoiceProcessorStateException e) {
+                    onError(e);
+                    isRestartNeeded = true;
+                } finally {
+                    frame.release();
+                    if (capturedFrame != null) {
+                        capturedFrame.release();
+                    }
+                    if (interleaved != null) {
+                        interleaved.release();
+                        releaseChannelFrames();
+                    }
+                }
+            }
+
+            flushBatches();
+            if (isSourceStarted) {
+                source.stop();
+                if (captureSession.getStopRequestNanos() != 0) {
+                    metrics.onStopped(captureSession.getStopRequestNanos(), System.nanoTime());
+                }
+            }
+        } catch (VoiceProcessorException e) {
+            onError(e);
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Reads a whole frame, completing short reads with further reads. A partial frame is only
+     * given up on when capture is stopped or the stream ends.
+     *
+     * @return the number of samples read, which is less than the frame length only if capture
+     *     was stopped, or {@link VoiceProcessorAudioSource#END_OF_STREAM}
+     */
+    private int readFrame(
+            VoiceProcessorAudioSource source,
+            AudioFrame frame,
+            AudioFrame capturedFrame,
+            CaptureMetrics metrics) throws VoiceProcessorException {
+        int numSamplesRead = 0;
+        while (numSamplesRead < frame.length) {
+            final int length = frame.length - numSamplesRead;
+            final int numSamples;
+            if (capturedFrame == null) {
+                numSamples = source.read(frame.data, numSamplesRead, length);
+            } else if (capturedFrame.floatData != null) {
+                numSamples = ((FloatAudioSource) source).read(capturedFrame.floatData, numSamplesRead, length);
+            } else {
+                numSamples = ((DirectAudioSource) source).read(capturedFrame.buffer, numSamplesRead, length);
+            }
+
+            if (numSamples == VoiceProcessorAudioSource.END_OF_STREAM) {
+                return VoiceProcessorAudioSource.END_OF_STREAM;
+            } else if (numSamples == 0) {
+                throw new VoiceProcessorReadException("Audio source returned no samples");
+            }
+            numSamplesRead += numSamples;
+            if (numSamplesRead < frame.length) {
+                metrics.onShortRead();
+                if (isStopRequested.get()) {
+                    break;
+                }
+            }
+        }
+        return numSamplesRead;
+    }
+
+    /**
+     * Records the timing of a captured frame, taking the capture time from the source if any
+     * listener needs it and the source can tell, or else estimating it from when reads complete.
+     */
+    private void stampFrame(
+            VoiceProcessorAudioSource source,
+            CaptureClock captureClock,
+            AudioFrame frame,
+            long sequenceNumber,
+            long sourcePosition,
+            long readEndNanos,
+            int sampleRate) {
+        long captureTimeNanos = TimestampedAudioSource.NO_TIMESTAMP;
+        if (source instanceof TimestampedAudioSource && hasTimedListeners()) {
+            captureTimeNanos = ((TimestampedAudioSource) source).getCaptureTimeNanos(sourcePosition);
+        }
+        final long estimatedNanos = captureClock.onFrame(readEndNanos, sourcePosition, frame.length);
+        isFrameCaptureTimeEstimated = captureTimeNanos == TimestampedAudioSource.NO_TIMESTAMP;
+        frameCaptureTimeNanos = isFrameCaptureTimeEstimated ? estimatedNanos : captureTimeNanos;
+        frame.setTiming(sequenceNumber, framePosition, sampleRate, frameCaptureTimeNanos, isFrameCaptureTimeEstimated);
+    }
+
+    /**
+     * Runs the preprocessing chain over a captured frame, if enabled. Audio captured as floating
+     * point is processed as 16-bit samples and converted back.
+     */
+    private void preprocess(AudioFrame frame, AudioFrame capturedFrame, int sampleRate) {
+        final VoiceProcessorPreprocessingOptions options = preprocessingOptions;
+        if (options == null) {
+            preprocessingChain = null;
+            return;
+        }
+        if (preprocessingChain == null || preprocessingChain.getOptions() != options) {
+            preprocessingChain = new PreprocessingChain(options, sampleRate);
+        }
+
+        if (capturedFrame != null) {
+            capturedFrame.copyTo(frame.data);
+        }
+        preprocessingChain.process(frame.data, frame.length);
+        if (capturedFrame != null) {
+            capturedFrame.copyFrom(frame.data);
+        }
+    }
+
+    private VoiceProcessorPreprocessingMetrics[] getPreprocessingMetrics() {
+        final PreprocessingChain chain = preprocessingChain;
+        return chain != null ? chain.snapshot() : new VoiceProcessorPreprocessingMetrics[0];
+    }
+
+    /**
+     * De-interleaves a multi-channel frame into the mono downmix that the rest of the pipeline
+     * works on and, if any listener selected a single channel, one frame per channel. The
+     * frames are kept until the captured frame has been routed.
+     */
+    private void splitChannels(AudioFrame frame, AudioFrame interleaved, int channelCount) {
+        interleaved.copyTiming(frame);
+        interleavedFrame = interleaved;
+        if (!hasChannelListeners()) {
+            ChannelSplitter.split(interleaved.data, channelCount, frame.length, null, frame.data);
+            return;
+        }
+
+        if (channelFrames.length != channelCount) {
+            channelFrames = new AudioFrame[channelCount];
+            channelData = new short[channelCount][];
+        }
+        for (int c = 0; c < channelCount; c++) {
+            channelFrames[c] = acquireFrame(frame.length);
+            channelFrames[c].copyTiming(frame);
+            channelData[c] = channelFrames[c].data;
+        }
+        ChannelSplitter.split(interleaved.data, channelCount, frame.length, channelData, frame.data);
+    }
+
+    private void releaseChannelFrames() {
+        interleavedFrame = null;
+        for (int c = 0; c < channelFrames.length; c++) {
+            if (channelFrames[c] != null) {
+                channelFrames[c].release();
+                channelFrames[c] = null;
+                channelData[c] = null;
             }
         }
     }
 
+    /**
+     * Gets a heap frame of the given length, from a pool if pooled frame delivery is enabled.
+     *
+     * @return the frame with one lease held by the caller
+     */
+    private AudioFrame acquireFrame(int length) {
+        final VoiceProcessorFramePool pool = getReframerPool(length);
+        if (pool != null) {
+            return pool.acquire();
+        }
+        final AudioFrame frame = new AudioFrame(length);
+        frame.retain();
+        return frame;
+    }
+
+    /**
+     * Records the timing of a frame cut by a re-framer, relative to the captured frame that is
+     * being routed.
+     *
+     * @param stream the stream the frame was cut from, or null if it was cut from the history
+     */
+    private void stampReframed(
+            AudioFrame frame,
+            FrameReframer reframer,
+            SampleStream stream,
+            SampleRing ring,
+            int capturedSampleRate) {
+        final long ringPosition = reframer.getLastFramePosition();
+        final long samplePosition;
+        final long capturedPosition;
+        final int sampleRate;
+        if (stream == null) {
+            capturedPosition = framePosition - (ring.getWritePosition() - ringPosition);
+            samplePosition = capturedPosition;
+            sampleRate = capturedSampleRate;
+        } else {
+            capturedPosition = stream.startPosition + ringPosition * capturedSampleRate / stream.sampleRate;
+            samplePosition = stream.startPosition * stream.sampleRate / capturedSampleRate + ringPosition;
+            sampleRate = stream.sampleRate;
+        }
+        final long captureTimeNanos = frameCaptureTimeNanos +
+                (capturedPosition - framePosition) * 1_000_000_000L / capturedSampleRate;
+        frame.setTiming(
+                reframer.getNumFrames() - 1,
+                samplePosition,
+                sampleRate,
+                captureTimeNanos,
+                isFrameCaptureTimeEstimated);
+    }
+
+    /**
+     * Checks whether the recorder overran since the last frame and reports it.
+     *
+     * @return the estimated number of samples lost
+     */
+    @SuppressLint("DefaultLocale")
+    private long detectOverrun(
+            OverrunDetector overrunDetector,
+            long nowNanos,
+            int frameLength,
+            int sampleRate,
+            CaptureMetrics metrics) {
+        final long numSamplesLost = overrunDetector.onFrame(nowNanos, frameLength);
+        if (numSamplesLost > 0) {
+            metrics.onOverrun(numSamplesLost);
+            onError(new VoiceProcessorOverrunException(
+                    String.format(
+                            "Audio recorder buffer overran and about %d ms of audio was lost",
+                            numSamplesLost * 1000 / sampleRate)));
+        }
+        return Math.max(numSamplesLost, 0);
+    }
+
+    /**
+     * Closes the source after a failure and opens it again, retrying with exponential backoff
+     * until it starts or capture is stopped. Every failed attempt is reported.
+     *
+     * @return true if the source was restarted, or false if capture was stopped first
+     */
+    private boolean restartSource(
+            VoiceProcessorAudioSource source,
+            int frameLength,
+            int sampleRate,
+            CaptureMetrics metrics) {
+        try {
+            source.stop();
+        } catch (VoiceProcessorException ignored) {
+            // the source is closed and reopened either way
+        }
+        source.close();
+
+        long backoffMillis = MIN_RESTART_BACKOFF_MILLIS;
+        while (sleepUnlessStopped(backoffMillis)) {
+            metrics.onRestart();
+            try {
+                source.open(frameLength, sampleRate);
+                source.start();
+                return true;
+            } catch (VoiceProcessorException e) {
+                onError(e);
+                source.close();
+                backoffMillis = Math.min(backoffMillis * 2, MAX_RESTART_BACKOFF_MILLIS);
+            }
+        }
+        return false;
+    }
+
+    private boolean sleepUnlessStopped(long millis) {
+        final long endNanos = System.nanoTime() + millis * 1_000_000L;
+        try {
+            while (!isStopRequested.get()) {
+                final long remainingNanos = endNanos - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                Thread.sleep(Math.min(10, remainingNanos / 1_000_000L + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !isStopRequested.get();
+    }
+
+    private void reportMetrics(CaptureMetrics metrics, long nowNanos) {
+        final VoiceProcessorMetricsListener listener = metricsListener;
+        if (listener == null || nowNanos < nextMetricsReportNanos) {
+            return;
+        }
+        if (nextMetricsReportNanos == 0) {
+            nextMetricsReportNanos = nowNanos + metricsIntervalNanos;
+            return;
+        }
+
+        nextMetricsReportNanos = nowNanos + metricsIntervalNanos;
+        final VoiceProcessorMetrics snapshot = metrics.snapshot(frameListeners, getPreprocessingMetrics());
+        try {
+            getExecutor(dispatchMode).execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onMetrics(snapshot);
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // the delivery thread is gone; the next report will try again
+        }
+    }
+
+    /**
+     * Routes a captured frame to every subscription. If the audio was read straight into a
+     * direct or floating-point frame, the heap frame is only filled in when some subscription
+     * the history or the voice activity gate needs it. Subscriptions that were added with a
+     * rewind first receive the audio kept in the history, and speech-only subscriptions skip
+     * frames while the voice activity gate is closed.
+     *
+     * @param frame         heap frame holding the captured audio, unless `capturedFrame` is given
+     * @param capturedFrame direct or floating-point frame the audio was read into, or null
+     */
+    void onFrame(final AudioFrame frame, final AudioFrame capturedFrame, int capturedSampleRate) {
+        final FrameSubscription[] subscriptions = frameListeners;
+        final Executor defaultExecutor = getExecutor(dispatchMode);
+        final int capturedFrameLength = frame.length;
+
+        for (final FrameSubscription subscription : subscriptions) {
+            if (subscription.isRewindPending()) {
+                subscription.setRewindPending(false);
+                if (history != null) {
+                    rewind(subscription, capturedFrameLength, capturedSampleRate, defaultExecutor);
+                }
+            }
+        }
+
+        final VoiceProcessorVoiceActivityOptions activityOptions = voiceActivityOptions;
+        boolean isReframingNeeded = !sampleStreams.isEmpty();
+        boolean isHeapFrameNeeded = isReframingNeeded || history != null || activityOptions != null;
+        for (final FrameSubscription subscription : subscriptions) {
+            if (!subscription.acceptsCapturedFrames(capturedFrameLength, capturedSampleRate)) {
+                isReframingNeeded = true;
+                isHeapFrameNeeded = true;
+            } else if (!isCapturedFormat(subscription, capturedFrame)) {
+                isHeapFrameNeeded = true;
+            }
+        }
+        if (capturedFrame != null && isHeapFrameNeeded) {
+            capturedFrame.copyTo(frame.data);
+        }
+        final boolean isSpeech = detectVoiceActivity(frame, capturedSampleRate, activityOptions);
+
+        for (final FrameSubscription subscription : subscriptions) {
+            if (subscription.acceptsCapturedFrames(capturedFrameLength, capturedSampleRate) &&
+                    (isSpeech || !subscription.isSpeechOnly)) {
+                if (subscription.channel == VoiceProcessorListenerOptions.CHANNEL_DOWNMIX) {
+                    deliver(subscription, selectFrame(subscription, frame, capturedFrame), defaultExecutor);
+                } else {
+                    deliverChannel(subscription, frame, capturedFrame, defaultExecutor);
+                }
+            }
+        }
+        releaseConvertedFrames();
+
+        if (isReframingNeeded) {
+            reframe(frame, capturedSampleRate, subscriptions, defaultExecutor, isSpeech);
+        }
+        if (history != null) {
+            history.write(frame.data, 0, capturedFrameLength);
+        }
+
+        for (final FrameSubscription subscription : subscriptions) {
+            final FrameBatcher batcher = subscription.getBatcher();
+            if (batcher != null && batcher.isDue(System.nanoTime())) {
+                enqueue(subscription, batcher.take(), defaultExecutor);
+            }
+        }
+    }
+
+    /**
+     * Delivers the partially filled batches of every batch listener at the end of a capture
+     * session.
+     */
+    private void flushBatches() {
+        final Executor defaultExecutor = getExecutor(dispatchMode);
+        for (FrameSubscription subscription : frameListeners) {
+            final FrameBatcher batcher = subscription.getBatcher();
+            final AudioFrame batch = batcher != null ? batcher.take() : null;
+            if (batch != null) {
+                enqueue(subscription, batch, defaultExecutor);
+            }
+        }
+    }
+
+    /**
+     * Queues the audio kept in the history for a newly added subscription, up to the frame that
+     * is about to be routed. Subscriptions that receive captured frames get whole captured frames,
+     * while the others get a stream of their own that is re-framed from the rewound position on.
+     */
+    private void rewind(
+            FrameSubscription subscription,
+            int capturedFrameLength,
+            int capturedSampleRate,
+            Executor defaultExecutor) {
+        final long writePosition = history.getWritePosition();
+        final long numAvailable = writePosition - history.getOldestPosition();
+        final long numRequested = (long) subscription.rewindMillis * capturedSampleRate / 1000;
+
+        if (subscription.acceptsCapturedFrames(capturedFrameLength, capturedSampleRate)) {
+            final long numFrames = Math.min(
+                    (numRequested + capturedFrameLength - 1) / capturedFrameLength,
+                    numAvailable / capturedFrameLength);
+            final FrameReframer reframer = new FrameReframer(
+                    capturedFrameLength,
+                    capturedFrameLength,
+                    getReframerPool(capturedFrameLength),
+                    writePosition - numFrames * capturedFrameLength);
+            subscription.reserveQueueCapacity((int) numFrames);
+            deliverReframed(history, null, reframer, subscription, capturedSampleRate, defaultExecutor, true);
+            return;
+        }
+
+        final long numSamples = Math.min(numRequested, numAvailable);
+        final int outputSampleRate = subscription.getOutputSampleRate(capturedSampleRate);
+        final int reframedLength = subscription.getOutputFrameLength(capturedFrameLength, capturedSampleRate);
+        final int hopLength = subscription.getOutputHopLength(capturedFrameLength, capturedSampleRate);
+        final SampleStream stream = new SampleStream(
+                capturedSampleRate,
+                capturedFrameLength,
+                outputSampleRate,
+                framePosition - numSamples);
+        stream.ensureFrameCapacity(reframedLength);
+        final FrameReframer reframer = new FrameReframer(
+                reframedLength,
+                hopLength,
+                getReframerPool(reframedLength),
+                0);
+        stream.reframers.add(reframer);
+        subscription.setRewindStream(stream);
+        final long numResampled = numSamples * outputSampleRate / capturedSampleRate;
+        subscription.reserveQueueCapacity((int) (numResampled / hopLength) + 1);
+
+        final short[] samples = new short[capturedFrameLength];
+        long position = writePosition - numSamples;
+        while (position < writePosition) {
+            final int length = (int) Math.min(capturedFrameLength, writePosition - position);
+            history.read(position, samples, 0, length);
+            stream.write(samples, 0, length);
+            deliverReframed(
+                    stream.getRing(),
+                    stream,
+                    reframer,
+                    subscription,
+                    capturedSampleRate,
+                    defaultExecutor,
+                    true);
+            position += length;
+        }
+    }
+
+    /**
+     * Delivers the frames a re-framer cuts from a ring to a single subscription.
+     *
+     * @param stream the stream the ring belongs to, or null if the ring is the history
+     */
+    private void deliverReframed(
+            SampleRing ring,
+            SampleStream stream,
+            FrameReframer reframer,
+            FrameSubscription subscription,
+            int capturedSampleRate,
+            Executor defaultExecutor,
+            boolean isSpeech) {
+        AudioFrame reframed;
+        while ((reframed = reframer.next(ring)) != null) {
+            stampReframed(reframed, reframer, stream, ring, capturedSampleRate);
+            if (isSpeech || !subscription.isSpeechOnly) {
+                deliver(subscription, selectFrame(subscription, reframed, null), defaultExecutor);
+            }
+            reframed.release();
+            releaseConvertedFrames();
+        }
+    }
+
+    private void reframe(
+            AudioFrame frame,
+            int capturedSampleRate,
+            FrameSubscription[] subscriptions,
+            Executor defaultExecutor,
+            boolean isSpeech) {
+        final int capturedFrameLength = frame.length;
+
+        for (SampleStream stream : sampleStreams) {
+            stream.setInUse(false);
+            for (FrameReframer reframer : stream.reframers) {
+                reframer.setInUse(false);
+            }
+        }
+        for (FrameSubscription subscription : subscriptions) {
+            if (!subscription.acceptsCapturedFrames(capturedFrameLength, capturedSampleRate) &&
+                    subscription.getRewindStream() == null) {
+                final SampleStream stream = getSampleStream(
+                        subscription.getOutputSampleRate(capturedSampleRate),
+                        capturedFrameLength,
+                        capturedSampleRate);
+                stream.setInUse(true);
+                getReframer(
+                        stream,
+                        subscription.getOutputFrameLength(capturedFrameLength, capturedSampleRate),
+                        subscription.getOutputHopLength(capturedFrameLength, capturedSampleRate)
+                ).setInUse(true);
+            }
+        }
+
+        for (int i = sampleStreams.size() - 1; i >= 0; i--) {
+            final SampleStream stream = sampleStreams.get(i);
+            if (!stream.isInUse()) {
+                sampleStreams.remove(i);
+                continue;
+            }
+
+            stream.write(frame.data);
+            for (int j = stream.reframers.size() - 1; j >= 0; j--) {
+                final FrameReframer reframer = stream.reframers.get(j);
+                if (!reframer.isInUse()) {
+                    stream.reframers.remove(j);
+                    continue;
+                }
+
+                AudioFrame reframed;
+                while ((reframed = reframer.next(stream.getRing())) != null) {
+                    stampReframed(reframed, reframer, stream, stream.getRing(), capturedSampleRate);
+                    for (FrameSubscription subscription : subscriptions) {
+                        if (!subscription.acceptsCapturedFrames(capturedFrameLength, capturedSampleRate) &&
+                                subscription.getRewindStream() == null &&
+                                (isSpeech || !subscription.isSpeechOnly) &&
+                                subscription.getOutputSampleRate(capturedSampleRate) == stream.sampleRate &&
+                                reframer.matches(
+                                        subscription.getOutputFrameLength(capturedFrameLength, capturedSampleRate),
+                                        subscription.getOutputHopLength(capturedFrameLength, capturedSampleRate))) {
+                            deliver(subscription, selectFrame(subscription, reframed, null), defaultExecutor);
+                        }
+                    }
+                    reframed.release();
+                    releaseConvertedFrames();
+                }
+            }
+        }
+
+        for (FrameSubscription subscription : subscriptions) {
+            final SampleStream stream = subscription.getRewindStream();
+            if (stream != null) {
+                stream.write(frame.data);
+                deliverReframed(
+                        stream.getRing(),
+                        stream,
+                        stream.reframers.get(0),
+                        subscription,
+                        capturedSampleRate,
+                        defaultExecutor,
+                        isSpeech);
+            }
+        }
+    }
+
+    /**
+     * Runs the voice activity gate on a captured frame and reports when it opens or closes.
+     *
+     * @return false if the gate is enabled and closed after the frame
+     */
+    private boolean detectVoiceActivity(
+            AudioFrame frame,
+            int capturedSampleRate,
+            VoiceProcessorVoiceActivityOptions options) {
+        if (options == null) {
+            voiceActivityGate = null;
+            isSpeechDetected = false;
+            return true;
+        }
+        if (voiceActivityGate == null) {
+            voiceActivityGate = new VoiceActivityGate(options);
+        } else if (voiceActivityGate.getOptions() != options) {
+            voiceActivityGate.setOptions(options);
+        }
+
+        final boolean wasSpeech = voiceActivityGate.isSpeech();
+        final boolean isSpeech = voiceActivityGate.process(frame.data, frame.length, capturedSampleRate);
+        if (isSpeech) {
+            captureMetrics.onSpeechFrame();
+        }
+        if (isSpeech != wasSpeech) {
+            isSpeechDetected = isSpeech;
+            onVoiceActivity(isSpeech, voiceActivityGate.getLevelDbfs());
+        }
+        return isSpeech;
+    }
+
+    private void onVoiceActivity(final boolean isSpeech, final double levelDbfs) {
+        final VoiceProcessorVoiceActivityListener listener = voiceActivityListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            getExecutor(dispatchMode).execute(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onVoiceActivity(isSpeech, levelDbfs);
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // the delivery thread is gone and the transition is superseded by the next one
+        }
+    }
+
+    private SampleStream getSampleStream(int streamSampleRate, int capturedFrameLength, int capturedSampleRate) {
+        for (SampleStream stream : sampleStreams) {
+            if (stream.sampleRate == streamSampleRate && stream.capturedFrameLength == capturedFrameLength) {
+                return stream;
+            }
+        }
+
+        final SampleStream stream = new SampleStream(
+                capturedSampleRate,
+                capturedFrameLength,
+                streamSampleRate,
+                framePosition);
+        sampleStreams.add(stream);
+        return stream;
+    }
+
+    private FrameReframer getReframer(SampleStream stream, int reframedLength, int hopLength) {
+        for (FrameReframer reframer : stream.reframers) {
+            if (reframer.matches(reframedLength, hopLength)) {
+                return reframer;
+            }
+        }
+
+        stream.ensureFrameCapacity(reframedLength);
+        final FrameReframer reframer = new FrameReframer(
+                reframedLength,
+                hopLength,
+                getReframerPool(reframedLength),
+                stream.getRing().getWritePosition());
+        stream.reframers.add(reframer);
+        return reframer;
+    }
+
+    /**
+     * Gets the pool that frames of the given length are cut into, or null if pooled frame
+     * delivery is disabled.
+     */
+    private VoiceProcessorFramePool getReframerPool(int reframedLength) {
+        for (VoiceProcessorFramePool pool : framePools) {
+            if (pool.getFrameLength() == reframedLength) {
+                return pool;
+            }
+        }
+        if (framePool == null) {
+            return null;
+        }
+
+        final VoiceProcessorFramePool pool = new VoiceProcessorFramePool(framePool.getCapacity(), reframedLength);
+        framePools = append(framePools, pool);
+        return pool;
+    }
+
+    private boolean hasChannelListeners() {
+        for (FrameSubscription subscription : frameListeners) {
+            if (subscription.channel >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasTimedListeners() {
+        for (FrameSubscription subscription : frameListeners) {
+            if (subscription.isTimed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasBufferListeners() {
+        for (FrameSubscription subscription : frameListeners) {
+            if (subscription.isDirect()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a subscription can be handed the frame the audio was read into as is.
+     */
+    private static boolean isCapturedFormat(FrameSubscription subscription, AudioFrame capturedFrame) {
+        if (capturedFrame == null) {
+            return false;
+        } else if (subscription.isDirect()) {
+            return capturedFrame.buffer != null;
+        }
+        return subscription.isFloat() && capturedFrame.floatData != null;
+    }
+
+    /**
+     * Delivers the interleaved channels or a single channel of a captured frame. When capturing
+     * in mono, the frame itself is both.
+     */
+    private void deliverChannel(
+            FrameSubscription subscription,
+            AudioFrame frame,
+            AudioFrame capturedFrame,
+            Executor defaultExecutor) {
+        if (interleavedFrame == null) {
+            if (subscription.channel <= 0) {
+                deliver(subscription, selectFrame(subscription, frame, capturedFrame), defaultExecutor);
+            }
+            return;
+        }
+
+        final AudioFrame channelFrame;
+        if (subscription.channel == VoiceProcessorListenerOptions.CHANNEL_INTERLEAVED) {
+            channelFrame = interleavedFrame;
+        } else if (subscription.channel < channelFrames.length) {
+            channelFrame = channelFrames[subscription.channel];
+        } else {
+            return;
+        }
+
+        if (subscription.isDirect() || subscription.isFloat()) {
+            final AudioFrame converted = convert(
+                    channelFrame,
+                    subscription.isDirect() ?
+                            VoiceProcessorFramePool.Storage.DIRECT :
+                            VoiceProcessorFramePool.Storage.FLOAT);
+            deliver(subscription, converted, defaultExecutor);
+            converted.release();
+        } else if (subscription.isFeatures()) {
+            deliver(subscription, extractFeatures(subscription, channelFrame), defaultExecutor);
+        } else {
+            deliver(subscription, channelFrame, defaultExecutor);
+        }
+    }
+
+    /**
+     * Picks the frame to deliver to a subscription in the format it expects. Frames in a format
+     * other than the captured one are converted from the heap frame at most once per frame and
+     * shared by every subscription that expects that format.
+     *
+     * @param frame         heap frame
+     * @param capturedFrame direct or floating-point frame the audio was read into, or null
+     */
+    private AudioFrame selectFrame(FrameSubscription subscription, AudioFrame frame, AudioFrame capturedFrame) {
+        if (isCapturedFormat(subscription, capturedFrame)) {
+            return capturedFrame;
+        } else if (subscription.isDirect()) {
+            if (convertedDirectFrame == null) {
+                convertedDirectFrame = convert(frame, VoiceProcessorFramePool.Storage.DIRECT);
+            }
+            return convertedDirectFrame;
+        } else if (subscription.isFloat()) {
+            if (convertedFloatFrame == null) {
+                convertedFloatFrame = convert(frame, VoiceProcessorFramePool.Storage.FLOAT);
+            }
+            return convertedFloatFrame;
+        } else if (subscription.isFeatures()) {
+            return extractFeatures(subscription, frame);
+        }
+        return frame;
+    }
+
+    /**
+     * Gets the spectral features of a heap frame, extracting them at most once per frame for
+     * every distinct set of feature options.
+     */
+    private AudioFrame extractFeatures(FrameSubscription subscription, AudioFrame frame) {
+        final FeatureExtractor extractor = getFeatureExtractor(
+                subscription.getFeatureOptions(),
+                frame.length,
+                frame.getSampleRate());
+        AudioFrame features = extractor.getFeatures(frame);
+        if (features == null) {
+            features = getFormatFramePool(VoiceProcessorFramePool.Storage.FLOAT, extractor.getFeatureLength())
+                    .acquire();
+            extractor.extract(frame.data, features.floatData);
+            features.copyTiming(frame);
+            final AudioFrame previous = extractor.takeFeatures();
+            if (previous != null) {
+                // features of another channel of the same step, already handed to its listeners
+                previous.release();
+            }
+            extractor.setFeatures(frame, features);
+        }
+        return features;
+    }
+
+    private FeatureExtractor getFeatureExtractor(
+            VoiceProcessorFeatureOptions options,
+            int windowLength,
+            int sampleRate) {
+        for (FeatureExtractor extractor : featureExtractors) {
+            if (extractor.matches(options, windowLength, sampleRate)) {
+                return extractor;
+            }
+        }
+        final FeatureExtractor extractor = new FeatureExtractor(options, windowLength, sampleRate);
+        featureExtractors.add(extractor);
+        return extractor;
+    }
+
+    private AudioFrame convert(AudioFrame frame, VoiceProcessorFramePool.Storage storage) {
+        final AudioFrame converted = getFormatFramePool(storage, frame.length).acquire();
+        converted.copyFrom(frame.data);
+        return converted;
+    }
+
+    private void releaseConvertedFrames() {
+        if (convertedDirectFrame != null) {
+            convertedDirectFrame.release();
+            convertedDirectFrame = null;
+        }
+        if (convertedFloatFrame != null) {
+            convertedFloatFrame.release();
+            convertedFloatFrame = null;
+        }
+        for (FeatureExtractor extractor : featureExtractors) {
+            final AudioFrame features = extractor.takeFeatures();
+            if (features != null) {
+                features.release();
+            }
+        }
+    }
+
+    private VoiceProcessorFramePool getFormatFramePool(VoiceProcessorFramePool.Storage storage, int length) {
+        final boolean isDirect = storage == VoiceProcessorFramePool.Storage.DIRECT;
+        for (VoiceProcessorFramePool pool : isDirect ? directFramePools : floatFramePools) {
+            if (pool.getFrameLength() == length) {
+                return pool;
+            }
+        }
+
+        final VoiceProcessorFramePool pool = new VoiceProcessorFramePool(formatFramePoolCapacity, length, storage);
+        if (isDirect) {
+            directFramePools = append(directFramePools, pool);
+        } else {
+            floatFramePools = append(floatFramePools, pool);
+        }
+        return pool;
+    }
+
+    private void deliver(FrameSubscription subscription, AudioFrame frame, Executor defaultExecutor) {
+        if (subscription.isStats()) {
+            frame.computeStats();
+        }
+        if (subscription.isTimed()) {
+            frame.computeInfo();
+        }
+
+        final FrameBatcher batcher = subscription.getBatcher();
+        if (batcher == null) {
+            enqueue(subscription, frame, defaultExecutor);
+        } else if (batcher.add(frame, System.nanoTime())) {
+            enqueue(subscription, batcher.take(), defaultExecutor);
+        }
+    }
+
+    private void enqueue(FrameSubscription subscription, AudioFrame frame, Executor defaultExecutor) {
+        if (subscription.enqueue(frame, defaultExecutor, isStopRequested)) {
+            onOverflow(subscription);
+        }
+    }
+
     private void onError(final VoiceProcessorException e) {
-        synchronized (listenerLock) {
-            for (final VoiceProcessorErrorListener listener : errorListeners) {
-                callbackHandler.post(new Runnable() {
+        final Executor executor = getExecutor(dispatchMode);
+        for (final VoiceProcessorErrorListener listener : errorListeners) {
+            try {
+                executor.execute(new Runnable() {
                     @Override
                     public void run() {
                         listener.onError(e);
                     }
                 });
+            } catch (RejectedExecutionException ignored) {
+                // the delivery thread is gone and nobody is left to report to
             }
         }
     }
-}
\ No newline at end of file
+
+    @SuppressLint("DefaultLocale")
+    private void onOverflow(FrameSubscription subscription) {
+        onError(new VoiceProcessorOverflowException(
+                String.format(
+                        "Frame listener %s fell behind and its queue of %d frames is full. " +
+                                "Applying overflow policy %s (%d frames dropped so far)",
+                        subscription.getListener(),
+                        subscription.getQueueCapacity(),
+                        subscription.getOverflowPolicy(),
+                        subscription.getNumDroppedFrames())));
+    }
+
+    private void removeSubscriptions(Object listener, boolean removeAll) {
+        for (int i = 0; i < frameListeners.length; i++) {
+            final FrameSubscription subscription = frameListeners[i];
+            if (subscription.getListener() == listener) {
+                frameListeners = remove(frameListeners, i);
+                subscription.clear();
+                if (!removeAll) {
+                    return;
+                }
+                i--;
+            }
+        }
+    }
+
+    private static <T> T[] append(T[] array, T element) {
+        final T[] result = Arrays.copyOf(array, array.length + 1);
+        result[array.length] = element;
+        return result;
+    }
+
+    private static <T> T[] appendAll(T[] array, T[] elements) {
+        final T[] result = Arrays.copyOf(array, array.length + elements.length);
+        System.arraycopy(elements, 0, result, array.length, elements.length);
+        return result;
+    }
+
+    private static <T> T[] remove(T[] array, int index) {
+        final T[] result = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static <T> int indexOf(T[] array, T element) {
+        for (int i = 0; i < array.length; i++) {
+            if (Objects.equals(array[i], element)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Executor getExecutor(VoiceProcessorListenerOptions options) {
+        if (options == null) {
+            return null;
+        }
+        if (options.getExecutor() != null) {
+            return options.getExecutor();
+        }
+        if (options.getDispatchMode() != null) {
+            return getExecutor(options.getDispatchMode());
+        }
+        return null;
+    }
+
+    private Executor getExecutor(VoiceProcessorDispatchMode mode) {
+        if (mode == VoiceProcessorDispatchMode.PROCESSING_THREAD) {
+            return getProcessingExecutor();
+        }
+        return mainThreadExecutor;
+    }
+
+    private ExecutorService getCaptureExecutor() {
+        if (captureExecutor == null) {
+            captureExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                            runnable.run();
+                        }
+                    }, "VoiceProcessorCapture");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return captureExecutor;
+    }
+
+    private Executor getProcessingExecutor() {
+        if (processingExecutor != null) {
+            return processingExecutor;
+        }
+
+        synchronized (processingExecutorLock) {
+            if (processingExecutor != null) {
+                return processingExecutor;
+            }
+            processingExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            android.os.Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+                            runnable.run();
+                        }
+                    }, "VoiceProcessorDispatch");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            return processingExecutor;
+        }
+    }
+}
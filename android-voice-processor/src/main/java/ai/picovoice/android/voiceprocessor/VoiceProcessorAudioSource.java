@@ -0,0 +1,70 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Source of 16-bit mono audio that the VoiceProcessor read loop pulls frames from. The default
+ * source records from the device microphone with `AudioRecord`; a different source can be
+ * installed with {@link VoiceProcessor#setAudioSource(VoiceProcessorAudioSource)}.
+ *
+ * <p>All methods are called from the VoiceProcessor recording thread. A source may be opened
+ * again after it has been closed, and started again after it has been stopped, which happens
+ * when capture is paused and resumed.
+ */
+public interface VoiceProcessorAudioSource {
+
+    /**
+     * Returned by {@link #read(short[], int, int)} once the source has no more audio to deliver.
+     */
+    int END_OF_STREAM = -1;
+
+    /**
+     * Acquires the resources needed to produce audio with the given configuration.
+     *
+     * @param frameLength Number of audio samples per frame that will be requested.
+     * @param sampleRate  Sample rate that the audio must be delivered with.
+     * @throws VoiceProcessorException if the source cannot produce audio with the configuration.
+     */
+    void open(int frameLength, int sampleRate) throws VoiceProcessorException;
+
+    /**
+     * Starts producing audio.
+     *
+     * @throws VoiceProcessorException if the source could not be started.
+     */
+    void start() throws VoiceProcessorException;
+
+    /**
+     * Reads audio samples into the given buffer, blocking until they are available.
+     *
+     * @param buffer Buffer to write the audio samples into.
+     * @param offset Index in the buffer at which to start writing.
+     * @param length Number of samples requested.
+     * @return the number of samples read, or {@link #END_OF_STREAM} if the source is exhausted.
+     * @throws VoiceProcessorReadException  if a recoverable error occurred while reading.
+     * @throws VoiceProcessorStateException if the source can no longer produce audio.
+     */
+    int read(short[] buffer, int offset, int length) throws VoiceProcessorException;
+
+    /**
+     * Stops producing audio.
+     *
+     * @throws VoiceProcessorException if the source could not be stopped cleanly.
+     */
+    void stop() throws VoiceProcessorException;
+
+    /**
+     * Releases all resources acquired by {@link #open(int, int)}.
+     */
+    void close();
+}
@@ -0,0 +1,27 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Listener type that can be added to VoiceProcessor with `.addBatchListener()`. Captures audio in
+ * batches of consecutive frames, delivered as one contiguous buffer with a single call, so that
+ * consumers that do not need every frame right away are woken up far less often.
+ *
+ * <p>Frame `i` of a batch starts at `samples[frameOffsets[i]]` and ends where the next frame
+ * starts, or at the end of the buffer for the last frame. The buffer and offsets belong to the
+ * listener and may be kept after it returns, unless batches are merged by the
+ * {@link VoiceProcessorOverflowPolicy#COALESCE} overflow policy.
+ */
+public interface VoiceProcessorBatchListener {
+    void onBatch(short[] samples, int[] frameOffsets);
+}
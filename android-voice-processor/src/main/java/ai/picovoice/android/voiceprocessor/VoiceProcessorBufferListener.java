@@ -0,0 +1,30 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Listener type that can be added to VoiceProcessor with `.addBufferListener()`. Captures audio
+ * frames as read-only direct byte buffers of 16-bit samples in native byte order, so that native
+ * code can read them with `GetDirectBufferAddress()` instead of copying a Java array.
+ *
+ * <p>A buffer is only valid until `onFrame()` returns, unless it is retained with
+ * {@link VoiceProcessor#retainFrame(ByteBuffer)}. The position and limit of a buffer are reset
+ * to span the whole frame before every call. Buffers are shared with other buffer listeners,
+ * which may run at the same time on other threads, so read them with absolute get methods or
+ * from native code rather than moving their position.
+ */
+public interface VoiceProcessorBufferListener {
+    void onFrame(ByteBuffer frame);
+}
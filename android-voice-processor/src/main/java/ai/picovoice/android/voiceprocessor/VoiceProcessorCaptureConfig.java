@@ -0,0 +1,230 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.annotation.SuppressLint;
+import android.media.MediaRecorder;
+import android.os.Build;
+
+/**
+ * Configuration of the microphone recorder that is passed to
+ * {@link VoiceProcessor#start(int, int, VoiceProcessorCaptureConfig)}. Create an instance with
+ * {@link Builder}. It has no effect on custom audio sources.
+ *
+ * <p>A profile selects the recorder buffer size and the audio source; either can be overridden
+ * individually. The recorder captures a single channel unless a channel count is set.
+ */
+public class VoiceProcessorCaptureConfig {
+
+    static final int DEFAULT_MICROPHONE_SOURCE = -1;
+
+    private static final int BALANCED_BUFFER_MILLIS = 250;
+    private static final int HIGH_ROBUSTNESS_BUFFER_MILLIS = 1000;
+    private static final int LOW_LATENCY_BUFFER_FRAMES = 2;
+    private static final int MAX_CHANNEL_COUNT = 8;
+
+    private final VoiceProcessorCaptureProfile profile;
+    private final int bufferFrames;
+    private final int microphoneSource;
+    private final int channelCount;
+
+    private VoiceProcessorCaptureConfig(
+            VoiceProcessorCaptureProfile profile,
+            int bufferFrames,
+            int microphoneSource,
+            int channelCount) {
+        this.profile = profile;
+        this.bufferFrames = bufferFrames;
+        this.microphoneSource = microphoneSource;
+        this.channelCount = channelCount;
+    }
+
+    /**
+     * Gets the capture profile.
+     *
+     * @return the profile
+     */
+    public VoiceProcessorCaptureProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Gets the recorder buffer size that overrides the profile.
+     *
+     * @return the buffer size in frames, or 0 if the profile decides
+     */
+    public int getBufferFrames() {
+        return bufferFrames;
+    }
+
+    /**
+     * Gets the `MediaRecorder.AudioSource` that overrides the profile.
+     *
+     * @return the audio source, or -1 if the profile decides
+     */
+    public int getMicrophoneSource() {
+        return microphoneSource;
+    }
+
+    /**
+     * Gets the number of channels the recorder captures.
+     *
+     * @return the channel count
+     */
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    /**
+     * Computes the size of the recorder buffer, which is never smaller than the device minimum.
+     */
+    int getBufferSizeInBytes(int frameLength, int sampleRate, int bytesPerSample, int minBufferSize) {
+        final long bufferSamples;
+        if (bufferFrames > 0) {
+            bufferSamples = (long) bufferFrames * frameLength;
+        } else if (profile == VoiceProcessorCaptureProfile.LOW_LATENCY) {
+            bufferSamples = (long) LOW_LATENCY_BUFFER_FRAMES * frameLength;
+        } else if (profile == VoiceProcessorCaptureProfile.HIGH_ROBUSTNESS) {
+            bufferSamples = (long) sampleRate * HIGH_ROBUSTNESS_BUFFER_MILLIS / 1000;
+        } else {
+            bufferSamples = (long) sampleRate * BALANCED_BUFFER_MILLIS / 1000;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(bufferSamples * bytesPerSample, minBufferSize));
+    }
+
+    /**
+     * Resolves the `MediaRecorder.AudioSource` to record from. `UNPROCESSED` requires Android 7.0
+     * (API 24) and falls back to `VOICE_RECOGNITION` on older devices.
+     */
+    @SuppressLint("InlinedApi")
+    int resolveMicrophoneSource(int sdkVersion) {
+        if (microphoneSource == DEFAULT_MICROPHONE_SOURCE) {
+            return profile == VoiceProcessorCaptureProfile.LOW_LATENCY ?
+                    MediaRecorder.AudioSource.VOICE_RECOGNITION :
+                    MediaRecorder.AudioSource.MIC;
+        }
+        if (microphoneSource == MediaRecorder.AudioSource.UNPROCESSED && sdkVersion < Build.VERSION_CODES.N) {
+            return MediaRecorder.AudioSource.VOICE_RECOGNITION;
+        }
+        return microphoneSource;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof VoiceProcessorCaptureConfig)) {
+            return false;
+        }
+        final VoiceProcessorCaptureConfig config = (VoiceProcessorCaptureConfig) other;
+        return profile == config.profile &&
+                bufferFrames == config.bufferFrames &&
+                microphoneSource == config.microphoneSource &&
+                channelCount == config.channelCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return ((profile.hashCode() * 31 + bufferFrames) * 31 + microphoneSource) * 31 + channelCount;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorCaptureConfig.
+     */
+    public static class Builder {
+
+        private VoiceProcessorCaptureProfile profile = VoiceProcessorCaptureProfile.BALANCED;
+        private int bufferFrames = 0;
+        private int microphoneSource = DEFAULT_MICROPHONE_SOURCE;
+        private int channelCount = 1;
+
+        /**
+         * Sets the capture profile. Defaults to {@link VoiceProcessorCaptureProfile#BALANCED}.
+         *
+         * @param profile Capture profile.
+         * @return the Builder instance
+         */
+        public Builder setProfile(VoiceProcessorCaptureProfile profile) {
+            this.profile = profile;
+            return this;
+        }
+
+        /**
+         * Sets the recorder buffer size as a number of frames, overriding the profile. The
+         * recorder never uses less than the device minimum. Defaults to 0, which lets the profile
+         * decide.
+         *
+         * @param bufferFrames Buffer size in frames, or 0 to use the profile's size.
+         * @return the Builder instance
+         */
+        public Builder setBufferFrames(int bufferFrames) {
+            this.bufferFrames = bufferFrames;
+            return this;
+        }
+
+        /**
+         * Sets the `MediaRecorder.AudioSource` to record from, overriding the profile. For
+         * example, `UNPROCESSED` delivers the microphone signal without any platform processing
+         * on devices that support it. Defaults to -1, which lets the profile decide.
+         *
+         * @param microphoneSource A `MediaRecorder.AudioSource` constant, or -1 to use the
+         *                         profile's source.
+         * @return the Builder instance
+         */
+        public Builder setMicrophoneSource(int microphoneSource) {
+            this.microphoneSource = microphoneSource;
+            return this;
+        }
+
+        /**
+         * Sets the number of channels to capture, for devices with several microphones. Two
+         * channels are captured in stereo, and three or more by channel index, which requires
+         * Android 6.0 (API 23). Listeners receive a mono downmix of the channels unless they
+         * select otherwise with {@link VoiceProcessorListenerOptions.Builder#setChannel(int)}.
+         * Defaults to 1.
+         *
+         * @param channelCount Number of channels, from 1 to 8.
+         * @return the Builder instance
+         */
+        public Builder setChannelCount(int channelCount) {
+            this.channelCount = channelCount;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorCaptureConfig.
+         *
+         * @return an instance of VoiceProcessorCaptureConfig
+         * @throws VoiceProcessorArgumentException if any of the properties are invalid
+         */
+        public VoiceProcessorCaptureConfig build() throws VoiceProcessorArgumentException {
+            if (profile == null) {
+                throw new VoiceProcessorArgumentException("Capture profile cannot be null");
+            }
+            if (bufferFrames < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Buffer size must be non-negative, but got %d frames", bufferFrames));
+            }
+            if (microphoneSource < DEFAULT_MICROPHONE_SOURCE) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Invalid microphone source %d", microphoneSource));
+            }
+            if (channelCount < 1 || channelCount > MAX_CHANNEL_COUNT) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Channel count must be between 1 and %d, but got %d",
+                                MAX_CHANNEL_COUNT,
+                                channelCount));
+            }
+            return new VoiceProcessorCaptureConfig(profile, bufferFrames, microphoneSource, channelCount);
+        }
+    }
+}
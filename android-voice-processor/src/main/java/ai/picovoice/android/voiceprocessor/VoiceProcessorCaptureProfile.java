@@ -0,0 +1,39 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Trade-offs between latency and robustness that the microphone can be recorded with. Select one
+ * with {@link VoiceProcessorCaptureConfig.Builder#setProfile(VoiceProcessorCaptureProfile)}.
+ */
+public enum VoiceProcessorCaptureProfile {
+    /**
+     * Records from `MediaRecorder.AudioSource.MIC` with a 250 millisecond recorder buffer. This is
+     * the default profile.
+     */
+    BALANCED,
+
+    /**
+     * Records from `MediaRecorder.AudioSource.VOICE_RECOGNITION`, which skips most platform
+     * preprocessing, with a recorder buffer of two frames, or the device minimum if that is
+     * larger. Suits barge-in and interactive voice interfaces, but frames are lost if the
+     * recording thread is delayed by more than a frame.
+     */
+    LOW_LATENCY,
+
+    /**
+     * Records from `MediaRecorder.AudioSource.MIC` with a one second recorder buffer, so that
+     * background capture survives long scheduling delays at the cost of latency.
+     */
+    HIGH_ROBUSTNESS
+}
@@ -0,0 +1,44 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Compression formats supported by {@link VoiceProcessorEncoder}. Each captured frame is encoded
+ * into one packet, which can be decoded with {@link VoiceProcessorEncoder#decode}.
+ */
+public enum VoiceProcessorCodec {
+    /**
+     * IMA ADPCM, which stores 4 bits per sample for a fixed 4:1 compression ratio with a small,
+     * level-dependent error. Packets use the mono block layout of WAV files with format tag 0x11.
+     */
+    IMA_ADPCM {
+        @Override
+        FrameCodec create() {
+            return new ImaAdpcmCodec();
+        }
+    },
+
+    /**
+     * Lossless compression in the spirit of FLAC, with fixed linear prediction and Rice-coded
+     * residuals. Decoding restores the exact samples; the ratio depends on the audio, typically
+     * 1.5:1 to 3:1 for speech and far more for silence.
+     */
+    LOSSLESS {
+        @Override
+        FrameCodec create() {
+            return new LosslessCodec();
+        }
+    };
+
+    abstract FrameCodec create();
+}
@@ -0,0 +1,31 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Threads that the VoiceProcessor can deliver frames and errors on. A listener can also be given
+ * its own `Executor` or `Looper` with {@link VoiceProcessorListenerOptions.Builder}.
+ */
+public enum VoiceProcessorDispatchMode {
+    /**
+     * Deliver on the application main thread. This is the default mode.
+     */
+    MAIN_THREAD,
+
+    /**
+     * Deliver on a dedicated audio-processing thread owned by the VoiceProcessor, so that audio
+     * consumers are not delayed by work on the main thread. All listeners using this mode share
+     * the same thread.
+     */
+    PROCESSING_THREAD
+}
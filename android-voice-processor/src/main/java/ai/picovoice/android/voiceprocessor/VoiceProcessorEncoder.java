@@ -0,0 +1,141 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Frame listener that compresses captured audio and passes one encoded packet per frame to a
+ * {@link VoiceProcessorPacketListener}. Create an instance with {@link Builder} and add it with
+ * {@link VoiceProcessor#addFrameListener(VoiceProcessorFrameListener, VoiceProcessorListenerOptions)}.
+ *
+ * <p>Encoding runs on whichever thread the listener is delivered on, so add it with
+ * {@link VoiceProcessorDispatchMode#PROCESSING_THREAD} or its own executor to keep it off the main
+ * thread. Frames waiting to be encoded are held in the listener's queue, so memory stays bounded
+ * by its queue capacity and overflow policy, and the encoder itself keeps no more than one frame
+ * of scratch space.
+ */
+public class VoiceProcessorEncoder implements VoiceProcessorFrameListener {
+
+    private final VoiceProcessorCodec codec;
+    private final FrameCodec frameCodec;
+    private final VoiceProcessorPacketListener packetListener;
+
+    private volatile long numSamplesEncoded = 0;
+    private volatile long numBytesEncoded = 0;
+
+    private VoiceProcessorEncoder(VoiceProcessorCodec codec, VoiceProcessorPacketListener packetListener) {
+        this.codec = codec;
+        this.frameCodec = codec.create();
+        this.packetListener = packetListener;
+    }
+
+    /**
+     * Decodes a packet produced by an encoder using the given codec.
+     *
+     * @param codec  Codec the packet was encoded with.
+     * @param packet Encoded packet.
+     * @return the decoded samples
+     * @throws VoiceProcessorArgumentException if the packet is malformed
+     */
+    public static short[] decode(
+            VoiceProcessorCodec codec,
+            byte[] packet) throws VoiceProcessorArgumentException {
+        if (codec == null || packet == null) {
+            throw new VoiceProcessorArgumentException("Codec and packet must not be null");
+        }
+        return codec.create().decode(packet);
+    }
+
+    @Override
+    public void onFrame(short[] frame) {
+        final byte[] packet = frameCodec.encode(frame, frame.length);
+        numSamplesEncoded += frame.length;
+        numBytesEncoded += packet.length;
+        packetListener.onPacket(packet);
+    }
+
+    /**
+     * Gets the codec that frames are compressed with.
+     *
+     * @return the codec
+     */
+    public VoiceProcessorCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the number of samples encoded so far.
+     *
+     * @return the number of samples
+     */
+    public long getNumSamplesEncoded() {
+        return numSamplesEncoded;
+    }
+
+    /**
+     * Gets the total size of the packets produced so far. Together with
+     * {@link #getNumSamplesEncoded()} it gives the compression ratio.
+     *
+     * @return the number of bytes
+     */
+    public long getNumBytesEncoded() {
+        return numBytesEncoded;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorEncoder.
+     */
+    public static class Builder {
+
+        private VoiceProcessorCodec codec = VoiceProcessorCodec.LOSSLESS;
+        private VoiceProcessorPacketListener packetListener = null;
+
+        /**
+         * Sets the codec that frames are compressed with. Defaults to
+         * {@link VoiceProcessorCodec#LOSSLESS}.
+         *
+         * @param codec Codec to encode with.
+         * @return the Builder instance
+         */
+        public Builder setCodec(VoiceProcessorCodec codec) {
+            this.codec = codec;
+            return this;
+        }
+
+        /**
+         * Sets the listener that receives encoded packets. Required.
+         *
+         * @param packetListener Listener that receives one packet per frame.
+         * @return the Builder instance
+         */
+        public Builder setPacketListener(VoiceProcessorPacketListener packetListener) {
+            this.packetListener = packetListener;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorEncoder.
+         *
+         * @return an instance of VoiceProcessorEncoder
+         * @throws VoiceProcessorArgumentException if any of the properties are invalid
+         */
+        public VoiceProcessorEncoder build() throws VoiceProcessorArgumentException {
+            if (codec == null) {
+                throw new VoiceProcessorArgumentException("Codec must not be null");
+            }
+            if (packetListener == null) {
+                throw new VoiceProcessorArgumentException("Packet listener must not be null");
+            }
+            return new VoiceProcessorEncoder(codec, packetListener);
+        }
+    }
+}
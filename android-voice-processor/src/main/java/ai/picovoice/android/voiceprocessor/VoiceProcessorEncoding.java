@@ -0,0 +1,31 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Sample encoding that audio is captured with. Set it with
+ * {@link VoiceProcessor#setEncoding(VoiceProcessorEncoding)}.
+ */
+public enum VoiceProcessorEncoding {
+    /**
+     * Signed 16-bit samples. Supported on every device.
+     */
+    PCM_16BIT,
+
+    /**
+     * Floating-point samples in the range [-1, 1), which preserve the full precision of the
+     * device's audio path. Requires Android 6.0 (API 23); on older devices audio is captured as
+     * 16-bit samples and converted on the recording thread.
+     */
+    PCM_FLOAT
+}
@@ -0,0 +1,28 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Listener type that can be added to VoiceProcessor with `.addFeatureListener()`. Receives the
+ * spectral features of every analysis window instead of its audio samples.
+ */
+public interface VoiceProcessorFeatureListener {
+    /**
+     * Called with the features of one analysis window: log mel energies, or mel-frequency
+     * cepstral coefficients if the feature options ask for them. The array may be reused once
+     * this method returns, unless it is retained with {@link VoiceProcessor#retainFrame(float[])}.
+     *
+     * @param features Features of the window, lowest band or coefficient first.
+     */
+    void onFeatures(float[] features);
+}
@@ -0,0 +1,263 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Spectral features computed for a {@link VoiceProcessorFeatureListener}. Create an instance with
+ * {@link Builder}.
+ *
+ * <p>Every analysis window is multiplied by a Hann window, transformed with a real FFT into a
+ * power spectrum, and summed into triangular bands evenly spaced on the mel scale. The features
+ * are the natural logarithms of the band energies or, if cepstral coefficients are requested,
+ * their discrete cosine transform. The length and hop of the analysis windows, and the sample
+ * rate they are taken at, are those of the {@link VoiceProcessorListenerOptions} the listener is
+ * added with.
+ */
+public class VoiceProcessorFeatureOptions {
+
+    private static final int MIN_FFT_LENGTH = 16;
+    private static final int MAX_FFT_LENGTH = 8192;
+    private static final int MAX_MEL_BANDS = 128;
+
+    private final int fftLength;
+    private final int numMelBands;
+    private final double minFrequencyHz;
+    private final double maxFrequencyHz;
+    private final int numCepstra;
+
+    private VoiceProcessorFeatureOptions(
+            int fftLength,
+            int numMelBands,
+            double minFrequencyHz,
+            double maxFrequencyHz,
+            int numCepstra) {
+        this.fftLength = fftLength;
+        this.numMelBands = numMelBands;
+        this.minFrequencyHz = minFrequencyHz;
+        this.maxFrequencyHz = maxFrequencyHz;
+        this.numCepstra = numCepstra;
+    }
+
+    /**
+     * Gets the length of the FFT.
+     *
+     * @return the FFT length in samples, or 0 if it is the smallest power of two that holds
+     *     the analysis window
+     */
+    public int getFftLength() {
+        return fftLength;
+    }
+
+    /**
+     * Gets the number of mel bands.
+     *
+     * @return the number of bands
+     */
+    public int getNumMelBands() {
+        return numMelBands;
+    }
+
+    /**
+     * Gets the lower edge of the lowest mel band.
+     *
+     * @return the frequency in Hz
+     */
+    public double getMinFrequencyHz() {
+        return minFrequencyHz;
+    }
+
+    /**
+     * Gets the upper edge of the highest mel band.
+     *
+     * @return the frequency in Hz, or 0 if it is half the sample rate
+     */
+    public double getMaxFrequencyHz() {
+        return maxFrequencyHz;
+    }
+
+    /**
+     * Gets the number of cepstral coefficients.
+     *
+     * @return the number of coefficients, or 0 if the log mel energies are delivered
+     */
+    public int getNumCepstra() {
+        return numCepstra;
+    }
+
+    /**
+     * Gets the number of features computed for every analysis window.
+     *
+     * @return the feature length
+     */
+    public int getFeatureLength() {
+        return numCepstra > 0 ? numCepstra : numMelBands;
+    }
+
+    /**
+     * Checks that the mel bands fit below the Nyquist frequency of the windows the features are
+     * computed from, which is only known once the listener is added or capture is started.
+     */
+    void checkSampleRate(int sampleRate) throws VoiceProcessorArgumentException {
+        final double nyquistHz = sampleRate / 2.0;
+        if (minFrequencyHz >= nyquistHz) {
+            throw new VoiceProcessorArgumentException(
+                    String.format(
+                            "Minimum frequency %f Hz must be below the Nyquist frequency %f Hz of %d Hz audio",
+                            minFrequencyHz,
+                            nyquistHz,
+                            sampleRate));
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof VoiceProcessorFeatureOptions)) {
+            return false;
+        }
+        final VoiceProcessorFeatureOptions options = (VoiceProcessorFeatureOptions) other;
+        return fftLength == options.fftLength &&
+                numMelBands == options.numMelBands &&
+                minFrequencyHz == options.minFrequencyHz &&
+                maxFrequencyHz == options.maxFrequencyHz &&
+                numCepstra == options.numCepstra;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = fftLength;
+        hash = hash * 31 + numMelBands;
+        hash = hash * 31 + Double.valueOf(minFrequencyHz).hashCode();
+        hash = hash * 31 + Double.valueOf(maxFrequencyHz).hashCode();
+        return hash * 31 + numCepstra;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorFeatureOptions.
+     */
+    public static class Builder {
+
+        private int fftLength = 0;
+        private int numMelBands = 40;
+        private double minFrequencyHz = 20.0;
+        private double maxFrequencyHz = 0;
+        private int numCepstra = 0;
+
+        /**
+         * Sets the length of the FFT. Analysis windows shorter than the FFT are padded with
+         * zeros, and the FFT is lengthened to hold longer ones. Defaults to 0, which uses the
+         * smallest power of two that holds the analysis window.
+         *
+         * @param fftLength FFT length in samples, a power of two from 16 to 8192, or 0.
+         * @return the Builder instance
+         */
+        public Builder setFftLength(int fftLength) {
+            this.fftLength = fftLength;
+            return this;
+        }
+
+        /**
+         * Sets the number of mel bands the power spectrum is summed into. Defaults to 40.
+         *
+         * @param numMelBands Number of bands, from 1 to 128.
+         * @return the Builder instance
+         */
+        public Builder setNumMelBands(int numMelBands) {
+            this.numMelBands = numMelBands;
+            return this;
+        }
+
+        /**
+         * Sets the lower edge of the lowest mel band. Defaults to 20 Hz.
+         *
+         * @param minFrequencyHz Frequency in Hz.
+         * @return the Builder instance
+         */
+        public Builder setMinFrequencyHz(double minFrequencyHz) {
+            this.minFrequencyHz = minFrequencyHz;
+            return this;
+        }
+
+        /**
+         * Sets the upper edge of the highest mel band, which is capped at half the sample rate.
+         * Defaults to 0, which uses half the sample rate.
+         *
+         * @param maxFrequencyHz Frequency in Hz, or 0.
+         * @return the Builder instance
+         */
+        public Builder setMaxFrequencyHz(double maxFrequencyHz) {
+            this.maxFrequencyHz = maxFrequencyHz;
+            return this;
+        }
+
+        /**
+         * Sets the number of mel-frequency cepstral coefficients (MFCCs) to deliver instead of
+         * the log mel energies. Defaults to 0, which delivers the log mel energies.
+         *
+         * @param numCepstra Number of coefficients, up to the number of mel bands, or 0.
+         * @return the Builder instance
+         */
+        public Builder setNumCepstra(int numCepstra) {
+            this.numCepstra = numCepstra;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorFeatureOptions.
+         *
+         * @return an instance of VoiceProcessorFeatureOptions
+         * @throws VoiceProcessorArgumentException if any of the options are invalid
+         */
+        public VoiceProcessorFeatureOptions build() throws VoiceProcessorArgumentException {
+            if (fftLength != 0 &&
+                    (fftLength < MIN_FFT_LENGTH || fftLength > MAX_FFT_LENGTH || Integer.bitCount(fftLength) != 1)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "FFT length must be a power of two from %d to %d, but got %d",
+                                MIN_FFT_LENGTH,
+                                MAX_FFT_LENGTH,
+                                fftLength));
+            }
+            if (numMelBands < 1 || numMelBands > MAX_MEL_BANDS) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Number of mel bands must be between 1 and %d, but got %d",
+                                MAX_MEL_BANDS,
+                                numMelBands));
+            }
+            if (!(minFrequencyHz >= 0)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Minimum frequency must be non-negative, but got %f", minFrequencyHz));
+            }
+            if (maxFrequencyHz != 0 && !(maxFrequencyHz > minFrequencyHz)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Maximum frequency %f Hz must be above minimum frequency %f Hz",
+                                maxFrequencyHz,
+                                minFrequencyHz));
+            }
+            if (numCepstra < 0 || numCepstra > numMelBands) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Number of cepstral coefficients must be between 0 and %d, but got %d",
+                                numMelBands,
+                                numCepstra));
+            }
+            return new VoiceProcessorFeatureOptions(
+                    fftLength,
+                    numMelBands,
+                    minFrequencyHz,
+                    maxFrequencyHz,
+                    numCepstra);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Audio source that streams 16-bit little-endian mono PCM from a WAV or raw PCM file. It does
+ * not depend on any Android APIs, so the VoiceProcessor read loop can be driven by it on a plain
+ * JVM for testing and benchmarking.
+ *
+ * <p>WAV files are detected by their `RIFF` header and must be 16-bit mono PCM recorded at the
+ * sample rate that the VoiceProcessor is started with, with a `fmt ` chunk ahead of the `data`
+ * chunk. Only the samples of the `data` chunk are streamed, so chunks that follow it, such as
+ * `LIST` metadata, are not played as audio. Any other file is treated as raw PCM.
+ */
+public class VoiceProcessorFileSource implements VoiceProcessorAudioSource {
+
+    private static final int WAV_HEADER_ID_LENGTH = 4;
+    private static final int WAV_FORMAT_PCM = 1;
+    private static final int WAV_FORMAT_CHUNK_LENGTH = 16;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final File file;
+    private final boolean isLooping;
+    private final RealTimePacer pacer;
+
+    private InputStream stream = null;
+    private long numRemainingBytes = 0;
+    private byte[] byteBuffer = new byte[0];
+    private int sampleRate;
+
+    /**
+     * Creates a file-backed audio source.
+     *
+     * @param file       WAV or raw PCM file to stream audio from.
+     * @param isRealTime If true, samples are delivered at the rate a recorder would produce them.
+     *                   Otherwise they are delivered as fast as they are requested.
+     * @param isLooping  If true, the file is replayed from the start once it is exhausted.
+     *                   Otherwise the source ends the capture session at the end of the file.
+     */
+    public VoiceProcessorFileSource(File file, boolean isRealTime, boolean isLooping) {
+        this.file = file;
+        this.isLooping = isLooping;
+        this.pacer = new RealTimePacer(isRealTime);
+    }
+
+    @Override
+    public void open(int frameLength, int sampleRate) throws VoiceProcessorException {
+        this.sampleRate = sampleRate;
+        if (byteBuffer.length < frameLength * BYTES_PER_SAMPLE) {
+            byteBuffer = new byte[frameLength * BYTES_PER_SAMPLE];
+        }
+        openStream();
+    }
+
+    @Override
+    public void start() {
+        pacer.start(sampleRate);
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) throws VoiceProcessorException {
+        if (byteBuffer.length < length * BYTES_PER_SAMPLE) {
+            byteBuffer = new byte[length * BYTES_PER_SAMPLE];
+        }
+
+        int numSamplesRead = 0;
+        boolean isRewound = false;
+        try {
+            while (numSamplesRead < length) {
+                final int numBytes = readFully(
+                        stream,
+                        byteBuffer,
+                        (int) Math.min((length - numSamplesRead) * BYTES_PER_SAMPLE, numRemainingBytes));
+                numRemainingBytes -= numBytes;
+                final int numSamples = numBytes / BYTES_PER_SAMPLE;
+                for (int i = 0; i < numSamples; i++) {
+                    buffer[offset + numSamplesRead + i] = (short) (
+                            (byteBuffer[2 * i] & 0xFF) | (byteBuffer[2 * i + 1] << 8));
+                }
+                numSamplesRead += numSamples;
+
+                if (numSamplesRead < length) {
+                    if (!isLooping || (isRewound && numSamples == 0)) {
+                        break;
+                    }
+                    closeStream();
+                    openStream();
+                    isRewound = true;
+                }
+            }
+        } catch (IOException e) {
+            throw new VoiceProcessorReadException("Unable to read audio from " + file, e);
+        }
+
+        if (numSamplesRead == 0) {
+            return END_OF_STREAM;
+        }
+        pacer.advance(numSamplesRead);
+        return numSamplesRead;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void close() {
+        closeStream();
+    }
+
+    private void openStream() throws VoiceProcessorException {
+        try {
+            stream = new BufferedInputStream(new FileInputStream(file));
+            stream.mark(WAV_HEADER_ID_LENGTH);
+            final byte[] id = new byte[WAV_HEADER_ID_LENGTH];
+            final int numRead = readFully(stream, id, id.length);
+            if (numRead == id.length && "RIFF".equals(new String(id, "US-ASCII"))) {
+                // A trailing odd byte of the data chunk is its padding, not half a sample
+                numRemainingBytes = skipWavHeader() & ~1L;
+            } else {
+                stream.reset();
+                numRemainingBytes = Long.MAX_VALUE;
+            }
+        } catch (IOException e) {
+            closeStream();
+            throw new VoiceProcessorArgumentException("Unable to open audio file " + file, e);
+        } catch (VoiceProcessorArgumentException e) {
+            closeStream();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates the chunks of a WAV file up to its data chunk, leaving the stream at the first
+     * sample.
+     *
+     * @return the size of the data chunk in bytes
+     */
+    private long skipWavHeader() throws IOException, VoiceProcessorArgumentException {
+        final byte[] chunkHeader = new byte[8];
+        skipFully(stream, 8);
+        boolean hasFormat = false;
+        while (true) {
+            if (readFully(stream, chunkHeader, chunkHeader.length) < chunkHeader.length) {
+                throw new EOFException("WAV file " + file + " has no data chunk");
+            }
+            final String chunkId = new String(chunkHeader, 0, 4, "US-ASCII");
+            final long chunkSize = readIntLittleEndian(chunkHeader, 4) & 0xFFFFFFFFL;
+            if ("data".equals(chunkId)) {
+                if (!hasFormat) {
+                    throw new VoiceProcessorArgumentException(
+                            "WAV file " + file + " has no format chunk before its data chunk");
+                }
+                return chunkSize;
+            }
+
+            if ("fmt ".equals(chunkId)) {
+                if (chunkSize < WAV_FORMAT_CHUNK_LENGTH) {
+                    throw new VoiceProcessorArgumentException(String.format(
+                            "WAV file %s has a format chunk of %d bytes, but at least %d are required",
+                            file,
+                            chunkSize,
+                            WAV_FORMAT_CHUNK_LENGTH));
+                }
+                final byte[] format = new byte[WAV_FORMAT_CHUNK_LENGTH];
+                if (readFully(stream, format, format.length) < format.length) {
+                    throw new EOFException("WAV file " + file + " has a truncated format chunk");
+                }
+                skipFully(stream, chunkSize - format.length + (chunkSize & 1));
+                hasFormat = true;
+                final int audioFormat = (format[0] & 0xFF) | ((format[1] & 0xFF) << 8);
+                final int numChannels = (format[2] & 0xFF) | ((format[3] & 0xFF) << 8);
+                final int fileSampleRate = readIntLittleEndian(format, 4);
+                final int bitsPerSample = (format[14] & 0xFF) | ((format[15] & 0xFF) << 8);
+                if (audioFormat != WAV_FORMAT_PCM || numChannels != 1 || bitsPerSample != 16) {
+                    throw new VoiceProcessorArgumentException(
+                            "WAV file " + file + " must contain 16-bit mono PCM audio");
+                }
+                if (fileSampleRate != sampleRate) {
+                    throw new VoiceProcessorArgumentException(String.format(
+                            "WAV file %s has sample rate %d, but %d was requested",
+                            file,
+                            fileSampleRate,
+                            sampleRate));
+                }
+            } else {
+                skipFully(stream, chunkSize + (chunkSize & 1));
+            }
+        }
+    }
+
+    private void closeStream() {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+            stream = null;
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer, int length) throws IOException {
+        int numRead = 0;
+        while (numRead < length) {
+            final int n = in.read(buffer, numRead, length - numRead);
+            if (n < 0) {
+                break;
+            }
+            numRead += n;
+        }
+        return numRead;
+    }
+
+    private static void skipFully(InputStream in, long length) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            final long n = in.skip(remaining);
+            if (n <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Unexpected end of audio file");
+                }
+                remaining--;
+            } else {
+                remaining -= n;
+            }
+        }
+    }
+
+    private static int readIntLittleEndian(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) |
+                ((buffer[offset + 1] & 0xFF) << 8) |
+                ((buffer[offset + 2] & 0xFF) << 16) |
+                ((buffer[offset + 3] & 0xFF) << 24);
+    }
+}
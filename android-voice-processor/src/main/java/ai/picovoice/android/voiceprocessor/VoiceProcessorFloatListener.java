@@ -0,0 +1,33 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Listener type that can be added to VoiceProcessor with `.addFloatListener()`. Captures audio
+ * frames as floating-point samples in the range [-1, 1), so that consumers do not need to
+ * convert every frame themselves.
+ *
+ * <p>When the VoiceProcessor captures with {@link VoiceProcessorEncoding#PCM_FLOAT}, frames at the
+ * captured frame length and sample rate are delivered exactly as they were recorded. Otherwise
+ * they are converted from 16-bit samples once on the recording thread and shared by every float
+ * listener.
+ *
+ * <p>Float frames are always recycled, whether or not pooled frame delivery is enabled. A frame
+ * is only valid until `onFrame()` returns, unless it is retained with
+ * {@link VoiceProcessor#retainFrame(float[])} and later released with
+ * {@link VoiceProcessor#releaseFrame(float[])}. Copy the samples, or retain the frame, before
+ * keeping it, for example in a queue of model inputs.
+ */
+public interface VoiceProcessorFloatListener {
+    void onFrame(float[] frame);
+}
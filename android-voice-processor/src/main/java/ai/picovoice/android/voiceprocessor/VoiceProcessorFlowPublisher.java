@@ -0,0 +1,73 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.concurrent.Flow;
+
+/**
+ * Adapts a {@link VoiceProcessorPublisher} to `java.util.concurrent.Flow`, which requires
+ * Android 11 (API 30). Subscribers request frames and cancel exactly as described by
+ * {@link VoiceProcessorSubscription}.
+ */
+@RequiresApi(api = Build.VERSION_CODES.R)
+public class VoiceProcessorFlowPublisher implements Flow.Publisher<short[]> {
+
+    private final VoiceProcessorPublisher publisher;
+
+    public VoiceProcessorFlowPublisher(VoiceProcessorPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super short[]> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+
+        publisher.subscribe(new VoiceProcessorSubscriber() {
+            @Override
+            public void onSubscribe(final VoiceProcessorSubscription subscription) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long numFrames) {
+                        subscription.request(numFrames);
+                    }
+
+                    @Override
+                    public void cancel() {
+                        subscription.cancel();
+                    }
+                });
+            }
+
+            @Override
+            public void onNext(short[] frame) {
+                subscriber.onNext(frame);
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                subscriber.onError(error);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+    }
+}
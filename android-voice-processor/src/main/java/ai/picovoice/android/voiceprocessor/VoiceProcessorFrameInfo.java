@@ -0,0 +1,127 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.annotation.SuppressLint;
+
+/**
+ * Timing of a frame delivered to a {@link VoiceProcessorTimedFrameListener}: its sequence number,
+ * the position of its first sample and when that sample was captured.
+ *
+ * <p>Frames cut to a listener's own frame length or sample rate are numbered and positioned in
+ * that listener's stream, at its sample rate. A gap in the audio, such as one left by an overrun
+ * of the recorder's buffer, shows as a capture time further ahead than the sample position
+ * accounts for, and frames dropped from a listener's queue show as gaps in the sequence numbers.
+ *
+ * <p>Like pooled frames, an instance may be reused once the listener returns; call
+ * {@link #copy()} to keep it for longer.
+ */
+public class VoiceProcessorFrameInfo {
+
+    private long sequenceNumber = 0;
+    private long samplePosition = 0;
+    private int sampleRate = 0;
+    private long captureTimeNanos = 0;
+    private boolean isCaptureTimeEstimated = true;
+
+    VoiceProcessorFrameInfo() {
+    }
+
+    void set(
+            long sequenceNumber,
+            long samplePosition,
+            int sampleRate,
+            long captureTimeNanos,
+            boolean isCaptureTimeEstimated) {
+        this.sequenceNumber = sequenceNumber;
+        this.samplePosition = samplePosition;
+        this.sampleRate = sampleRate;
+        this.captureTimeNanos = captureTimeNanos;
+        this.isCaptureTimeEstimated = isCaptureTimeEstimated;
+    }
+
+    /**
+     * Gets the number of the frame, counting from 0 at the start of the capture session or,
+     * for re-framed audio, from when the listener's stream was set up. Increases by one with
+     * every frame.
+     *
+     * @return the sequence number
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Gets the position of the first sample of the frame, counted in samples at
+     * {@link #getSampleRate()} since the start of the capture session.
+     *
+     * @return the sample position
+     */
+    public long getSamplePosition() {
+        return samplePosition;
+    }
+
+    /**
+     * Gets the sample rate of the frame.
+     *
+     * @return the sample rate in Hz
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets the time at which the first sample of the frame was captured, on the
+     * `System.nanoTime()` clock. Subtract it from `System.nanoTime()` to measure latency.
+     *
+     * @return the capture time in nanoseconds
+     */
+    public long getCaptureTimeNanos() {
+        return captureTimeNanos;
+    }
+
+    /**
+     * Whether the capture time was estimated from the times frames were read at, rather than
+     * reported by the recorder with `AudioRecord.getTimestamp()`, which requires Android 7.0
+     * (API 24). Estimates are accurate to a few milliseconds for sources that deliver audio in
+     * real time.
+     *
+     * @return true if the capture time is an estimate
+     */
+    public boolean getIsCaptureTimeEstimated() {
+        return isCaptureTimeEstimated;
+    }
+
+    /**
+     * Creates a copy that is not reused by the VoiceProcessor.
+     *
+     * @return a copy of the frame info
+     */
+    public VoiceProcessorFrameInfo copy() {
+        final VoiceProcessorFrameInfo copy = new VoiceProcessorFrameInfo();
+        copy.set(sequenceNumber, samplePosition, sampleRate, captureTimeNanos, isCaptureTimeEstimated);
+        return copy;
+    }
+
+    @SuppressLint("DefaultLocale")
+    @Override
+    public String toString() {
+        return String.format(
+                "#%d at sample %d (%d Hz), captured at %d ns%s",
+                sequenceNumber,
+                samplePosition,
+                sampleRate,
+                captureTimeNanos,
+                isCaptureTimeEstimated ? " (estimated)" : "");
+    }
+}
@@ -0,0 +1,209 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fixed ring of reusable audio frames used by the VoiceProcessor when pooled frame delivery
+ * is enabled with {@link VoiceProcessor#setFramePoolCapacity(int)}.
+ *
+ * <p>A frame handed to {@link VoiceProcessorFrameListener#onFrame(short[])} is leased to the
+ * listener until `onFrame()` returns. Listeners that need to hold on to a frame for longer must
+ * call {@link #retain(short[])} from within `onFrame()` and {@link #release(short[])} once they
+ * are done with it. A frame is only recycled once every lease on it has been released. If no
+ * free frame is available when the recorder needs one, a new frame is allocated and counted as
+ * a miss.
+ */
+public class VoiceProcessorFramePool {
+
+    private final AudioFrame[] frames;
+    private final int frameLength;
+    private final Storage storage;
+    private final AtomicLong numHits = new AtomicLong(0);
+    private final AtomicLong numMisses = new AtomicLong(0);
+
+    private int cursor = 0;
+
+    VoiceProcessorFramePool(int capacity, int frameLength) {
+        this(capacity, frameLength, Storage.HEAP);
+    }
+
+    /**
+     * Creates a pool of frames. Direct frames are carved out of a single off-heap allocation so
+     * that the whole ring is contiguous native memory.
+     */
+    VoiceProcessorFramePool(int capacity, int frameLength, Storage storage) {
+        this.frames = new AudioFrame[capacity];
+        if (storage == Storage.DIRECT) {
+            final int frameSize = 2 * frameLength;
+            final ByteBuffer ring = ByteBuffer.allocateDirect(capacity * frameSize);
+            for (int i = 0; i < capacity; i++) {
+                ring.limit((i + 1) * frameSize);
+                ring.position(i * frameSize);
+                this.frames[i] = new AudioFrame(ring.slice());
+            }
+        } else {
+            for (int i = 0; i < capacity; i++) {
+                this.frames[i] = AudioFrame.allocate(storage, frameLength);
+            }
+        }
+        this.frameLength = frameLength;
+        this.storage = storage;
+    }
+
+    /**
+     * Gets the number of frames held by the pool.
+     *
+     * @return the number of pooled frames
+     */
+    public int getCapacity() {
+        return frames.length;
+    }
+
+    /**
+     * Gets the length of the frames held by the pool.
+     *
+     * @return the number of audio samples per pooled frame
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Gets the number of times a free pooled frame was available when the recorder needed one.
+     *
+     * @return the number of pool hits
+     */
+    public long getNumHits() {
+        return numHits.get();
+    }
+
+    /**
+     * Gets the number of times every pooled frame was still leased when the recorder needed one,
+     * forcing a new frame to be allocated.
+     *
+     * @return the number of pool misses
+     */
+    public long getNumMisses() {
+        return numMisses.get();
+    }
+
+    /**
+     * Extends the lease on a frame received from the VoiceProcessor so that it is not recycled
+     * when the listener returns. Frames that do not belong to this pool are ignored.
+     *
+     * @param frame frame received in {@link VoiceProcessorFrameListener#onFrame(short[])}
+     */
+    public void retain(short[] frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.retain();
+        }
+    }
+
+    void retain(ByteBuffer frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.retain();
+        }
+    }
+
+    void retain(float[] frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.retain();
+        }
+    }
+
+    /**
+     * Releases a lease previously taken with {@link #retain(short[])}. Once all leases on the
+     * frame have been released, it returns to the pool and may be overwritten with new audio.
+     * Frames that do not belong to this pool are ignored.
+     *
+     * @param frame frame that was previously retained
+     */
+    public void release(short[] frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.release();
+        }
+    }
+
+    void release(ByteBuffer frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.release();
+        }
+    }
+
+    void release(float[] frame) {
+        final AudioFrame audioFrame = find(frame);
+        if (audioFrame != null) {
+            audioFrame.release();
+        }
+    }
+
+    AudioFrame acquire() {
+        for (int i = 0; i < frames.length; i++) {
+            final AudioFrame frame = frames[cursor];
+            cursor = (cursor + 1) % frames.length;
+            if (frame.tryAcquire()) {
+                numHits.incrementAndGet();
+                return frame;
+            }
+        }
+
+        numMisses.incrementAndGet();
+        final AudioFrame frame = AudioFrame.allocate(storage, frameLength);
+        frame.retain();
+        return frame;
+    }
+
+    private AudioFrame find(float[] frame) {
+        for (AudioFrame audioFrame : frames) {
+            if (audioFrame.floatData == frame) {
+                return audioFrame;
+            }
+        }
+        return null;
+    }
+
+    private AudioFrame find(ByteBuffer frame) {
+        for (AudioFrame audioFrame : frames) {
+            if (audioFrame.readOnlyBuffer == frame) {
+                return audioFrame;
+            }
+        }
+        return null;
+    }
+
+    private AudioFrame find(short[] frame) {
+        for (AudioFrame audioFrame : frames) {
+            if (audioFrame.data == frame) {
+                return audioFrame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Where the samples of pooled frames are kept.
+     */
+    enum Storage {
+        HEAP,
+        DIRECT,
+        FLOAT
+    }
+}
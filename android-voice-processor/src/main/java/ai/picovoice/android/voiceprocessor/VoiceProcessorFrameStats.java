@@ -0,0 +1,181 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.annotation.SuppressLint;
+
+/**
+ * Statistics of a frame of 16-bit audio, computed once per frame on the recording thread and
+ * delivered alongside it to {@link VoiceProcessorFrameStatsListener}s. Levels are relative to the
+ * full scale of 32768, so a full-scale square wave is at 0 dBFS and a full-scale sine at -3 dBFS.
+ *
+ * <p>Like the frame it describes, an instance may be reused for a later frame once the listener
+ * returns, and must be copied if it is needed for longer.
+ */
+public class VoiceProcessorFrameStats {
+
+    static final double MIN_LEVEL_DBFS = -120.0;
+
+    private static final double FULL_SCALE = 32768.0;
+
+    private int length = 0;
+    private long sum = 0;
+    private long sumSquares = 0;
+    private int peak = 0;
+    private int numClippedSamples = 0;
+
+    VoiceProcessorFrameStats() {
+    }
+
+    /**
+     * Gets the number of samples the statistics were computed over.
+     *
+     * @return the frame length
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the root mean square of the samples.
+     *
+     * @return the RMS relative to full scale, from 0 to 1
+     */
+    public double getRms() {
+        return length > 0 ? Math.sqrt((double) sumSquares / length) / FULL_SCALE : 0;
+    }
+
+    /**
+     * Gets the level of the frame.
+     *
+     * @return the RMS in dB relative to full scale, no lower than -120 dBFS
+     */
+    public double getLevelDbfs() {
+        return toDbfs(getRms());
+    }
+
+    /**
+     * Gets the largest absolute sample value.
+     *
+     * @return the peak relative to full scale, from 0 to 1
+     */
+    public double getPeak() {
+        return peak / FULL_SCALE;
+    }
+
+    /**
+     * Gets the level of the largest absolute sample value.
+     *
+     * @return the peak in dB relative to full scale, no lower than -120 dBFS
+     */
+    public double getPeakDbfs() {
+        return toDbfs(getPeak());
+    }
+
+    /**
+     * Gets the number of samples at the largest or smallest 16-bit value, which indicates that
+     * the input was clipped.
+     *
+     * @return the number of clipped samples
+     */
+    public int getNumClippedSamples() {
+        return numClippedSamples;
+    }
+
+    /**
+     * Gets the mean of the samples. A persistent offset from zero indicates a DC bias in the
+     * audio path.
+     *
+     * @return the DC offset relative to full scale, from -1 to 1
+     */
+    public double getDcOffset() {
+        return length > 0 ? sum / FULL_SCALE / length : 0;
+    }
+
+    /**
+     * Copies the statistics so that they can be kept after the listener returns.
+     *
+     * @return a copy of the statistics
+     */
+    public VoiceProcessorFrameStats copy() {
+        final VoiceProcessorFrameStats copy = new VoiceProcessorFrameStats();
+        copy.length = length;
+        copy.sum = sum;
+        copy.sumSquares = sumSquares;
+        copy.peak = peak;
+        copy.numClippedSamples = numClippedSamples;
+        return copy;
+    }
+
+    @SuppressLint("DefaultLocale")
+    @Override
+    public String toString() {
+        return String.format(
+                "level=%.1fdBFS peak=%.1fdBFS clipped=%d dc=%.4f",
+                getLevelDbfs(),
+                getPeakDbfs(),
+                numClippedSamples,
+                getDcOffset());
+    }
+
+    /**
+     * Computes the statistics of the given samples in a single pass. The loop is unrolled by four
+     * with independent integer accumulators, so it runs without allocating and without floating
+     * point work per sample.
+     */
+    void update(short[] samples, int length) {
+        long sum0 = 0;
+        long sum1 = 0;
+        long squares0 = 0;
+        long squares1 = 0;
+        int peak0 = 0;
+        int peak1 = 0;
+        int clipped = 0;
+
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            final int s0 = samples[i];
+            final int s1 = samples[i + 1];
+            final int s2 = samples[i + 2];
+            final int s3 = samples[i + 3];
+            sum0 += s0 + s2;
+            sum1 += s1 + s3;
+            squares0 += (long) (s0 * s0) + (s2 * s2);
+            squares1 += (long) (s1 * s1) + (s3 * s3);
+            peak0 = Math.max(peak0, Math.max(Math.abs(s0), Math.abs(s2)));
+            peak1 = Math.max(peak1, Math.max(Math.abs(s1), Math.abs(s3)));
+            clipped += isClipped(s0) + isClipped(s1) + isClipped(s2) + isClipped(s3);
+        }
+        for (; i < length; i++) {
+            final int s = samples[i];
+            sum0 += s;
+            squares0 += s * s;
+            peak0 = Math.max(peak0, Math.abs(s));
+            clipped += isClipped(s);
+        }
+
+        this.length = length;
+        this.sum = sum0 + sum1;
+        this.sumSquares = squares0 + squares1;
+        this.peak = Math.max(peak0, peak1);
+        this.numClippedSamples = clipped;
+    }
+
+    private static int isClipped(int sample) {
+        return sample == Short.MAX_VALUE || sample == Short.MIN_VALUE ? 1 : 0;
+    }
+
+    private static double toDbfs(double value) {
+        return value > 0 ? Math.max(MIN_LEVEL_DBFS, 20 * Math.log10(value)) : MIN_LEVEL_DBFS;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.annotation.SuppressLint;
+
+/**
+ * Snapshot of a histogram of durations measured by the VoiceProcessor. Durations are counted in
+ * power-of-two buckets: bucket 0 holds durations under 1 microsecond and bucket `i` holds
+ * durations from 2^(i-1) up to, but excluding, 2^i microseconds. The last bucket also holds every
+ * longer duration.
+ */
+public class VoiceProcessorLatencyHistogram {
+
+    static final int NUM_BUCKETS = 32;
+
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    VoiceProcessorLatencyHistogram(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Gets the exclusive upper bound of a bucket.
+     *
+     * @param bucket Index of the bucket.
+     * @return the upper bound in microseconds
+     */
+    public static long getBucketUpperBoundMicros(int bucket) {
+        return 1L << bucket;
+    }
+
+    /**
+     * Gets the number of durations counted in each bucket.
+     *
+     * @return a copy of the bucket counts
+     */
+    public long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    /**
+     * Gets the number of measured durations.
+     *
+     * @return the number of durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the mean of the measured durations.
+     *
+     * @return the mean duration in microseconds, or 0 if nothing was measured
+     */
+    public double getMeanMicros() {
+        return count > 0 ? totalNanos / 1000.0 / count : 0;
+    }
+
+    /**
+     * Gets the longest measured duration.
+     *
+     * @return the longest duration in microseconds
+     */
+    public double getMaxMicros() {
+        return maxNanos / 1000.0;
+    }
+
+    /**
+     * Gets an upper bound on the given percentile of the measured durations, at the resolution
+     * of the histogram buckets.
+     *
+     * @param percentile Percentile between 0 and 100.
+     * @return the upper bound of the bucket the percentile falls in, in microseconds, or 0 if
+     *         nothing was measured
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = 0;
+        for (long bucketCount : bucketCounts) {
+            total += bucketCount;
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final double threshold = Math.max(1, Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100));
+        long cumulative = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= threshold) {
+                return getBucketUpperBoundMicros(i);
+            }
+        }
+        return getBucketUpperBoundMicros(bucketCounts.length - 1);
+    }
+
+    @SuppressLint("DefaultLocale")
+    @Override
+    public String toString() {
+        return String.format(
+                "count=%d mean=%.1fus p50<%dus p99<%dus max=%.1fus",
+                count,
+                getMeanMicros(),
+                getPercentileMicros(50),
+                getPercentileMicros(99),
+                getMaxMicros());
+    }
+}
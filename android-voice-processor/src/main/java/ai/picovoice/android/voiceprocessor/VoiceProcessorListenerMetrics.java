@@ -0,0 +1,123 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Snapshot of the delivery statistics of a single listener, taken by
+ * {@link VoiceProcessor#getMetrics()}.
+ */
+public class VoiceProcessorListenerMetrics {
+
+    private final Object listener;
+    private final long numFramesDelivered;
+    private final long numFramesDropped;
+    private final int queueSize;
+    private final int peakQueueSize;
+    private final int queueCapacity;
+    private final VoiceProcessorLatencyHistogram dispatchLatency;
+    private final VoiceProcessorLatencyHistogram executionTime;
+
+    VoiceProcessorListenerMetrics(
+            Object listener,
+            long numFramesDelivered,
+            long numFramesDropped,
+            int queueSize,
+            int peakQueueSize,
+            int queueCapacity,
+            VoiceProcessorLatencyHistogram dispatchLatency,
+            VoiceProcessorLatencyHistogram executionTime) {
+        this.listener = listener;
+        this.numFramesDelivered = numFramesDelivered;
+        this.numFramesDropped = numFramesDropped;
+        this.queueSize = queueSize;
+        this.peakQueueSize = peakQueueSize;
+        this.queueCapacity = queueCapacity;
+        this.dispatchLatency = dispatchLatency;
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * Gets the listener the statistics belong to.
+     *
+     * @return the frame, buffer or float listener
+     */
+    public Object getListener() {
+        return listener;
+    }
+
+    /**
+     * Gets the number of frames handed to the listener. Frames merged by
+     * {@link VoiceProcessorOverflowPolicy#COALESCE} are counted individually.
+     *
+     * @return the number of delivered frames
+     */
+    public long getNumFramesDelivered() {
+        return numFramesDelivered;
+    }
+
+    /**
+     * Gets the number of frames dropped because the listener's queue was full.
+     *
+     * @return the number of dropped frames
+     */
+    public long getNumFramesDropped() {
+        return numFramesDropped;
+    }
+
+    /**
+     * Gets the number of frames waiting for delivery to the listener, i.e. how far behind the
+     * recording it is.
+     *
+     * @return the number of queued frames
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Gets the largest number of frames that have been waiting for delivery at the same time.
+     *
+     * @return the peak number of queued frames
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    /**
+     * Gets the maximum number of frames that can be waiting for delivery to the listener.
+     *
+     * @return the queue capacity in frames
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the time frames spent queued between being captured and being handed to the
+     * listener, which includes any delay added by the delivery thread.
+     *
+     * @return the dispatch latency histogram
+     */
+    public VoiceProcessorLatencyHistogram getDispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * Gets the time the listener spent in `onFrame()`.
+     *
+     * @return the execution time histogram
+     */
+    public VoiceProcessorLatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+}
@@ -0,0 +1,465 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Options that control how the VoiceProcessor delivers frames to an individual listener. Create
+ * an instance with {@link Builder} and pass it to
+ * {@link VoiceProcessor#addFrameListener(VoiceProcessorFrameListener, VoiceProcessorListenerOptions)}.
+ */
+public class VoiceProcessorListenerOptions {
+
+    /**
+     * Channel selection that delivers the average of all captured channels. This is the default,
+     * and the same as the single channel when capturing in mono.
+     */
+    public static final int CHANNEL_DOWNMIX = -1;
+
+    /**
+     * Channel selection that delivers every captured channel, with the samples of each instant
+     * interleaved.
+     */
+    public static final int CHANNEL_INTERLEAVED = -2;
+
+    static final int DEFAULT_QUEUE_CAPACITY = 32;
+    static final int DEFAULT_BATCH_MILLIS = 1000;
+
+    private final VoiceProcessorDispatchMode dispatchMode;
+    private final Executor executor;
+    private final int queueCapacity;
+    private final VoiceProcessorOverflowPolicy overflowPolicy;
+    private final int frameLength;
+    private final int hopLength;
+    private final int sampleRate;
+    private final int rewindMillis;
+    private final boolean isSpeechOnly;
+    private final int batchFrames;
+    private final int batchMillis;
+    private final int channel;
+
+    private VoiceProcessorListenerOptions(
+            VoiceProcessorDispatchMode dispatchMode,
+            Executor executor,
+            int queueCapacity,
+            VoiceProcessorOverflowPolicy overflowPolicy,
+            int frameLength,
+            int hopLength,
+            int sampleRate,
+            int rewindMillis,
+            boolean isSpeechOnly,
+            int batchFrames,
+            int batchMillis,
+            int channel) {
+        this.dispatchMode = dispatchMode;
+        this.executor = executor;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.frameLength = frameLength;
+        this.hopLength = hopLength;
+        this.sampleRate = sampleRate;
+        this.rewindMillis = rewindMillis;
+        this.isSpeechOnly = isSpeechOnly;
+        this.batchFrames = batchFrames;
+        this.batchMillis = batchMillis;
+        this.channel = channel;
+    }
+
+    /**
+     * Gets the dispatch mode the listener is delivered with.
+     *
+     * @return the dispatch mode, or null if the listener uses its own executor or the
+     *         VoiceProcessor default mode
+     */
+    public VoiceProcessorDispatchMode getDispatchMode() {
+        return dispatchMode;
+    }
+
+    /**
+     * Gets the executor the listener is delivered on.
+     *
+     * @return the executor, or null if the listener is delivered according to a dispatch mode
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Gets the maximum number of frames that can be waiting for delivery to the listener.
+     *
+     * @return the queue capacity in frames
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets what happens to new frames once the listener's queue is full.
+     *
+     * @return the overflow policy
+     */
+    public VoiceProcessorOverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Gets the number of audio samples per frame delivered to the listener.
+     *
+     * @return the frame length, or 0 if the listener receives frames of the length passed to
+     *         {@link VoiceProcessor#start(int, int)}
+     */
+    public int getFrameLength() {
+        return frameLength;
+    }
+
+    /**
+     * Gets the number of audio samples between the starts of consecutive frames delivered to
+     * the listener.
+     *
+     * @return the hop length, or 0 if the listener receives frames of the length passed to
+     *         {@link VoiceProcessor#start(int, int)}
+     */
+    public int getHopLength() {
+        return hopLength;
+    }
+
+    /**
+     * Gets the sample rate of the audio delivered to the listener.
+     *
+     * @return the sample rate, or 0 if the listener receives audio at the sample rate passed to
+     *         {@link VoiceProcessor#start(int, int)}
+     */
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Gets how far in the past the audio delivered to the listener starts.
+     *
+     * @return the rewind in milliseconds, or 0 if the listener only receives live audio
+     */
+    public int getRewindMillis() {
+        return rewindMillis;
+    }
+
+    /**
+     * Indicates whether the listener only receives frames while the voice activity gate is open.
+     *
+     * @return boolean indicating whether the listener only receives speech.
+     */
+    public boolean getIsSpeechOnly() {
+        return isSpeechOnly;
+    }
+
+    /**
+     * Gets the number of frames after which a batch is delivered to a batch listener.
+     *
+     * @return the batch size in frames, or 0 if batches are not limited by size
+     */
+    public int getBatchFrames() {
+        return batchFrames;
+    }
+
+    /**
+     * Gets the time after which a batch is delivered to a batch listener, counted from the
+     * first frame of the batch.
+     *
+     * @return the batch duration in milliseconds, or 0 if batches are not limited by time
+     */
+    public int getBatchMillis() {
+        return batchMillis;
+    }
+
+    /**
+     * Gets the channel the listener receives.
+     *
+     * @return the channel index, {@link #CHANNEL_DOWNMIX} or {@link #CHANNEL_INTERLEAVED}
+     */
+    public int getChannel() {
+        return channel;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorListenerOptions. Unless a delivery target
+     * is set, the listener is delivered with the mode set by
+     * {@link VoiceProcessor#setDispatchMode(VoiceProcessorDispatchMode)}.
+     */
+    public static class Builder {
+
+        private VoiceProcessorDispatchMode dispatchMode = null;
+        private Executor executor = null;
+        private boolean isTargetNull = false;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private VoiceProcessorOverflowPolicy overflowPolicy = VoiceProcessorOverflowPolicy.DROP_OLDEST;
+        private int frameLength = 0;
+        private int hopLength = 0;
+        private int sampleRate = 0;
+        private int rewindMillis = 0;
+        private boolean isSpeechOnly = false;
+        private int batchFrames = 0;
+        private int batchMillis = 0;
+        private int channel = CHANNEL_DOWNMIX;
+
+        /**
+         * Deliver frames on one of the threads managed by the VoiceProcessor. Replaces any
+         * previously set executor or looper.
+         *
+         * @param dispatchMode Thread to deliver frames on.
+         * @return the Builder instance
+         */
+        public Builder setDispatchMode(VoiceProcessorDispatchMode dispatchMode) {
+            this.dispatchMode = dispatchMode;
+            this.executor = null;
+            this.isTargetNull = dispatchMode == null;
+            return this;
+        }
+
+        /**
+         * Deliver frames on the given executor. Frames are delivered to the listener one at a
+         * time and in order, even if the executor runs tasks concurrently. Replaces any previously
+         * set dispatch mode or looper.
+         *
+         * @param executor Executor to deliver frames on.
+         * @return the Builder instance
+         */
+        public Builder setExecutor(Executor executor) {
+            this.dispatchMode = null;
+            this.executor = executor;
+            this.isTargetNull = executor == null;
+            return this;
+        }
+
+        /**
+         * Deliver frames on the thread of the given looper. Replaces any previously set dispatch
+         * mode or executor.
+         *
+         * @param looper Looper to deliver frames on.
+         * @return the Builder instance
+         */
+        public Builder setLooper(Looper looper) {
+            this.dispatchMode = null;
+            this.executor = looper != null ? new HandlerExecutor(new Handler(looper)) : null;
+            this.isTargetNull = looper == null;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of frames that can be waiting for delivery to the listener.
+         * Defaults to 32 frames.
+         *
+         * @param queueCapacity Queue capacity in frames.
+         * @return the Builder instance
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * Sets what happens to new frames once the listener's queue is full. Defaults to
+         * {@link VoiceProcessorOverflowPolicy#DROP_OLDEST}.
+         *
+         * @param overflowPolicy Policy to apply when the queue is full.
+         * @return the Builder instance
+         */
+        public Builder setOverflowPolicy(VoiceProcessorOverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * Sets the number of audio samples per frame delivered to the listener. Frames of this
+         * length are cut out of the captured audio, so listeners with different frame lengths
+         * can share a single recording. By default, the listener receives frames of the length
+         * passed to {@link VoiceProcessor#start(int, int)}.
+         *
+         * @param frameLength Number of audio samples per frame.
+         * @return the Builder instance
+         */
+        public Builder setFrameLength(int frameLength) {
+            this.frameLength = frameLength;
+            return this;
+        }
+
+        /**
+         * Sets the number of audio samples between the starts of consecutive frames delivered to
+         * the listener. A hop shorter than the frame length produces overlapping frames. Requires
+         * a frame length to be set, and defaults to the frame length.
+         *
+         * @param hopLength Number of audio samples between consecutive frames.
+         * @return the Builder instance
+         */
+        public Builder setHopLength(int hopLength) {
+            this.hopLength = hopLength;
+            return this;
+        }
+
+        /**
+         * Sets the sample rate of the audio delivered to the listener. Captured audio is
+         * resampled to this rate on the recording thread, so listeners that need different
+         * sample rates can share a single recording. Unless a frame length is set, frames span
+         * the same duration as the frames passed to {@link VoiceProcessor#start(int, int)}. By
+         * default, the listener receives audio at the captured sample rate.
+         *
+         * @param sampleRate Sample rate in Hz.
+         * @return the Builder instance
+         */
+        public Builder setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Starts the audio delivered to the listener the given time in the past. When the
+         * listener is added while audio is being captured, the audio kept since
+         * {@link VoiceProcessor#setHistoryDuration(int)} was enabled is delivered as fast as
+         * the listener takes it, followed without a gap by the live audio. The rewind is limited
+         * to the history that is available. By default, the listener only receives live audio.
+         *
+         * @param rewindMillis Time in the past to start from in milliseconds.
+         * @return the Builder instance
+         */
+        public Builder setRewindMillis(int rewindMillis) {
+            this.rewindMillis = rewindMillis;
+            return this;
+        }
+
+        /**
+         * Only deliver frames to the listener while the voice activity gate enabled with
+         * {@link VoiceProcessor#setVoiceActivityOptions(VoiceProcessorVoiceActivityOptions)} is
+         * open. While the input is quiet, the listener is not woken up at all. If the gate is not
+         * enabled, the listener receives every frame. Defaults to false.
+         *
+         * @param isSpeechOnly Whether to skip frames of silence.
+         * @return the Builder instance
+         */
+        public Builder setSpeechOnly(boolean isSpeechOnly) {
+            this.isSpeechOnly = isSpeechOnly;
+            return this;
+        }
+
+        /**
+         * Sets the number of frames a {@link VoiceProcessorBatchListener} receives per batch.
+         * A batch is delivered as soon as it reaches this size or the batch duration, whichever
+         * comes first. Ignored by other listener types. Unless a batch size or duration is set,
+         * batches are delivered every second.
+         *
+         * @param batchFrames Number of frames per batch.
+         * @return the Builder instance
+         */
+        public Builder setBatchFrames(int batchFrames) {
+            this.batchFrames = batchFrames;
+            return this;
+        }
+
+        /**
+         * Sets the longest time a {@link VoiceProcessorBatchListener} waits for a batch, counted
+         * from the first frame of the batch. A batch is delivered as soon as it reaches this
+         * duration or the batch size, whichever comes first. Ignored by other listener types.
+         *
+         * @param batchMillis Batch duration in milliseconds.
+         * @return the Builder instance
+         */
+        public Builder setBatchMillis(int batchMillis) {
+            this.batchMillis = batchMillis;
+            return this;
+        }
+
+        /**
+         * Selects the channel the listener receives when capturing several channels with
+         * {@link VoiceProcessorCaptureConfig.Builder#setChannelCount(int)}. The channels are
+         * separated once per frame on the recording thread and shared by every listener. A
+         * single channel or the interleaved channels are delivered at the captured frame length
+         * and sample rate, so they cannot be combined with a frame length, sample rate or rewind,
+         * and a listener for a channel that is not captured receives no frames. Defaults to
+         * {@link #CHANNEL_DOWNMIX}.
+         *
+         * @param channel Channel index starting at 0, {@link #CHANNEL_DOWNMIX} or
+         *                {@link #CHANNEL_INTERLEAVED}.
+         * @return the Builder instance
+         */
+        public Builder setChannel(int channel) {
+            this.channel = channel;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorListenerOptions.
+         *
+         * @return an instance of VoiceProcessorListenerOptions
+         * @throws VoiceProcessorArgumentException if any of the options are invalid
+         */
+        public VoiceProcessorListenerOptions build() throws VoiceProcessorArgumentException {
+            if (isTargetNull) {
+                throw new VoiceProcessorArgumentException(
+                        "Listener delivery target (dispatch mode, executor or looper) cannot be null");
+            }
+            if (queueCapacity <= 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Queue capacity must be positive, but got %d", queueCapacity));
+            }
+            if (overflowPolicy == null) {
+                throw new VoiceProcessorArgumentException("Overflow policy cannot be null");
+            }
+            if (frameLength < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Frame length must be positive, but got %d", frameLength));
+            }
+            if (hopLength < 0 || (hopLength > 0 && frameLength == 0)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Hop length %d requires a positive frame length", hopLength));
+            }
+            if (sampleRate < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Sample rate must be positive, but got %d", sampleRate));
+            }
+            if (batchFrames < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Batch size must be non-negative, but got %d", batchFrames));
+            }
+            if (batchMillis < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Batch duration must be non-negative, but got %d", batchMillis));
+            }
+            if (rewindMillis < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Rewind must be non-negative, but got %d", rewindMillis));
+            }
+            if (channel < CHANNEL_INTERLEAVED) {
+                throw new VoiceProcessorArgumentException(String.format("Invalid channel %d", channel));
+            }
+            if (channel != CHANNEL_DOWNMIX && (frameLength > 0 || sampleRate > 0 || rewindMillis > 0)) {
+                throw new VoiceProcessorArgumentException(
+                        "A channel other than the downmix cannot be combined with a frame length, " +
+                                "sample rate or rewind");
+            }
+            return new VoiceProcessorListenerOptions(
+                    dispatchMode,
+                    executor,
+                    queueCapacity,
+                    overflowPolicy,
+                    frameLength,
+                    hopLength > 0 ? hopLength : frameLength,
+                    sampleRate,
+                    rewindMillis,
+                    isSpeechOnly,
+                    batchFrames,
+                    batchMillis,
+                    channel);
+        }
+    }
+}
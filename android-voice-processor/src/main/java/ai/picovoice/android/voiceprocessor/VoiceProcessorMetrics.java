@@ -0,0 +1,203 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Snapshot of the behaviour of the capture pipeline since audio capture was last started, taken
+ * by {@link VoiceProcessor#getMetrics()} or reported to a {@link VoiceProcessorMetricsListener}.
+ */
+public class VoiceProcessorMetrics {
+
+    private final long numFramesCaptured;
+    private final long numShortReads;
+    private final long numReadErrors;
+    private final long numLateReads;
+    private final long numSpeechFrames;
+    private final long numOverruns;
+    private final long numSamplesLost;
+    private final long numRestarts;
+    private final VoiceProcessorLatencyHistogram readLatency;
+    private final VoiceProcessorLatencyHistogram routingTime;
+    private final VoiceProcessorLatencyHistogram startLatency;
+    private final VoiceProcessorLatencyHistogram stopLatency;
+    private final VoiceProcessorListenerMetrics[] listenerMetrics;
+    private final VoiceProcessorPreprocessingMetrics[] preprocessingMetrics;
+
+    VoiceProcessorMetrics(
+            long numFramesCaptured,
+            long numShortReads,
+            long numReadErrors,
+            long numLateReads,
+            long numSpeechFrames,
+            long numOverruns,
+            long numSamplesLost,
+            long numRestarts,
+            VoiceProcessorLatencyHistogram readLatency,
+            VoiceProcessorLatencyHistogram routingTime,
+            VoiceProcessorLatencyHistogram startLatency,
+            VoiceProcessorLatencyHistogram stopLatency,
+            VoiceProcessorListenerMetrics[] listenerMetrics,
+            VoiceProcessorPreprocessingMetrics[] preprocessingMetrics) {
+        this.numFramesCaptured = numFramesCaptured;
+        this.numShortReads = numShortReads;
+        this.numReadErrors = numReadErrors;
+        this.numLateReads = numLateReads;
+        this.numSpeechFrames = numSpeechFrames;
+        this.numOverruns = numOverruns;
+        this.numSamplesLost = numSamplesLost;
+        this.numRestarts = numRestarts;
+        this.readLatency = readLatency;
+        this.routingTime = routingTime;
+        this.startLatency = startLatency;
+        this.stopLatency = stopLatency;
+        this.listenerMetrics = listenerMetrics;
+        this.preprocessingMetrics = preprocessingMetrics;
+    }
+
+    /**
+     * Gets the number of complete frames read from the audio source.
+     *
+     * @return the number of captured frames
+     */
+    public long getNumFramesCaptured() {
+        return numFramesCaptured;
+    }
+
+    /**
+     * Gets the number of reads that returned fewer samples than requested. The samples are kept,
+     * and the rest of the frame is read with further reads.
+     *
+     * @return the number of short reads
+     */
+    public long getNumShortReads() {
+        return numShortReads;
+    }
+
+    /**
+     * Gets the number of reads that failed with a {@link VoiceProcessorReadException}.
+     *
+     * @return the number of failed reads
+     */
+    public long getNumReadErrors() {
+        return numReadErrors;
+    }
+
+    /**
+     * Gets the number of reads that were issued more than a frame's duration after the previous
+     * read returned. Every late read lets the recorder's buffer fill up further; if the recording
+     * thread keeps falling behind, the buffer overruns and audio is lost.
+     *
+     * @return the number of late reads
+     */
+    public long getNumLateReads() {
+        return numLateReads;
+    }
+
+    /**
+     * Gets the number of captured frames after which the voice activity gate was open. Stays at
+     * zero unless the gate is enabled.
+     *
+     * @return the number of speech frames
+     */
+    public long getNumSpeechFrames() {
+        return numSpeechFrames;
+    }
+
+    /**
+     * Gets the number of times the recorder's buffer overran because frames were not read in
+     * time, losing audio. Only detected for the microphone.
+     *
+     * @return the number of overruns
+     */
+    public long getNumOverruns() {
+        return numOverruns;
+    }
+
+    /**
+     * Gets the estimated number of samples lost to overruns of the recorder's buffer.
+     *
+     * @return the number of lost samples
+     */
+    public long getNumSamplesLost() {
+        return numSamplesLost;
+    }
+
+    /**
+     * Gets the number of times the audio source was restarted to recover from a failure.
+     *
+     * @return the number of restarts
+     */
+    public long getNumRestarts() {
+        return numRestarts;
+    }
+
+    /**
+     * Gets the time the recording thread spent blocked reading each frame from the audio source.
+     * Reads that return almost immediately indicate that audio was already waiting in the
+     * recorder's buffer.
+     *
+     * @return the read latency histogram
+     */
+    public VoiceProcessorLatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+    /**
+     * Gets the time the recording thread spent routing each frame to the listeners' queues,
+     * including any re-framing, resampling and format conversion.
+     *
+     * @return the routing time histogram
+     */
+    public VoiceProcessorLatencyHistogram getRoutingTime() {
+        return routingTime;
+    }
+
+    /**
+     * Gets the time from each request to start or resume capture until the first frame was read
+     * from the audio source.
+     *
+     * @return the time-to-first-frame histogram
+     */
+    public VoiceProcessorLatencyHistogram getStartLatency() {
+        return startLatency;
+    }
+
+    /**
+     * Gets the time from each request to pause or stop capture until the audio source had
+     * stopped, including the wait for the read in progress to return.
+     *
+     * @return the stop latency histogram
+     */
+    public VoiceProcessorLatencyHistogram getStopLatency() {
+        return stopLatency;
+    }
+
+    /**
+     * Gets the delivery statistics of every listener subscribed when the snapshot was taken.
+     *
+     * @return the per-listener statistics
+     */
+    public VoiceProcessorListenerMetrics[] getListenerMetrics() {
+        return listenerMetrics.clone();
+    }
+
+    /**
+     * Gets the cost of every pass of the preprocessing chain since it was last enabled or
+     * changed. Stages fused into one pass share their cost.
+     *
+     * @return the per-pass statistics, or an empty array if the chain is disabled
+     */
+    public VoiceProcessorPreprocessingMetrics[] getPreprocessingMetrics() {
+        return preprocessingMetrics.clone();
+    }
+}
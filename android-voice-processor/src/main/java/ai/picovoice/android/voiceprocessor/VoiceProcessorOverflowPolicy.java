@@ -0,0 +1,50 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * What the VoiceProcessor does when a frame listener falls so far behind that its queue of
+ * undelivered frames is full. Every time a listener starts overflowing, a
+ * {@link VoiceProcessorOverflowException} is delivered to the error listeners.
+ */
+public enum VoiceProcessorOverflowPolicy {
+    /**
+     * Discard the oldest queued frame to make room for the new one. This is the default policy.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard the new frame and keep the queued ones.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Block the recording thread until the listener makes room in its queue. This delays every
+     * other listener and may cause the recorder to overrun, so it should only be used for
+     * listeners that must never lose audio.
+     */
+    BLOCK,
+
+    /**
+     * Deliver all queued frames to the listener in a single call, as one contiguous frame whose
+     * length is a multiple of the frame length. Once the queue is full, new frames keep being
+     * queued past its capacity and are merged into the next delivery, so a slow listener loses
+     * no audio. Only once the queued frames hold 2^19 samples (over 30 seconds of 16 kHz
+     * audio) is the oldest frame discarded as with {@link #DROP_OLDEST}.
+     *
+     * <p>The merged frame is reused for later deliveries, so it is only valid until the listener
+     * returns and must be copied if it is kept. Feature listeners cannot use this policy, since
+     * each of their calls holds the features of a single analysis window.
+     */
+    COALESCE
+}
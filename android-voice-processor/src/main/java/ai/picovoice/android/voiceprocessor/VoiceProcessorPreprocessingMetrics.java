@@ -0,0 +1,48 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Snapshot of the cost of one pass of the preprocessing chain over the captured frames, taken by
+ * {@link VoiceProcessor#getMetrics()}. Stages fused into a single pass share their cost.
+ */
+public class VoiceProcessorPreprocessingMetrics {
+
+    private final VoiceProcessorPreprocessingStage[] stages;
+    private final VoiceProcessorLatencyHistogram executionTime;
+
+    VoiceProcessorPreprocessingMetrics(
+            VoiceProcessorPreprocessingStage[] stages,
+            VoiceProcessorLatencyHistogram executionTime) {
+        this.stages = stages;
+        this.executionTime = executionTime;
+    }
+
+    /**
+     * Gets the stages applied in the pass.
+     *
+     * @return the stages, in the order they are applied
+     */
+    public VoiceProcessorPreprocessingStage[] getStages() {
+        return stages.clone();
+    }
+
+    /**
+     * Gets the time the recording thread spent on the pass for each frame.
+     *
+     * @return the execution time histogram
+     */
+    public VoiceProcessorLatencyHistogram getExecutionTime() {
+        return executionTime;
+    }
+}
@@ -0,0 +1,292 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stages of the preprocessing chain enabled with
+ * {@link VoiceProcessor#setPreprocessingOptions(VoiceProcessorPreprocessingOptions)}. Create an
+ * instance with {@link Builder}.
+ *
+ * <p>The chain runs once per captured frame on the recording thread, before the frame is handed
+ * to any listener, and modifies the samples in place. The enabled stages are applied in the
+ * order of {@link VoiceProcessorPreprocessingStage} and are fused into a single pass over the
+ * samples, using fixed-point arithmetic and no allocation.
+ */
+public class VoiceProcessorPreprocessingOptions {
+
+    private static final double MAX_HIGH_PASS_CUTOFF_HZ = 1000.0;
+    private static final double MIN_TARGET_LEVEL_DBFS = -60.0;
+    private static final double MAX_AUTOMATIC_GAIN_DB = 40.0;
+    private static final double MIN_GAIN_DB = -60.0;
+    private static final double MAX_GAIN_DB = 40.0;
+
+    private final boolean isDcRemoval;
+    private final double highPassCutoffHz;
+    private final boolean isAutomaticGain;
+    private final double targetLevelDbfs;
+    private final double maxAutomaticGainDb;
+    private final double gainDb;
+    private final boolean isFused;
+
+    private VoiceProcessorPreprocessingOptions(
+            boolean isDcRemoval,
+            double highPassCutoffHz,
+            boolean isAutomaticGain,
+            double targetLevelDbfs,
+            double maxAutomaticGainDb,
+            double gainDb,
+            boolean isFused) {
+        this.isDcRemoval = isDcRemoval;
+        this.highPassCutoffHz = highPassCutoffHz;
+        this.isAutomaticGain = isAutomaticGain;
+        this.targetLevelDbfs = targetLevelDbfs;
+        this.maxAutomaticGainDb = maxAutomaticGainDb;
+        this.gainDb = gainDb;
+        this.isFused = isFused;
+    }
+
+    /**
+     * Gets whether constant offsets are removed from the samples.
+     *
+     * @return true if DC removal is enabled
+     */
+    public boolean getIsDcRemoval() {
+        return isDcRemoval;
+    }
+
+    /**
+     * Gets the cutoff frequency of the high-pass filter.
+     *
+     * @return the cutoff frequency in Hz, or 0 if the filter is disabled
+     */
+    public double getHighPassCutoffHz() {
+        return highPassCutoffHz;
+    }
+
+    /**
+     * Gets whether the level of the audio is adjusted towards the target level.
+     *
+     * @return true if automatic gain control is enabled
+     */
+    public boolean getIsAutomaticGain() {
+        return isAutomaticGain;
+    }
+
+    /**
+     * Gets the level automatic gain control brings the audio towards.
+     *
+     * @return the target level in dB relative to full scale
+     */
+    public double getTargetLevelDbfs() {
+        return targetLevelDbfs;
+    }
+
+    /**
+     * Gets the highest gain automatic gain control may apply.
+     *
+     * @return the maximum gain in dB
+     */
+    public double getMaxAutomaticGainDb() {
+        return maxAutomaticGainDb;
+    }
+
+    /**
+     * Gets the fixed gain applied after the other stages.
+     *
+     * @return the gain in dB, or 0 if the stage is disabled
+     */
+    public double getGainDb() {
+        return gainDb;
+    }
+
+    /**
+     * Gets whether the enabled stages run in a single pass over the samples.
+     *
+     * @return true if the stages are fused
+     */
+    public boolean getIsFused() {
+        return isFused;
+    }
+
+    /**
+     * Gets the enabled stages.
+     *
+     * @return the stages, in the order they are applied
+     */
+    public VoiceProcessorPreprocessingStage[] getStages() {
+        final List<VoiceProcessorPreprocessingStage> stages = new ArrayList<>();
+        if (isDcRemoval) {
+            stages.add(VoiceProcessorPreprocessingStage.DC_REMOVAL);
+        }
+        if (highPassCutoffHz > 0) {
+            stages.add(VoiceProcessorPreprocessingStage.HIGH_PASS);
+        }
+        if (isAutomaticGain) {
+            stages.add(VoiceProcessorPreprocessingStage.AUTOMATIC_GAIN);
+        }
+        if (gainDb != 0) {
+            stages.add(VoiceProcessorPreprocessingStage.GAIN);
+        }
+        return stages.toArray(new VoiceProcessorPreprocessingStage[0]);
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorPreprocessingOptions.
+     */
+    public static class Builder {
+
+        private boolean isDcRemoval = false;
+        private double highPassCutoffHz = 0;
+        private boolean isAutomaticGain = false;
+        private double targetLevelDbfs = -20.0;
+        private double maxAutomaticGainDb = 30.0;
+        private double gainDb = 0;
+        private boolean isFused = true;
+
+        /**
+         * Sets whether constant offsets, which some microphones add to the signal, are removed
+         * from the samples. Defaults to false.
+         *
+         * @param isDcRemoval Whether to remove DC offsets.
+         * @return the Builder instance
+         */
+        public Builder setDcRemoval(boolean isDcRemoval) {
+            this.isDcRemoval = isDcRemoval;
+            return this;
+        }
+
+        /**
+         * Sets the cutoff frequency of a high-pass filter that attenuates rumble, wind and
+         * handling noise. Speech has little energy below 80 Hz. Defaults to 0, which disables the
+         * filter.
+         *
+         * @param highPassCutoffHz Cutoff frequency in Hz, up to 1000, or 0 to disable the filter.
+         * @return the Builder instance
+         */
+        public Builder setHighPassCutoffHz(double highPassCutoffHz) {
+            this.highPassCutoffHz = highPassCutoffHz;
+            return this;
+        }
+
+        /**
+         * Sets whether the level of the audio is brought towards the target level. The gain
+         * adapts quickly to louder audio and slowly to quieter audio, lowers loud audio by up to
+         * 20 dB, and is held during silence so that background noise is not amplified. Defaults
+         * to false.
+         *
+         * @param isAutomaticGain Whether to enable automatic gain control.
+         * @return the Builder instance
+         */
+        public Builder setAutomaticGain(boolean isAutomaticGain) {
+            this.isAutomaticGain = isAutomaticGain;
+            return this;
+        }
+
+        /**
+         * Sets the level automatic gain control brings the audio towards. Defaults to -20 dBFS.
+         *
+         * @param targetLevelDbfs Target level in dB relative to full scale, from -60 to 0.
+         * @return the Builder instance
+         */
+        public Builder setTargetLevelDbfs(double targetLevelDbfs) {
+            this.targetLevelDbfs = targetLevelDbfs;
+            return this;
+        }
+
+        /**
+         * Sets the highest gain automatic gain control may apply. Defaults to 30 dB.
+         *
+         * @param maxAutomaticGainDb Maximum gain in dB, from 0 to 40.
+         * @return the Builder instance
+         */
+        public Builder setMaxAutomaticGainDb(double maxAutomaticGainDb) {
+            this.maxAutomaticGainDb = maxAutomaticGainDb;
+            return this;
+        }
+
+        /**
+         * Sets a fixed gain applied after the other stages. Samples that would exceed full
+         * scale are clipped. Defaults to 0, which disables the stage.
+         *
+         * @param gainDb Gain in dB, from -60 to 40.
+         * @return the Builder instance
+         */
+        public Builder setGainDb(double gainDb) {
+            this.gainDb = gainDb;
+            return this;
+        }
+
+        /**
+         * Sets whether the enabled stages run in a single pass over the samples. Running each
+         * stage in a pass of its own costs more, but lets
+         * {@link VoiceProcessorMetrics#getPreprocessingMetrics()} report the cost of every stage
+         * separately. Defaults to true.
+         *
+         * @param isFused Whether to fuse the stages.
+         * @return the Builder instance
+         */
+        public Builder setFused(boolean isFused) {
+            this.isFused = isFused;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorPreprocessingOptions.
+         *
+         * @return an instance of VoiceProcessorPreprocessingOptions
+         * @throws VoiceProcessorArgumentException if any of the options are invalid
+         */
+        public VoiceProcessorPreprocessingOptions build() throws VoiceProcessorArgumentException {
+            if (!(highPassCutoffHz >= 0 && highPassCutoffHz <= MAX_HIGH_PASS_CUTOFF_HZ)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "High-pass cutoff must be in [0, %.0f] Hz, but got %f",
+                                MAX_HIGH_PASS_CUTOFF_HZ,
+                                highPassCutoffHz));
+            }
+            if (!(targetLevelDbfs >= MIN_TARGET_LEVEL_DBFS && targetLevelDbfs <= 0)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Target level must be in [%.0f, 0] dBFS, but got %f",
+                                MIN_TARGET_LEVEL_DBFS,
+                                targetLevelDbfs));
+            }
+            if (!(maxAutomaticGainDb >= 0 && maxAutomaticGainDb <= MAX_AUTOMATIC_GAIN_DB)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Maximum automatic gain must be in [0, %.0f] dB, but got %f",
+                                MAX_AUTOMATIC_GAIN_DB,
+                                maxAutomaticGainDb));
+            }
+            if (!(gainDb >= MIN_GAIN_DB && gainDb <= MAX_GAIN_DB)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Gain must be in [%.0f, %.0f] dB, but got %f",
+                                MIN_GAIN_DB,
+                                MAX_GAIN_DB,
+                                gainDb));
+            }
+            return new VoiceProcessorPreprocessingOptions(
+                    isDcRemoval,
+                    highPassCutoffHz,
+                    isAutomaticGain,
+                    targetLevelDbfs,
+                    maxAutomaticGainDb,
+                    gainDb,
+                    isFused);
+        }
+    }
+}
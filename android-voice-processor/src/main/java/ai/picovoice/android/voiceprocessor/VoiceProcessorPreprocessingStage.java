@@ -0,0 +1,42 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Stages of the preprocessing chain enabled with
+ * {@link VoiceProcessor#setPreprocessingOptions(VoiceProcessorPreprocessingOptions)}, in the order
+ * they are applied.
+ */
+public enum VoiceProcessorPreprocessingStage {
+    /**
+     * Removes any constant offset from the samples with a one-pole filter at a few Hz.
+     */
+    DC_REMOVAL,
+
+    /**
+     * Attenuates rumble and handling noise below the cutoff frequency with a second-order
+     * Butterworth filter.
+     */
+    HIGH_PASS,
+
+    /**
+     * Brings the level of the audio towards a target level, adapting the gain from frame to
+     * frame.
+     */
+    AUTOMATIC_GAIN,
+
+    /**
+     * Applies a fixed gain.
+     */
+    GAIN
+}
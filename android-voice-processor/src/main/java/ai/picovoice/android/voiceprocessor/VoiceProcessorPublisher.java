@@ -0,0 +1,314 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Publishes the audio frames captured by the {@link VoiceProcessor} to subscribers that request
+ * them, for use in reactive pipelines. Create an instance with {@link Builder}.
+ *
+ * <p>Each subscriber only receives as many frames as it has requested. Frames captured while a
+ * subscriber has no outstanding demand wait in its queue, and once the queue is full the
+ * overflow policy of the publisher's {@link VoiceProcessorListenerOptions} decides what happens:
+ * the default drops the oldest frames, while {@link VoiceProcessorOverflowPolicy#BLOCK} holds
+ * back the recording thread until the subscriber catches up.
+ *
+ * <p>The first subscriber starts capture unless the VoiceProcessor is already recording, and
+ * the last subscriber to cancel stops it again if it was started by the publisher.
+ */
+public class VoiceProcessorPublisher {
+
+    private final VoiceProcessor voiceProcessor;
+    private final int frameLength;
+    private final int sampleRate;
+    private final VoiceProcessorCaptureConfig captureConfig;
+    private final VoiceProcessorListenerOptions options;
+    private final Object lock = new Object();
+    private final List<Subscription> subscriptions = new ArrayList<>();
+
+    private boolean isCaptureOwner = false;
+    private boolean isUpdatingCapture = false;
+
+    private VoiceProcessorPublisher(
+            VoiceProcessor voiceProcessor,
+            int frameLength,
+            int sampleRate,
+            VoiceProcessorCaptureConfig captureConfig,
+            VoiceProcessorListenerOptions options) {
+        this.voiceProcessor = voiceProcessor;
+        this.frameLength = frameLength;
+        this.sampleRate = sampleRate;
+        this.captureConfig = captureConfig;
+        this.options = options;
+    }
+
+    /**
+     * Subscribes to the captured frames. The subscriber is handed its subscription through
+     * `onSubscribe()` on the calling thread, after which capture is started if this is the only
+     * subscriber and the VoiceProcessor is not recording yet. If capture cannot be started, the
+     * subscribers waiting for it are sent the error through `onError()`.
+     *
+     * @param subscriber Subscriber to deliver frames to.
+     */
+    public void subscribe(VoiceProcessorSubscriber subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber cannot be null");
+        }
+
+        final Subscription subscription = new Subscription(subscriber);
+        synchronized (lock) {
+            subscriptions.add(subscription);
+        }
+        subscriber.onSubscribe(subscription);
+        updateCapture();
+    }
+
+    /**
+     * Ends every subscription, discarding the frames that were waiting, and sends the
+     * subscribers `onComplete()`. Capture is stopped if it was started by the publisher. New
+     * subscribers may still subscribe afterwards.
+     */
+    public void complete() {
+        final Subscription[] completed;
+        synchronized (lock) {
+            completed = subscriptions.toArray(new Subscription[0]);
+        }
+        for (Subscription subscription : completed) {
+            if (subscription.terminate()) {
+                subscription.signal(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscription.subscriber.onComplete();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Gets the number of subscribers that have not cancelled their subscription.
+     *
+     * @return the number of subscribers
+     */
+    public int getNumSubscribers() {
+        synchronized (lock) {
+            return subscriptions.size();
+        }
+    }
+
+    /**
+     * Starts or stops capture to match the current subscribers. Starting may wait for a previous
+     * session to wind down, so capture is started and stopped outside the lock, and by one thread
+     * at a time: a call made while another thread is updating capture leaves the work to that
+     * thread, which checks the subscribers again before it returns.
+     */
+    private void updateCapture() {
+        synchronized (lock) {
+            if (isUpdatingCapture) {
+                return;
+            }
+            isUpdatingCapture = true;
+        }
+
+        while (true) {
+            final boolean shouldStart;
+            final boolean shouldStop;
+            synchronized (lock) {
+                shouldStart = !isCaptureOwner && !subscriptions.isEmpty() && !voiceProcessor.getIsRecording();
+                shouldStop = isCaptureOwner && subscriptions.isEmpty();
+                if (!shouldStart && !shouldStop) {
+                    isUpdatingCapture = false;
+                    return;
+                }
+                isCaptureOwner = shouldStart;
+            }
+
+            if (shouldStop) {
+                voiceProcessor.stopAsync(null);
+                continue;
+            }
+            try {
+                voiceProcessor.start(frameLength, sampleRate, captureConfig);
+            } catch (VoiceProcessorArgumentException e) {
+                final Subscription[] failed;
+                synchronized (lock) {
+                    isCaptureOwner = false;
+                    failed = subscriptions.toArray(new Subscription[0]);
+                }
+                for (Subscription subscription : failed) {
+                    subscription.fail(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorPublisher.
+     */
+    public static class Builder {
+
+        private int frameLength = 0;
+        private int sampleRate = 0;
+        private VoiceProcessorCaptureConfig captureConfig = null;
+        private VoiceProcessorListenerOptions options = null;
+
+        /**
+         * Sets the number of audio samples per frame that capture is started with.
+         *
+         * @param frameLength Number of audio samples per frame.
+         * @return the Builder instance
+         */
+        public Builder setFrameLength(int frameLength) {
+            this.frameLength = frameLength;
+            return this;
+        }
+
+        /**
+         * Sets the sample rate that capture is started with.
+         *
+         * @param sampleRate Audio sample rate that the audio will be captured with.
+         * @return the Builder instance
+         */
+        public Builder setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Sets the configuration of the microphone recorder that capture is started with.
+         * Defaults to null, which uses the default profile.
+         *
+         * @param captureConfig Configuration of the microphone recorder, or null.
+         * @return the Builder instance
+         */
+        public Builder setCaptureConfig(VoiceProcessorCaptureConfig captureConfig) {
+            this.captureConfig = captureConfig;
+            return this;
+        }
+
+        /**
+         * Sets how frames are delivered to each subscriber, including the capacity of its queue,
+         * the overflow policy applied once the queue is full and the thread that `onNext()` is
+         * called on. Defaults to null, which uses the defaults of
+         * {@link VoiceProcessorListenerOptions}.
+         *
+         * @param options Options that control how frames are delivered to subscribers, or null.
+         * @return the Builder instance
+         */
+        public Builder setListenerOptions(VoiceProcessorListenerOptions options) {
+            this.options = options;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorPublisher for the
+         * VoiceProcessor singleton.
+         *
+         * @return an instance of VoiceProcessorPublisher
+         * @throws VoiceProcessorArgumentException if any of the properties are invalid
+         */
+        public VoiceProcessorPublisher build() throws VoiceProcessorArgumentException {
+            if (frameLength <= 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Frame length must be positive, but got %d", frameLength));
+            }
+            if (sampleRate <= 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Sample rate must be positive, but got %d", sampleRate));
+            }
+            return new VoiceProcessorPublisher(
+                    VoiceProcessor.getInstance(),
+                    frameLength,
+                    sampleRate,
+                    captureConfig,
+                    options);
+        }
+    }
+
+    /**
+     * A subscriber together with the listener that feeds it frames.
+     */
+    private final class Subscription implements VoiceProcessorSubscription, VoiceProcessorFrameListener {
+
+        private final VoiceProcessorSubscriber subscriber;
+        private final FrameSubscription frames;
+
+        private volatile boolean isCancelled = false;
+
+        Subscription(VoiceProcessorSubscriber subscriber) {
+            this.subscriber = subscriber;
+            this.frames = voiceProcessor.addDemandListener(this, options);
+        }
+
+        @Override
+        public void request(long numFrames) {
+            if (numFrames <= 0) {
+                fail(new IllegalArgumentException(
+                        String.format("Number of requested frames must be positive, but got %d", numFrames)));
+            } else if (!isCancelled) {
+                voiceProcessor.requestFrames(frames, numFrames);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            terminate();
+        }
+
+        @Override
+        public void onFrame(short[] frame) {
+            if (!isCancelled) {
+                subscriber.onNext(frame);
+            }
+        }
+
+        /**
+         * Removes the subscription, stopping capture if it was the last one.
+         *
+         * @return true if the subscription was active until now
+         */
+        boolean terminate() {
+            synchronized (lock) {
+                if (isCancelled) {
+                    return false;
+                }
+                isCancelled = true;
+                subscriptions.remove(this);
+            }
+            voiceProcessor.removeFrameListener(this);
+            updateCapture();
+            return true;
+        }
+
+        void fail(final Throwable error) {
+            if (terminate()) {
+                signal(new Runnable() {
+                    @Override
+                    public void run() {
+                        subscriber.onError(error);
+                    }
+                });
+            }
+        }
+
+        /**
+         * Sends a final signal through the delivery of frames, after the frame being delivered so
+         * that signals to the subscriber never overlap.
+         */
+        void signal(Runnable task) {
+            voiceProcessor.finishFrames(frames, task);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * File formats that {@link VoiceProcessorRecordingSink} can write.
+ */
+public enum VoiceProcessorRecordingFormat {
+    /**
+     * 16-bit mono PCM WAV. The header is kept up to date after every frame, so a file left behind
+     * by a crash is still a valid WAV file that covers all audio written before it.
+     */
+    WAV,
+
+    /**
+     * Headerless 16-bit little-endian mono PCM. A file left behind by a crash may end with up to
+     * one chunk of zeros.
+     */
+    RAW
+}
@@ -0,0 +1,24 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.io.File;
+
+/**
+ * Listener type that is given to {@link VoiceProcessorRecordingSink.Builder#setRecordingListener}.
+ * Notified on the thread that finalized a recording file, which happens when the sink rotates to
+ * a new file and when it is closed.
+ */
+public interface VoiceProcessorRecordingListener {
+    void onFileFinished(File file, long numSamples);
+}
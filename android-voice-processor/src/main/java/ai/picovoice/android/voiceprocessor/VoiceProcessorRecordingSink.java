@@ -0,0 +1,412 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * Frame listener that records captured audio to disk for sessions of any length. Create an
+ * instance with {@link Builder}, add it with
+ * {@link VoiceProcessor#addFrameListener(VoiceProcessorFrameListener, VoiceProcessorListenerOptions)}
+ * and call {@link #close()} once recording is over.
+ *
+ * <p>Files are memory-mapped and grown in large pre-allocated chunks, so writing a frame is a
+ * single copy into the page cache with no allocation and no system call; the kernel writes the
+ * pages back in the background and every completed chunk is flushed to storage. Add the sink
+ * with {@link VoiceProcessorDispatchMode#PROCESSING_THREAD} or its own executor to keep that
+ * copy off the main thread.
+ *
+ * <p>Files are named `prefix-0000.wav`, `prefix-0001.wav` and so on, and a new file is started
+ * once the current one would exceed the maximum size or duration. Existing files with the same
+ * names are overwritten.
+ */
+public class VoiceProcessorRecordingSink implements VoiceProcessorFrameListener {
+
+    private static final int WAV_HEADER_SIZE = 44;
+    private static final long WAV_MAX_FILE_BYTES = 0xFFFFFFFFL - 1;
+    private static final int BYTES_PER_SAMPLE = 2;
+
+    private final File directory;
+    private final String filePrefix;
+    private final VoiceProcessorRecordingFormat format;
+    private final int sampleRate;
+    private final int chunkBytes;
+    private final long maxFileSamples;
+    private final VoiceProcessorRecordingListener recordingListener;
+    private final VoiceProcessorErrorListener errorListener;
+
+    private RandomAccessFile file = null;
+    private FileChannel channel = null;
+    private File currentFile = null;
+    private int fileIndex = 0;
+    private MappedByteBuffer header = null;
+    private MappedByteBuffer chunk = null;
+    private ShortBuffer chunkSamples = null;
+    private long numChunks = 0;
+    private long numFileSamples = 0;
+    private boolean isClosed = false;
+
+    private volatile long numSamplesWritten = 0;
+
+    private VoiceProcessorRecordingSink(
+            File directory,
+            String filePrefix,
+            VoiceProcessorRecordingFormat format,
+            int sampleRate,
+            int chunkBytes,
+            long maxFileSamples,
+            VoiceProcessorRecordingListener recordingListener,
+            VoiceProcessorErrorListener errorListener) {
+        this.directory = directory;
+        this.filePrefix = filePrefix;
+        this.format = format;
+        this.sampleRate = sampleRate;
+        this.chunkBytes = chunkBytes;
+        this.maxFileSamples = maxFileSamples;
+        this.recordingListener = recordingListener;
+        this.errorListener = errorListener;
+    }
+
+    @Override
+    public synchronized void onFrame(short[] frame) {
+        if (isClosed) {
+            return;
+        }
+
+        try {
+            if (file != null && numFileSamples > 0 && numFileSamples + frame.length > maxFileSamples) {
+                finishFile();
+            }
+            if (file == null) {
+                openFile();
+            }
+
+            int offset = 0;
+            while (offset < frame.length) {
+                if (chunkSamples == null || !chunkSamples.hasRemaining()) {
+                    mapChunk();
+                }
+                final int length = Math.min(frame.length - offset, chunkSamples.remaining());
+                chunkSamples.put(frame, offset, length);
+                offset += length;
+            }
+
+            numFileSamples += frame.length;
+            numSamplesWritten += frame.length;
+            if (header != null) {
+                final long dataBytes = numFileSamples * BYTES_PER_SAMPLE;
+                header.putInt(4, (int) (WAV_HEADER_SIZE - 8 + dataBytes));
+                header.putInt(40, (int) dataBytes);
+            }
+        } catch (IOException e) {
+            isClosed = true;
+            releaseFile();
+            if (errorListener != null) {
+                errorListener.onError(new VoiceProcessorException("Unable to write recording to " + currentFile, e));
+            }
+        }
+    }
+
+    /**
+     * Finalizes the current file and stops recording. Frames delivered afterwards are ignored.
+     *
+     * @throws VoiceProcessorException if the file could not be finalized
+     */
+    public synchronized void close() throws VoiceProcessorException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+        if (file != null) {
+            try {
+                finishFile();
+            } catch (IOException e) {
+                releaseFile();
+                throw new VoiceProcessorException("Unable to finalize recording " + currentFile, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the file that frames are currently written to.
+     *
+     * @return the current file, or null if no file is open
+     */
+    public synchronized File getCurrentFile() {
+        return file != null ? currentFile : null;
+    }
+
+    /**
+     * Gets the number of samples written so far, across all files.
+     *
+     * @return the number of samples
+     */
+    public long getNumSamplesWritten() {
+        return numSamplesWritten;
+    }
+
+    private void openFile() throws IOException {
+        final String extension = format == VoiceProcessorRecordingFormat.WAV ? "wav" : "pcm";
+        currentFile = new File(directory, String.format(Locale.US, "%s-%04d.%s", filePrefix, fileIndex++, extension));
+        file = new RandomAccessFile(currentFile, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        numChunks = 0;
+        numFileSamples = 0;
+
+        if (format == VoiceProcessorRecordingFormat.WAV) {
+            header = channel.map(FileChannel.MapMode.READ_WRITE, 0, WAV_HEADER_SIZE);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.put(new byte[]{'R', 'I', 'F', 'F'});
+            header.putInt(WAV_HEADER_SIZE - 8);
+            header.put(new byte[]{'W', 'A', 'V', 'E', 'f', 'm', 't', ' '});
+            header.putInt(16);
+            header.putShort((short) 1);
+            header.putShort((short) 1);
+            header.putInt(sampleRate);
+            header.putInt(sampleRate * BYTES_PER_SAMPLE);
+            header.putShort((short) BYTES_PER_SAMPLE);
+            header.putShort((short) 16);
+            header.put(new byte[]{'d', 'a', 't', 'a'});
+            header.putInt(0);
+        }
+    }
+
+    private void mapChunk() throws IOException {
+        if (chunk != null) {
+            chunk.force();
+        }
+        final long position = getHeaderSize() + numChunks * chunkBytes;
+        chunk = channel.map(FileChannel.MapMode.READ_WRITE, position, chunkBytes);
+        chunkSamples = chunk.order(ByteOrder.LITTLE_ENDIAN).asShortBuffer();
+        numChunks++;
+    }
+
+    private void finishFile() throws IOException {
+        if (chunk != null) {
+            chunk.force();
+        }
+        if (header != null) {
+            header.force();
+        }
+        final File finishedFile = currentFile;
+        final long numSamples = numFileSamples;
+        channel.truncate(getHeaderSize() + numSamples * BYTES_PER_SAMPLE);
+        channel.force(true);
+        releaseFile();
+        if (recordingListener != null) {
+            recordingListener.onFileFinished(finishedFile, numSamples);
+        }
+    }
+
+    private void releaseFile() {
+        header = null;
+        chunk = null;
+        chunkSamples = null;
+        channel = null;
+        if (file != null) {
+            try {
+                file.close();
+            } catch (IOException ignored) {
+            }
+            file = null;
+        }
+    }
+
+    private int getHeaderSize() {
+        return format == VoiceProcessorRecordingFormat.WAV ? WAV_HEADER_SIZE : 0;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorRecordingSink.
+     */
+    public static class Builder {
+
+        private File directory = null;
+        private String filePrefix = "recording";
+        private VoiceProcessorRecordingFormat format = VoiceProcessorRecordingFormat.WAV;
+        private int sampleRate = 0;
+        private int chunkBytes = 1024 * 1024;
+        private long maxFileBytes = 0;
+        private long maxFileMillis = 0;
+        private VoiceProcessorRecordingListener recordingListener = null;
+        private VoiceProcessorErrorListener errorListener = null;
+
+        /**
+         * Sets the directory that recording files are written to. Required.
+         *
+         * @param directory Existing directory to write files to.
+         * @return the Builder instance
+         */
+        public Builder setDirectory(File directory) {
+            this.directory = directory;
+            return this;
+        }
+
+        /**
+         * Sets the prefix of the recording file names. Defaults to `recording`.
+         *
+         * @param filePrefix Prefix of the file names.
+         * @return the Builder instance
+         */
+        public Builder setFilePrefix(String filePrefix) {
+            this.filePrefix = filePrefix;
+            return this;
+        }
+
+        /**
+         * Sets the file format. Defaults to {@link VoiceProcessorRecordingFormat#WAV}.
+         *
+         * @param format Format of the recording files.
+         * @return the Builder instance
+         */
+        public Builder setFormat(VoiceProcessorRecordingFormat format) {
+            this.format = format;
+            return this;
+        }
+
+        /**
+         * Sets the sample rate of the recorded audio, which must match the rate the VoiceProcessor
+         * is started with. Required.
+         *
+         * @param sampleRate Sample rate in Hz.
+         * @return the Builder instance
+         */
+        public Builder setSampleRate(int sampleRate) {
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        /**
+         * Sets how much of a file is pre-allocated and mapped at once. Larger chunks mean fewer
+         * mappings and flushes to storage, at the cost of more audio that may not have reached
+         * storage if the device loses power. Defaults to 1 MiB, about 30 seconds at 16 kHz.
+         *
+         * @param chunkBytes Chunk size in bytes, a positive multiple of 2.
+         * @return the Builder instance
+         */
+        public Builder setChunkBytes(int chunkBytes) {
+            this.chunkBytes = chunkBytes;
+            return this;
+        }
+
+        /**
+         * Sets the size a file may grow to before the sink starts a new one. Defaults to 0, which
+         * only rotates WAV files at the 4 GiB limit of the format.
+         *
+         * @param maxFileBytes Maximum file size in bytes, or 0 for no limit.
+         * @return the Builder instance
+         */
+        public Builder setMaxFileBytes(long maxFileBytes) {
+            this.maxFileBytes = maxFileBytes;
+            return this;
+        }
+
+        /**
+         * Sets the duration of audio a file may hold before the sink starts a new one. Defaults
+         * to 0, for no limit.
+         *
+         * @param maxFileMillis Maximum file duration in milliseconds, or 0 for no limit.
+         * @return the Builder instance
+         */
+        public Builder setMaxFileMillis(long maxFileMillis) {
+            this.maxFileMillis = maxFileMillis;
+            return this;
+        }
+
+        /**
+         * Sets a listener that is notified whenever a file has been finalized.
+         *
+         * @param recordingListener Listener for finished files.
+         * @return the Builder instance
+         */
+        public Builder setRecordingListener(VoiceProcessorRecordingListener recordingListener) {
+            this.recordingListener = recordingListener;
+            return this;
+        }
+
+        /**
+         * Sets a listener for write errors. The sink stops recording after the first error.
+         *
+         * @param errorListener Listener for write errors.
+         * @return the Builder instance
+         */
+        public Builder setErrorListener(VoiceProcessorErrorListener errorListener) {
+            this.errorListener = errorListener;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorRecordingSink.
+         *
+         * @return an instance of VoiceProcessorRecordingSink
+         * @throws VoiceProcessorArgumentException if any of the properties are invalid
+         */
+        public VoiceProcessorRecordingSink build() throws VoiceProcessorArgumentException {
+            if (directory == null || !directory.isDirectory()) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Recording directory %s does not exist", directory));
+            }
+            if (filePrefix == null || filePrefix.isEmpty()) {
+                throw new VoiceProcessorArgumentException("File prefix must not be empty");
+            }
+            if (format == null) {
+                throw new VoiceProcessorArgumentException("Recording format must not be null");
+            }
+            if (sampleRate <= 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Sample rate must be positive, but got %d", sampleRate));
+            }
+            if (chunkBytes <= 0 || chunkBytes % BYTES_PER_SAMPLE != 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Chunk size must be a positive multiple of 2, but got %d", chunkBytes));
+            }
+            if (maxFileBytes < 0 || maxFileMillis < 0) {
+                throw new VoiceProcessorArgumentException("Maximum file size and duration must be non-negative");
+            }
+
+            final int headerSize = format == VoiceProcessorRecordingFormat.WAV ? WAV_HEADER_SIZE : 0;
+            long maxFileSamples = Long.MAX_VALUE;
+            if (format == VoiceProcessorRecordingFormat.WAV) {
+                maxFileSamples = (WAV_MAX_FILE_BYTES - headerSize) / BYTES_PER_SAMPLE;
+            }
+            if (maxFileBytes > 0) {
+                if (maxFileBytes < headerSize + BYTES_PER_SAMPLE) {
+                    throw new VoiceProcessorArgumentException(
+                            String.format("Maximum file size %d cannot hold any audio", maxFileBytes));
+                }
+                maxFileSamples = Math.min(maxFileSamples, (maxFileBytes - headerSize) / BYTES_PER_SAMPLE);
+            }
+            if (maxFileMillis > 0) {
+                maxFileSamples = Math.min(maxFileSamples, Math.max(1, maxFileMillis * sampleRate / 1000));
+            }
+
+            return new VoiceProcessorRecordingSink(
+                    directory,
+                    filePrefix,
+                    format,
+                    sampleRate,
+                    chunkBytes,
+                    maxFileSamples,
+                    recordingListener,
+                    errorListener);
+        }
+    }
+}
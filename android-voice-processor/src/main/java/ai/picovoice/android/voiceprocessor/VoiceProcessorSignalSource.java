@@ -0,0 +1,98 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import java.util.Random;
+
+/**
+ * Audio source that synthesizes a sine tone mixed with white noise. It does not depend on any
+ * Android APIs, so the VoiceProcessor read loop can be driven by it on a plain JVM for testing
+ * and benchmarking.
+ */
+public class VoiceProcessorSignalSource implements VoiceProcessorAudioSource {
+
+    private final double frequency;
+    private final double toneAmplitude;
+    private final double noiseAmplitude;
+    private final RealTimePacer pacer;
+    private final Random random = new Random(0);
+
+    private int sampleRate;
+    private double phase;
+
+    /**
+     * Creates a synthetic audio source.
+     *
+     * @param frequency      Frequency of the sine tone in Hz.
+     * @param toneAmplitude  Amplitude of the sine tone, relative to full scale (0 to 1).
+     * @param noiseAmplitude Amplitude of the white noise, relative to full scale (0 to 1).
+     * @param isRealTime     If true, samples are delivered at the rate a recorder would produce
+     *                       them. Otherwise they are delivered as fast as they are requested.
+     */
+    public VoiceProcessorSignalSource(
+            double frequency,
+            double toneAmplitude,
+            double noiseAmplitude,
+            boolean isRealTime) {
+        this.frequency = frequency;
+        this.toneAmplitude = toneAmplitude;
+        this.noiseAmplitude = noiseAmplitude;
+        this.pacer = new RealTimePacer(isRealTime);
+    }
+
+    @Override
+    public void open(int frameLength, int sampleRate) throws VoiceProcessorArgumentException {
+        if (frequency < 0 || frequency * 2 > sampleRate) {
+            throw new VoiceProcessorArgumentException(String.format(
+                    "Tone frequency %f Hz cannot be represented at sample rate %d",
+                    frequency,
+                    sampleRate));
+        }
+        this.sampleRate = sampleRate;
+        this.phase = 0;
+    }
+
+    @Override
+    public void start() {
+        pacer.start(sampleRate);
+    }
+
+    @Override
+    public int read(short[] buffer, int offset, int length) throws VoiceProcessorReadException {
+        final double phaseIncrement = 2 * Math.PI * frequency / sampleRate;
+        for (int i = 0; i < length; i++) {
+            double sample = toneAmplitude * Math.sin(phase);
+            if (noiseAmplitude > 0) {
+                sample += noiseAmplitude * (2 * random.nextDouble() - 1);
+            }
+            sample = Math.max(-1.0, Math.min(1.0, sample));
+            buffer[offset + i] = (short) Math.round(sample * Short.MAX_VALUE);
+
+            phase += phaseIncrement;
+            if (phase >= 2 * Math.PI) {
+                phase -= 2 * Math.PI;
+            }
+        }
+
+        pacer.advance(length);
+        return length;
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,52 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Subscriber that receives audio frames from a {@link VoiceProcessorPublisher} as they are
+ * requested. It follows the `java.util.concurrent.Flow.Subscriber` contract, which is only
+ * available from Android 11 (API 30); {@link VoiceProcessorFlowPublisher} adapts one to the
+ * other.
+ *
+ * <p>Frames are delivered on the thread chosen by the publisher's listener options and must not
+ * be used after `onNext()` returns unless they are retained with
+ * {@link VoiceProcessor#retainFrame(short[])}. Signals after `onSubscribe()` are serial, even on
+ * a multi-threaded executor: `onError()` and `onComplete()` are sent after the frame being
+ * delivered, if any, and never at the same time as `onNext()`.
+ */
+public interface VoiceProcessorSubscriber {
+
+    /**
+     * Called once before any other signal. No frames are delivered until they are requested
+     * with {@link VoiceProcessorSubscription#request(long)}.
+     *
+     * @param subscription Subscription to request frames with, or to cancel.
+     */
+    void onSubscribe(VoiceProcessorSubscription subscription);
+
+    void onNext(short[] frame);
+
+    /**
+     * Called when the subscription ends because capture could not be started or because an
+     * invalid number of frames was requested. No further signals follow.
+     *
+     * @param error Reason the subscription ended.
+     */
+    void onError(Throwable error);
+
+    /**
+     * Called when the subscription ends because the publisher was completed with
+     * {@link VoiceProcessorPublisher#complete()}. No further signals follow.
+     */
+    void onComplete();
+}
@@ -0,0 +1,37 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Link between a {@link VoiceProcessorPublisher} and one of its subscribers, through which the
+ * subscriber signals how many frames it is ready to receive.
+ */
+public interface VoiceProcessorSubscription {
+
+    /**
+     * Adds to the number of frames the subscriber is ready to receive. Frames coalesced into one
+     * delivery by {@link VoiceProcessorOverflowPolicy#COALESCE} count as one. A total of
+     * `Long.MAX_VALUE` or more is treated as unbounded.
+     *
+     * @param numFrames Number of additional frames, which must be positive. Otherwise the
+     *                  subscription is cancelled and the subscriber is sent an
+     *                  `IllegalArgumentException` through `onError()`.
+     */
+    void request(long numFrames);
+
+    /**
+     * Stops the delivery of frames and discards any that were waiting. Cancelling the last
+     * subscription stops capture if it was started by the publisher.
+     */
+    void cancel();
+}
@@ -0,0 +1,198 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+/**
+ * Thresholds of the voice activity gate enabled with
+ * {@link VoiceProcessor#setVoiceActivityOptions(VoiceProcessorVoiceActivityOptions)}. Create an
+ * instance with {@link Builder}.
+ *
+ * <p>A captured frame counts as active when its level reaches the threshold and its zero-crossing
+ * rate stays below the maximum, which rejects broadband noise such as hiss. The gate opens once
+ * frames have been active for the onset duration, using the onset threshold, and closes once they
+ * have been inactive for longer than the hangover duration, using the lower offset threshold.
+ */
+public class VoiceProcessorVoiceActivityOptions {
+
+    private final double onsetThresholdDbfs;
+    private final double offsetThresholdDbfs;
+    private final double maxZeroCrossingRate;
+    private final int onsetMillis;
+    private final int hangoverMillis;
+
+    private VoiceProcessorVoiceActivityOptions(
+            double onsetThresholdDbfs,
+            double offsetThresholdDbfs,
+            double maxZeroCrossingRate,
+            int onsetMillis,
+            int hangoverMillis) {
+        this.onsetThresholdDbfs = onsetThresholdDbfs;
+        this.offsetThresholdDbfs = offsetThresholdDbfs;
+        this.maxZeroCrossingRate = maxZeroCrossingRate;
+        this.onsetMillis = onsetMillis;
+        this.hangoverMillis = hangoverMillis;
+    }
+
+    /**
+     * Gets the level a frame must reach for the gate to open.
+     *
+     * @return the onset threshold in dB relative to full scale
+     */
+    public double getOnsetThresholdDbfs() {
+        return onsetThresholdDbfs;
+    }
+
+    /**
+     * Gets the level a frame must reach to keep the gate open.
+     *
+     * @return the offset threshold in dB relative to full scale
+     */
+    public double getOffsetThresholdDbfs() {
+        return offsetThresholdDbfs;
+    }
+
+    /**
+     * Gets the highest fraction of consecutive samples that may change sign in an active frame.
+     *
+     * @return the maximum zero-crossing rate
+     */
+    public double getMaxZeroCrossingRate() {
+        return maxZeroCrossingRate;
+    }
+
+    /**
+     * Gets how long frames must be active before the gate opens.
+     *
+     * @return the onset duration in milliseconds
+     */
+    public int getOnsetMillis() {
+        return onsetMillis;
+    }
+
+    /**
+     * Gets how long the gate stays open after the last active frame.
+     *
+     * @return the hangover duration in milliseconds
+     */
+    public int getHangoverMillis() {
+        return hangoverMillis;
+    }
+
+    /**
+     * Builder for creating instances of VoiceProcessorVoiceActivityOptions.
+     */
+    public static class Builder {
+
+        private double onsetThresholdDbfs = -40.0;
+        private double offsetThresholdDbfs = -46.0;
+        private double maxZeroCrossingRate = 0.4;
+        private int onsetMillis = 20;
+        private int hangoverMillis = 300;
+
+        /**
+         * Sets the level a frame must reach for the gate to open. Defaults to -40 dBFS.
+         *
+         * @param onsetThresholdDbfs Onset threshold in dB relative to full scale.
+         * @return the Builder instance
+         */
+        public Builder setOnsetThresholdDbfs(double onsetThresholdDbfs) {
+            this.onsetThresholdDbfs = onsetThresholdDbfs;
+            return this;
+        }
+
+        /**
+         * Sets the level a frame must reach to keep the gate open. Keeping it below the onset
+         * threshold stops the gate from toggling on audio close to the threshold. Defaults to
+         * -46 dBFS.
+         *
+         * @param offsetThresholdDbfs Offset threshold in dB relative to full scale.
+         * @return the Builder instance
+         */
+        public Builder setOffsetThresholdDbfs(double offsetThresholdDbfs) {
+            this.offsetThresholdDbfs = offsetThresholdDbfs;
+            return this;
+        }
+
+        /**
+         * Sets the highest fraction of consecutive samples that may change sign in an active
+         * frame. White noise changes sign about every other sample. Defaults to 0.4.
+         *
+         * @param maxZeroCrossingRate Maximum zero-crossing rate, up to 1.
+         * @return the Builder instance
+         */
+        public Builder setMaxZeroCrossingRate(double maxZeroCrossingRate) {
+            this.maxZeroCrossingRate = maxZeroCrossingRate;
+            return this;
+        }
+
+        /**
+         * Sets how long frames must be active before the gate opens, which keeps short clicks
+         * from opening it. Defaults to 20 milliseconds.
+         *
+         * @param onsetMillis Onset duration in milliseconds.
+         * @return the Builder instance
+         */
+        public Builder setOnsetMillis(int onsetMillis) {
+            this.onsetMillis = onsetMillis;
+            return this;
+        }
+
+        /**
+         * Sets how long the gate stays open after the last active frame, so that pauses between
+         * words do not close it. Defaults to 300 milliseconds.
+         *
+         * @param hangoverMillis Hangover duration in milliseconds.
+         * @return the Builder instance
+         */
+        public Builder setHangoverMillis(int hangoverMillis) {
+            this.hangoverMillis = hangoverMillis;
+            return this;
+        }
+
+        /**
+         * Validates properties and creates an instance of VoiceProcessorVoiceActivityOptions.
+         *
+         * @return an instance of VoiceProcessorVoiceActivityOptions
+         * @throws VoiceProcessorArgumentException if any of the options are invalid
+         */
+        public VoiceProcessorVoiceActivityOptions build() throws VoiceProcessorArgumentException {
+            if (offsetThresholdDbfs > onsetThresholdDbfs) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Offset threshold %.1f dBFS cannot be above onset threshold %.1f dBFS",
+                                offsetThresholdDbfs,
+                                onsetThresholdDbfs));
+            }
+            if (!(maxZeroCrossingRate > 0 && maxZeroCrossingRate <= 1)) {
+                throw new VoiceProcessorArgumentException(
+                        String.format(
+                                "Maximum zero-crossing rate must be in (0, 1], but got %f",
+                                maxZeroCrossingRate));
+            }
+            if (onsetMillis < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Onset duration must be non-negative, but got %d", onsetMillis));
+            }
+            if (hangoverMillis < 0) {
+                throw new VoiceProcessorArgumentException(
+                        String.format("Hangover duration must be non-negative, but got %d", hangoverMillis));
+            }
+            return new VoiceProcessorVoiceActivityOptions(
+                    onsetThresholdDbfs,
+                    offsetThresholdDbfs,
+                    maxZeroCrossingRate,
+                    onsetMillis,
+                    hangoverMillis);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+public class AudioSourceTest {
+
+    final int frameLength = 512;
+    final int sampleRate = 16000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testWavFile() throws IOException, VoiceProcessorException {
+        final short[] pcm = ramp(frameLength * 3);
+        final File file = writeWav(pcm, sampleRate);
+
+        final VoiceProcessorFileSource source = new VoiceProcessorFileSource(file, false, false);
+        source.open(frameLength, sampleRate);
+        source.start();
+
+        final short[] frame = new short[frameLength];
+        for (int i = 0; i < 3; i++) {
+            assertEquals(frameLength, source.read(frame, 0, frameLength));
+            for (int j = 0; j < frameLength; j++) {
+                assertEquals(pcm[i * frameLength + j], frame[j]);
+            }
+        }
+        assertEquals(VoiceProcessorAudioSource.END_OF_STREAM, source.read(frame, 0, frameLength));
+
+        source.stop();
+        source.close();
+    }
+
+    @Test
+    public void testRawFileLooping() throws IOException, VoiceProcessorException {
+        final short[] pcm = ramp(frameLength / 2 + 7);
+        final File file = writeRaw(pcm);
+
+        final VoiceProcessorFileSource source = new VoiceProcessorFileSource(file, false, true);
+        source.open(frameLength, sampleRate);
+        source.start();
+
+        final short[] frame = new short[frameLength];
+        for (int i = 0; i < 4; i++) {
+            assertEquals(frameLength, source.read(frame, 0, frameLength));
+            for (int j = 0; j < frameLength; j++) {
+                assertEquals(pcm[(i * frameLength + j) % pcm.length], frame[j]);
+            }
+        }
+        source.close();
+    }
+
+    @Test
+    public void testWavSampleRateMismatch() throws IOException {
+        final File file = writeWav(ramp(frameLength), 44100);
+        assertOpenFails(new VoiceProcessorFileSource(file, false, false));
+    }
+
+    @Test
+    public void testWavTrailingChunks() throws IOException, VoiceProcessorException {
+        final short[] pcm = ramp(frameLength + 7);
+        final File file = writeWav(
+                formatChunk(sampleRate, 16),
+                dataChunk(pcm),
+                chunk("LIST", new byte[]{'I', 'N', 'F', 'O', 'I', 'S', 'F', 'T', 1, 0, 0, 0, 'x'}));
+
+        // Looping wraps around at the end of the data chunk, not at the end of the file
+        final VoiceProcessorFileSource source = new VoiceProcessorFileSource(file, false, true);
+        source.open(frameLength, sampleRate);
+        source.start();
+        final short[] frame = new short[frameLength];
+        for (int i = 0; i < 3; i++) {
+            assertEquals(frameLength, source.read(frame, 0, frameLength));
+            for (int j = 0; j < frameLength; j++) {
+                assertEquals(pcm[(i * frameLength + j) % pcm.length], frame[j]);
+            }
+        }
+        source.close();
+
+        final VoiceProcessorFileSource once = new VoiceProcessorFileSource(file, false, false);
+        once.open(frameLength, sampleRate);
+        once.start();
+        assertEquals(frameLength, once.read(frame, 0, frameLength));
+        assertEquals(7, once.read(frame, 0, frameLength));
+        for (int j = 0; j < 7; j++) {
+            assertEquals(pcm[frameLength + j], frame[j]);
+        }
+        assertEquals(VoiceProcessorAudioSource.END_OF_STREAM, once.read(frame, 0, frameLength));
+        once.close();
+    }
+
+    @Test
+    public void testWavFormatChunkTooShort() throws IOException {
+        final File file = writeWav(formatChunk(sampleRate, 14), dataChunk(ramp(frameLength)));
+        assertOpenFails(new VoiceProcessorFileSource(file, false, false));
+    }
+
+    @Test
+    public void testWavWithoutFormatChunk() throws IOException {
+        final File file = writeWav(dataChunk(ramp(frameLength)));
+        assertOpenFails(new VoiceProcessorFileSource(file, false, false));
+    }
+
+    @Test
+    public void testSignalSourceRealTimePacing() throws VoiceProcessorException {
+        final VoiceProcessorSignalSource source = new VoiceProcessorSignalSource(440, 0.5, 0.0, true);
+        source.open(frameLength, sampleRate);
+        source.start();
+
+        final int numFrames = 10;
+        final short[] frame = new short[frameLength];
+        final long startTimeNs = System.nanoTime();
+        for (int i = 0; i < numFrames; i++) {
+            assertEquals(frameLength, source.read(frame, 0, frameLength));
+        }
+        final long elapsedMs = (System.nanoTime() - startTimeNs) / 1000000;
+        final long expectedMs = (long) numFrames * frameLength * 1000 / sampleRate;
+        assertTrue(elapsedMs >= expectedMs - 5);
+
+        int peak = 0;
+        for (short sample : frame) {
+            peak = Math.max(peak, Math.abs(sample));
+        }
+        assertTrue(peak > Short.MAX_VALUE * 0.45 && peak <= Short.MAX_VALUE * 0.5 + 1);
+        source.close();
+    }
+
+    private short[] ramp(int length) {
+        final short[] pcm = new short[length];
+        for (int i = 0; i < length; i++) {
+            pcm[i] = (short) ((i * 37) - 16000);
+        }
+        return pcm;
+    }
+
+    private File writeRaw(short[] pcm) throws IOException {
+        final File file = tempFolder.newFile("audio.pcm");
+        final ByteBuffer buffer = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asShortBuffer().put(pcm);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array());
+        }
+        return file;
+    }
+
+    private void assertOpenFails(VoiceProcessorFileSource source) {
+        try {
+            source.open(frameLength, sampleRate);
+            fail("Expected VoiceProcessorArgumentException");
+        } catch (VoiceProcessorArgumentException e) {
+            source.close();
+        } catch (VoiceProcessorException e) {
+            fail("Expected VoiceProcessorArgumentException");
+        }
+    }
+
+    private File writeWav(short[] pcm, int wavSampleRate) throws IOException {
+        return writeWav(formatChunk(wavSampleRate, 16), dataChunk(pcm));
+    }
+
+    private File writeWav(byte[]... chunks) throws IOException {
+        int length = 0;
+        for (byte[] chunk : chunks) {
+            length += chunk.length;
+        }
+        final File file = tempFolder.newFile("audio.wav");
+        final ByteBuffer buffer = ByteBuffer.allocate(12 + length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes("US-ASCII"));
+        buffer.putInt(4 + length);
+        buffer.put("WAVE".getBytes("US-ASCII"));
+        for (byte[] chunk : chunks) {
+            buffer.put(chunk);
+        }
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buffer.array());
+        }
+        return file;
+    }
+
+    /**
+     * Builds a 16-bit mono PCM format chunk, cut short or padded with zeros to the given size.
+     */
+    private static byte[] formatChunk(int wavSampleRate, int size) throws IOException {
+        final ByteBuffer format = ByteBuffer.allocate(Math.max(16, size)).order(ByteOrder.LITTLE_ENDIAN);
+        format.putShort((short) 1);
+        format.putShort((short) 1);
+        format.putInt(wavSampleRate);
+        format.putInt(wavSampleRate * 2);
+        format.putShort((short) 2);
+        format.putShort((short) 16);
+        final byte[] payload = new byte[size];
+        System.arraycopy(format.array(), 0, payload, 0, size);
+        return chunk("fmt ", payload);
+    }
+
+    private static byte[] dataChunk(short[] pcm) throws IOException {
+        final ByteBuffer samples = ByteBuffer.allocate(pcm.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        samples.asShortBuffer().put(pcm);
+        return chunk("data", samples.array());
+    }
+
+    private static byte[] chunk(String id, byte[] payload) throws IOException {
+        final ByteBuffer chunk = ByteBuffer.allocate(8 + payload.length + (payload.length & 1))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(id.getBytes("US-ASCII"));
+        chunk.putInt(payload.length);
+        chunk.put(payload);
+        return chunk.array();
+    }
+}
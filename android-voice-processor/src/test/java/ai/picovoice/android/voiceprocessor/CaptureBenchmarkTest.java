@@ -0,0 +1,636 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Microbenchmarks of the capture-and-dispatch path that run on the JVM with stub audio sources in
+ * place of the microphone. They are skipped unless `voiceprocessor.benchmark.enabled` is set, and
+ * write their results as JSON lines to `build/benchmark-results/capture-benchmark.jsonl` so that
+ * they can be compared across builds. To run the benchmarks alone with ten times as many operations:
+ * <pre>
+ * ./gradlew :android-voice-processor:testDebugUnitTest --tests '*CaptureBenchmarkTest' \
+ *     -Dvoiceprocessor.benchmark.enabled=true -Dvoiceprocessor.benchmark.scale=10
+ * </pre>
+ *
+ * <p>The following system properties are read, and can be passed to Gradle with
+ * `-Dvoiceprocessor.benchmark.*`:
+ * <ul>
+ *   <li>`voiceprocessor.benchmark.enabled`: runs the benchmarks when `true`</li>
+ *   <li>`voiceprocessor.benchmark.scale`: multiplies the number of measured operations (default 1)</li>
+ *   <li>`voiceprocessor.benchmark.output`: path of the results file</li>
+ *   <li>`voiceprocessor.benchmark.baseline`: path of a previous results file to gate against</li>
+ *   <li>`voiceprocessor.benchmark.tolerance`: allowed slowdown relative to the baseline (default 1.5)</li>
+ * </ul>
+ */
+public class CaptureBenchmarkTest {
+
+    private static final String PROPERTY_PREFIX = "voiceprocessor.benchmark.";
+    private static final List<Result> results = new ArrayList<>();
+    private static final boolean isEnabled = Boolean.getBoolean(PROPERTY_PREFIX + "enabled");
+
+    final int[] listenerCounts = new int[]{1, 4, 16};
+    final int[] frameLengths = new int[]{256, 512, 1024};
+    final int sampleRate = 16000;
+    final double scale = Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "scale", "1"));
+
+    private final VoiceProcessor vp = VoiceProcessor.getInstance();
+
+    @Rule
+    public ExternalResource voiceProcessorResource = new ExternalResource() {
+        @Override
+        protected void after() {
+            try {
+                vp.stop();
+                vp.clearFrameListeners();
+                vp.setFramePoolCapacity(0);
+                vp.setAudioSource(null);
+                vp.setDispatchMode(VoiceProcessorDispatchMode.MAIN_THREAD);
+            } catch (VoiceProcessorException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @BeforeClass
+    public static void checkEnabled() {
+        assumeTrue(isEnabled);
+    }
+
+    /**
+     * Writes the results of every benchmark and, if a baseline was given, fails on regressions.
+     *
+     * @throws IOException if the results or the baseline cannot be accessed
+     */
+    @AfterClass
+    public static void writeResults() throws IOException {
+        if (!isEnabled) {
+            return;
+        }
+        final File output = new File(System.getProperty(
+                PROPERTY_PREFIX + "output",
+                "build/benchmark-results/capture-benchmark.jsonl"));
+        final File directory = output.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        try (Writer writer = new FileWriter(output)) {
+            for (Result result : results) {
+                writer.write(result.toJson());
+                writer.write('\n');
+            }
+        }
+
+        final String baseline = System.getProperty(PROPERTY_PREFIX + "baseline");
+        if (baseline != null) {
+            checkBaseline(
+                    new File(baseline),
+                    Double.parseDouble(System.getProperty(PROPERTY_PREFIX + "tolerance", "1.5")));
+        }
+    }
+
+    @Test
+    public void benchmarkDispatch() throws Exception {
+        final VoiceProcessorDispatchMode[] modes = new VoiceProcessorDispatchMode[]{
+                null,
+                VoiceProcessorDispatchMode.PROCESSING_THREAD
+        };
+        for (VoiceProcessorDispatchMode mode : modes) {
+            for (int numListeners : listenerCounts) {
+                for (int frameLength : frameLengths) {
+                    runDispatch(mode, numListeners, frameLength);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkListenerChurn() throws Exception {
+        final int numListeners = 4;
+        final int frameLength = 512;
+        final VoiceProcessorListenerOptions options = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(Runnable::run)
+                .build();
+        final AtomicLong sink = new AtomicLong(0);
+        for (int i = 0; i < numListeners; i++) {
+            vp.addFrameListener(frame -> sink.addAndGet(frame[0]), options);
+        }
+
+        final AudioFrame frame = new AudioFrame(frameLength);
+        for (boolean isChurning : new boolean[]{false, true}) {
+            final AtomicBoolean isRunning = new AtomicBoolean(isChurning);
+            final Thread churnThread = new Thread(() -> {
+                final VoiceProcessorFrameListener churnListener = f -> { };
+                while (isRunning.get()) {
+                    vp.addFrameListener(churnListener, options);
+                    vp.removeFrameListener(churnListener);
+                }
+            });
+            churnThread.start();
+            try {
+                measure(
+                        "churn",
+                        params("listeners", numListeners, "frameLength", frameLength, "churn", isChurning),
+                        ops(200_000),
+                        100,
+                        () -> vp.onFrame(frame, null, sampleRate));
+            } finally {
+                isRunning.set(false);
+                churnThread.join();
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkRouting() throws Exception {
+        final String[] scenarios = new String[]{"reframe", "resample", "buffer", "float"};
+        for (int poolCapacity : new int[]{0, 8}) {
+            for (String scenario : scenarios) {
+                runRouting(scenario, poolCapacity);
+            }
+        }
+    }
+
+    private void runRouting(String scenario, int poolCapacity) throws VoiceProcessorException {
+        final int capturedFrameLength = 512;
+        final Executor directExecutor = Runnable::run;
+
+        // an empty capture session sets up the frame pools that routing draws from
+        vp.setFramePoolCapacity(poolCapacity);
+        vp.setAudioSource(new StubSource(0));
+        vp.start(capturedFrameLength, sampleRate);
+        vp.stop();
+        vp.setFramePoolCapacity(0);
+
+        final AtomicLong sink = new AtomicLong(0);
+        final VoiceProcessorListenerOptions.Builder builder = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(directExecutor);
+        switch (scenario) {
+            case "reframe":
+                vp.addFrameListener(frame -> sink.addAndGet(frame[0]), builder
+                        .setFrameLength(1024)
+                        .setHopLength(256)
+                        .build());
+                break;
+            case "resample":
+                vp.addFrameListener(frame -> sink.addAndGet(frame[0]), builder
+                        .setSampleRate(16000)
+                        .build());
+                break;
+            case "buffer":
+                vp.addBufferListener(frame -> sink.addAndGet(frame.getShort(0)), builder.build());
+                break;
+            default:
+                vp.addFloatListener(frame -> sink.addAndGet((long) frame[0]), builder.build());
+                break;
+        }
+
+        final AudioFrame frame = new AudioFrame(capturedFrameLength);
+        final int capturedSampleRate = scenario.equals("resample") ? 48000 : sampleRate;
+        measure(
+                "route",
+                params("scenario", scenario, "frameLength", capturedFrameLength, "poolCapacity", poolCapacity),
+                ops(20_000),
+                1,
+                () -> vp.onFrame(frame, null, capturedSampleRate));
+        vp.clearFrameListeners();
+    }
+
+    @Test
+    public void benchmarkConversions() {
+        for (int frameLength : frameLengths) {
+            final AudioFrame frame = new AudioFrame(frameLength);
+            for (int i = 0; i < frameLength; i++) {
+                frame.data[i] = (short) (Math.sin(i * 0.05) * 20000);
+            }
+            final AudioFrame floatFrame = AudioFrame.allocateFloat(frameLength);
+            final AudioFrame directFrame = AudioFrame.allocateDirect(frameLength);
+            final short[] samples = new short[frameLength];
+
+            measure("convert", params("conversion", "shortToFloat", "frameLength", frameLength), ops(100_000), 100,
+                    () -> floatFrame.copyFrom(frame.data));
+            measure("convert", params("conversion", "floatToShort", "frameLength", frameLength), ops(100_000), 100,
+                    () -> floatFrame.copyTo(samples));
+            measure("convert", params("conversion", "shortToDirect", "frameLength", frameLength), ops(100_000), 100,
+                    () -> directFrame.copyFrom(frame.data));
+            measure("convert", params("conversion", "directToShort", "frameLength", frameLength), ops(100_000), 100,
+                    () -> directFrame.copyTo(samples));
+
+            final VoiceProcessorFrameStats stats = new VoiceProcessorFrameStats();
+            measure("convert", params("conversion", "frameStats", "frameLength", frameLength), ops(100_000), 100,
+                    () -> stats.update(frame.data, frameLength));
+
+            final PolyphaseResampler resampler = new PolyphaseResampler(48000, sampleRate);
+            final short[] resampled = new short[resampler.getMaxOutputLength(frameLength)];
+            measure("convert", params("conversion", "resample48kTo16k", "frameLength", frameLength), ops(20_000), 10,
+                    () -> resampler.process(frame.data, 0, frameLength, resampled));
+        }
+    }
+
+    @Test
+    public void benchmarkResampling() {
+        final int[][] conversions = new int[][]{
+                {48000, 16000},
+                {44100, 16000},
+                {16000, 48000},
+                {48000, 44100},
+                {16000, 16001},
+                {44101, 16000}};
+        final int blockLength = 480;
+        final short[] input = new short[blockLength];
+        for (int i = 0; i < blockLength; i++) {
+            input[i] = (short) (Math.sin(i * 0.1) * 10000);
+        }
+        for (int[] conversion : conversions) {
+            final PolyphaseResampler resampler = new PolyphaseResampler(conversion[0], conversion[1]);
+            final short[] output = new short[resampler.getMaxOutputLength(blockLength)];
+            measure(
+                    "resample",
+                    params(
+                            "inputSampleRate", conversion[0],
+                            "outputSampleRate", conversion[1],
+                            "tapsPerPhase", resampler.getTapsPerPhase(),
+                            "blockLength", blockLength),
+                    ops(20_000),
+                    10,
+                    () -> resampler.process(input, 0, blockLength, output));
+        }
+    }
+
+    @Test
+    public void benchmarkPreprocessing() throws VoiceProcessorArgumentException {
+        for (boolean isFused : new boolean[]{true, false}) {
+            final VoiceProcessorPreprocessingOptions options = new VoiceProcessorPreprocessingOptions.Builder()
+                    .setDcRemoval(true)
+                    .setHighPassCutoffHz(80)
+                    .setAutomaticGain(true)
+                    .setGainDb(-3)
+                    .setFused(isFused)
+                    .build();
+            for (int frameLength : frameLengths) {
+                final short[] samples = new short[frameLength];
+                for (int i = 0; i < frameLength; i++) {
+                    samples[i] = (short) (Math.sin(i * 0.05) * 8000 + 500);
+                }
+                final PreprocessingChain chain = new PreprocessingChain(options, sampleRate);
+                measure("preprocess", params("fused", isFused, "frameLength", frameLength), ops(100_000), 100,
+                        () -> chain.process(samples, frameLength));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkFeatures() throws VoiceProcessorArgumentException {
+        for (int numCepstra : new int[]{0, 13}) {
+            final VoiceProcessorFeatureOptions options = new VoiceProcessorFeatureOptions.Builder()
+                    .setNumMelBands(40)
+                    .setNumCepstra(numCepstra)
+                    .build();
+            for (int windowLength : new int[]{400, 512}) {
+                final short[] samples = new short[windowLength];
+                for (int i = 0; i < windowLength; i++) {
+                    samples[i] = (short) (Math.sin(i * 0.05) * 8000 + Math.sin(i * 0.7) * 2000);
+                }
+                final float[] features = new float[options.getFeatureLength()];
+                final FeatureExtractor extractor = new FeatureExtractor(options, windowLength, sampleRate);
+                measure("features", params("cepstra", numCepstra, "windowLength", windowLength), ops(50_000), 100,
+                        () -> extractor.extract(samples, features));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkMetering() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        final long[] durations = new long[1024];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = (long) (Math.abs(Math.sin(i)) * 1e7);
+        }
+        final int[] index = new int[1];
+        measure("meter", params("helper", "latencyRecord"), ops(1_000_000), 1000,
+                () -> recorder.record(durations[index[0]++ & 1023]));
+
+        final CaptureMetrics metrics = new CaptureMetrics(512, sampleRate);
+        final FrameSubscription[] subscriptions = new FrameSubscription[4];
+        for (int i = 0; i < subscriptions.length; i++) {
+            subscriptions[i] = new FrameSubscription(frame -> { }, null, null);
+        }
+        measure("meter", params("helper", "metricsSnapshot", "listeners", subscriptions.length), ops(20_000), 10,
+                () -> metrics.snapshot(subscriptions, new VoiceProcessorPreprocessingMetrics[0]));
+    }
+
+    @Test
+    public void benchmarkEncoding() throws VoiceProcessorArgumentException {
+        final Random random = new Random(0);
+        for (VoiceProcessorCodec codec : VoiceProcessorCodec.values()) {
+            for (int frameLength : frameLengths) {
+                final short[][] frames = new short[64][frameLength];
+                for (int i = 0; i < frames.length; i++) {
+                    for (int j = 0; j < frameLength; j++) {
+                        frames[i][j] = (short) (Math.sin((i * frameLength + j) * 0.05) * 8000 +
+                                random.nextGaussian() * 100);
+                    }
+                }
+                final long[] numBytes = new long[1];
+                final VoiceProcessorEncoder encoder = new VoiceProcessorEncoder.Builder()
+                        .setCodec(codec)
+                        .setPacketListener(packet -> numBytes[0] += packet.length)
+                        .build();
+                final int[] index = new int[1];
+                measure(
+                        "encode",
+                        params("codec", codec.name(), "frameLength", frameLength),
+                        ops(20_000),
+                        10,
+                        () -> encoder.onFrame(frames[index[0]++ & 63]));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkCapture() throws Exception {
+        final int frameLength = 512;
+        final int numFrames = ops(20_000);
+        for (int numListeners : listenerCounts) {
+            vp.setAudioSource(new StubSource(numFrames));
+            vp.setDispatchMode(VoiceProcessorDispatchMode.PROCESSING_THREAD);
+            final CountDownLatch latch = new CountDownLatch(numListeners * numFrames);
+            for (int i = 0; i < numListeners; i++) {
+                vp.addFrameListener(frame -> latch.countDown(), new VoiceProcessorListenerOptions.Builder()
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+            }
+
+            final long startNs = System.nanoTime();
+            vp.start(frameLength, sampleRate);
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            final long elapsedNs = System.nanoTime() - startNs;
+            vp.stop();
+
+            final VoiceProcessorMetrics metrics = vp.getMetrics();
+            final VoiceProcessorLatencyHistogram routing = metrics.getRoutingTime();
+            final Result result = new Result(
+                    "capture",
+                    params("listeners", numListeners, "frameLength", frameLength),
+                    numFrames,
+                    (double) elapsedNs / numFrames,
+                    routing.getPercentileMicros(50) * 1000,
+                    routing.getPercentileMicros(99) * 1000,
+                    (long) (routing.getMaxMicros() * 1000),
+                    -1);
+            report(result);
+            vp.clearFrameListeners();
+        }
+    }
+
+    private void runDispatch(
+            VoiceProcessorDispatchMode mode,
+            int numListeners,
+            int frameLength) throws VoiceProcessorArgumentException {
+        final AtomicLong sink = new AtomicLong(0);
+        final VoiceProcessorListenerOptions.Builder builder = new VoiceProcessorListenerOptions.Builder();
+        if (mode == null) {
+            builder.setExecutor(Runnable::run);
+        } else {
+            builder.setDispatchMode(mode).setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK);
+        }
+        final VoiceProcessorListenerOptions options = builder.build();
+        for (int i = 0; i < numListeners; i++) {
+            vp.addFrameListener(frame -> sink.addAndGet(frame[0]), options);
+        }
+
+        final AudioFrame frame = new AudioFrame(frameLength);
+        final String modeName = mode == null ? "CALLER" : mode.name();
+        measure(
+                "dispatch",
+                params("mode", modeName, "listeners", numListeners, "frameLength", frameLength),
+                ops(20_000),
+                1,
+                () -> vp.onFrame(frame, null, sampleRate));
+        vp.clearFrameListeners();
+    }
+
+    private int ops(int count) {
+        return Math.max(1, (int) (count * scale));
+    }
+
+    /**
+     * Times `numOps` calls to `op` in samples of `opsPerSample` calls each, after a warm-up of a
+     * tenth as many calls. Allocation is measured on the calling thread only.
+     */
+    private Result measure(String benchmark, String params, int numOps, int opsPerSample, Runnable op) {
+        for (int i = 0; i < numOps / 10; i++) {
+            op.run();
+        }
+
+        final int numSamples = Math.max(1, numOps / opsPerSample);
+        final long[] sampleNs = new long[numSamples];
+        final long allocatedBefore = getAllocatedBytes();
+        final long startNs = System.nanoTime();
+        for (int i = 0; i < numSamples; i++) {
+            final long sampleStartNs = System.nanoTime();
+            for (int j = 0; j < opsPerSample; j++) {
+                op.run();
+            }
+            sampleNs[i] = System.nanoTime() - sampleStartNs;
+        }
+        final long elapsedNs = System.nanoTime() - startNs;
+        final long allocatedAfter = getAllocatedBytes();
+
+        Arrays.sort(sampleNs);
+        final long totalOps = (long) numSamples * opsPerSample;
+        final Result result = new Result(
+                benchmark,
+                params,
+                totalOps,
+                (double) elapsedNs / totalOps,
+                sampleNs[numSamples / 2] / opsPerSample,
+                sampleNs[Math.min(numSamples - 1, (int) (numSamples * 0.99))] / opsPerSample,
+                sampleNs[numSamples - 1] / opsPerSample,
+                allocatedBefore >= 0 && allocatedAfter >= 0 ?
+                        (double) (allocatedAfter - allocatedBefore) / totalOps :
+                        -1);
+        report(result);
+        return result;
+    }
+
+    private static long getAllocatedBytes() {
+        final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void report(Result result) {
+        synchronized (results) {
+            results.add(result);
+        }
+    }
+
+    private static String params(Object... keysAndValues) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            builder.append(i == 0 ? "" : ",").append(keysAndValues[i]).append('=').append(keysAndValues[i + 1]);
+        }
+        return builder.toString();
+    }
+
+    private static void checkBaseline(File baseline, double tolerance) throws IOException {
+        final Pattern pattern = Pattern.compile("\"id\":\"([^\"]+)\".*\"nsPerOp\":([0-9.]+)");
+        final Map<String, Double> baselineNs = new HashMap<>();
+        for (String line : Files.readAllLines(baseline.toPath(), StandardCharsets.UTF_8)) {
+            final Matcher matcher = pattern.matcher(line);
+            if (matcher.find()) {
+                baselineNs.put(matcher.group(1), Double.parseDouble(matcher.group(2)));
+            }
+        }
+
+        final StringBuilder regressions = new StringBuilder();
+        for (Result result : results) {
+            final Double previousNs = baselineNs.get(result.getId());
+            if (previousNs != null && result.nsPerOp > previousNs * tolerance) {
+                regressions.append(String.format(
+                        Locale.ROOT,
+                        "%n%s: %.1f ns/op, baseline %.1f ns/op",
+                        result.getId(),
+                        result.nsPerOp,
+                        previousNs));
+            }
+        }
+        if (regressions.length() > 0) {
+            fail("Benchmarks regressed by more than " + tolerance + "x:" + regressions);
+        }
+    }
+
+    private static final class Result {
+
+        final String benchmark;
+        final String params;
+        final long ops;
+        final double nsPerOp;
+        final long p50Ns;
+        final long p99Ns;
+        final long maxNs;
+        final double bytesPerOp;
+
+        Result(
+                String benchmark,
+                String params,
+                long ops,
+                double nsPerOp,
+                long p50Ns,
+                long p99Ns,
+                long maxNs,
+                double bytesPerOp) {
+            this.benchmark = benchmark;
+            this.params = params;
+            this.ops = ops;
+            this.nsPerOp = nsPerOp;
+            this.p50Ns = p50Ns;
+            this.p99Ns = p99Ns;
+            this.maxNs = maxNs;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        String getId() {
+            return benchmark + "[" + params + "]";
+        }
+
+        String toJson() {
+            return String.format(
+                    Locale.ROOT,
+                    "{\"id\":\"%s\",\"benchmark\":\"%s\",\"params\":\"%s\",\"ops\":%d,\"nsPerOp\":%.2f," +
+                            "\"p50Ns\":%d,\"p99Ns\":%d,\"maxNs\":%d,\"bytesPerOp\":%.2f}",
+                    getId(),
+                    benchmark,
+                    params,
+                    ops,
+                    nsPerOp,
+                    p50Ns,
+                    p99Ns,
+                    maxNs,
+                    bytesPerOp);
+        }
+    }
+
+    private static class StubSource implements VoiceProcessorAudioSource {
+
+        private final int numFrames;
+        private int numFramesRead = 0;
+
+        StubSource(int numFrames) {
+            this.numFrames = numFrames;
+        }
+
+        @Override
+        public void open(int frameLength, int sampleRate) {
+            numFramesRead = 0;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            if (numFramesRead++ == numFrames) {
+                return END_OF_STREAM;
+            }
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = (short) i;
+            }
+            return length;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
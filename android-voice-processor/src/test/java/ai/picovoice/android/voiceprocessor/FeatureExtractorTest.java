@@ -0,0 +1,168 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FeatureExtractorTest {
+
+    final int sampleRate = 16000;
+    final int windowLength = 400;
+
+    @Test
+    public void testPowerSpectrum() throws VoiceProcessorArgumentException {
+        final FeatureExtractor extractor = new FeatureExtractor(
+                new VoiceProcessorFeatureOptions.Builder().build(),
+                windowLength,
+                sampleRate);
+        assertEquals(512, extractor.getFftLength());
+
+        final Random random = new Random(7);
+        final short[] samples = new short[windowLength];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 4000);
+        }
+        extractor.extract(samples, new float[extractor.getFeatureLength()]);
+
+        final int fftLength = extractor.getFftLength();
+        final float[] power = extractor.getPowerSpectrum();
+        assertEquals(fftLength / 2 + 1, power.length);
+        for (int k = 0; k <= fftLength / 2; k++) {
+            double re = 0;
+            double im = 0;
+            for (int n = 0; n < windowLength; n++) {
+                final double hann = 0.5 - 0.5 * Math.cos(2 * Math.PI * n / windowLength);
+                final double sample = hann * samples[n] / 32768.0;
+                re += sample * Math.cos(2 * Math.PI * k * n / fftLength);
+                im -= sample * Math.sin(2 * Math.PI * k * n / fftLength);
+            }
+            final double expected = re * re + im * im;
+            assertEquals(expected, power[k], 1e-4 * (1 + expected));
+        }
+    }
+
+    @Test
+    public void testTonePeaksInItsBand() throws VoiceProcessorArgumentException {
+        final int numBands = 40;
+        final FeatureExtractor extractor = new FeatureExtractor(
+                new VoiceProcessorFeatureOptions.Builder()
+                        .setNumMelBands(numBands)
+                        .build(),
+                windowLength,
+                sampleRate);
+
+        for (double frequency : new double[]{300, 1000, 4000}) {
+            final float[] features = new float[numBands];
+            extractor.extract(tone(frequency), features);
+
+            int peakBand = 0;
+            for (int band = 1; band < numBands; band++) {
+                if (features[band] > features[peakBand]) {
+                    peakBand = band;
+                }
+            }
+            int nearestBand = 0;
+            for (int band = 1; band < numBands; band++) {
+                if (Math.abs(centerHz(band, numBands) - frequency) <
+                        Math.abs(centerHz(nearestBand, numBands) - frequency)) {
+                    nearestBand = band;
+                }
+            }
+            assertEquals(nearestBand, peakBand, 1);
+        }
+    }
+
+    @Test
+    public void testCepstra() throws VoiceProcessorArgumentException {
+        final short[] samples = tone(700);
+        final FeatureExtractor logMel = new FeatureExtractor(
+                new VoiceProcessorFeatureOptions.Builder()
+                        .setNumMelBands(24)
+                        .build(),
+                windowLength,
+                sampleRate);
+        final float[] energies = new float[logMel.getFeatureLength()];
+        logMel.extract(samples, energies);
+
+        final VoiceProcessorFeatureOptions options = new VoiceProcessorFeatureOptions.Builder()
+                .setNumMelBands(24)
+                .setNumCepstra(13)
+                .build();
+        assertEquals(13, options.getFeatureLength());
+        final FeatureExtractor mfcc = new FeatureExtractor(options, windowLength, sampleRate);
+        final float[] cepstra = new float[mfcc.getFeatureLength()];
+        mfcc.extract(samples, cepstra);
+
+        for (int c = 0; c < cepstra.length; c++) {
+            double expected = 0;
+            for (int band = 0; band < energies.length; band++) {
+                expected += energies[band] * Math.cos(Math.PI * c * (band + 0.5) / energies.length);
+            }
+            expected *= Math.sqrt((c == 0 ? 1.0 : 2.0) / energies.length);
+            assertEquals(expected, cepstra[c], 1e-3);
+        }
+    }
+
+    @Test
+    public void testSilence() throws VoiceProcessorArgumentException {
+        final FeatureExtractor extractor = new FeatureExtractor(
+                new VoiceProcessorFeatureOptions.Builder().build(),
+                windowLength,
+                sampleRate);
+        final float[] features = new float[extractor.getFeatureLength()];
+        extractor.extract(new short[windowLength], features);
+        for (float feature : features) {
+            assertEquals(Math.log(1e-10), feature, 1e-3);
+        }
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        final VoiceProcessorFeatureOptions.Builder[] builders = new VoiceProcessorFeatureOptions.Builder[]{
+                new VoiceProcessorFeatureOptions.Builder().setFftLength(500),
+                new VoiceProcessorFeatureOptions.Builder().setFftLength(8),
+                new VoiceProcessorFeatureOptions.Builder().setNumMelBands(0),
+                new VoiceProcessorFeatureOptions.Builder().setMinFrequencyHz(-1),
+                new VoiceProcessorFeatureOptions.Builder().setMinFrequencyHz(4000).setMaxFrequencyHz(2000),
+                new VoiceProcessorFeatureOptions.Builder().setNumMelBands(20).setNumCepstra(21),
+        };
+        for (VoiceProcessorFeatureOptions.Builder builder : builders) {
+            try {
+                builder.build();
+                fail("Built invalid feature options");
+            } catch (VoiceProcessorArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    private short[] tone(double frequency) {
+        final short[] samples = new short[windowLength];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (8000 * Math.sin(2 * Math.PI * frequency * i / sampleRate));
+        }
+        return samples;
+    }
+
+    private double centerHz(int band, int numBands) {
+        final double minMel = 2595.0 * Math.log10(1 + 20.0 / 700.0);
+        final double maxMel = 2595.0 * Math.log10(1 + sampleRate / 2.0 / 700.0);
+        final double mel = minMel + (maxMel - minMel) * (band + 1) / (numBands + 1);
+        return 700.0 * (Math.pow(10, mel / 2595.0) - 1);
+    }
+}
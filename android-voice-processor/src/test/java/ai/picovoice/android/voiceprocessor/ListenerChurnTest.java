@@ -0,0 +1,83 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ListenerChurnTest {
+
+    final int frameLength = 512;
+    final int numListeners = 4;
+    final int numFrames = 1000;
+
+    private final VoiceProcessor vp = VoiceProcessor.getInstance();
+
+    @After
+    public void tearDown() {
+        vp.clearFrameListeners();
+    }
+
+    @Test
+    public void testDispatchDoesNotTakeListenerLock() throws Exception {
+        final Executor directExecutor = Runnable::run;
+        final AtomicInteger numDelivered = new AtomicInteger(0);
+        final VoiceProcessorListenerOptions options = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(directExecutor)
+                .build();
+        for (int i = 0; i < numListeners; i++) {
+            vp.addFrameListener(frame -> numDelivered.incrementAndGet(), options);
+        }
+
+        final CountDownLatch isLocked = new CountDownLatch(1);
+        final CountDownLatch unlock = new CountDownLatch(1);
+        final Thread lockHolder = new Thread(() -> {
+            synchronized (vp.listenerLock) {
+                isLocked.countDown();
+                try {
+                    unlock.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        lockHolder.start();
+        try {
+            assertTrue(isLocked.await(5, TimeUnit.SECONDS));
+
+            // a capture thread that took the lock would block here until it is released
+            final AudioFrame frame = new AudioFrame(frameLength);
+            final Thread captureThread = new Thread(() -> {
+                for (int i = 0; i < numFrames; i++) {
+                    vp.onFrame(frame, null, 16000);
+                }
+            });
+            captureThread.start();
+            captureThread.join(5000);
+            assertFalse(captureThread.isAlive());
+            assertEquals(numListeners * numFrames, numDelivered.get());
+        } finally {
+            unlock.countDown();
+            lockHolder.join();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class PolyphaseResamplerTest {
+
+    final int[][] conversions = new int[][]{
+            {48000, 16000},
+            {44100, 16000},
+            {16000, 48000},
+            {48000, 44100},
+            {16000, 16001},
+            {44101, 16000}};
+    final double amplitude = 0.5;
+    final int blockLength = 480;
+
+    @Test
+    public void testSineSweepFidelity() {
+        for (int[] conversion : conversions) {
+            final int outputRate = conversion[1];
+            final double maxFrequency = 0.4 * Math.min(conversion[0], outputRate);
+            for (double frequency = 100; frequency <= maxFrequency; frequency *= 1.5) {
+                final short[] output = resampleTone(conversion[0], outputRate, frequency, 1.0);
+                final double snr = toneSnr(output, outputRate, frequency, outputRate / 10);
+                assertTrue(
+                        String.format(
+                                "%d -> %d Hz at %.0f Hz: SNR %.1f dB",
+                                conversion[0],
+                                outputRate,
+                                frequency,
+                                snr),
+                        snr > 60);
+            }
+        }
+    }
+
+    @Test
+    public void testAliasRejection() {
+        final int inputRate = 48000;
+        final int outputRate = 16000;
+        final double[] frequencies = new double[]{9000, 12000, 15000, 20000};
+        for (double frequency : frequencies) {
+            final short[] output = resampleTone(inputRate, outputRate, frequency, 1.0);
+            double energy = 0;
+            for (int i = outputRate / 10; i < output.length; i++) {
+                energy += (double) output[i] * output[i];
+            }
+            final double rms = Math.sqrt(energy / (output.length - outputRate / 10));
+            final double attenuation = 20 * Math.log10(rms / (amplitude * Short.MAX_VALUE / Math.sqrt(2)));
+            assertTrue(
+                    String.format("%.0f Hz attenuated by only %.1f dB", frequency, -attenuation),
+                    attenuation < -60);
+        }
+    }
+
+    @Test
+    public void testCoprimeRatesBoundPhaseTable() {
+        final PolyphaseResampler exact = new PolyphaseResampler(48000, 44100);
+        assertEquals(147, exact.getNumPhases());
+        for (int[] conversion : new int[][]{{16000, 16001}, {44101, 16000}, {8000, 192001}}) {
+            final PolyphaseResampler resampler = new PolyphaseResampler(conversion[0], conversion[1]);
+            assertEquals(PolyphaseResampler.MAX_PHASES, resampler.getNumPhases());
+        }
+    }
+
+    @Test
+    public void testOutputLength() {
+        for (int[] conversion : conversions) {
+            final PolyphaseResampler resampler = new PolyphaseResampler(conversion[0], conversion[1]);
+            final short[] input = new short[blockLength];
+            final short[] output = new short[resampler.getMaxOutputLength(blockLength)];
+            long numOutput = 0;
+            final int numBlocks = 1000;
+            for (int i = 0; i < numBlocks; i++) {
+                numOutput += resampler.process(input, 0, input.length, output);
+            }
+            final long expected = (long) numBlocks * blockLength * conversion[1] / conversion[0];
+            assertEquals(expected, numOutput, 1);
+        }
+    }
+
+    private short[] resampleTone(int inputRate, int outputRate, double frequency, double seconds) {
+        final PolyphaseResampler resampler = new PolyphaseResampler(inputRate, outputRate);
+        final int numInput = (int) (inputRate * seconds);
+        final short[] output = new short[resampler.getMaxOutputLength(numInput) + blockLength];
+        final short[] block = new short[blockLength];
+        final short[] resampled = new short[resampler.getMaxOutputLength(blockLength)];
+        int numOutput = 0;
+        for (int start = 0; start + blockLength <= numInput; start += blockLength) {
+            for (int i = 0; i < blockLength; i++) {
+                block[i] = (short) Math.round(
+                        amplitude * Short.MAX_VALUE * Math.sin(2 * Math.PI * frequency * (start + i) / inputRate));
+            }
+            final int n = resampler.process(block, 0, blockLength, resampled);
+            System.arraycopy(resampled, 0, output, numOutput, n);
+            numOutput += n;
+        }
+        final short[] trimmed = new short[numOutput];
+        System.arraycopy(output, 0, trimmed, 0, numOutput);
+        return trimmed;
+    }
+
+    // Least-squares fit of a sinusoid at the known frequency; everything else counts as noise.
+    private double toneSnr(short[] signal, int sampleRate, double frequency, int skip) {
+        double ss = 0;
+        double sc = 0;
+        double cc = 0;
+        double ys = 0;
+        double yc = 0;
+        final int n = signal.length - skip;
+        for (int i = skip; i < signal.length; i++) {
+            final double w = 2 * Math.PI * frequency * i / sampleRate;
+            final double s = Math.sin(w);
+            final double c = Math.cos(w);
+            ss += s * s;
+            sc += s * c;
+            cc += c * c;
+            ys += signal[i] * s;
+            yc += signal[i] * c;
+        }
+        final double det = ss * cc - sc * sc;
+        final double a = (ys * cc - yc * sc) / det;
+        final double b = (yc * ss - ys * sc) / det;
+
+        double signalEnergy = 0;
+        double noiseEnergy = 0;
+        for (int i = skip; i < signal.length; i++) {
+            final double w = 2 * Math.PI * frequency * i / sampleRate;
+            final double fit = a * Math.sin(w) + b * Math.cos(w);
+            signalEnergy += fit * fit;
+            noiseEnergy += (signal[i] - fit) * (signal[i] - fit);
+        }
+        return 10 * Math.log10(signalEnergy / Math.max(noiseEnergy, 1e-9 * n));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class PreprocessingChainTest {
+
+    final int sampleRate = 16000;
+    final int frameLength = 256;
+
+    private int position = 0;
+
+    @Test
+    public void testDcRemoval() throws VoiceProcessorArgumentException {
+        final PreprocessingChain chain = new PreprocessingChain(
+                new VoiceProcessorPreprocessingOptions.Builder()
+                        .setDcRemoval(true)
+                        .build(),
+                sampleRate);
+
+        short[] frame = null;
+        for (int i = 0; i < 2 * sampleRate / frameLength; i++) {
+            frame = tone(1000, 3000, 5000);
+            chain.process(frame, frameLength);
+        }
+        assertEquals(0, mean(frame), 20);
+        assertEquals(3000 / Math.sqrt(2), rms(frame), 30);
+    }
+
+    @Test
+    public void testHighPass() throws VoiceProcessorArgumentException {
+        final VoiceProcessorPreprocessingOptions options = new VoiceProcessorPreprocessingOptions.Builder()
+                .setHighPassCutoffHz(120)
+                .build();
+
+        assertEquals(-24, levelDb(new PreprocessingChain(options, sampleRate), 30), 2);
+        assertEquals(0, levelDb(new PreprocessingChain(options, sampleRate), 1000), 0.2);
+    }
+
+    @Test
+    public void testAutomaticGain() throws VoiceProcessorArgumentException {
+        final PreprocessingChain chain = new PreprocessingChain(
+                new VoiceProcessorPreprocessingOptions.Builder()
+                        .setAutomaticGain(true)
+                        .setTargetLevelDbfs(-20)
+                        .build(),
+                sampleRate);
+
+        short[] frame = null;
+        for (int i = 0; i < 10 * sampleRate / frameLength; i++) {
+            frame = tone(500, 328, 0);
+            chain.process(frame, frameLength);
+        }
+        assertEquals(-20, toDbfs(rms(frame)), 1);
+
+        for (int i = 0; i < sampleRate / frameLength; i++) {
+            frame = new short[frameLength];
+            chain.process(frame, frameLength);
+        }
+        assertArrayEquals(new short[frameLength], frame);
+        frame = tone(500, 328, 0);
+        chain.process(frame, frameLength);
+        assertEquals(-20, toDbfs(rms(frame)), 1);
+    }
+
+    @Test
+    public void testGain() throws VoiceProcessorArgumentException {
+        final PreprocessingChain chain = new PreprocessingChain(
+                new VoiceProcessorPreprocessingOptions.Builder()
+                        .setGainDb(-6.0206)
+                        .build(),
+                sampleRate);
+
+        final short[] frame = new short[]{10000, -10000, 32767, -32768, 1};
+        chain.process(frame, frame.length);
+        assertArrayEquals(new short[]{5000, -5000, 16384, -16384, 1}, frame);
+    }
+
+    @Test
+    public void testFusedPassMatchesSeparatePasses() throws VoiceProcessorArgumentException {
+        final VoiceProcessorPreprocessingOptions.Builder builder = new VoiceProcessorPreprocessingOptions.Builder()
+                .setDcRemoval(true)
+                .setHighPassCutoffHz(80)
+                .setAutomaticGain(true)
+                .setGainDb(-3);
+        final PreprocessingChain fused = new PreprocessingChain(builder.build(), sampleRate);
+        final PreprocessingChain separate = new PreprocessingChain(builder.setFused(false).build(), sampleRate);
+
+        for (int i = 0; i < 100; i++) {
+            final short[] frame = tone(200 + 10 * i, 2000, -300);
+            final short[] copy = frame.clone();
+            fused.process(frame, frameLength);
+            separate.process(copy, frameLength);
+            for (int j = 0; j < frameLength; j++) {
+                // Fusing applies both gains with a single rounding
+                assertEquals(frame[j], copy[j], 1);
+            }
+        }
+
+        final VoiceProcessorPreprocessingMetrics[] fusedMetrics = fused.snapshot();
+        assertEquals(1, fusedMetrics.length);
+        assertArrayEquals(VoiceProcessorPreprocessingStage.values(), fusedMetrics[0].getStages());
+        assertEquals(100, fusedMetrics[0].getExecutionTime().getCount());
+        final VoiceProcessorPreprocessingMetrics[] separateMetrics = separate.snapshot();
+        assertEquals(VoiceProcessorPreprocessingStage.values().length, separateMetrics.length);
+        for (int i = 0; i < separateMetrics.length; i++) {
+            assertArrayEquals(
+                    new VoiceProcessorPreprocessingStage[]{VoiceProcessorPreprocessingStage.values()[i]},
+                    separateMetrics[i].getStages());
+            assertEquals(100, separateMetrics[i].getExecutionTime().getCount());
+        }
+    }
+
+    @Test
+    public void testOptionsValidation() {
+        try {
+            new VoiceProcessorPreprocessingOptions.Builder().setHighPassCutoffHz(-1).build();
+            fail("Built options with a negative cutoff");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+        try {
+            new VoiceProcessorPreprocessingOptions.Builder().setTargetLevelDbfs(3).build();
+            fail("Built options with a target level above full scale");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+        try {
+            new VoiceProcessorPreprocessingOptions.Builder().setGainDb(Double.NaN).build();
+            fail("Built options with an invalid gain");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Measures the gain of the chain at a frequency once its filters have settled.
+     */
+    private double levelDb(PreprocessingChain chain, double frequency) {
+        short[] frame = null;
+        for (int i = 0; i < sampleRate / frameLength; i++) {
+            frame = tone(frequency, 10000, 0);
+            chain.process(frame, frameLength);
+        }
+        return 20 * Math.log10(rms(frame) / (10000 / Math.sqrt(2)));
+    }
+
+    private short[] tone(double frequency, double amplitude, int offset) {
+        final short[] frame = new short[frameLength];
+        for (int i = 0; i < frameLength; i++) {
+            final double phase = 2 * Math.PI * frequency * position++ / sampleRate;
+            frame[i] = (short) Math.round(offset + amplitude * Math.sin(phase));
+        }
+        return frame;
+    }
+
+    private static double mean(short[] frame) {
+        double sum = 0;
+        for (short sample : frame) {
+            sum += sample;
+        }
+        return sum / frame.length;
+    }
+
+    private static double rms(short[] frame) {
+        double sumSquares = 0;
+        for (short sample : frame) {
+            sumSquares += (double) sample * sample;
+        }
+        return Math.sqrt(sumSquares / frame.length);
+    }
+
+    private static double toDbfs(double rms) {
+        return 20 * Math.log10(rms / 32768);
+    }
+}
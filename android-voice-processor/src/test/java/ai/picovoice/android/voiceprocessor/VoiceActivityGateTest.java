@@ -0,0 +1,93 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class VoiceActivityGateTest {
+
+    final int sampleRate = 16000;
+    final int frameLength = 160;
+
+    private int position = 0;
+
+    @Test
+    public void testHysteresisAndHangover() throws VoiceProcessorArgumentException {
+        final VoiceActivityGate gate = new VoiceActivityGate(new VoiceProcessorVoiceActivityOptions.Builder()
+                .setOnsetThresholdDbfs(-30)
+                .setOffsetThresholdDbfs(-40)
+                .setOnsetMillis(20)
+                .setHangoverMillis(100)
+                .build());
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(gate.process(tone(-120), frameLength, sampleRate));
+        }
+        assertFalse(gate.process(tone(-20), frameLength, sampleRate));
+        assertEquals(-20, gate.getLevelDbfs(), 0.1);
+        assertTrue(gate.process(tone(-20), frameLength, sampleRate));
+
+        for (int i = 0; i < 50; i++) {
+            assertTrue(gate.process(tone(-35), frameLength, sampleRate));
+        }
+        for (int i = 0; i < 10; i++) {
+            assertTrue(gate.process(tone(-60), frameLength, sampleRate));
+        }
+        assertFalse(gate.process(tone(-60), frameLength, sampleRate));
+
+        for (int i = 0; i < 10; i++) {
+            assertFalse(gate.process(tone(-35), frameLength, sampleRate));
+        }
+    }
+
+    @Test
+    public void testNoiseRejection() throws VoiceProcessorArgumentException {
+        final VoiceActivityGate gate = new VoiceActivityGate(new VoiceProcessorVoiceActivityOptions.Builder()
+                .setOnsetMillis(0)
+                .build());
+        final Random random = new Random(0);
+        final short[] noise = new short[frameLength];
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < frameLength; j++) {
+                noise[j] = (short) (random.nextGaussian() * 0.1 * Short.MAX_VALUE);
+            }
+            assertFalse(gate.process(noise, frameLength, sampleRate));
+            assertTrue(gate.getZeroCrossingRate() > 0.4);
+        }
+        assertTrue(gate.process(tone(-20), frameLength, sampleRate));
+    }
+
+    @Test(expected = VoiceProcessorArgumentException.class)
+    public void testInvalidThresholds() throws VoiceProcessorArgumentException {
+        new VoiceProcessorVoiceActivityOptions.Builder()
+                .setOnsetThresholdDbfs(-50)
+                .setOffsetThresholdDbfs(-40)
+                .build();
+    }
+
+    private short[] tone(double levelDbfs) {
+        final double amplitude = Math.pow(10, levelDbfs / 20) * Math.sqrt(2);
+        final short[] frame = new short[frameLength];
+        for (int i = 0; i < frameLength; i++, position++) {
+            final double phase = 2 * Math.PI * 300 * position / sampleRate;
+            frame[i] = (short) Math.round(amplitude * Short.MAX_VALUE * Math.sin(phase));
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.fail;
+
+import android.media.MediaRecorder;
+
+import org.junit.Test;
+
+public class VoiceProcessorCaptureConfigTest {
+
+    @Test
+    public void testProfiles() throws VoiceProcessorArgumentException {
+        final VoiceProcessorCaptureConfig balanced = new VoiceProcessorCaptureConfig.Builder().build();
+        assertEquals(8000, balanced.getBufferSizeInBytes(512, 16000, 2, 1280));
+        assertEquals(MediaRecorder.AudioSource.MIC, balanced.resolveMicrophoneSource(21));
+
+        final VoiceProcessorCaptureConfig lowLatency = new VoiceProcessorCaptureConfig.Builder()
+                .setProfile(VoiceProcessorCaptureProfile.LOW_LATENCY)
+                .build();
+        assertEquals(2048, lowLatency.getBufferSizeInBytes(512, 16000, 2, 1280));
+        assertEquals(3840, lowLatency.getBufferSizeInBytes(512, 16000, 2, 3840));
+        assertEquals(MediaRecorder.AudioSource.VOICE_RECOGNITION, lowLatency.resolveMicrophoneSource(29));
+
+        final VoiceProcessorCaptureConfig robust = new VoiceProcessorCaptureConfig.Builder()
+                .setProfile(VoiceProcessorCaptureProfile.HIGH_ROBUSTNESS)
+                .build();
+        assertEquals(64000, robust.getBufferSizeInBytes(512, 16000, 4, 1280));
+        assertEquals(MediaRecorder.AudioSource.MIC, robust.resolveMicrophoneSource(29));
+    }
+
+    @Test
+    public void testOverrides() throws VoiceProcessorArgumentException {
+        final VoiceProcessorCaptureConfig config = new VoiceProcessorCaptureConfig.Builder()
+                .setProfile(VoiceProcessorCaptureProfile.HIGH_ROBUSTNESS)
+                .setBufferFrames(4)
+                .setMicrophoneSource(MediaRecorder.AudioSource.UNPROCESSED)
+                .build();
+        assertEquals(4 * 256 * 2, config.getBufferSizeInBytes(256, 16000, 2, 1280));
+        assertEquals(MediaRecorder.AudioSource.UNPROCESSED, config.resolveMicrophoneSource(24));
+        assertEquals(MediaRecorder.AudioSource.VOICE_RECOGNITION, config.resolveMicrophoneSource(23));
+
+        assertEquals(config, new VoiceProcessorCaptureConfig.Builder()
+                .setProfile(VoiceProcessorCaptureProfile.HIGH_ROBUSTNESS)
+                .setBufferFrames(4)
+                .setMicrophoneSource(MediaRecorder.AudioSource.UNPROCESSED)
+                .build());
+        assertNotEquals(config, new VoiceProcessorCaptureConfig.Builder().build());
+
+        try {
+            new VoiceProcessorCaptureConfig.Builder().setBufferFrames(-1).build();
+            fail("Built a capture configuration with a negative buffer size");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testChannelCount() throws VoiceProcessorArgumentException {
+        final VoiceProcessorCaptureConfig stereo = new VoiceProcessorCaptureConfig.Builder()
+                .setChannelCount(2)
+                .build();
+        assertEquals(2, stereo.getChannelCount());
+        assertEquals(1, new VoiceProcessorCaptureConfig.Builder().build().getChannelCount());
+        assertNotEquals(stereo, new VoiceProcessorCaptureConfig.Builder().build());
+
+        for (int channelCount : new int[]{0, 9}) {
+            try {
+                new VoiceProcessorCaptureConfig.Builder().setChannelCount(channelCount).build();
+                fail("Built a capture configuration with " + channelCount + " channels");
+            } catch (VoiceProcessorArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,1693 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class VoiceProcessorDispatchTest {
+
+    final int frameLength = 512;
+    final int sampleRate = 16000;
+
+    private final VoiceProcessor vp = VoiceProcessor.getInstance();
+
+    @Rule
+    public ExternalResource voiceProcessorResource = new ExternalResource() {
+        @Override
+        protected void before() throws VoiceProcessorException {
+            vp.setAudioSource(new VoiceProcessorSignalSource(440, 0.5, 0.0, true));
+            vp.setDispatchMode(VoiceProcessorDispatchMode.PROCESSING_THREAD);
+        }
+
+        @Override
+        protected void after() {
+            try {
+                reset();
+            } catch (VoiceProcessorException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private void reset() throws VoiceProcessorException {
+        vp.stop();
+        vp.clearFrameListeners();
+        vp.clearErrorListeners();
+        vp.setFramePoolCapacity(0);
+        vp.setAudioSource(null);
+        vp.setPreprocessingOptions(null);
+        vp.setDispatchMode(VoiceProcessorDispatchMode.MAIN_THREAD);
+    }
+
+    @Test
+    public void testExecutorDelivery() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final int numFrames = 10;
+        final CountDownLatch latch = new CountDownLatch(numFrames);
+        final AtomicInteger concurrentCalls = new AtomicInteger(0);
+        final AtomicInteger maxConcurrentCalls = new AtomicInteger(0);
+
+        vp.addFrameListener(
+                frame -> {
+                    maxConcurrentCalls.accumulateAndGet(concurrentCalls.incrementAndGet(), Math::max);
+                    assertEquals(frameLength, frame.length);
+                    concurrentCalls.decrementAndGet();
+                    latch.countDown();
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(executor)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        executor.shutdown();
+
+        assertEquals(1, maxConcurrentCalls.get());
+    }
+
+    @Test
+    public void testProcessingThreadDelivery() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(5);
+        final AtomicReference<String> threadName = new AtomicReference<>();
+        vp.addFrameListener(frame -> {
+            threadName.set(Thread.currentThread().getName());
+            latch.countDown();
+        });
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        assertEquals("VoiceProcessorDispatch", threadName.get());
+    }
+
+    @Test
+    public void testPooledFramesAreNotRecycledWhileRetained() throws Exception {
+        final int capacity = 4;
+        final int numFrames = 12;
+        final int releaseIndex = 7;
+        vp.setFramePoolCapacity(capacity);
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<short[]> delivered = new ArrayList<>();
+        final List<short[]> copies = new ArrayList<>();
+        final long[] numHits = new long[numFrames];
+        final long[] numMisses = new long[numFrames];
+
+        // Delivery is synchronous, so the pool counters seen by the listener cover exactly the
+        // frames delivered so far. The first `capacity` frames are retained, which empties the
+        // pool, and the first of them is released again from within the listener.
+        vp.addFrameListener(
+                frame -> {
+                    final int index = delivered.size();
+                    if (index >= numFrames) {
+                        return;
+                    }
+                    delivered.add(frame);
+                    numHits[index] = vp.getFramePool().getNumHits();
+                    numMisses[index] = vp.getFramePool().getNumMisses();
+                    if (index < capacity) {
+                        vp.retainFrame(frame);
+                        copies.add(frame.clone());
+                    } else if (index == releaseIndex) {
+                        vp.releaseFrame(delivered.get(0));
+                    }
+                    if (index == numFrames - 1) {
+                        latch.countDown();
+                    }
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        for (int i = 0; i < numFrames; i++) {
+            if (i < capacity) {
+                assertEquals(i + 1, numHits[i]);
+                assertEquals(0, numMisses[i]);
+            } else if (i <= releaseIndex) {
+                assertEquals(capacity, numHits[i]);
+                assertEquals(i + 1 - capacity, numMisses[i]);
+            } else {
+                assertEquals(i + 1 - (releaseIndex + 1 - capacity), numHits[i]);
+                assertEquals(releaseIndex + 1 - capacity, numMisses[i]);
+            }
+        }
+
+        for (int i = 0; i < capacity; i++) {
+            for (int j = 0; j < numFrames; j++) {
+                final boolean isSameFrame = delivered.get(j) == delivered.get(i);
+                if (j == i || (i == 0 && j > releaseIndex)) {
+                    assertTrue(isSameFrame);
+                } else {
+                    assertFalse(isSameFrame);
+                }
+            }
+        }
+        for (int i = 1; i < capacity; i++) {
+            assertArrayEquals(copies.get(i), delivered.get(i));
+            vp.releaseFrame(delivered.get(i));
+        }
+    }
+
+    @Test
+    public void testOverflowPolicies() throws VoiceProcessorArgumentException {
+        final int capacity = 3;
+        final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        for (VoiceProcessorOverflowPolicy policy : new VoiceProcessorOverflowPolicy[]{
+                VoiceProcessorOverflowPolicy.DROP_OLDEST,
+                VoiceProcessorOverflowPolicy.DROP_NEWEST,
+                VoiceProcessorOverflowPolicy.COALESCE}) {
+            final List<Runnable> tasks = new ArrayList<>();
+            final List<short[]> delivered = new ArrayList<>();
+            final FrameSubscription subscription = new FrameSubscription(
+                    delivered::add,
+                    tasks::add,
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setQueueCapacity(capacity)
+                            .setOverflowPolicy(policy)
+                            .build());
+
+            int numOverflows = 0;
+            for (int i = 0; i < capacity + 2; i++) {
+                final AudioFrame frame = new AudioFrame(4);
+                frame.data[0] = (short) i;
+                if (subscription.enqueue(frame, null, isStopRequested)) {
+                    numOverflows++;
+                }
+            }
+            assertEquals(1, tasks.size());
+
+            tasks.get(0).run();
+            if (policy == VoiceProcessorOverflowPolicy.COALESCE) {
+                assertEquals(0, numOverflows);
+                assertEquals(0, subscription.getNumDroppedFrames());
+                assertEquals(1, delivered.size());
+                assertEquals((capacity + 2) * 4, delivered.get(0).length);
+                for (int i = 0; i < capacity + 2; i++) {
+                    assertEquals(i, delivered.get(0)[i * 4]);
+                }
+            } else {
+                assertEquals(1, numOverflows);
+                assertEquals(2, subscription.getNumDroppedFrames());
+                assertEquals(capacity, delivered.size());
+                final int first = policy == VoiceProcessorOverflowPolicy.DROP_OLDEST ? 2 : 0;
+                for (int i = 0; i < capacity; i++) {
+                    assertEquals(first + i, delivered.get(i)[0]);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCoalescingOverflowPolicy() throws VoiceProcessorArgumentException {
+        final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        final List<Runnable> tasks = new ArrayList<>();
+        final List<short[]> delivered = new ArrayList<>();
+        final FrameSubscription subscription = new FrameSubscription(
+                delivered::add,
+                tasks::add,
+                new VoiceProcessorListenerOptions.Builder()
+                        .setQueueCapacity(1)
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.COALESCE)
+                        .build());
+
+        // Merged frames of the same length reuse their storage
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 3; i++) {
+                subscription.enqueue(new AudioFrame(4), null, isStopRequested);
+            }
+            tasks.remove(0).run();
+        }
+        assertEquals(2, delivered.size());
+        assertTrue(delivered.get(0) == delivered.get(1));
+
+        // Audio is only discarded once the backlog reaches the cap of 2^19 samples
+        final int frameLength = 1 << 17;
+        int numOverflows = 0;
+        for (int i = 0; i < 5; i++) {
+            final AudioFrame frame = new AudioFrame(frameLength);
+            frame.data[0] = (short) i;
+            if (subscription.enqueue(frame, null, isStopRequested)) {
+                numOverflows++;
+            }
+        }
+        assertEquals(1, numOverflows);
+        assertEquals(1, subscription.getNumDroppedFrames());
+        tasks.remove(0).run();
+        assertEquals(4 * frameLength, delivered.get(2).length);
+        assertEquals(1, delivered.get(2)[0]);
+    }
+
+    @Test
+    public void testBlockingOverflowPolicy() throws Exception {
+        final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        final List<Runnable> tasks = new ArrayList<>();
+        final AtomicInteger numDelivered = new AtomicInteger(0);
+        final FrameSubscription subscription = new FrameSubscription(
+                frame -> numDelivered.incrementAndGet(),
+                tasks::add,
+                new VoiceProcessorListenerOptions.Builder()
+                        .setQueueCapacity(1)
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+
+        subscription.enqueue(new AudioFrame(4), null, isStopRequested);
+        final Thread producer = new Thread(
+                () -> subscription.enqueue(new AudioFrame(4), null, isStopRequested));
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive());
+
+        tasks.get(0).run();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertEquals(0, subscription.getNumDroppedFrames());
+    }
+
+    @Test
+    public void testReframing() throws Exception {
+        vp.setAudioSource(new CounterSource());
+        final int[][] configs = new int[][]{{300, 300}, {1024, 512}, {160, 200}, {frameLength, 256}};
+        final CountDownLatch latch = new CountDownLatch(configs.length);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        for (final int[] config : configs) {
+            final AtomicInteger numFrames = new AtomicInteger(0);
+            vp.addFrameListener(
+                    frame -> {
+                        final int index = numFrames.getAndIncrement();
+                        if (frame.length != config[0]) {
+                            failure.set("unexpected frame length " + frame.length);
+                        }
+                        for (int i = 0; i < frame.length; i++) {
+                            if (frame[i] != (short) ((index * config[1] + i) & 0x7FFF)) {
+                                failure.set("discontinuity with frame length " + config[0]);
+                            }
+                        }
+                        if (index == 20) {
+                            latch.countDown();
+                        }
+                    },
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setFrameLength(config[0])
+                            .setHopLength(config[1])
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                            .build());
+        }
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testResampledDelivery() throws Exception {
+        vp.setAudioSource(new VoiceProcessorSignalSource(1000, 0.5, 0.0, false));
+        final int captureFrameLength = 1440;
+        final int captureSampleRate = 48000;
+        final int[][] configs = new int[][]{{0, 16000, 480}, {512, 16000, 512}, {0, 0, captureFrameLength}};
+        final CountDownLatch latch = new CountDownLatch(configs.length);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        for (final int[] config : configs) {
+            final AtomicInteger numFrames = new AtomicInteger(0);
+            vp.addFrameListener(
+                    frame -> {
+                        final int index = numFrames.getAndIncrement();
+                        if (frame.length != config[2]) {
+                            failure.set("unexpected frame length " + frame.length);
+                        }
+                        int peak = 0;
+                        for (short sample : frame) {
+                            peak = Math.max(peak, Math.abs(sample));
+                        }
+                        if (index > 0 && Math.abs(peak - 0.5 * Short.MAX_VALUE) > 0.02 * Short.MAX_VALUE) {
+                            failure.set("unexpected peak " + peak + " at sample rate " + config[1]);
+                        }
+                        if (index == 20) {
+                            latch.countDown();
+                        }
+                    },
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setFrameLength(config[0])
+                            .setSampleRate(config[1])
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                            .build());
+        }
+
+        vp.start(captureFrameLength, captureSampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testRewind() throws Exception {
+        vp.setAudioSource(new CounterSource());
+        vp.setHistoryDuration(500);
+        final int rewindMillis = 100;
+        final int addedAfterFrames = 40;
+        final int[] reframedLengths = new int[]{0, 300};
+        final CountDownLatch latch = new CountDownLatch(reframedLengths.length);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final int[] firstSamples = new int[reframedLengths.length];
+        final VoiceProcessorListenerOptions[] rewindOptions = new VoiceProcessorListenerOptions[reframedLengths.length];
+        for (int i = 0; i < reframedLengths.length; i++) {
+            rewindOptions[i] = new VoiceProcessorListenerOptions.Builder()
+                    .setExecutor(Runnable::run)
+                    .setFrameLength(reframedLengths[i])
+                    .setRewindMillis(rewindMillis)
+                    .setQueueCapacity(1)
+                    .build();
+        }
+
+        final AtomicInteger numLiveFrames = new AtomicInteger(0);
+        vp.addFrameListener(
+                liveFrame -> {
+                    if (numLiveFrames.incrementAndGet() != addedAfterFrames) {
+                        return;
+                    }
+                    for (int index = 0; index < rewindOptions.length; index++) {
+                        final int listenerIndex = index;
+                        final List<short[]> frames = new ArrayList<>();
+                        vp.addFrameListener(
+                                frame -> {
+                                    frames.add(frame.clone());
+                                    if (frames.size() == 30) {
+                                        firstSamples[listenerIndex] = frames.get(0)[0];
+                                        for (int j = 0; j < frames.size(); j++) {
+                                            final short[] received = frames.get(j);
+                                            for (int i = 0; i < received.length; i++) {
+                                                final int expected = firstSamples[listenerIndex] +
+                                                        j * received.length + i;
+                                                if (received[i] != (short) (expected & 0x7FFF)) {
+                                                    failure.set("discontinuity after rewind");
+                                                }
+                                            }
+                                        }
+                                        latch.countDown();
+                                    }
+                                },
+                                rewindOptions[listenerIndex]);
+                    }
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        vp.setHistoryDuration(0);
+        assertEquals(null, failure.get());
+
+        final int numRewindSamples = rewindMillis * sampleRate / 1000;
+        final int livePosition = addedAfterFrames * frameLength;
+        final int rewoundFrames = (numRewindSamples + frameLength - 1) / frameLength;
+        assertEquals(livePosition - rewoundFrames * frameLength, firstSamples[0]);
+        assertEquals(livePosition - numRewindSamples, firstSamples[1]);
+    }
+
+    @Test
+    public void testBufferDelivery() throws Exception {
+        final int[][] configs = new int[][]{{0, 0}, {300, 150}};
+        for (final boolean isDirectSource : new boolean[]{false, true}) {
+            vp.setAudioSource(isDirectSource ? new DirectCounterSource() : new CounterSource());
+            final CountDownLatch latch = new CountDownLatch(configs.length + 1);
+            final AtomicReference<String> failure = new AtomicReference<>();
+
+            for (final int[] config : configs) {
+                final AtomicInteger numFrames = new AtomicInteger(0);
+                final int expectedLength = config[0] != 0 ? config[0] : frameLength;
+                final int hopLength = config[0] != 0 ? config[1] : frameLength;
+                vp.addBufferListener(
+                        frame -> {
+                            final int index = numFrames.getAndIncrement();
+                            if (!frame.isDirect() || !frame.isReadOnly() ||
+                                    frame.order() != ByteOrder.nativeOrder()) {
+                                failure.set("frame is not a read-only direct buffer in native order");
+                            }
+                            if (frame.remaining() != 2 * expectedLength) {
+                                failure.set("unexpected frame size " + frame.remaining());
+                            }
+                            for (int i = 0; i < expectedLength; i++) {
+                                if (frame.getShort(2 * i) != (short) ((index * hopLength + i) & 0x7FFF)) {
+                                    failure.set("discontinuity with frame length " + expectedLength);
+                                }
+                            }
+                            if (index == 20) {
+                                latch.countDown();
+                            }
+                        },
+                        new VoiceProcessorListenerOptions.Builder()
+                                .setFrameLength(config[0])
+                                .setHopLength(config[1])
+                                .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                                .build());
+            }
+
+            final AtomicInteger numFrames = new AtomicInteger(0);
+            vp.addFrameListener(
+                    frame -> {
+                        final int index = numFrames.getAndIncrement();
+                        if (frame[0] != (short) ((index * frameLength) & 0x7FFF)) {
+                            failure.set("discontinuity in frames delivered alongside buffers");
+                        }
+                        if (index == 20) {
+                            latch.countDown();
+                        }
+                    },
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                            .build());
+
+            vp.start(frameLength, sampleRate);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            vp.stop();
+            vp.clearFrameListeners();
+            assertEquals(null, failure.get());
+        }
+    }
+
+    @Test
+    public void testBufferPositionIsResetPerDelivery() {
+        final int length = 16;
+        final AudioFrame frame = AudioFrame.allocateDirect(length);
+        final List<Integer> positions = new ArrayList<>();
+        final List<Integer> limits = new ArrayList<>();
+        final FrameSubscription subscription = FrameSubscription.ofBuffers(
+                buffer -> {
+                    positions.add(buffer.position());
+                    limits.add(buffer.limit());
+                    // Consume the buffer with relative gets and shrink it, as a careless reader might
+                    while (buffer.hasRemaining()) {
+                        buffer.getShort();
+                    }
+                    buffer.limit(0);
+                },
+                Runnable::run,
+                null);
+
+        final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        for (int i = 0; i < 3; i++) {
+            subscription.enqueue(frame, null, isStopRequested);
+        }
+        assertEquals(Arrays.asList(0, 0, 0), positions);
+        assertEquals(Arrays.asList(2 * length, 2 * length, 2 * length), limits);
+    }
+
+    @Test
+    public void testFloatDelivery() throws Exception {
+        vp.setAudioSource(new CounterSource());
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final AtomicInteger numFrames = new AtomicInteger(0);
+        vp.addFloatListener(
+                frame -> {
+                    final int index = numFrames.getAndIncrement();
+                    if (frame.length != frameLength) {
+                        failure.set("unexpected frame length " + frame.length);
+                    }
+                    for (int i = 0; i < frame.length; i++) {
+                        if (frame[i] != ((index * frameLength + i) & 0x7FFF) / 32768.0f) {
+                            failure.set("unexpected sample " + frame[i]);
+                        }
+                    }
+                    if (index == 20) {
+                        latch.countDown();
+                    }
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testFloatCapture() throws Exception {
+        final VoiceProcessorListenerOptions options = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(Runnable::run)
+                .build();
+        final List<float[]> floatFrames = new ArrayList<>();
+        final List<short[]> frames = new ArrayList<>();
+        vp.addFloatListener(floatFrames::add, options);
+        vp.addFrameListener(frames::add, options);
+
+        final AudioFrame frame = new AudioFrame(6);
+        final AudioFrame capturedFrame = AudioFrame.allocateFloat(6);
+        final float[] samples = new float[]{0.0f, 0.5f, -0.5f, -1.0f, 1.5f, -2.0f};
+        System.arraycopy(samples, 0, capturedFrame.floatData, 0, samples.length);
+        capturedFrame.retain();
+        vp.onFrame(frame, capturedFrame, sampleRate);
+
+        assertEquals(1, floatFrames.size());
+        assertTrue(floatFrames.get(0) == capturedFrame.floatData);
+        assertEquals(1, frames.size());
+        assertArrayEquals(
+                new short[]{0, 16384, -16384, Short.MIN_VALUE, Short.MAX_VALUE, Short.MIN_VALUE},
+                frames.get(0));
+    }
+
+    @Test
+    public void testSpeechOnlyDelivery() throws Exception {
+        final VoiceProcessorListenerOptions speechOnly = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(Runnable::run)
+                .setSpeechOnly(true)
+                .build();
+        final List<short[]> speechFrames = new ArrayList<>();
+        final List<short[]> reframedSpeechFrames = new ArrayList<>();
+        final List<short[]> frames = new ArrayList<>();
+        final List<Boolean> transitions = new ArrayList<>();
+        vp.addFrameListener(speechFrames::add, speechOnly);
+        vp.addFrameListener(
+                reframedSpeechFrames::add,
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .setFrameLength(128)
+                        .setSpeechOnly(true)
+                        .build());
+        vp.addFrameListener(
+                frames::add,
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .build());
+        vp.setDispatchMode(VoiceProcessorDispatchMode.PROCESSING_THREAD);
+        final CountDownLatch latch = new CountDownLatch(2);
+        vp.setVoiceActivityListener((isSpeech, levelDbfs) -> {
+            transitions.add(isSpeech);
+            latch.countDown();
+        });
+        vp.setVoiceActivityOptions(new VoiceProcessorVoiceActivityOptions.Builder()
+                .setOnsetMillis(0)
+                .setHangoverMillis(0)
+                .build());
+
+        try {
+            final boolean[] isLoud = new boolean[]{false, true, true, false, false};
+            for (boolean loud : isLoud) {
+                final AudioFrame frame = new AudioFrame(frameLength);
+                for (int i = 0; i < frameLength; i++) {
+                    frame.data[i] = (short) (loud ? 8000 * Math.sin(2 * Math.PI * i / 64) : 0);
+                }
+                frame.retain();
+                vp.onFrame(frame, null, sampleRate);
+                assertEquals(loud, vp.getIsSpeechDetected());
+            }
+        } finally {
+            vp.setVoiceActivityOptions(null);
+            vp.setVoiceActivityListener(null);
+        }
+
+        assertEquals(5, frames.size());
+        assertEquals(2, speechFrames.size());
+        assertTrue(speechFrames.get(0) == frames.get(1));
+        assertEquals(2 * frameLength / 128, reframedSpeechFrames.size());
+        assertTrue(latch.await(1, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(true, false), transitions);
+    }
+
+    @Test
+    public void testFrameStatsDelivery() throws Exception {
+        final VoiceProcessorListenerOptions options = new VoiceProcessorListenerOptions.Builder()
+                .setExecutor(Runnable::run)
+                .build();
+        final List<short[]> frames = new ArrayList<>();
+        final List<VoiceProcessorFrameStats> stats = new ArrayList<>();
+        final List<VoiceProcessorFrameStats> reframedStats = new ArrayList<>();
+        vp.addFrameListener(frames::add, options);
+        vp.addFrameStatsListener((frame, frameStats) -> {
+            assertTrue(frame == frames.get(frames.size() - 1));
+            stats.add(frameStats.copy());
+        }, options);
+        vp.addFrameStatsListener(
+                (frame, frameStats) -> reframedStats.add(frameStats.copy()),
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .setFrameLength(frameLength / 4)
+                        .build());
+
+        final AudioFrame frame = new AudioFrame(frameLength);
+        for (int i = 0; i < frameLength; i++) {
+            frame.data[i] = i < frameLength / 4 ? Short.MAX_VALUE : 100;
+        }
+        frame.retain();
+        vp.onFrame(frame, null, sampleRate);
+
+        assertEquals(1, stats.size());
+        assertEquals(frameLength / 4, stats.get(0).getNumClippedSamples());
+        assertEquals(frameLength, stats.get(0).getLength());
+        assertEquals(4, reframedStats.size());
+        assertEquals(frameLength / 4, reframedStats.get(0).getNumClippedSamples());
+        assertEquals(100.0 / 32768, reframedStats.get(3).getPeak(), 0);
+    }
+
+    @Test
+    public void testBatchDelivery() throws Exception {
+        vp.setAudioSource(new CounterSource());
+        final int batchFrames = 10;
+        final List<short[]> batches = new ArrayList<>();
+        final List<int[]> batchOffsets = new ArrayList<>();
+        final AtomicInteger numFrames = new AtomicInteger(0);
+        final CountDownLatch latch = new CountDownLatch(1);
+        vp.addBatchListener(
+                (samples, frameOffsets) -> {
+                    batches.add(samples);
+                    batchOffsets.add(frameOffsets);
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .setBatchFrames(batchFrames)
+                        .build());
+        vp.addFrameListener(
+                frame -> {
+                    if (numFrames.incrementAndGet() == 105) {
+                        latch.countDown();
+                    }
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        int position = 0;
+        int numBatchedFrames = 0;
+        for (int i = 0; i < batches.size(); i++) {
+            final short[] samples = batches.get(i);
+            final int[] frameOffsets = batchOffsets.get(i);
+            if (i < batches.size() - 1) {
+                assertEquals(batchFrames, frameOffsets.length);
+            }
+            assertEquals(frameOffsets.length * frameLength, samples.length);
+            for (int j = 0; j < frameOffsets.length; j++) {
+                assertEquals(j * frameLength, frameOffsets[j]);
+            }
+            for (short sample : samples) {
+                assertEquals((short) (position++ & 0x7FFF), sample);
+            }
+            numBatchedFrames += frameOffsets.length;
+        }
+        assertEquals(numFrames.get(), numBatchedFrames);
+        assertTrue(batches.size() < numBatchedFrames / batchFrames + 2);
+    }
+
+    @Test
+    public void testShortReadsAreCompleted() throws Exception {
+        final List<short[]> frames = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch latch = new CountDownLatch(10);
+        vp.setAudioSource(new CounterSource() {
+            @Override
+            public int read(short[] buffer, int offset, int length) {
+                return super.read(buffer, offset, Math.min(length, 100));
+            }
+        });
+        vp.addFrameListener(
+                frame -> {
+                    frames.add(frame);
+                    latch.countDown();
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        final List<short[]> delivered;
+        synchronized (frames) {
+            delivered = new ArrayList<>(frames);
+        }
+        final VoiceProcessorMetrics metrics = vp.getMetrics();
+        assertEquals(0, metrics.getNumReadErrors());
+        assertTrue(metrics.getNumShortReads() >= 5 * delivered.size());
+        int position = 0;
+        for (short[] frame : delivered) {
+            for (short sample : frame) {
+                assertEquals((short) (position++ & 0x7FFF), sample);
+            }
+        }
+    }
+
+    @Test
+    public void testSourceIsRestartedAfterFailure() throws Exception {
+        final AtomicInteger numOpens = new AtomicInteger(0);
+        final AtomicInteger numReads = new AtomicInteger(0);
+        final CounterSource counter = new CounterSource();
+        vp.setAudioSource(new VoiceProcessorAudioSource() {
+            @Override
+            public void open(int frameLength, int sampleRate) {
+                counter.open(frameLength, sampleRate);
+                numOpens.incrementAndGet();
+            }
+
+            @Override
+            public void start() throws VoiceProcessorException {
+                if (numOpens.get() == 2) {
+                    throw new VoiceProcessorStateException("Microphone is busy");
+                }
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) throws VoiceProcessorException {
+                if (numReads.incrementAndGet() == 5) {
+                    throw new VoiceProcessorStateException("Recorder died");
+                }
+                return counter.read(buffer, offset, length);
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        final List<VoiceProcessorException> errors = Collections.synchronizedList(new ArrayList<>());
+        vp.addErrorListener(errors::add);
+        final CountDownLatch latch = new CountDownLatch(20);
+        vp.addFrameListener(
+                frame -> latch.countDown(),
+                new VoiceProcessorListenerOptions.Builder()
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        assertEquals(3, numOpens.get());
+        assertEquals(2, vp.getMetrics().getNumRestarts());
+        assertTrue(vp.getMetrics().getNumFramesCaptured() >= 20);
+        Thread.sleep(100);
+        assertEquals(2, errors.size());
+        assertEquals("Recorder died", errors.get(0).getMessage());
+        assertEquals("Microphone is busy", errors.get(1).getMessage());
+    }
+
+    @Test
+    public void testErrorReportToRejectingExecutor() throws Exception {
+        final AtomicInteger numReads = new AtomicInteger(0);
+        final CounterSource counter = new CounterSource();
+        vp.setAudioSource(new VoiceProcessorAudioSource() {
+            @Override
+            public void open(int frameLength, int sampleRate) {
+                counter.open(frameLength, sampleRate);
+            }
+
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public int read(short[] buffer, int offset, int length) throws VoiceProcessorException {
+                if (numReads.incrementAndGet() == 5) {
+                    throw new VoiceProcessorStateException("Recorder died");
+                }
+                return counter.read(buffer, offset, length);
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        // Without a running main looper, the main thread rejects every error report
+        vp.setDispatchMode(VoiceProcessorDispatchMode.MAIN_THREAD);
+        vp.addErrorListener(e -> { });
+        final CountDownLatch latch = new CountDownLatch(20);
+        vp.addFrameListener(
+                frame -> latch.countDown(),
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(Runnable::run)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(vp.getIsRecording());
+        vp.stop();
+        assertEquals(1, vp.getMetrics().getNumRestarts());
+    }
+
+    @Test
+    public void testOverrunDetection() {
+        final int length = 160;
+        final long frameNanos = 10_000_000L;
+        final OverrunDetector detector = new OverrunDetector(length, sampleRate, 5 * length);
+
+        long nowNanos = 0;
+        for (int i = 0; i < 10; i++) {
+            assertEquals(0, detector.onFrame(nowNanos, length));
+            nowNanos += frameNanos;
+        }
+
+        nowNanos += 3 * frameNanos;
+        for (int i = 0; i < 4; i++) {
+            assertEquals(0, detector.onFrame(nowNanos, length));
+        }
+        for (int i = 0; i < 10; i++) {
+            nowNanos += frameNanos;
+            assertEquals(0, detector.onFrame(nowNanos, length));
+        }
+
+        nowNanos += 11 * frameNanos;
+        assertEquals(5 * length, detector.onFrame(nowNanos, length), length / 10);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, detector.onFrame(nowNanos, length));
+        }
+        for (int i = 0; i < 10; i++) {
+            nowNanos += frameNanos;
+            assertEquals(0, detector.onFrame(nowNanos, length));
+        }
+
+        detector.reset();
+        assertEquals(0, detector.onFrame(nowNanos + 100 * frameNanos, length));
+    }
+
+    @Test
+    public void testTimedFrameDelivery() throws Exception {
+        vp.setAudioSource(new CounterSource());
+        final int[] lengths = new int[]{frameLength, 300};
+        final CountDownLatch latch = new CountDownLatch(lengths.length);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        for (final int length : lengths) {
+            final AtomicReference<VoiceProcessorFrameInfo> previous = new AtomicReference<>();
+            vp.addTimedFrameListener(
+                    (frame, info) -> {
+                        final long index = info.getSequenceNumber();
+                        if (info.getSamplePosition() != index * length || info.getSampleRate() != sampleRate) {
+                            failure.set("unexpected position " + info + " with frame length " + length);
+                        } else if (frame[0] != (short) (info.getSamplePosition() & 0x7FFF)) {
+                            failure.set("frame does not start at " + info);
+                        } else if (!info.getIsCaptureTimeEstimated()) {
+                            failure.set("capture time is not estimated");
+                        } else if (info.getCaptureTimeNanos() > System.nanoTime()) {
+                            failure.set("frame " + info + " was captured after it was delivered");
+                        }
+                        final VoiceProcessorFrameInfo last = previous.getAndSet(info.copy());
+                        if (last != null && last.getSequenceNumber() + 1 != index) {
+                            failure.set("frame " + info + " does not follow " + last);
+                        }
+                        if (index == 20) {
+                            latch.countDown();
+                        }
+                    },
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setFrameLength(length)
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                            .build());
+        }
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+    }
+
+    @Test
+    public void testCaptureClock() {
+        final int length = 160;
+        final long frameNanos = 10_000_000L;
+        final long originNanos = 1_000_000_000L;
+        final CaptureClock clock = new CaptureClock(sampleRate);
+
+        assertEquals(originNanos, clock.onFrame(originNanos + frameNanos, 0, length));
+        assertEquals(originNanos + frameNanos, clock.onFrame(originNanos + 5 * frameNanos, length, length));
+        assertEquals(originNanos + frameNanos, clock.onFrame(originNanos + 2 * frameNanos, 2 * length, length));
+        assertEquals(originNanos + 2 * frameNanos, clock.onFrame(originNanos + 20 * frameNanos, 3 * length, length));
+
+        clock.reset();
+        assertEquals(originNanos, clock.onFrame(originNanos + frameNanos, 0, length));
+    }
+
+    @Test
+    public void testMultichannelDelivery() throws Exception {
+        vp.setAudioSource(new MultichannelCounterSource(2));
+        final int[] channels = new int[]{
+                VoiceProcessorListenerOptions.CHANNEL_DOWNMIX,
+                0,
+                1,
+                VoiceProcessorListenerOptions.CHANNEL_INTERLEAVED};
+        final CountDownLatch latch = new CountDownLatch(channels.length + 1);
+        final AtomicReference<String> failure = new AtomicReference<>();
+
+        for (final int channel : channels) {
+            final AtomicInteger numFrames = new AtomicInteger(0);
+            vp.addFrameListener(
+                    frame -> {
+                        final int index = numFrames.getAndIncrement();
+                        final int channelCount = channel == VoiceProcessorListenerOptions.CHANNEL_INTERLEAVED ? 2 : 1;
+                        if (frame.length != frameLength * channelCount) {
+                            failure.set("unexpected frame length " + frame.length + " on channel " + channel);
+                        }
+                        for (int i = 0; i < frame.length; i++) {
+                            final int position = index * frameLength + i / channelCount;
+                            final int expected;
+                            if (channel == VoiceProcessorListenerOptions.CHANNEL_DOWNMIX) {
+                                expected = MultichannelCounterSource.getSample(position, 0) + 1;
+                            } else if (channel >= 0) {
+                                expected = MultichannelCounterSource.getSample(position, channel);
+                            } else {
+                                expected = MultichannelCounterSource.getSample(position, i % channelCount);
+                            }
+                            if (frame[i] != expected) {
+                                failure.set("unexpected sample on channel " + channel);
+                            }
+                        }
+                        if (index == 10) {
+                            latch.countDown();
+                        }
+                    },
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setChannel(channel)
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                            .build());
+        }
+        final AtomicInteger numReframed = new AtomicInteger(0);
+        vp.addFrameListener(
+                frame -> {
+                    final int index = numReframed.getAndIncrement();
+                    if (frame[0] != MultichannelCounterSource.getSample(index * 300, 0) + 1) {
+                        failure.set("unexpected re-framed downmix");
+                    }
+                    if (index == 10) {
+                        latch.countDown();
+                    }
+                },
+                new VoiceProcessorListenerOptions.Builder()
+                        .setFrameLength(300)
+                        .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                        .build());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+
+        try {
+            new VoiceProcessorListenerOptions.Builder().setChannel(0).setFrameLength(256).build();
+            fail("Built options that re-frame a single channel");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        final LifecycleSource source = new LifecycleSource(5);
+        vp.setAudioSource(source);
+        final AtomicInteger numFrames = new AtomicInteger(0);
+        vp.addFrameListener(frame -> numFrames.incrementAndGet());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(waitFor(() -> numFrames.get() >= 3));
+        vp.pause();
+        assertTrue(vp.getIsRecording());
+        assertTrue(vp.getIsPaused());
+        assertTrue(waitFor(() -> source.numStops.get() == 1));
+        Thread.sleep(100);
+        final int numPausedFrames = numFrames.get();
+        Thread.sleep(200);
+        assertEquals(numPausedFrames, numFrames.get());
+
+        vp.resume();
+        assertFalse(vp.getIsPaused());
+        assertTrue(waitFor(() -> numFrames.get() >= numPausedFrames + 3));
+        vp.stop();
+
+        assertEquals(1, source.numOpens.get());
+        assertEquals(2, source.numStarts.get());
+        assertEquals(2, source.numStops.get());
+        final VoiceProcessorMetrics metrics = vp.getMetrics();
+        assertEquals(2, metrics.getStartLatency().getCount());
+        assertEquals(2, metrics.getStopLatency().getCount());
+    }
+
+    @Test
+    public void testStopAsync() throws Exception {
+        final LifecycleSource source = new LifecycleSource(300);
+        vp.setAudioSource(source);
+        final CountDownLatch firstFrame = new CountDownLatch(1);
+        vp.addFrameListener(frame -> firstFrame.countDown());
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(firstFrame.await(5, TimeUnit.SECONDS));
+        final CountDownLatch stopped = new CountDownLatch(1);
+        final long stopStartNanos = System.nanoTime();
+        vp.stopAsync(stopped::countDown);
+        assertTrue(System.nanoTime() - stopStartNanos < TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(vp.getIsRecording());
+        assertTrue(stopped.await(5, TimeUnit.SECONDS));
+        assertEquals(1, vp.getMetrics().getStopLatency().getCount());
+
+        final CountDownLatch restarted = new CountDownLatch(1);
+        vp.stopAsync(restarted::countDown);
+        assertTrue(restarted.await(5, TimeUnit.SECONDS));
+
+        vp.start(frameLength, sampleRate);
+        vp.stopAsync(null);
+        vp.start(frameLength, sampleRate);
+        vp.stop();
+        assertEquals(3, source.numOpens.get());
+        assertEquals(3, source.numCloses.get());
+        assertEquals(1, source.threads.size());
+        assertEquals("VoiceProcessorCapture", source.threads.iterator().next().getName());
+    }
+
+    @Test
+    public void testPreprocessing() throws Exception {
+        vp.setPreprocessingOptions(new VoiceProcessorPreprocessingOptions.Builder()
+                .setHighPassCutoffHz(80)
+                .setGainDb(-6.0206)
+                .build());
+        final CountDownLatch latch = new CountDownLatch(10);
+        final AtomicInteger peak = new AtomicInteger(0);
+        vp.addFrameListener(frame -> {
+            if (latch.getCount() < 5) {
+                for (short sample : frame) {
+                    peak.accumulateAndGet(Math.abs(sample), Math::max);
+                }
+            }
+            latch.countDown();
+        });
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+
+        assertEquals(Short.MAX_VALUE / 4, peak.get(), 200);
+        final VoiceProcessorPreprocessingMetrics[] metrics = vp.getMetrics().getPreprocessingMetrics();
+        assertEquals(1, metrics.length);
+        assertEquals(2, metrics[0].getStages().length);
+        assertTrue(metrics[0].getExecutionTime().getCount() >= 10);
+    }
+
+    @Test
+    public void testFeatureDelivery() throws Exception {
+        final VoiceProcessorFeatureOptions featureOptions = new VoiceProcessorFeatureOptions.Builder()
+                .setNumMelBands(40)
+                .build();
+        final VoiceProcessorListenerOptions options = new VoiceProcessorListenerOptions.Builder()
+                .setFrameLength(400)
+                .setHopLength(160)
+                .setOverflowPolicy(VoiceProcessorOverflowPolicy.BLOCK)
+                .build();
+        final int numWindows = 10;
+        final float[][][] received = new float[2][numWindows][];
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicReference<String> failure = new AtomicReference<>();
+        for (int i = 0; i < received.length; i++) {
+            final float[][] windows = received[i];
+            final AtomicInteger numWindowsReceived = new AtomicInteger(0);
+            vp.addFeatureListener(
+                    features -> {
+                        final int index = numWindowsReceived.getAndIncrement();
+                        if (features.length != featureOptions.getFeatureLength()) {
+                            failure.set("unexpected feature length " + features.length);
+                        }
+                        if (index < numWindows) {
+                            windows[index] = features;
+                        }
+                        if (index == numWindows - 1) {
+                            latch.countDown();
+                        }
+                    },
+                    featureOptions,
+                    options);
+        }
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        assertEquals(null, failure.get());
+
+        for (int i = 0; i < numWindows; i++) {
+            assertTrue(received[0][i] == received[1][i]);
+        }
+
+        try {
+            vp.addFeatureListener(
+                    features -> { },
+                    featureOptions,
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setChannel(VoiceProcessorListenerOptions.CHANNEL_INTERLEAVED)
+                            .build());
+            fail("Added a feature listener on interleaved channels");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+
+        try {
+            vp.addFeatureListener(
+                    features -> { },
+                    featureOptions,
+                    new VoiceProcessorListenerOptions.Builder()
+                            .setOverflowPolicy(VoiceProcessorOverflowPolicy.COALESCE)
+                            .build());
+            fail("Added a feature listener that coalesces windows");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+
+        final VoiceProcessorFeatureOptions aboveNyquist = new VoiceProcessorFeatureOptions.Builder()
+                .setMinFrequencyHz(sampleRate / 2.0)
+                .build();
+        try {
+            vp.addFeatureListener(
+                    features -> { },
+                    aboveNyquist,
+                    new VoiceProcessorListenerOptions.Builder().setSampleRate(sampleRate).build());
+            fail("Added a feature listener with no bands below the Nyquist frequency");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+        vp.clearFrameListeners();
+        vp.addFeatureListener(features -> { }, aboveNyquist);
+        try {
+            vp.start(frameLength, sampleRate);
+            fail("Started capture for a feature listener with no bands below the Nyquist frequency");
+        } catch (VoiceProcessorArgumentException e) {
+            assertFalse(vp.getIsRecording());
+        }
+    }
+
+    @Test
+    public void testDemandDrivenDelivery() {
+        final AtomicBoolean isStopRequested = new AtomicBoolean(false);
+        final List<Runnable> tasks = new ArrayList<>();
+        final AtomicInteger numDelivered = new AtomicInteger(0);
+        final FrameSubscription subscription = FrameSubscription.ofDemand(
+                frame -> numDelivered.incrementAndGet(),
+                tasks::add,
+                null);
+
+        for (int i = 0; i < 3; i++) {
+            subscription.enqueue(new AudioFrame(4), null, isStopRequested);
+        }
+        assertTrue(tasks.isEmpty());
+
+        subscription.request(2, null);
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertEquals(2, numDelivered.get());
+
+        subscription.enqueue(new AudioFrame(4), null, isStopRequested);
+        assertTrue(tasks.isEmpty());
+        subscription.request(Long.MAX_VALUE, null);
+        subscription.request(1, null);
+        tasks.remove(0).run();
+        assertEquals(4, numDelivered.get());
+        assertEquals(0, subscription.getNumDroppedFrames());
+    }
+
+    @Test
+    public void testPublisher() throws Exception {
+        final LifecycleSource source = new LifecycleSource(5);
+        vp.setAudioSource(source);
+        final VoiceProcessorPublisher publisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .build();
+        final int numRequested = 5;
+        final AtomicInteger numFrames = new AtomicInteger(0);
+        final AtomicReference<VoiceProcessorSubscription> subscription = new AtomicReference<>();
+        publisher.subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(VoiceProcessorSubscription s) {
+                subscription.set(s);
+                s.request(numRequested);
+            }
+
+            @Override
+            public void onNext(short[] frame) {
+                assertEquals(frameLength, frame.length);
+                numFrames.incrementAndGet();
+            }
+        });
+        assertTrue(vp.getIsRecording());
+        assertEquals(1, publisher.getNumSubscribers());
+
+        assertTrue(waitFor(() -> numFrames.get() == numRequested));
+        Thread.sleep(100);
+        assertEquals(numRequested, numFrames.get());
+
+        subscription.get().request(1);
+        assertTrue(waitFor(() -> numFrames.get() == numRequested + 1));
+        subscription.get().cancel();
+        assertEquals(0, publisher.getNumSubscribers());
+        assertEquals(0, vp.getNumFrameListeners());
+        assertFalse(vp.getIsRecording());
+    }
+
+    @Test
+    public void testPublisherStartsOutsideItsLock() throws Exception {
+        final BlockingSource source = new BlockingSource();
+        vp.setAudioSource(source);
+        final VoiceProcessorPublisher publisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .build();
+
+        // Leave a session winding down in a read that has not returned yet
+        source.shouldBlock.set(true);
+        vp.start(frameLength, sampleRate);
+        assertTrue(source.isReadBlocked.await(5, TimeUnit.SECONDS));
+        vp.stopAsync(null);
+
+        final Thread subscriber = new Thread(() -> publisher.subscribe(new TestSubscriber()));
+        try {
+            subscriber.start();
+            assertTrue(waitFor(() -> subscriber.getState() == Thread.State.WAITING));
+
+            // Other subscribers are not held up by the start waiting for the previous session
+            final TestSubscriber other = new TestSubscriber() {
+                @Override
+                public void onSubscribe(VoiceProcessorSubscription subscription) {
+                    subscription.cancel();
+                }
+            };
+            final Thread cancelling = new Thread(() -> publisher.subscribe(other));
+            cancelling.start();
+            cancelling.join(1000);
+            assertFalse(cancelling.isAlive());
+        } finally {
+            source.unblockRead.countDown();
+        }
+        subscriber.join(5000);
+        assertFalse(subscriber.isAlive());
+        assertTrue(vp.getIsRecording());
+        assertEquals(1, publisher.getNumSubscribers());
+        publisher.complete();
+    }
+
+    @Test
+    public void testPublisherStopsOutsideItsLock() throws Exception {
+        final BlockingSource source = new BlockingSource();
+        vp.setAudioSource(source);
+        final VoiceProcessorPublisher publisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .build();
+        final AtomicReference<VoiceProcessorSubscription> first = new AtomicReference<>();
+        source.shouldBlock.set(true);
+        publisher.subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(VoiceProcessorSubscription subscription) {
+                first.set(subscription);
+            }
+        });
+        assertTrue(vp.getIsRecording());
+        assertTrue(source.isReadBlocked.await(5, TimeUnit.SECONDS));
+
+        // Hold the VoiceProcessor in a start() waiting for the blocked session, so that the
+        // publisher's stop of the capture it started has to wait as well
+        vp.stopAsync(null);
+        final Thread starter = new Thread(() -> {
+            try {
+                vp.start(frameLength, sampleRate);
+            } catch (VoiceProcessorArgumentException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        final Thread canceller = new Thread(() -> first.get().cancel());
+        try {
+            starter.start();
+            assertTrue(waitFor(() -> starter.getState() == Thread.State.WAITING));
+            canceller.start();
+            assertTrue(waitFor(() -> canceller.getState() == Thread.State.BLOCKED));
+
+            final AtomicInteger numSubscribers = new AtomicInteger(-1);
+            final Thread other = new Thread(() -> {
+                publisher.subscribe(new TestSubscriber());
+                numSubscribers.set(publisher.getNumSubscribers());
+            });
+            other.start();
+            other.join(1000);
+            assertFalse(other.isAlive());
+            assertEquals(1, numSubscribers.get());
+        } finally {
+            source.unblockRead.countDown();
+        }
+        starter.join(5000);
+        canceller.join(5000);
+        assertFalse(starter.isAlive());
+        assertFalse(canceller.isAlive());
+        publisher.complete();
+    }
+
+    @Test
+    public void testPublisherTermination() throws Exception {
+        final VoiceProcessorPublisher publisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .build();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch failed = new CountDownLatch(1);
+        publisher.subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(VoiceProcessorSubscription s) {
+                s.request(0);
+            }
+
+            @Override
+            public void onError(Throwable e) {
+                error.set(e);
+                failed.countDown();
+            }
+        });
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertTrue(error.get() instanceof IllegalArgumentException);
+        assertEquals(0, publisher.getNumSubscribers());
+        assertFalse(vp.getIsRecording());
+
+        final CountDownLatch completed = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            publisher.subscribe(new TestSubscriber() {
+                @Override
+                public void onComplete() {
+                    completed.countDown();
+                }
+            });
+        }
+        assertTrue(vp.getIsRecording());
+        publisher.complete();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, publisher.getNumSubscribers());
+        assertFalse(vp.getIsRecording());
+
+        vp.start(frameLength, sampleRate);
+        publisher.subscribe(new TestSubscriber());
+        publisher.complete();
+        assertTrue(vp.getIsRecording());
+        vp.stop();
+
+        // Final signals are sent inline once the delivery target rejects them
+        final VoiceProcessorPublisher rejectingPublisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .setListenerOptions(new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(task -> {
+                            throw new RejectedExecutionException();
+                        })
+                        .build())
+                .build();
+        final AtomicInteger numCompleted = new AtomicInteger(0);
+        rejectingPublisher.subscribe(new TestSubscriber() {
+            @Override
+            public void onComplete() {
+                numCompleted.incrementAndGet();
+            }
+        });
+        rejectingPublisher.complete();
+        assertEquals(1, numCompleted.get());
+
+        try {
+            new VoiceProcessorPublisher.Builder().setSampleRate(sampleRate).build();
+            fail("Built a publisher without a frame length");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPublisherSignalsAreSerial() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        final VoiceProcessorPublisher publisher = new VoiceProcessorPublisher.Builder()
+                .setFrameLength(frameLength)
+                .setSampleRate(sampleRate)
+                .setListenerOptions(new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(executor)
+                        .build())
+                .build();
+        final AtomicInteger numActiveSignals = new AtomicInteger(0);
+        final AtomicBoolean isOverlapping = new AtomicBoolean(false);
+        final CountDownLatch isDelivering = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        publisher.subscribe(new TestSubscriber() {
+            @Override
+            public void onSubscribe(VoiceProcessorSubscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(short[] frame) {
+                isOverlapping.compareAndSet(false, numActiveSignals.incrementAndGet() > 1);
+                isDelivering.countDown();
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                numActiveSignals.decrementAndGet();
+            }
+
+            @Override
+            public void onComplete() {
+                isOverlapping.compareAndSet(false, numActiveSignals.incrementAndGet() > 1);
+                numActiveSignals.decrementAndGet();
+                completed.countDown();
+            }
+        });
+
+        // Complete while a frame is being delivered on one of the executor's threads
+        assertTrue(isDelivering.await(5, TimeUnit.SECONDS));
+        publisher.complete();
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertFalse(isOverlapping.get());
+    }
+
+    private static class CounterSource implements VoiceProcessorAudioSource {
+
+        private int position = 0;
+
+        @Override
+        public void open(int frameLength, int sampleRate) {
+            position = 0;
+        }
+
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = (short) (position++ & 0x7FFF);
+            }
+            return length;
+        }
+
+        @Override
+        public void stop() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class TestSubscriber implements VoiceProcessorSubscriber {
+
+        @Override
+        public void onSubscribe(VoiceProcessorSubscription subscription) {
+        }
+
+        @Override
+        public void onNext(short[] frame) {
+        }
+
+        @Override
+        public void onError(Throwable error) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    private static boolean waitFor(Condition condition) throws InterruptedException {
+        final long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.isMet()) {
+            if (System.nanoTime() > deadlineNanos) {
+                return false;
+            }
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * A source whose next read blocks until it is released, once it has been told to block.
+     */
+    private static class BlockingSource extends CounterSource {
+
+        final CountDownLatch isReadBlocked = new CountDownLatch(1);
+        final CountDownLatch unblockRead = new CountDownLatch(1);
+        final AtomicBoolean shouldBlock = new AtomicBoolean(false);
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            if (shouldBlock.getAndSet(false)) {
+                isReadBlocked.countDown();
+                try {
+                    unblockRead.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return super.read(buffer, offset, length);
+        }
+    }
+
+    private static class LifecycleSource extends CounterSource {
+
+        final AtomicInteger numOpens = new AtomicInteger(0);
+        final AtomicInteger numStarts = new AtomicInteger(0);
+        final AtomicInteger numStops = new AtomicInteger(0);
+        final AtomicInteger numCloses = new AtomicInteger(0);
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<>());
+
+        private final long readMillis;
+
+        LifecycleSource(long readMillis) {
+            this.readMillis = readMillis;
+        }
+
+        @Override
+        public void open(int frameLength, int sampleRate) {
+            super.open(frameLength, sampleRate);
+            threads.add(Thread.currentThread());
+            numOpens.incrementAndGet();
+        }
+
+        @Override
+        public void start() {
+            numStarts.incrementAndGet();
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            try {
+                Thread.sleep(readMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.read(buffer, offset, length);
+        }
+
+        @Override
+        public void stop() {
+            numStops.incrementAndGet();
+        }
+
+        @Override
+        public void close() {
+            numCloses.incrementAndGet();
+        }
+    }
+
+    private static class MultichannelCounterSource extends CounterSource implements MultichannelAudioSource {
+
+        private final int channelCount;
+        private int sampleIndex = 0;
+
+        MultichannelCounterSource(int channelCount) {
+            this.channelCount = channelCount;
+        }
+
+        static short getSample(int position, int channel) {
+            return (short) ((position & 0x3FFF) + 2 * channel);
+        }
+
+        @Override
+        public void open(int frameLength, int sampleRate) {
+            sampleIndex = 0;
+        }
+
+        @Override
+        public int read(short[] buffer, int offset, int length) {
+            for (int i = 0; i < length; i++) {
+                buffer[offset + i] = getSample(sampleIndex / channelCount, sampleIndex % channelCount);
+                sampleIndex++;
+            }
+            return length;
+        }
+
+        @Override
+        public int getChannelCount() {
+            return channelCount;
+        }
+    }
+
+    private static class DirectCounterSource extends CounterSource implements DirectAudioSource {
+
+        private final short[] samples = new short[4096];
+
+        @Override
+        public int read(ByteBuffer buffer, int offset, int length) {
+            read(samples, 0, length);
+            final ShortBuffer target = buffer.order(ByteOrder.nativeOrder()).asShortBuffer();
+            target.position(offset);
+            target.put(samples, 0, length);
+            return length;
+        }
+    }
+}
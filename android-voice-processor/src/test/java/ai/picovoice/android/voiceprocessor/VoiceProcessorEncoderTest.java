@@ -0,0 +1,143 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class VoiceProcessorEncoderTest {
+
+    private static short[][] testFrames() {
+        final Random random = new Random(0);
+        final List<short[]> frames = new ArrayList<>();
+        frames.add(new short[0]);
+        for (int length : new int[]{1, 2, 3, 4, 5, 160, 511, 512}) {
+            final short[] tone = new short[length];
+            final short[] noise = new short[length];
+            final short[] extremes = new short[length];
+            for (int i = 0; i < length; i++) {
+                tone[i] = (short) (8000 * Math.sin(2 * Math.PI * 440 * i / 16000.0) + random.nextGaussian() * 50);
+                noise[i] = (short) (random.nextInt(65536) - 32768);
+                extremes[i] = i % 2 == 0 ? Short.MAX_VALUE : Short.MIN_VALUE;
+            }
+            frames.add(tone);
+            frames.add(noise);
+            frames.add(extremes);
+            frames.add(new short[length]);
+        }
+        return frames.toArray(new short[0][]);
+    }
+
+    @Test
+    public void testLosslessRoundTrip() throws VoiceProcessorArgumentException {
+        final List<byte[]> packets = new ArrayList<>();
+        final VoiceProcessorEncoder encoder = new VoiceProcessorEncoder.Builder()
+                .setCodec(VoiceProcessorCodec.LOSSLESS)
+                .setPacketListener(packets::add)
+                .build();
+
+        final short[][] frames = testFrames();
+        for (short[] frame : frames) {
+            encoder.onFrame(frame);
+        }
+
+        assertEquals(frames.length, packets.size());
+        long numSamples = 0;
+        for (int i = 0; i < frames.length; i++) {
+            assertArrayEquals(frames[i], VoiceProcessorEncoder.decode(VoiceProcessorCodec.LOSSLESS, packets.get(i)));
+            assertTrue(packets.get(i).length <= 6 + 2 * frames[i].length);
+            numSamples += frames[i].length;
+        }
+        assertEquals(numSamples, encoder.getNumSamplesEncoded());
+
+        final short[] silence = new short[512];
+        assertTrue(new LosslessCodec().encode(silence, silence.length).length < 100);
+    }
+
+    @Test
+    public void testImaAdpcmRoundTrip() throws VoiceProcessorArgumentException {
+        final List<byte[]> packets = new ArrayList<>();
+        final VoiceProcessorEncoder encoder = new VoiceProcessorEncoder.Builder()
+                .setCodec(VoiceProcessorCodec.IMA_ADPCM)
+                .setPacketListener(packets::add)
+                .build();
+
+        final short[] speechLike = new short[16000];
+        for (int i = 0; i < speechLike.length; i++) {
+            speechLike[i] = (short) (6000 * Math.sin(2 * Math.PI * 300 * i / 16000.0) +
+                    2000 * Math.sin(2 * Math.PI * 1200 * i / 16000.0));
+        }
+
+        final int frameLength = 511;
+        double signal = 0;
+        double error = 0;
+        int numDecoded = 0;
+        for (int start = 0; start < speechLike.length; start += frameLength) {
+            final int length = Math.min(frameLength, speechLike.length - start);
+            final short[] frame = new short[length];
+            System.arraycopy(speechLike, start, frame, 0, length);
+            encoder.onFrame(frame);
+
+            final byte[] packet = packets.get(packets.size() - 1);
+            assertEquals(4 + length / 2, packet.length);
+            final short[] decoded = VoiceProcessorEncoder.decode(VoiceProcessorCodec.IMA_ADPCM, packet);
+            assertEquals(length, decoded.length);
+            assertEquals(frame[0], decoded[0]);
+            for (int i = 0; i < length; i++) {
+                signal += (double) frame[i] * frame[i];
+                error += (double) (frame[i] - decoded[i]) * (frame[i] - decoded[i]);
+            }
+            numDecoded += length;
+        }
+
+        assertEquals(speechLike.length, numDecoded);
+        assertTrue(10 * Math.log10(signal / error) > 20);
+        assertTrue(encoder.getNumBytesEncoded() < encoder.getNumSamplesEncoded() * 2 / 3);
+
+        final ImaAdpcmCodec codec = new ImaAdpcmCodec();
+        for (short[] frame : testFrames()) {
+            final byte[] packet = codec.encode(frame, frame.length);
+            assertEquals(4 + frame.length / 2, packet.length);
+            assertEquals(frame.length, VoiceProcessorEncoder.decode(VoiceProcessorCodec.IMA_ADPCM, packet).length);
+        }
+    }
+
+    @Test
+    public void testRejectsMalformedPackets() {
+        for (VoiceProcessorCodec codec : VoiceProcessorCodec.values()) {
+            for (byte[] packet : new byte[][]{new byte[0], new byte[]{0, 0, 0, 5}, {3, 0, 100, 0, 0, 0, 0}}) {
+                try {
+                    VoiceProcessorEncoder.decode(codec, packet);
+                    fail(codec + " decoded a malformed packet");
+                } catch (VoiceProcessorArgumentException e) {
+                    // expected
+                }
+            }
+        }
+
+        try {
+            new VoiceProcessorEncoder.Builder().build();
+            fail("Built an encoder without a packet listener");
+        } catch (VoiceProcessorArgumentException e) {
+            // expected
+        }
+    }
+}
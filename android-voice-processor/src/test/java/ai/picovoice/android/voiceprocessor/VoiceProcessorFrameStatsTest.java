@@ -0,0 +1,75 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class VoiceProcessorFrameStatsTest {
+
+    @Test
+    public void testMatchesDirectComputation() {
+        final Random random = new Random(0);
+        final VoiceProcessorFrameStats stats = new VoiceProcessorFrameStats();
+        for (int length : new int[]{1, 3, 4, 7, 160, 511, 512}) {
+            final short[] samples = new short[length];
+            for (int i = 0; i < length; i++) {
+                samples[i] = (short) (random.nextInt(65536) - 32768);
+            }
+            samples[length / 2] = Short.MIN_VALUE;
+
+            double sum = 0;
+            double sumSquares = 0;
+            int peak = 0;
+            int numClipped = 0;
+            for (short sample : samples) {
+                sum += sample;
+                sumSquares += (double) sample * sample;
+                peak = Math.max(peak, Math.abs(sample));
+                if (sample == Short.MAX_VALUE || sample == Short.MIN_VALUE) {
+                    numClipped++;
+                }
+            }
+
+            stats.update(samples, length);
+            assertEquals(length, stats.getLength());
+            assertEquals(Math.sqrt(sumSquares / length) / 32768, stats.getRms(), 1e-12);
+            assertEquals(sum / length / 32768, stats.getDcOffset(), 1e-12);
+            assertEquals(1.0, stats.getPeak(), 0);
+            assertEquals(0.0, stats.getPeakDbfs(), 0);
+            assertEquals(numClipped, stats.getNumClippedSamples());
+            assertEquals(32768, peak);
+        }
+    }
+
+    @Test
+    public void testLevels() {
+        final VoiceProcessorFrameStats stats = new VoiceProcessorFrameStats();
+        final short[] samples = new short[160];
+        stats.update(samples, samples.length);
+        assertEquals(VoiceProcessorFrameStats.MIN_LEVEL_DBFS, stats.getLevelDbfs(), 0);
+        assertEquals(VoiceProcessorFrameStats.MIN_LEVEL_DBFS, stats.getPeakDbfs(), 0);
+
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (i % 2 == 0 ? 3277 : -3277 + 1000);
+        }
+        stats.update(samples, samples.length);
+        assertEquals(500.0 / 32768, stats.getDcOffset(), 1e-9);
+        assertEquals(20 * Math.log10(3277.0 / 32768), stats.getPeakDbfs(), 1e-9);
+        assertEquals(0, stats.getNumClippedSamples());
+        assertEquals(stats.getLevelDbfs(), stats.copy().getLevelDbfs(), 0);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExternalResource;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class VoiceProcessorMetricsTest {
+
+    final int frameLength = 512;
+    final int sampleRate = 16000;
+
+    private final VoiceProcessor vp = VoiceProcessor.getInstance();
+
+    @Rule
+    public ExternalResource voiceProcessorResource = new ExternalResource() {
+        @Override
+        protected void before() throws VoiceProcessorException {
+            vp.setAudioSource(new VoiceProcessorSignalSource(440, 0.5, 0.0, true));
+            vp.setDispatchMode(VoiceProcessorDispatchMode.PROCESSING_THREAD);
+        }
+
+        @Override
+        protected void after() {
+            try {
+                vp.stop();
+                vp.clearFrameListeners();
+                vp.setMetricsListener(null, 0);
+                vp.setAudioSource(null);
+                vp.setDispatchMode(VoiceProcessorDispatchMode.MAIN_THREAD);
+            } catch (VoiceProcessorException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @Test
+    public void testLatencyHistogram() {
+        final LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 0; i < 90; i++) {
+            recorder.record(1_500);
+        }
+        for (int i = 0; i < 10; i++) {
+            recorder.record(3_000_000);
+        }
+
+        final VoiceProcessorLatencyHistogram histogram = recorder.snapshot();
+        assertEquals(100, histogram.getCount());
+        assertEquals(90, histogram.getBucketCounts()[1]);
+        assertEquals(2, histogram.getPercentileMicros(50));
+        assertEquals(4096, histogram.getPercentileMicros(99));
+        assertEquals(3000, histogram.getMaxMicros(), 1e-9);
+        assertEquals((90 * 1.5 + 10 * 3000) / 100, histogram.getMeanMicros(), 1e-9);
+    }
+
+    @Test
+    public void testCaptureMetrics() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final VoiceProcessorFrameListener slowListener = frame -> {
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        vp.addFrameListener(
+                slowListener,
+                new VoiceProcessorListenerOptions.Builder()
+                        .setExecutor(executor)
+                        .build());
+
+        final CountDownLatch latch = new CountDownLatch(2);
+        final AtomicReference<VoiceProcessorMetrics> reported = new AtomicReference<>();
+        vp.setMetricsListener(metrics -> {
+            reported.set(metrics);
+            latch.countDown();
+        }, 100);
+
+        vp.start(frameLength, sampleRate);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        vp.stop();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.SECONDS));
+
+        final VoiceProcessorMetrics metrics = vp.getMetrics();
+        assertTrue(metrics.getNumFramesCaptured() >= 6);
+        assertEquals(0, metrics.getNumShortReads());
+        assertEquals(metrics.getNumFramesCaptured(), metrics.getRoutingTime().getCount());
+        assertTrue(metrics.getReadLatency().getCount() >= metrics.getNumFramesCaptured());
+        assertTrue(reported.get().getNumFramesCaptured() <= metrics.getNumFramesCaptured());
+
+        assertEquals(1, metrics.getListenerMetrics().length);
+        final VoiceProcessorListenerMetrics listenerMetrics = metrics.getListenerMetrics()[0];
+        assertTrue(listenerMetrics.getListener() == slowListener);
+        assertEquals(metrics.getNumFramesCaptured(), listenerMetrics.getNumFramesDelivered());
+        assertEquals(0, listenerMetrics.getNumFramesDropped());
+        assertEquals(0, listenerMetrics.getQueueSize());
+        assertTrue(listenerMetrics.getPeakQueueSize() >= 1);
+        assertTrue(listenerMetrics.getExecutionTime().getMeanMicros() >= 4_000);
+        assertEquals(
+                listenerMetrics.getNumFramesDelivered(),
+                listenerMetrics.getDispatchLatency().getCount());
+    }
+}
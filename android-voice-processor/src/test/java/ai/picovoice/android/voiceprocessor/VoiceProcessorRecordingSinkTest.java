@@ -0,0 +1,151 @@
+/*
+    Copyright 2023 Picovoice Inc.
+
+    You may not use this file except in compliance with the license. A copy of the license is
+    located in the "LICENSE" file accompanying this source.
+
+    Unless required by applicable law or agreed to in writing, software distributed under the
+    License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+    express or implied. See the License for the specific language governing permissions and
+    limitations under the License.
+*/
+
+package ai.picovoice.android.voiceprocessor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VoiceProcessorRecordingSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static short[] frame(int index, int length) {
+        final short[] frame = new short[length];
+        for (int i = 0; i < length; i++) {
+            frame[i] = (short) (index * length + i);
+        }
+        return frame;
+    }
+
+    private static short[] readSamples(File file, int offset) throws IOException {
+        final ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.position(offset);
+        final short[] samples = new short[bytes.remaining() / 2];
+        bytes.asShortBuffer().get(samples);
+        return samples;
+    }
+
+    @Test
+    public void testWavRecording() throws Exception {
+        final File directory = folder.newFolder();
+        final VoiceProcessorRecordingSink sink = new VoiceProcessorRecordingSink.Builder()
+                .setDirectory(directory)
+                .setSampleRate(16000)
+                .setChunkBytes(1000)
+                .build();
+
+        final int frameLength = 512;
+        final int numFrames = 10;
+        for (int i = 0; i < numFrames; i++) {
+            sink.onFrame(frame(i, frameLength));
+        }
+
+        final File file = sink.getCurrentFile();
+        assertEquals(new File(directory, "recording-0000.wav"), file);
+        final ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(36 + numFrames * frameLength * 2, header.getInt(4));
+        assertEquals(16000, header.getInt(24));
+        assertEquals(numFrames * frameLength * 2, header.getInt(40));
+
+        sink.close();
+        assertNull(sink.getCurrentFile());
+        assertEquals(44 + numFrames * frameLength * 2, file.length());
+        final short[] samples = readSamples(file, 44);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals((short) i, samples[i]);
+        }
+
+        sink.onFrame(frame(0, frameLength));
+        assertEquals(numFrames * frameLength, sink.getNumSamplesWritten());
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        final File directory = folder.newFolder();
+        final List<File> files = new ArrayList<>();
+        final List<Long> lengths = new ArrayList<>();
+        final VoiceProcessorRecordingSink sink = new VoiceProcessorRecordingSink.Builder()
+                .setDirectory(directory)
+                .setFilePrefix("session")
+                .setFormat(VoiceProcessorRecordingFormat.RAW)
+                .setSampleRate(16000)
+                .setMaxFileMillis(100)
+                .setRecordingListener((file, numSamples) -> {
+                    files.add(file);
+                    lengths.add(numSamples);
+                })
+                .build();
+
+        final int frameLength = 480;
+        for (int i = 0; i < 9; i++) {
+            sink.onFrame(frame(i, frameLength));
+        }
+        sink.close();
+
+        assertEquals(3, files.size());
+        final List<Short> samples = new ArrayList<>();
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(new File(directory, String.format("session-%04d.pcm", i)), files.get(i));
+            assertEquals(1440L, (long) lengths.get(i));
+            for (short sample : readSamples(files.get(i), 0)) {
+                samples.add(sample);
+            }
+        }
+        final short[] expected = new short[9 * frameLength];
+        final short[] actual = new short[samples.size()];
+        for (int i = 0; i < expected.length; i++) {
+            expected[i] = (short) i;
+        }
+        for (int i = 0; i < actual.length; i++) {
+            actual[i] = samples.get(i);
+        }
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void testRotationBySize() throws Exception {
+        final File directory = folder.newFolder();
+        final List<Long> lengths = new ArrayList<>();
+        final VoiceProcessorRecordingSink sink = new VoiceProcessorRecordingSink.Builder()
+                .setDirectory(directory)
+                .setSampleRate(16000)
+                .setMaxFileBytes(44 + 1000)
+                .setRecordingListener((file, numSamples) -> lengths.add(numSamples))
+                .build();
+
+        for (int i = 0; i < 5; i++) {
+            sink.onFrame(frame(i, 200));
+        }
+        sink.close();
+
+        assertEquals(3, lengths.size());
+        assertEquals(400L, (long) lengths.get(0));
+        assertEquals(400L, (long) lengths.get(1));
+        assertEquals(200L, (long) lengths.get(2));
+        assertEquals(44 + 400 * 2, new File(directory, "recording-0000.wav").length());
+    }
+}